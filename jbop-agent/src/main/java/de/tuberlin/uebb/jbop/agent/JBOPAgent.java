@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.agent;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+
+/**
+ * The Class JBOPAgent.
+ * 
+ * A java agent that specializes classes in place: the methods marked with <code>@</code>Optimizable
+ * of the class of a singleton are optimized for the values of the singleton and the class is retransformed.
+ * There is no call of {@link de.tuberlin.uebb.jbop.optimizer.Optimizer#optimize(Object, String)} and no renamed class,
+ * the singleton (and every other user of the class) just runs the specialized code.
+ * 
+ * <pre>
+ * java -javaagent:jbop-agent.jar ...
+ * 
+ * JBOPAgent.specialize(Config.INSTANCE);
+ * </pre>
+ * 
+ * The singleton has to be the only instance of its class and has to be fully initialized.
+ * Because a transformer can't tell when the initialization of a class (or of its singleton) is finished,
+ * the agent doesn't discover classes by itself: every class is specialized by an explicit call of
+ * {@link #specialize(Object)}. Static final fields of initialized classes (e.g. of configuration classes
+ * with only static members) that are used by the methods are inlined as well, but classes without an
+ * instance can't be specialized themselves.
+ * Retransformation can't add methods or fields, so the methods are not split
+ * (see {@link de.tuberlin.uebb.jbop.optimizer.Optimizer#optimizeMethods(org.objectweb.asm.tree.ClassNode, Object)}).
+ * 
+ * @author Christopher Ewest
+ */
+public final class JBOPAgent {
+  
+  private static final SpecializingTransformer TRANSFORMER = new SpecializingTransformer();
+  
+  private static Instrumentation instrumentation;
+  
+  private JBOPAgent() {
+    //
+  }
+  
+  /**
+   * Entry point if the agent is started with the JVM (<code>-javaagent</code>).
+   * 
+   * @param args
+   *          the args
+   * @param inst
+   *          the instrumentation
+   */
+  public static void premain(final String args, final Instrumentation inst) {
+    install(inst);
+  }
+  
+  /**
+   * Entry point if the agent is attached to a running JVM.
+   * 
+   * @param args
+   *          the args
+   * @param inst
+   *          the instrumentation
+   */
+  public static void agentmain(final String args, final Instrumentation inst) {
+    install(inst);
+  }
+  
+  private static synchronized void install(final Instrumentation inst) {
+    if (instrumentation == null) {
+      instrumentation = inst;
+      inst.addTransformer(TRANSFORMER, true);
+    }
+  }
+  
+  /**
+   * Checks if the agent is installed.
+   * 
+   * @return true, if is installed
+   */
+  public static synchronized boolean isInstalled() {
+    return instrumentation != null;
+  }
+  
+  /**
+   * Specializes the class of the singleton for the current values of the singleton.
+   * 
+   * The class stays specialized, even if it is retransformed again (e.g. by another agent).
+   * 
+   * @param singleton
+   *          the only instance of its class
+   * @throws JBOPClassException
+   *           if the agent is not installed, the class can't be retransformed or the optimization fails.
+   */
+  public static void specialize(final Object singleton) throws JBOPClassException {
+    final Instrumentation inst;
+    synchronized (JBOPAgent.class) {
+      inst = instrumentation;
+    }
+    if (inst == null) {
+      throw new JBOPClassException("The jBOP agent is not installed.", null);
+    }
+    final Class<?> clazz = singleton.getClass();
+    if (!inst.isRetransformClassesSupported() || !inst.isModifiableClass(clazz)) {
+      throw new JBOPClassException("The class " + clazz.getName() + " can't be retransformed.", null);
+    }
+    TRANSFORMER.register(singleton);
+    try {
+      inst.retransformClasses(clazz);
+    } catch (final UnmodifiableClassException | RuntimeException | LinkageError e) {
+      TRANSFORMER.unregister(clazz);
+      throw new JBOPClassException("The class " + clazz.getName() + " couldn't be retransformed.", e);
+    }
+    final Throwable failure = TRANSFORMER.getFailure(clazz);
+    if (failure != null) {
+      TRANSFORMER.unregister(clazz);
+      throw new JBOPClassException("The class " + clazz.getName() + " couldn't be specialized.", failure);
+    }
+  }
+}
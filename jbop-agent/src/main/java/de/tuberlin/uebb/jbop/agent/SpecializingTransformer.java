@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.agent;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.Optimizer;
+
+/**
+ * The Class SpecializingTransformer.
+ * 
+ * Optimizes the methods of registered classes for their singletons when the classes are retransformed.
+ * Other classes are not changed.
+ * 
+ * @author Christopher Ewest
+ */
+class SpecializingTransformer implements ClassFileTransformer {
+  
+  private final Map<Class<?>, Object> singletons = Collections.synchronizedMap(new IdentityHashMap<Class<?>, Object>());
+  private final Map<Class<?>, Throwable> failures = Collections
+      .synchronizedMap(new IdentityHashMap<Class<?>, Throwable>());
+  
+  /**
+   * Registers the singleton, its class is specialized at every retransformation.
+   * 
+   * @param singleton
+   *          the singleton
+   */
+  void register(final Object singleton) {
+    failures.remove(singleton.getClass());
+    singletons.put(singleton.getClass(), singleton);
+  }
+  
+  /**
+   * Unregisters the class.
+   * 
+   * @param clazz
+   *          the class
+   */
+  void unregister(final Class<?> clazz) {
+    singletons.remove(clazz);
+  }
+  
+  /**
+   * Gets the failure of the last transformation of the class.
+   * 
+   * @param clazz
+   *          the class
+   * @return the failure or null
+   */
+  Throwable getFailure(final Class<?> clazz) {
+    return failures.get(clazz);
+  }
+  
+  @Override
+  public byte[] transform(final ClassLoader loader, final String className, final Class<?> classBeingRedefined,
+      final ProtectionDomain protectionDomain, final byte[] classfileBuffer) {
+    if (classBeingRedefined == null) {
+      return null;
+    }
+    final Object singleton = singletons.get(classBeingRedefined);
+    if (singleton == null) {
+      return null;
+    }
+    try {
+      final ClassNode classNode = new ClassNode(Opcodes.ASM5);
+      // like OptimizerUtils: the optimizers don't keep the debug information consistent
+      new ClassReader(classfileBuffer).accept(classNode, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+      new Optimizer().optimizeMethods(classNode, singleton);
+      final ClassWriter writer = new LoaderClassWriter(loader);
+      classNode.accept(writer);
+      failures.remove(classBeingRedefined);
+      return writer.toByteArray();
+    } catch (final JBOPClassException | RuntimeException e) {
+      // exceptions of transformers are ignored by the jvm
+      failures.put(classBeingRedefined, e);
+      return null;
+    }
+  }
+  
+  /**
+   * A ClassWriter that computes the frames with the classes of the loader of the transformed class.
+   * The default implementation uses the loader of ASM (the loader of the agent), that doesn't know
+   * classes of other loaders (e.g. of application servers).
+   */
+  private static final class LoaderClassWriter extends ClassWriter {
+    
+    private final ClassLoader loader;
+    
+    LoaderClassWriter(final ClassLoader loader) {
+      super(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+      this.loader = loader;
+    }
+    
+    @Override
+    protected String getCommonSuperClass(final String type1, final String type2) {
+      Class<?> class1;
+      Class<?> class2;
+      try {
+        // the classes are loaded but not initialized
+        class1 = Class.forName(type1.replace('/', '.'), false, loader);
+        class2 = Class.forName(type2.replace('/', '.'), false, loader);
+      } catch (final ClassNotFoundException e) {
+        throw new TypeNotPresentException(e.getMessage(), e);
+      }
+      if (class1.isAssignableFrom(class2)) {
+        return type1;
+      }
+      if (class2.isAssignableFrom(class1)) {
+        return type2;
+      }
+      if (class1.isInterface() || class2.isInterface()) {
+        return "java/lang/Object";
+      }
+      do {
+        class1 = class1.getSuperclass();
+      } while (!class1.isAssignableFrom(class2));
+      return class1.getName().replace('.', '/');
+    }
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.agent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Constructor;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.util.CheckClassAdapter;
+
+import de.tuberlin.uebb.jbop.optimizer.annotations.Optimizable;
+
+/**
+ * Tests for {@link SpecializingTransformer}.
+ * 
+ * @author Christopher Ewest
+ */
+public class SpecializingTransformerTest {
+  
+  private final SpecializingTransformer transformer = new SpecializingTransformer();
+  
+  /**
+   * Tests that the transformed class verifies and runs the code specialized for the singleton.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testTransform() throws Exception {
+    // INIT
+    final Config config = new Config(3);
+    transformer.register(config);
+    final ClassLoader loader = Config.class.getClassLoader();
+    
+    // RUN
+    final byte[] transformed = transformer.transform(loader, Type.getInternalName(Config.class), Config.class, null,
+        readClass(Config.class));
+    
+    // ASSERT
+    assertNull(transformer.getFailure(Config.class));
+    assertNotNull(transformed);
+    final StringWriter errors = new StringWriter();
+    CheckClassAdapter.verify(new ClassReader(transformed), loader, false, new PrintWriter(errors));
+    assertEquals("", errors.toString());
+    
+    final Class<?> specializedClass = new ByteArrayClassLoader(loader).define(Config.class.getName(), transformed);
+    final Constructor<?> constructor = specializedClass.getDeclaredConstructor(int.class);
+    constructor.setAccessible(true);
+    final Object other = constructor.newInstance(Integer.valueOf(1));
+    // the values of the singleton are inlined
+    final Object result = specializedClass.getMethod("compute", int.class).invoke(other, Integer.valueOf(5));
+    assertEquals(Integer.valueOf(15), result);
+    assertEquals(Long.valueOf(3), specializedClass.getMethod("pick", boolean.class).invoke(other, Boolean.FALSE));
+  }
+  
+  /**
+   * Tests that classes without registered singleton are not transformed.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testUnregistered() throws Exception {
+    // INIT
+    transformer.register(new Config(3));
+    transformer.unregister(Config.class);
+    
+    // RUN
+    final byte[] transformed = transformer.transform(Config.class.getClassLoader(),
+        Type.getInternalName(Config.class), Config.class, null, readClass(Config.class));
+    
+    // ASSERT
+    assertNull(transformed);
+  }
+  
+  private static byte[] readClass(final Class<?> clazz) throws Exception {
+    final String resource = "/" + Type.getInternalName(clazz) + ".class";
+    try (InputStream stream = clazz.getResourceAsStream(resource)) {
+      return new ClassReader(stream).b;
+    }
+  }
+  
+  /**
+   * Defines a class from bytes, all other classes are loaded by the parent.
+   */
+  private static final class ByteArrayClassLoader extends ClassLoader {
+    
+    ByteArrayClassLoader(final ClassLoader parent) {
+      super(parent);
+    }
+    
+    Class<?> define(final String name, final byte[] bytes) {
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+  
+  /**
+   * A singleton with optimizable methods.
+   */
+  public static final class Config {
+    
+    private final int size;
+    
+    Config(final int size) {
+      this.size = size;
+    }
+    
+    /**
+     * Scales x.
+     * 
+     * @param x
+     *          the x
+     * @return the scaled x
+     */
+    @Optimizable
+    public int compute(final int x) {
+      if (size > 2) {
+        return x * size;
+      }
+      return -x;
+    }
+    
+    /**
+     * Boxes the size (the frames need the common superclass of Integer and Long).
+     * 
+     * @param asInt
+     *          whether an Integer is returned
+     * @return the size
+     */
+    @Optimizable
+    public Number pick(final boolean asInt) {
+      final Number result;
+      if (asInt) {
+        result = Integer.valueOf(size);
+      } else {
+        result = Long.valueOf(size);
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.benchmarks;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import de.tuberlin.uebb.jbop.output.AbstractPlot;
+import de.tuberlin.uebb.jbop.output.StringTable;
+import de.tuberlin.uebb.jbop.output.TableToAbstractPlot;
+
+/**
+ * Runs the {@link KernelBenchmark} and the {@link SpecializationBenchmark} and renders the results
+ * as {@link StringTable} and as plot (pgfplots).
+ * 
+ * Usage: <code>java -cp benchmarks.jar de.tuberlin.uebb.jbop.benchmarks.BenchmarkReport [--latex]</code>
+ * 
+ * @author Christopher Ewest
+ */
+public final class BenchmarkReport {
+  
+  private BenchmarkReport() {
+    //
+  }
+  
+  /**
+   * The main method.
+   * 
+   * @param args
+   *          the arguments (<code>--latex</code> renders the tables as latex)
+   * @throws RunnerException
+   *           if the benchmarks couldn't be run
+   */
+  public static void main(final String[] args) throws RunnerException {
+    final boolean latex = (args.length > 0) && "--latex".equals(args[0]);
+    final Options options = new OptionsBuilder()//
+        .include(KernelBenchmark.class.getSimpleName())//
+        .include(SpecializationBenchmark.class.getSimpleName())//
+        .build();
+    final Collection<RunResult> results = new Runner(options).run();
+    
+    final Map<String, Double> scores = new HashMap<>();
+    for (final RunResult result : results) {
+      final String benchmark = result.getParams().getBenchmark();
+      final String method = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+      scores.put(result.getParams().getParam("kernel") + "." + method,
+          Double.valueOf(result.getPrimaryResult().getScore()));
+    }
+    
+    final StringTable table = new StringTable();
+    table.setCaption("Original vs. optimized kernels");
+    table.setLabel("tab:kernels");
+    table.addColumn("Kernel", "%12s");
+    table.addColumn("original [ns/op]", "%12.1f");
+    table.addColumn("optimized [ns/op]", "%12.1f");
+    table.addColumn("Speedup", "%6.2f");
+    table.addColumn("Specialization [ms]", "%10.2f");
+    final StringTable plotTable = new StringTable();
+    plotTable.setCaption("Original vs. optimized kernels [ns/op]");
+    plotTable.setLabel("fig:kernels");
+    plotTable.addColumn("Kernel", "%12s");
+    plotTable.addColumn("original", "%12.1f");
+    plotTable.addColumn("optimized", "%12.1f");
+    for (final String kernel : Kernels.NAMES) {
+      final double original = get(scores, kernel + ".original");
+      final double optimized = get(scores, kernel + ".optimized");
+      table.addRow(kernel, original, optimized, original / optimized, get(scores, kernel + ".specialize"));
+      plotTable.addRow(kernel, original, optimized);
+    }
+    table.setLatex(latex);
+    System.out.println(table);
+    
+    final AbstractPlot plot = new TableToAbstractPlot().transform(plotTable);
+    System.out.println(plot.getTikzPicture("Kernel", "ns/op"));
+  }
+  
+  private static double get(final Map<String, Double> scores, final String key) {
+    final Double score = scores.get(key);
+    if (score == null) {
+      return Double.NaN;
+    }
+    return score.doubleValue();
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.benchmarks;
+
+/**
+ * The Interface IKernel.
+ * 
+ * A numerical kernel that is benchmarked as original and after the optimization.
+ * The optimized class is a renamed copy of the original, so the kernels are used via this interface.
+ * 
+ * @author Christopher Ewest
+ */
+public interface IKernel {
+  
+  /**
+   * Computes the output for the given input.
+   * 
+   * @param in
+   *          the input
+   * @param out
+   *          the output
+   */
+  void compute(double[] in, double[] out);
+}
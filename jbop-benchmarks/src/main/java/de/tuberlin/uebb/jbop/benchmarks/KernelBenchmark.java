@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.Optimizer;
+
+/**
+ * Measures the kernels ({@link Kernels}) as original and after the optimization.
+ * 
+ * @author Christopher Ewest
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class KernelBenchmark {
+  
+  /** The name of the kernel. */
+  @Param({
+      "matrix", "stencil", "polynomial", "rules"
+  })
+  public String kernel;
+  
+  private IKernel original;
+  private IKernel optimized;
+  private double[] in;
+  private double[] out;
+  
+  /**
+   * Creates and optimizes the kernel.
+   * 
+   * @throws JBOPClassException
+   *           if the kernel couldn't be optimized
+   */
+  @Setup
+  public void setup() throws JBOPClassException {
+    original = Kernels.create(kernel);
+    optimized = new Optimizer().optimize(Kernels.create(kernel), "_Optimized");
+    in = Kernels.createInput(kernel);
+    out = new double[in.length];
+  }
+  
+  /**
+   * Runs the original kernel.
+   * 
+   * @return the output
+   */
+  @Benchmark
+  public double[] original() {
+    original.compute(in, out);
+    return out;
+  }
+  
+  /**
+   * Runs the optimized kernel.
+   * 
+   * @return the output
+   */
+  @Benchmark
+  public double[] optimized() {
+    optimized.compute(in, out);
+    return out;
+  }
+}
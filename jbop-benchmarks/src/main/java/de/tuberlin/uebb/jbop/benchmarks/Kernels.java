@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Creates the benchmarked kernels with reproducible data.
+ * 
+ * @author Christopher Ewest
+ */
+public final class Kernels {
+  
+  /** The names of all kernels. */
+  public static final String[] NAMES = {
+      "matrix", "stencil", "polynomial", "rules"
+  };
+  
+  /** The size of the input vectors. */
+  public static final int SIZE = 1024;
+  
+  private static final int MATRIX_SIZE = 8;
+  private static final int STENCIL_SIZE = 5;
+  private static final int DEGREE = 12;
+  private static final int RULES = 16;
+  
+  private Kernels() {
+    //
+  }
+  
+  /**
+   * Creates the kernel with the given name.
+   * 
+   * @param name
+   *          the name (see {@link #NAMES})
+   * @return the kernel
+   */
+  public static IKernel create(final String name) {
+    final Random random = new Random(name.hashCode());
+    switch (name) {
+      case "matrix":
+        final double[][] matrix = new double[MATRIX_SIZE][];
+        for (int i = 0; i < MATRIX_SIZE; ++i) {
+          matrix[i] = randomArray(random, MATRIX_SIZE);
+        }
+        return new MatrixMultiply(matrix);
+      case "stencil":
+        return new Stencil(randomArray(random, STENCIL_SIZE));
+      case "polynomial":
+        return new Polynomial(randomArray(random, DEGREE + 1));
+      case "rules":
+        return new RuleDispatch(randomArray(random, RULES), randomArray(random, RULES));
+      default:
+        throw new IllegalArgumentException("Unknown kernel: " + name);
+    }
+  }
+  
+  /**
+   * Creates the input for the kernel with the given name.
+   * 
+   * @param name
+   *          the name
+   * @return the input
+   */
+  public static double[] createInput(final String name) {
+    return randomArray(new Random(name.hashCode() + 1), SIZE);
+  }
+  
+  private static double[] randomArray(final Random random, final int size) {
+    final double[] array = new double[size];
+    for (int i = 0; i < size; ++i) {
+      array[i] = random.nextDouble();
+    }
+    return array;
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.benchmarks;
+
+import de.tuberlin.uebb.jbop.optimizer.annotations.ImmutableArray;
+import de.tuberlin.uebb.jbop.optimizer.annotations.Optimizable;
+import de.tuberlin.uebb.jbop.optimizer.annotations.StrictLoops;
+
+/**
+ * Multiplies the input vector with a constant matrix.
+ * 
+ * @author Christopher Ewest
+ */
+public class MatrixMultiply implements IKernel {
+  
+  @ImmutableArray
+  private final double[][] matrix;
+  
+  /**
+   * Instantiates a new {@link MatrixMultiply}.
+   * 
+   * @param matrix
+   *          the matrix
+   */
+  public MatrixMultiply(final double[][] matrix) {
+    this.matrix = matrix;
+  }
+  
+  @Override
+  @Optimizable
+  @StrictLoops
+  public void compute(final double[] in, final double[] out) {
+    for (int i = 0; i < matrix.length; ++i) {
+      double sum = 0;
+      for (int j = 0; j < matrix[i].length; ++j) {
+        sum += matrix[i][j] * in[j];
+      }
+      out[i] = sum;
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.MethodNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
+
+/**
+ * Measures a single run of each optimizer of the default pipeline on a synthetic method
+ * ({@link SyntheticMethods}) of 100 to 100.000 instructions.
+ * 
+ * @author Christopher Ewest
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PassBenchmark {
+  
+  /** The simple name of the optimizer ({@link Passes#NAMES}). */
+  @Param({
+      "FinalFieldInliner", "FieldArrayLengthInliner", "LocalArrayLengthInliner", "FieldArrayValueInliner",
+      "LocalVarInliner", "ArithmeticExpressionInterpreter", "ConstantIfInliner", "ForLoopUnroller",
+      "LocalArrayValueInliner", "RemoveUnusedLocalVars"
+  })
+  public String pass;
+  
+  /** The number of instructions. */
+  @Param({
+      "100", "1000", "10000", "100000"
+  })
+  public int size;
+  
+  private final SyntheticInput input = new SyntheticInput();
+  private IOptimizer optimizer;
+  private MethodNode method;
+  
+  /**
+   * Creates a fresh method and optimizer for every invocation.
+   * 
+   * @throws JBOPClassException
+   *           if the input couldn't be read
+   */
+  @Setup(Level.Invocation)
+  public void setup() throws JBOPClassException {
+    final ClassNode classNode = SyntheticMethods.createClassNode(input, size);
+    method = SyntheticMethods.getMethod(classNode);
+    optimizer = Passes.create(pass, classNode, input);
+  }
+  
+  /**
+   * Runs the optimizer once.
+   * 
+   * @return the instructions
+   * @throws JBOPClassException
+   *           if the optimizer fails
+   */
+  @Benchmark
+  public InsnList optimize() throws JBOPClassException {
+    return optimizer.optimize(method.instructions, method);
+  }
+}
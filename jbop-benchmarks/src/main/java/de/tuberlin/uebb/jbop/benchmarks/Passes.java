@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.benchmarks;
+
+import org.objectweb.asm.tree.ClassNode;
+
+import de.tuberlin.uebb.jbop.optimizer.IClassNodeAware;
+import de.tuberlin.uebb.jbop.optimizer.IInputObjectAware;
+import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
+import de.tuberlin.uebb.jbop.optimizer.arithmetic.ArithmeticExpressionInterpreter;
+import de.tuberlin.uebb.jbop.optimizer.array.FieldArrayLengthInliner;
+import de.tuberlin.uebb.jbop.optimizer.array.FieldArrayValueInliner;
+import de.tuberlin.uebb.jbop.optimizer.array.LocalArrayLengthInliner;
+import de.tuberlin.uebb.jbop.optimizer.array.LocalArrayValueInliner;
+import de.tuberlin.uebb.jbop.optimizer.controlflow.ConstantIfInliner;
+import de.tuberlin.uebb.jbop.optimizer.loop.ForLoopUnroller;
+import de.tuberlin.uebb.jbop.optimizer.var.FinalFieldInliner;
+import de.tuberlin.uebb.jbop.optimizer.var.LocalVarInliner;
+import de.tuberlin.uebb.jbop.optimizer.var.RemoveUnusedLocalVars;
+
+/**
+ * Creates the optimizers of the default pipeline (see <code>Optimizer.initOptimizers</code>) by name.
+ * 
+ * @author Christopher Ewest
+ */
+public final class Passes {
+  
+  /** The names of all optimizers in the order of the pipeline. */
+  public static final String[] NAMES = {
+      "FinalFieldInliner", "FieldArrayLengthInliner", "LocalArrayLengthInliner", "FieldArrayValueInliner",
+      "LocalVarInliner", "ArithmeticExpressionInterpreter", "ConstantIfInliner", "ForLoopUnroller",
+      "LocalArrayValueInliner", "RemoveUnusedLocalVars"
+  };
+  
+  private Passes() {
+    //
+  }
+  
+  /**
+   * Creates and initializes the optimizer with the given name.
+   * 
+   * @param name
+   *          the simple class name of the optimizer
+   * @param classNode
+   *          the class node
+   * @param input
+   *          the input
+   * @return the optimizer
+   */
+  public static IOptimizer create(final String name, final ClassNode classNode, final Object input) {
+    final IOptimizer optimizer;
+    switch (name) {
+      case "FinalFieldInliner":
+        optimizer = new FinalFieldInliner();
+        break;
+      case "FieldArrayLengthInliner":
+        optimizer = new FieldArrayLengthInliner();
+        break;
+      case "LocalArrayLengthInliner":
+        optimizer = new LocalArrayLengthInliner();
+        break;
+      case "FieldArrayValueInliner":
+        optimizer = new FieldArrayValueInliner();
+        break;
+      case "LocalVarInliner":
+        optimizer = new LocalVarInliner();
+        break;
+      case "ArithmeticExpressionInterpreter":
+        optimizer = new ArithmeticExpressionInterpreter();
+        break;
+      case "ConstantIfInliner":
+        final FieldArrayValueInliner arrayValue = new FieldArrayValueInliner();
+        init(arrayValue, classNode, input);
+        optimizer = new ConstantIfInliner(arrayValue);
+        break;
+      case "ForLoopUnroller":
+        optimizer = new ForLoopUnroller();
+        break;
+      case "LocalArrayValueInliner":
+        optimizer = new LocalArrayValueInliner();
+        break;
+      case "RemoveUnusedLocalVars":
+        optimizer = new RemoveUnusedLocalVars();
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown optimizer: " + name);
+    }
+    init(optimizer, classNode, input);
+    return optimizer;
+  }
+  
+  private static void init(final IOptimizer optimizer, final ClassNode classNode, final Object input) {
+    if (optimizer instanceof IClassNodeAware) {
+      ((IClassNodeAware) optimizer).setClassNode(classNode);
+    }
+    if (optimizer instanceof IInputObjectAware) {
+      ((IInputObjectAware) optimizer).setInputObject(input);
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.benchmarks;
+
+import de.tuberlin.uebb.jbop.optimizer.annotations.ImmutableArray;
+import de.tuberlin.uebb.jbop.optimizer.annotations.Optimizable;
+import de.tuberlin.uebb.jbop.optimizer.annotations.StrictLoops;
+
+/**
+ * Evaluates a polynomial with constant coefficients (horner scheme) for every input.
+ * 
+ * @author Christopher Ewest
+ */
+public class Polynomial implements IKernel {
+  
+  @ImmutableArray
+  private final double[] coefficients;
+  
+  /**
+   * Instantiates a new {@link Polynomial}.
+   * 
+   * @param coefficients
+   *          the coefficients (highest degree first)
+   */
+  public Polynomial(final double[] coefficients) {
+    this.coefficients = coefficients;
+  }
+  
+  @Override
+  @Optimizable
+  @StrictLoops
+  public void compute(final double[] in, final double[] out) {
+    for (int i = 0; i < in.length; ++i) {
+      final double x = in[i];
+      double result = 0;
+      for (int k = 0; k < coefficients.length; ++k) {
+        result = (result * x) + coefficients[k];
+      }
+      out[i] = result;
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.benchmarks;
+
+import de.tuberlin.uebb.jbop.optimizer.annotations.ImmutableArray;
+import de.tuberlin.uebb.jbop.optimizer.annotations.Optimizable;
+import de.tuberlin.uebb.jbop.optimizer.annotations.StrictLoops;
+
+/**
+ * Classifies every input by a constant table of rules (<code>input &lt; threshold -&gt; value</code>).
+ * The last matching rule wins.
+ * 
+ * @author Christopher Ewest
+ */
+public class RuleDispatch implements IKernel {
+  
+  @ImmutableArray
+  private final double[] thresholds;
+  @ImmutableArray
+  private final double[] values;
+  
+  /**
+   * Instantiates a new {@link RuleDispatch}.
+   * 
+   * @param thresholds
+   *          the thresholds
+   * @param values
+   *          the values
+   */
+  public RuleDispatch(final double[] thresholds, final double[] values) {
+    this.thresholds = thresholds;
+    this.values = values;
+  }
+  
+  @Override
+  @Optimizable
+  @StrictLoops
+  public void compute(final double[] in, final double[] out) {
+    for (int i = 0; i < in.length; ++i) {
+      final double x = in[i];
+      double result = 0;
+      for (int k = 0; k < thresholds.length; ++k) {
+        if (x < thresholds[k]) {
+          result = values[k];
+        }
+      }
+      out[i] = result;
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import de.tuberlin.uebb.jbop.output.AbstractPlot;
+import de.tuberlin.uebb.jbop.output.StringTable;
+import de.tuberlin.uebb.jbop.output.TableToAbstractPlot;
+
+/**
+ * Runs the {@link PassBenchmark} and the {@link StageBenchmark} and renders the time of every stage per method size.
+ * 
+ * For every stage the growth exponent between two sizes (<code>log(t2 / t1) / log(n2 / n1)</code>) is shown:
+ * about 1 for linear stages, about 2 for quadratic ones. Stages with an exponent above {@value #QUADRATIC} are
+ * marked.
+ * 
+ * Usage: <code>java -cp benchmarks.jar de.tuberlin.uebb.jbop.benchmarks.ScalingReport [--latex]</code>
+ * 
+ * @author Christopher Ewest
+ */
+public final class ScalingReport {
+  
+  private static final double QUADRATIC = 1.5;
+  
+  private ScalingReport() {
+    //
+  }
+  
+  /**
+   * The main method.
+   * 
+   * @param args
+   *          the arguments (<code>--latex</code> renders the tables as latex)
+   * @throws RunnerException
+   *           if the benchmarks couldn't be run
+   */
+  public static void main(final String[] args) throws RunnerException {
+    final boolean latex = (args.length > 0) && "--latex".equals(args[0]);
+    final Options options = new OptionsBuilder()//
+        .include(PassBenchmark.class.getSimpleName())//
+        .include(StageBenchmark.class.getSimpleName())//
+        .build();
+    final Collection<RunResult> results = new Runner(options).run();
+    
+    final Set<String> stages = new LinkedHashSet<>();
+    final Map<String, Double> scores = new HashMap<>();
+    for (final RunResult result : results) {
+      final String stage = getStage(result);
+      stages.add(stage);
+      scores.put(stage + "@" + result.getParams().getParam("size"),
+          Double.valueOf(result.getPrimaryResult().getScore()));
+    }
+    final List<Integer> sizes = SyntheticMethods.getSizes();
+    
+    final StringTable times = new StringTable();
+    times.setCaption("Time per stage [ms]");
+    times.setLabel("fig:scaling");
+    times.addColumn("Size", "%6d");
+    for (final String stage : stages) {
+      times.addColumn(stage, "%10.3f");
+    }
+    for (final Integer size : sizes) {
+      final List<Object> row = new ArrayList<>();
+      row.add(size);
+      for (final String stage : stages) {
+        row.add(get(scores, stage + "@" + size));
+      }
+      times.addRow(row.toArray());
+    }
+    
+    final StringTable growth = new StringTable();
+    growth.setCaption("Growth exponents");
+    growth.setLabel("tab:growth");
+    growth.addColumn("Stage", "%32s");
+    for (int i = 1; i < sizes.size(); ++i) {
+      growth.addColumn(sizes.get(i - 1) + " -> " + sizes.get(i), "%5.2f");
+    }
+    growth.addColumn("superlinear", "%1s");
+    for (final String stage : stages) {
+      final List<Object> row = new ArrayList<>();
+      row.add(stage);
+      boolean superlinear = false;
+      for (int i = 1; i < sizes.size(); ++i) {
+        final double t1 = get(scores, stage + "@" + sizes.get(i - 1));
+        final double t2 = get(scores, stage + "@" + sizes.get(i));
+        final double exponent = Math.log(t2 / t1) / Math.log(sizes.get(i).doubleValue() / sizes.get(i - 1));
+        superlinear |= exponent > QUADRATIC;
+        row.add(Double.valueOf(exponent));
+      }
+      row.add(superlinear ? "X" : " ");
+      growth.addRow(row.toArray());
+    }
+    
+    times.setLatex(latex);
+    growth.setLatex(latex);
+    System.out.println(times);
+    System.out.println(growth);
+    
+    final AbstractPlot plot = new TableToAbstractPlot().transform(times);
+    plot.setLogx(true);
+    plot.setLogy(true);
+    System.out.println(plot.getTikzPicture("Instructions", "ms"));
+  }
+  
+  private static String getStage(final RunResult result) {
+    final String pass = result.getParams().getParam("pass");
+    if (pass != null) {
+      return pass;
+    }
+    final String benchmark = result.getParams().getBenchmark();
+    return benchmark.substring(benchmark.lastIndexOf('.') + 1);
+  }
+  
+  private static double get(final Map<String, Double> scores, final String key) {
+    final Double score = scores.get(key);
+    if (score == null) {
+      return Double.NaN;
+    }
+    return score.doubleValue();
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.Optimizer;
+
+/**
+ * Measures the cost of the specialization (read, optimize, define and instantiate) of the kernels.
+ * 
+ * Every invocation specializes a new instance into a new class, so the cache of the optimizer is never hit.
+ * 
+ * @author Christopher Ewest
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 30)
+@Fork(1)
+public class SpecializationBenchmark {
+  
+  /** The name of the kernel. */
+  @Param({
+      "matrix", "stencil", "polynomial", "rules"
+  })
+  public String kernel;
+  
+  private IKernel input;
+  private int counter;
+  
+  /**
+   * Creates a new instance of the kernel for every invocation.
+   */
+  @Setup(Level.Invocation)
+  public void setup() {
+    input = Kernels.create(kernel);
+  }
+  
+  /**
+   * Specializes the kernel.
+   * 
+   * @return the optimized kernel
+   * @throws JBOPClassException
+   *           if the kernel couldn't be optimized
+   */
+  @Benchmark
+  public IKernel specialize() throws JBOPClassException {
+    return new Optimizer().optimize(input, "_Specialized" + counter++);
+  }
+}
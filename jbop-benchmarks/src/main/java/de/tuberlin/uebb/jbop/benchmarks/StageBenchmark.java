@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.MethodNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tuberlin.uebb.jbop.access.ConstructorBuilder;
+import de.tuberlin.uebb.jbop.access.OptimizerUtils;
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.methodsplitter.MethodSplitter;
+import de.tuberlin.uebb.jbop.optimizer.utils.RemoveUnusedFields;
+
+/**
+ * Measures the stages around the optimizers (reading, splitting, field removal, constructor creation and class
+ * definition) for synthetic methods ({@link SyntheticMethods}) of 100 to 100.000 instructions.
+ * 
+ * @author Christopher Ewest
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StageBenchmark {
+  
+  /** The number of instructions. */
+  @Param({
+      "100", "1000", "10000", "100000"
+  })
+  public int size;
+  
+  private final SyntheticInput input = new SyntheticInput();
+  private Class<?> syntheticClass;
+  private ClassNode classNode;
+  private MethodNode method;
+  private int counter;
+  
+  /**
+   * Creates the class that is read by {@link #readClass()}.
+   * 
+   * @throws JBOPClassException
+   *           if the class couldn't be created
+   */
+  @Setup
+  public void setupClass() throws JBOPClassException {
+    syntheticClass = SyntheticMethods.createClass(size);
+  }
+  
+  /**
+   * Creates a fresh class node for every invocation.
+   * 
+   * @throws JBOPClassException
+   *           if the input couldn't be read
+   */
+  @Setup(Level.Invocation)
+  public void setup() throws JBOPClassException {
+    classNode = SyntheticMethods.createClassNode(input, size);
+    method = SyntheticMethods.getMethod(classNode);
+  }
+  
+  /**
+   * Reads a class with synthetic methods of the given size in total.
+   * 
+   * @return the class node
+   * @throws JBOPClassException
+   *           if the class couldn't be read
+   */
+  @Benchmark
+  public ClassNode readClass() throws JBOPClassException {
+    return OptimizerUtils.readClass(syntheticClass);
+  }
+  
+  /**
+   * Splits the synthetic method.
+   * 
+   * @return the instructions
+   * @throws JBOPClassException
+   *           if the method couldn't be split
+   */
+  @Benchmark
+  public InsnList methodSplitter() throws JBOPClassException {
+    return new MethodSplitter(classNode, MethodSplitter.MAX_LENGTH).optimize(method.instructions, method);
+  }
+  
+  /**
+   * Removes the unused fields.
+   * 
+   * @return the class node
+   */
+  @Benchmark
+  public ClassNode removeUnusedFields() {
+    RemoveUnusedFields.removeUnusedFields(classNode);
+    return classNode;
+  }
+  
+  /**
+   * Creates the constructor.
+   * 
+   * @return the parameters of the constructor
+   * @throws JBOPClassException
+   *           if the constructor couldn't be created
+   */
+  @Benchmark
+  public List<Object> constructorBuilder() throws JBOPClassException {
+    return ConstructorBuilder.createConstructor(classNode, input);
+  }
+  
+  /**
+   * Writes, defines and instantiates the class.
+   * This includes the field removal and the constructor creation.
+   * 
+   * @param split
+   *          the split class
+   * @return the instance
+   * @throws JBOPClassException
+   *           if the class couldn't be defined
+   */
+  @Benchmark
+  public Object defineClass(final SplitClass split) throws JBOPClassException {
+    return OptimizerUtils.createInstance(split.classNode, input, "_Defined" + counter++);
+  }
+  
+  /**
+   * A class node with the synthetic method already split, so that the class is valid.
+   */
+  @State(Scope.Thread)
+  public static class SplitClass {
+    
+    private ClassNode classNode;
+    
+    /**
+     * Creates and splits a fresh class node for every invocation.
+     * 
+     * @param benchmark
+     *          the benchmark
+     * @throws JBOPClassException
+     *           if the input couldn't be read
+     */
+    @Setup(Level.Invocation)
+    public void setup(final StageBenchmark benchmark) throws JBOPClassException {
+      classNode = SyntheticMethods.createClassNode(benchmark.input, benchmark.size);
+      final MethodNode method = SyntheticMethods.getMethod(classNode);
+      final MethodSplitter splitter = new MethodSplitter(classNode, MethodSplitter.MAX_LENGTH);
+      method.instructions = splitter.optimize(method.instructions, method);
+      classNode.methods.addAll(splitter.getAdditionalMethods());
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.benchmarks;
+
+import de.tuberlin.uebb.jbop.optimizer.annotations.ImmutableArray;
+
+/**
+ * The input object for the synthetic methods ({@link SyntheticMethods}).
+ * It has no static fields, because they are not supported by the generated constructor.
+ * 
+ * @author Christopher Ewest
+ */
+public class SyntheticInput {
+  
+  /** A final field (inlined by the FinalFieldInliner). */
+  public final double factor = 1.5;
+  
+  /** An immutable array (inlined by the FieldArray*Inliners). */
+  @ImmutableArray
+  public final double[] coefficients = new double[SyntheticMethods.LENGTH];
+  
+  /**
+   * Instantiates a new {@link SyntheticInput}.
+   */
+  public SyntheticInput() {
+    for (int i = 0; i < SyntheticMethods.LENGTH; ++i) {
+      coefficients[i] = i * 0.5;
+    }
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.benchmarks;
+
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARRAYLENGTH;
+import static org.objectweb.asm.Opcodes.ASM5;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.DADD;
+import static org.objectweb.asm.Opcodes.DALOAD;
+import static org.objectweb.asm.Opcodes.DCONST_0;
+import static org.objectweb.asm.Opcodes.DCONST_1;
+import static org.objectweb.asm.Opcodes.DLOAD;
+import static org.objectweb.asm.Opcodes.DMUL;
+import static org.objectweb.asm.Opcodes.DRETURN;
+import static org.objectweb.asm.Opcodes.DSTORE;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.I2D;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.IF_ICMPGE;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.NEWARRAY;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.T_DOUBLE;
+import static org.objectweb.asm.Opcodes.V1_7;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import de.tuberlin.uebb.jbop.access.ClassAccessor;
+import de.tuberlin.uebb.jbop.access.ClassDescriptor;
+import de.tuberlin.uebb.jbop.access.OptimizerUtils;
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.annotations.Optimizable;
+import de.tuberlin.uebb.jbop.optimizer.loop.SplitMarkNode;
+
+/**
+ * Creates synthetic methods of a given size (number of instructions) for the stage benchmarks.
+ * 
+ * The methods are built from blocks that give every optimizer of the default pipeline something to do:
+ * constant arithmetic, constant locals, final fields, immutable field arrays, local arrays and constant ifs.
+ * The fields are those of {@link SyntheticInput}.
+ * 
+ * @author Christopher Ewest
+ */
+public final class SyntheticMethods {
+  
+  /** The name of the synthetic method. */
+  public static final String NAME = "compute";
+  
+  /** The descriptor of the synthetic method. */
+  public static final String DESC = "(D)D";
+  
+  /** The length of {@link SyntheticInput#coefficients} and the local array. */
+  public static final int LENGTH = 16;
+  
+  /** The max number of instructions per method of a generated class. */
+  private static final int CHUNK = 4000;
+  
+  private static final String OWNER = Type.getInternalName(SyntheticInput.class);
+  private static final int X = 1;
+  private static final int RESULT = 3;
+  private static final int INDEX = 5;
+  private static final int ARRAY = 6;
+  
+  private static int counter;
+  
+  private SyntheticMethods() {
+    //
+  }
+  
+  /**
+   * Creates the class node of {@link SyntheticInput} with an additional synthetic method of the given size.
+   * 
+   * @param input
+   *          the input
+   * @param size
+   *          the number of instructions
+   * @return the class node
+   * @throws JBOPClassException
+   *           if the class couldn't be read
+   */
+  public static ClassNode createClassNode(final SyntheticInput input, final int size) throws JBOPClassException {
+    final ClassNode classNode = OptimizerUtils.readClass(input);
+    classNode.methods.add(createMethod(NAME, size));
+    return classNode;
+  }
+  
+  /**
+   * Gets the synthetic method of the class node.
+   * 
+   * @param classNode
+   *          the class node
+   * @return the method
+   */
+  public static MethodNode getMethod(final ClassNode classNode) {
+    for (final MethodNode method : classNode.methods) {
+      if (NAME.equals(method.name) && DESC.equals(method.desc)) {
+        return method;
+      }
+    }
+    throw new IllegalArgumentException("Synthetic method not found in " + classNode.name);
+  }
+  
+  /**
+   * Creates, stores and loads a subclass of {@link SyntheticInput} with synthetic methods of the given size in
+   * total (split into methods of at most {@value #CHUNK} instructions, so that the class is valid).
+   * 
+   * @param size
+   *          the number of instructions
+   * @return the class
+   * @throws JBOPClassException
+   *           if the class couldn't be stored or loaded
+   */
+  public static synchronized Class<?> createClass(final int size) throws JBOPClassException {
+    final String name = SyntheticInput.class.getName() + "_" + size + "_" + counter++;
+    final ClassNode classNode = new ClassNode(ASM5);
+    classNode.version = V1_7;
+    classNode.access = ACC_PUBLIC;
+    classNode.name = name.replace('.', '/');
+    classNode.superName = OWNER;
+    final MethodNode constructor = new MethodNode(ASM5, ACC_PUBLIC, "<init>", "()V", null, null);
+    constructor.instructions.add(new VarInsnNode(ALOAD, 0));
+    constructor.instructions.add(new MethodInsnNode(INVOKESPECIAL, OWNER, "<init>", "()V"));
+    constructor.instructions.add(new InsnNode(RETURN));
+    classNode.methods.add(constructor);
+    for (int i = 0; (i * CHUNK) < size; ++i) {
+      classNode.methods.add(createMethod(NAME + i, Math.min(CHUNK, size - (i * CHUNK))));
+    }
+    final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+    classNode.accept(writer);
+    final ClassDescriptor descriptor = new ClassDescriptor(name, writer.toByteArray(), classNode.name
+        + ".class");
+    ClassAccessor.store(descriptor);
+    try {
+      return Class.forName(name, true, ClassAccessor.getClassloader());
+    } catch (final ClassNotFoundException e) {
+      throw new JBOPClassException("Synthetic class couldn't be loaded.", e);
+    }
+  }
+  
+  /**
+   * Creates a synthetic method with (about) the given number of instructions.
+   * 
+   * @param name
+   *          the name
+   * @param size
+   *          the number of instructions
+   * @return the method node
+   */
+  public static MethodNode createMethod(final String name, final int size) {
+    final MethodNode method = new MethodNode(ASM5, ACC_PUBLIC, name, DESC, null, null);
+    method.visibleAnnotations = new ArrayList<>();
+    method.visibleAnnotations.add(new AnnotationNode(Type.getDescriptor(Optimizable.class)));
+    final InsnList list = method.instructions;
+    list.add(new InsnNode(DCONST_0));
+    list.add(new VarInsnNode(DSTORE, RESULT));
+    for (int block = 0; list.size() < (size - 2); ++block) {
+      addBlock(list, block);
+    }
+    list.add(new VarInsnNode(DLOAD, RESULT));
+    list.add(new InsnNode(DRETURN));
+    method.maxLocals = ARRAY + 1;
+    method.maxStack = 6;
+    return method;
+  }
+  
+  private static void addBlock(final InsnList list, final int block) {
+    // like the iterations of an unrolled loop: only the result is live across the blocks,
+    // so that the method can be split at the marks
+    list.add(new SplitMarkNode());
+    list.add(new IntInsnNode(BIPUSH, LENGTH));
+    list.add(new IntInsnNode(NEWARRAY, T_DOUBLE));
+    list.add(new VarInsnNode(ASTORE, ARRAY));
+    // constant arithmetic stored in a local
+    list.add(new IntInsnNode(BIPUSH, block % (LENGTH - 1)));
+    list.add(new InsnNode(ICONST_1));
+    list.add(new InsnNode(IADD));
+    list.add(new VarInsnNode(ISTORE, INDEX));
+    // immutable field array with constant index
+    list.add(new VarInsnNode(ALOAD, 0));
+    list.add(new FieldInsnNode(GETFIELD, OWNER, "coefficients", "[D"));
+    list.add(new VarInsnNode(ILOAD, INDEX));
+    list.add(new InsnNode(DALOAD));
+    list.add(new VarInsnNode(DLOAD, X));
+    list.add(new InsnNode(DMUL));
+    addToResult(list);
+    // final field
+    list.add(new VarInsnNode(DLOAD, RESULT));
+    list.add(new VarInsnNode(ALOAD, 0));
+    list.add(new FieldInsnNode(GETFIELD, OWNER, "factor", "D"));
+    list.add(new InsnNode(DMUL));
+    list.add(new VarInsnNode(DSTORE, RESULT));
+    // length of the field array
+    list.add(new VarInsnNode(ALOAD, 0));
+    list.add(new FieldInsnNode(GETFIELD, OWNER, "coefficients", "[D"));
+    list.add(new InsnNode(ARRAYLENGTH));
+    list.add(new InsnNode(I2D));
+    addToResult(list);
+    // length and value of the local array
+    list.add(new VarInsnNode(ALOAD, ARRAY));
+    list.add(new InsnNode(ARRAYLENGTH));
+    list.add(new InsnNode(I2D));
+    addToResult(list);
+    list.add(new VarInsnNode(ALOAD, ARRAY));
+    list.add(new VarInsnNode(ILOAD, INDEX));
+    list.add(new InsnNode(DALOAD));
+    addToResult(list);
+    // constant if
+    final LabelNode label = new LabelNode();
+    list.add(new VarInsnNode(ILOAD, INDEX));
+    list.add(new IntInsnNode(BIPUSH, LENGTH / 2));
+    list.add(new JumpInsnNode(IF_ICMPGE, label));
+    list.add(new InsnNode(DCONST_1));
+    addToResult(list);
+    list.add(label);
+  }
+  
+  private static void addToResult(final InsnList list) {
+    list.add(new VarInsnNode(DLOAD, RESULT));
+    list.add(new InsnNode(DADD));
+    list.add(new VarInsnNode(DSTORE, RESULT));
+  }
+  
+  /**
+   * Gets the sizes (number of instructions) used by the benchmarks.
+   * 
+   * @return the sizes
+   */
+  public static List<Integer> getSizes() {
+    final List<Integer> sizes = new ArrayList<>();
+    for (int size = 100; size <= 100000; size *= 10) {
+      sizes.add(Integer.valueOf(size));
+    }
+    return sizes;
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+import de.tuberlin.uebb.jbop.access.ClassAccessor;
+import de.tuberlin.uebb.jbop.access.SpecializationIndex;
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.Optimizer;
+
+/**
+ * The Class SpecializeMojo.
+ * 
+ * Specializes classes at build time:
+ * every snapshot (a file containing one serialized input) is deserialized and optimized, the specialized class
+ * is written to the output directory and registered in the index {@value SpecializationIndex#RESOURCE}.
+ * 
+ * At runtime the {@link Optimizer} finds the specialized class for an input with the same state in the index
+ * and only loads it.
+ * 
+ * <pre>
+ * &lt;plugin&gt;
+ *   &lt;groupId&gt;de.tuberlin.uebb.jbop&lt;/groupId&gt;
+ *   &lt;artifactId&gt;jbop-maven-plugin&lt;/artifactId&gt;
+ *   &lt;version&gt;1.0.0&lt;/version&gt;
+ *   &lt;executions&gt;
+ *     &lt;execution&gt;
+ *       &lt;goals&gt;&lt;goal&gt;specialize&lt;/goal&gt;&lt;/goals&gt;
+ *       &lt;configuration&gt;
+ *         &lt;snapshots&gt;
+ *           &lt;snapshot&gt;src/main/jbop/kernel.ser&lt;/snapshot&gt;
+ *         &lt;/snapshots&gt;
+ *       &lt;/configuration&gt;
+ *     &lt;/execution&gt;
+ *   &lt;/executions&gt;
+ * &lt;/plugin&gt;
+ * </pre>
+ * 
+ * @author Christopher Ewest
+ */
+@Mojo(name = "specialize", defaultPhase = LifecyclePhase.PROCESS_CLASSES, requiresDependencyResolution = ResolutionScope.COMPILE)
+public class SpecializeMojo extends AbstractMojo {
+  
+  /** The directory the specialized classes and the index are written to. */
+  @Parameter(defaultValue = "${project.build.outputDirectory}", required = true)
+  private File outputDirectory;
+  
+  /** The classpath of the project. */
+  @Parameter(defaultValue = "${project.compileClasspathElements}", readonly = true, required = true)
+  private List<String> classpathElements;
+  
+  /** The serialized inputs. */
+  @Parameter(required = true)
+  private List<File> snapshots;
+  
+  /** The suffix for the names of the specialized classes (followed by a part of the fingerprint). */
+  @Parameter(defaultValue = "_aot")
+  private String suffix;
+  
+  @Override
+  public void execute() throws MojoExecutionException {
+    final ClassLoader classLoader = createClassLoader();
+    final Thread thread = Thread.currentThread();
+    final ClassLoader contextClassLoader = thread.getContextClassLoader();
+    thread.setContextClassLoader(classLoader);
+    try {
+      final File indexFile = new File(outputDirectory, SpecializationIndex.RESOURCE);
+      final Properties index = readIndex(indexFile);
+      final Optimizer optimizer = new Optimizer();
+      for (final File snapshot : snapshots) {
+        final Object input = readSnapshot(snapshot, classLoader);
+        final String fingerprint = SpecializationIndex.getFingerprint(input);
+        final Object specialized = optimizer.optimize(input, suffix + "_" + fingerprint.substring(0, 8));
+        writeClass(specialized);
+        index.setProperty(SpecializationIndex.getKey(input), SpecializationIndex.getValue(specialized));
+        getLog().info("Specialized " + input.getClass().getName() + " (" + snapshot.getName() + ") as "
+            + specialized.getClass().getName());
+      }
+      writeIndex(indexFile, index);
+    } catch (final JBOPClassException e) {
+      throw new MojoExecutionException("The specialization failed.", e);
+    } finally {
+      thread.setContextClassLoader(contextClassLoader);
+    }
+  }
+  
+  private ClassLoader createClassLoader() throws MojoExecutionException {
+    final List<URL> urls = new ArrayList<>();
+    try {
+      urls.add(outputDirectory.toURI().toURL());
+      for (final String element : classpathElements) {
+        urls.add(new File(element).toURI().toURL());
+      }
+    } catch (final MalformedURLException e) {
+      throw new MojoExecutionException("The classpath of the project couldn't be read.", e);
+    }
+    return new URLClassLoader(urls.toArray(new URL[urls.size()]), getClass().getClassLoader());
+  }
+  
+  private Object readSnapshot(final File snapshot, final ClassLoader classLoader) throws MojoExecutionException {
+    try (final InputStream stream = new FileInputStream(snapshot);
+        final ObjectInputStream in = new ObjectInputStream(stream) {
+          
+          @Override
+          protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+              return Class.forName(desc.getName(), false, classLoader);
+            } catch (final ClassNotFoundException e) {
+              return super.resolveClass(desc);
+            }
+          }
+        }) {
+      return in.readObject();
+    } catch (IOException | ClassNotFoundException e) {
+      throw new MojoExecutionException("The snapshot " + snapshot + " couldn't be read.", e);
+    }
+  }
+  
+  private void writeClass(final Object specialized) throws JBOPClassException, MojoExecutionException {
+    final String path = specialized.getClass().getName().replace('.', File.separatorChar) + ".class";
+    final File classFile = new File(outputDirectory, path);
+    try {
+      Files.createDirectories(classFile.getParentFile().toPath());
+      Files.write(classFile.toPath(), ClassAccessor.toBytes(specialized));
+    } catch (final IOException e) {
+      throw new MojoExecutionException("The class " + classFile + " couldn't be written.", e);
+    }
+  }
+  
+  private static Properties readIndex(final File indexFile) throws MojoExecutionException {
+    final Properties index = new Properties();
+    if (!indexFile.isFile()) {
+      return index;
+    }
+    try (final InputStream stream = new FileInputStream(indexFile)) {
+      index.load(stream);
+    } catch (final IOException e) {
+      throw new MojoExecutionException("The index " + indexFile + " couldn't be read.", e);
+    }
+    return index;
+  }
+  
+  private static void writeIndex(final File indexFile, final Properties index) throws MojoExecutionException {
+    try {
+      Files.createDirectories(indexFile.getParentFile().toPath());
+      try (final OutputStream stream = new FileOutputStream(indexFile)) {
+        index.store(stream, "classes specialized by jBOP");
+      }
+    } catch (final IOException e) {
+      throw new MojoExecutionException("The index " + indexFile + " couldn't be written.", e);
+    }
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.objectweb.asm.commons.CodeSizeEvaluator;
+import org.objectweb.asm.tree.MethodNode;
+
+import de.tuberlin.uebb.jbop.optimizer.methodsplitter.JitThresholds;
+import de.tuberlin.uebb.jbop.output.StringTable;
+
+/**
+ * The Class MethodSizeReport.
+ *
+ * Collects the sizes of the generated methods and shows which of them
+ * exceed the inlining- / compilation-thresholds of the JIT-Compiler ({@link JitThresholds}).
+ *
+ * @author Christopher Ewest
+ */
+public class MethodSizeReport {
+
+  private final JitThresholds thresholds;
+  private final List<Entry> entries = new ArrayList<>();
+
+  /**
+   * One generated method.
+   */
+  public static final class Entry {
+
+    private final String owner;
+    private final String method;
+    private final int size;
+
+    Entry(final String owner, final String method, final int size) {
+      this.owner = owner;
+      this.method = method;
+      this.size = size;
+    }
+
+    /**
+     * Gets the internal name of the class.
+     *
+     * @return the owner
+     */
+    public String getOwner() {
+      return owner;
+    }
+
+    /**
+     * Gets the name and descriptor of the method.
+     *
+     * @return the method
+     */
+    public String getMethod() {
+      return method;
+    }
+
+    /**
+     * Gets the (max) size of the method in bytes.
+     *
+     * @return the size
+     */
+    public int getSize() {
+      return size;
+    }
+  }
+
+  /**
+   * Instantiates a new {@link MethodSizeReport}.
+   *
+   * @param thresholds
+   *          the thresholds
+   */
+  public MethodSizeReport(final JitThresholds thresholds) {
+    this.thresholds = thresholds;
+  }
+
+  /**
+   * Adds the method to the report.
+   *
+   * @param owner
+   *          the internal name of the class
+   * @param methodNode
+   *          the method node
+   */
+  public void add(final String owner, final MethodNode methodNode) {
+    entries.add(new Entry(owner, methodNode.name + methodNode.desc, getSize(methodNode)));
+  }
+  
+  /**
+   * Gets the (max) size of the method in bytes.
+   * 
+   * @param methodNode
+   *          the method node
+   * @return the size
+   */
+  public static int getSize(final MethodNode methodNode) {
+    final CodeSizeEvaluator evaluator = new CodeSizeEvaluator(null);
+    methodNode.accept(evaluator);
+    return evaluator.getMaxSize();
+  }
+
+  /**
+   * Gets all methods of the report.
+   *
+   * @return the entries
+   */
+  public List<Entry> getEntries() {
+    return Collections.unmodifiableList(entries);
+  }
+
+  /**
+   * Gets the methods that are too large to be inlined when hot.
+   *
+   * @return the not inlinable methods
+   */
+  public List<Entry> getNotInlinable() {
+    final List<Entry> result = new ArrayList<>();
+    for (final Entry entry : entries) {
+      if (!thresholds.isInlinable(entry.getSize())) {
+        result.add(entry);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Gets the methods that are too large to be compiled at all.
+   *
+   * @return the not compilable methods
+   */
+  public List<Entry> getNotCompilable() {
+    final List<Entry> result = new ArrayList<>();
+    for (final Entry entry : entries) {
+      if (!thresholds.isCompilable(entry.getSize())) {
+        result.add(entry);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Gets the thresholds.
+   *
+   * @return the thresholds
+   */
+  public JitThresholds getThresholds() {
+    return thresholds;
+  }
+
+  @Override
+  public String toString() {
+    final StringTable table = new StringTable();
+    table.setCaption("Generated methods (" + thresholds + ")");
+    table.addColumn("Class", "%s");
+    table.addColumn("Method", "%s");
+    table.addColumn("Size", "%5d");
+    table.addColumn("> MaxInline", "%1s");
+    table.addColumn("> FreqInline", "%1s");
+    table.addColumn("> Huge", "%1s");
+    for (final Entry entry : entries) {
+      final int size = entry.getSize();
+      table.addRow(entry.getOwner(), entry.getMethod(), size, mark(size > thresholds.getMaxInlineSize()),
+          mark(!thresholds.isInlinable(size)), mark(!thresholds.isCompilable(size)));
+    }
+    return table.toString();
+  }
+
+  private String mark(final boolean exceeded) {
+    return exceeded ? "X" : " ";
+  }
+}
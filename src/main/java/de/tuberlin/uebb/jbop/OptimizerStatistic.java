@@ -1,74 +1,549 @@
 /*
  * Copyright (C) 2013 uebb.tu-berlin.de.
- * 
+ *
  * This file is part of JBOP (Java Bytecode OPtimizer).
- * 
+ *
  * JBOP is free software: you can redistribute it and/or modify
  * it under the terms of the GNU Lesser General Public License as published by
  * the Free Software Foundation, either version 3 of the License, or
  * (at your option) any later version.
- * 
+ *
  * JBOP is distributed in the hope that it will be useful,
  * but WITHOUT ANY WARRANTY; without even the implied warranty of
  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
  * GNU Lesser General Public License for more details.
- * 
+ *
  * You should have received a copy of the GNU Lesser General Public License
  * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
  */
 package de.tuberlin.uebb.jbop;
 
-import java.util.HashMap;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
 import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
 import de.tuberlin.uebb.jbop.output.StringTable;
 
 /**
  * The Class OptimizerStatistic.
  * 
+ * Collects per optimizer the number of runs, the time and the net change of the number of instructions,
+ * per method the number of iterations, the time and the bytecode size before and after the optimization
+ * and per class the time of the definition.
+ * 
+ * The statistic can be registered as MXBean ({@link #register(String)}) and live as long as the application.
+ * Therefore the totals of the methods and classes are aggregated, but only the most recent methods and classes
+ * (at most {@link #DEFAULT_MAX_ENTRIES} each by default) are kept for the tables.
+ * 
+ * All times are in nanoseconds.
+ * 
  * @author Christopher Ewest
  */
-public class OptimizerStatistic {
+public class OptimizerStatistic implements OptimizerStatisticMXBean {
+  
+  private static final String DOMAIN = "de.tuberlin.uebb.jbop";
+  
+  /** The default number of methods and classes that are kept for the tables. */
+  public static final int DEFAULT_MAX_ENTRIES = 1000;
+  
+  private final int maxEntries;
+  private final Map<Class<? extends IOptimizer>, PassStatistic> passes = new LinkedHashMap<>();
+  private final Deque<MethodStatistic> methods = new ArrayDeque<>();
+  private final Map<String, Long> classes;
+  private long methodCount;
+  private long iterations;
+  private long sizeBefore;
+  private long sizeAfter;
+  private long optimizationTime;
+  private long classCount;
+  private long classDefinitionTime;
+  private ObjectName objectName;
+  
+  /**
+   * Instantiates a new {@link OptimizerStatistic}, that keeps {@link #DEFAULT_MAX_ENTRIES} methods and classes.
+   */
+  public OptimizerStatistic() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
   
-  private final Map<Class<? extends IOptimizer>, Integer> runs = new HashMap<Class<? extends IOptimizer>, Integer>();
-  private final Map<Class<? extends IOptimizer>, Integer> emptyRuns = new HashMap<Class<? extends IOptimizer>, Integer>();
+  /**
+   * Instantiates a new {@link OptimizerStatistic}.
+   * 
+   * @param maxEntries
+   *          the number of methods and classes that are kept for the tables
+   */
+  public OptimizerStatistic(final int maxEntries) {
+    if (maxEntries < 0) {
+      throw new IllegalArgumentException("maxEntries must not be negative.");
+    }
+    this.maxEntries = maxEntries;
+    classes = new LinkedHashMap<String, Long>() {
+      
+      private static final long serialVersionUID = 1L;
+      
+      @Override
+      protected boolean removeEldestEntry(final Entry<String, Long> eldest) {
+        return size() > OptimizerStatistic.this.maxEntries;
+      }
+    };
+  }
+  
+  /**
+   * The statistic of one optimizer.
+   * {@link OptimizerStatistic#getPass(Class)} returns snapshots, that don't change with further runs.
+   */
+  public static final class PassStatistic {
+    
+    private long runs;
+    private long emptyRuns;
+    private long time;
+    private long sizeDelta;
+    
+    PassStatistic() {
+      //
+    }
+    
+    private PassStatistic(final PassStatistic other) {
+      runs = other.runs;
+      emptyRuns = other.emptyRuns;
+      time = other.time;
+      sizeDelta = other.sizeDelta;
+    }
+    
+    /**
+     * Gets the number of runs.
+     * 
+     * @return the runs
+     */
+    public long getRuns() {
+      return runs;
+    }
+    
+    /**
+     * Gets the number of runs that made no changes.
+     * 
+     * @return the empty runs
+     */
+    public long getEmptyRuns() {
+      return emptyRuns;
+    }
+    
+    /**
+     * Gets the time of all runs.
+     * 
+     * @return the time
+     */
+    public long getTime() {
+      return time;
+    }
+    
+    /**
+     * Gets the net change of the number of instructions over all runs
+     * (negative if the optimizer removed more instructions than it added).
+     * 
+     * @return the size delta
+     */
+    public long getSizeDelta() {
+      return sizeDelta;
+    }
+  }
+  
+  /**
+   * The statistic of one method.
+   */
+  public static final class MethodStatistic {
+    
+    private final String owner;
+    private final String method;
+    private final int iterations;
+    private final int sizeBefore;
+    private final int sizeAfter;
+    private final long time;
+    
+    MethodStatistic(final String owner, final String method, final int iterations, final int sizeBefore,
+        final int sizeAfter, final long time) {
+      this.owner = owner;
+      this.method = method;
+      this.iterations = iterations;
+      this.sizeBefore = sizeBefore;
+      this.sizeAfter = sizeAfter;
+      this.time = time;
+    }
+    
+    /**
+     * Gets the internal name of the class.
+     * 
+     * @return the owner
+     */
+    public String getOwner() {
+      return owner;
+    }
+    
+    /**
+     * Gets the name and descriptor of the method.
+     * 
+     * @return the method
+     */
+    public String getMethod() {
+      return method;
+    }
+    
+    /**
+     * Gets the number of iterations until the fixed point was reached.
+     * 
+     * @return the iterations
+     */
+    public int getIterations() {
+      return iterations;
+    }
+    
+    /**
+     * Gets the bytecode size before the optimization.
+     * 
+     * @return the size before
+     */
+    public int getSizeBefore() {
+      return sizeBefore;
+    }
+    
+    /**
+     * Gets the bytecode size after the optimization (including split methods).
+     * 
+     * @return the size after
+     */
+    public int getSizeAfter() {
+      return sizeAfter;
+    }
+    
+    /**
+     * Gets the time of the optimization.
+     * 
+     * @return the time
+     */
+    public long getTime() {
+      return time;
+    }
+  }
   
+  /**
+   * Adds a run of the optimizer.
+   * 
+   * @param optimizer
+   *          the optimizer
+   * @param optimized
+   *          whether the optimizer made changes
+   */
   public void addRun(final IOptimizer optimizer, final boolean optimized) {
-    add(runs, optimizer);
+    addRun(optimizer, optimized, 0, 0, 0);
+  }
+  
+  /**
+   * Adds a run of the optimizer.
+   * 
+   * @param optimizer
+   *          the optimizer
+   * @param optimized
+   *          whether the optimizer made changes
+   * @param time
+   *          the time of the run
+   * @param sizeBefore
+   *          the number of instructions before the run
+   * @param sizeAfter
+   *          the number of instructions after the run
+   */
+  public synchronized void addRun(final IOptimizer optimizer, final boolean optimized, final long time,
+      final int sizeBefore, final int sizeAfter) {
+    PassStatistic pass = passes.get(optimizer.getClass());
+    if (pass == null) {
+      pass = new PassStatistic();
+      passes.put(optimizer.getClass(), pass);
+    }
+    pass.runs++;
     if (!optimized) {
-      add(emptyRuns, optimizer);
+      pass.emptyRuns++;
+    }
+    pass.time += time;
+    pass.sizeDelta += sizeAfter - sizeBefore;
+  }
+  
+  /**
+   * Adds an optimized method.
+   * 
+   * @param owner
+   *          the internal name of the class
+   * @param method
+   *          the name and descriptor of the method
+   * @param iterations
+   *          the number of iterations
+   * @param sizeBefore
+   *          the bytecode size before the optimization
+   * @param sizeAfter
+   *          the bytecode size after the optimization
+   * @param time
+   *          the time of the optimization
+   */
+  public synchronized void addMethod(final String owner, final String method, final int iterations,
+      final int sizeBefore, final int sizeAfter, final long time) {
+    methodCount++;
+    this.iterations += iterations;
+    this.sizeBefore += sizeBefore;
+    this.sizeAfter += sizeAfter;
+    optimizationTime += time;
+    if (maxEntries == 0) {
+      return;
+    }
+    if (methods.size() == maxEntries) {
+      methods.removeFirst();
     }
+    methods.addLast(new MethodStatistic(owner, method, iterations, sizeBefore, sizeAfter, time));
   }
   
-  private void add(final Map<Class<? extends IOptimizer>, Integer> map, final IOptimizer optimizer) {
-    Integer runsOfOpt = map.get(optimizer.getClass());
-    int currentValue = 0;
-    if (runsOfOpt != null) {
-      currentValue = runsOfOpt.intValue();
+  /**
+   * Adds the definition of an optimized class.
+   * 
+   * @param name
+   *          the name of the class
+   * @param time
+   *          the time of the definition
+   */
+  public synchronized void addClassDefinition(final String name, final long time) {
+    classCount++;
+    classDefinitionTime += time;
+    final Long old = classes.get(name);
+    classes.put(name, Long.valueOf(old == null ? time : old.longValue() + time));
+  }
+  
+  /**
+   * Gets the statistic of the optimizer.
+   * 
+   * @param optimizer
+   *          the class of the optimizer
+   * @return a snapshot of the statistic or null if the optimizer never ran
+   */
+  public synchronized PassStatistic getPass(final Class<? extends IOptimizer> optimizer) {
+    final PassStatistic pass = passes.get(optimizer);
+    return pass == null ? null : new PassStatistic(pass);
+  }
+  
+  /**
+   * Gets the statistics of the most recently optimized methods.
+   * 
+   * @return the methods
+   */
+  public synchronized List<MethodStatistic> getMethods() {
+    return Collections.unmodifiableList(new ArrayList<>(methods));
+  }
+  
+  @Override
+  public synchronized long getRuns() {
+    long sum = 0;
+    for (final PassStatistic pass : passes.values()) {
+      sum += pass.runs;
     }
-    runsOfOpt = currentValue + 1;
-    map.put(optimizer.getClass(), runsOfOpt);
+    return sum;
   }
   
   @Override
-  public String toString() {
+  public synchronized long getEmptyRuns() {
+    long sum = 0;
+    for (final PassStatistic pass : passes.values()) {
+      sum += pass.emptyRuns;
+    }
+    return sum;
+  }
+  
+  @Override
+  public synchronized Map<String, Long> getRunsPerOptimizer() {
+    final Map<String, Long> result = new LinkedHashMap<>();
+    for (final Entry<Class<? extends IOptimizer>, PassStatistic> entry : passes.entrySet()) {
+      result.put(entry.getKey().getName(), Long.valueOf(entry.getValue().runs));
+    }
+    return result;
+  }
+  
+  @Override
+  public synchronized Map<String, Long> getTimePerOptimizer() {
+    final Map<String, Long> result = new LinkedHashMap<>();
+    for (final Entry<Class<? extends IOptimizer>, PassStatistic> entry : passes.entrySet()) {
+      result.put(entry.getKey().getName(), Long.valueOf(entry.getValue().time));
+    }
+    return result;
+  }
+  
+  @Override
+  public synchronized long getMethodCount() {
+    return methodCount;
+  }
+  
+  @Override
+  public synchronized long getIterations() {
+    return iterations;
+  }
+  
+  @Override
+  public synchronized long getSizeBefore() {
+    return sizeBefore;
+  }
+  
+  @Override
+  public synchronized long getSizeAfter() {
+    return sizeAfter;
+  }
+  
+  @Override
+  public synchronized long getOptimizationTime() {
+    return optimizationTime;
+  }
+  
+  @Override
+  public synchronized long getClassCount() {
+    return classCount;
+  }
+  
+  @Override
+  public synchronized long getClassDefinitionTime() {
+    return classDefinitionTime;
+  }
+  
+  @Override
+  public synchronized void reset() {
+    passes.clear();
+    methods.clear();
+    classes.clear();
+    methodCount = 0;
+    iterations = 0;
+    sizeBefore = 0;
+    sizeAfter = 0;
+    optimizationTime = 0;
+    classCount = 0;
+    classDefinitionTime = 0;
+  }
+  
+  /**
+   * Registers this statistic at the platform MBeanServer
+   * (<code>de.tuberlin.uebb.jbop:type=OptimizerStatistic,name=&lt;name&gt;</code>).
+   * 
+   * @param name
+   *          the name
+   * @throws JBOPClassException
+   *           if the statistic couldn't be registered
+   */
+  public synchronized void register(final String name) throws JBOPClassException {
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      final ObjectName newName = new ObjectName(DOMAIN + ":type=OptimizerStatistic,name=" + ObjectName.quote(name));
+      unregister();
+      server.registerMBean(this, newName);
+      objectName = newName;
+    } catch (final JMException e) {
+      throw new JBOPClassException("OptimizerStatistic couldn't be registered as '" + name + "'.", e);
+    }
+  }
+  
+  /**
+   * Unregisters this statistic from the platform MBeanServer.
+   * 
+   * @throws JBOPClassException
+   *           if the statistic couldn't be unregistered
+   */
+  public synchronized void unregister() throws JBOPClassException {
+    if (objectName == null) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+      objectName = null;
+    } catch (final JMException e) {
+      throw new JBOPClassException("OptimizerStatistic couldn't be unregistered.", e);
+    }
+  }
+  
+  /**
+   * Gets the name under which the statistic is registered.
+   * 
+   * @return the object name or null if not registered
+   */
+  public synchronized ObjectName getObjectName() {
+    return objectName;
+  }
+  
+  /**
+   * Gets the statistic of the optimizers as table.
+   * 
+   * @return the pass table
+   */
+  public synchronized StringTable getPassTable() {
     final StringTable table = new StringTable();
     table.addColumn("Optimizer", "%20s");
     table.addColumn("Runs", "%5d");
     table.addColumn("empty Runs", "%5d");
-    for (final Entry<Class<? extends IOptimizer>, Integer> entry : runs.entrySet()) {
-      table.addRow(entry.getKey().getSimpleName(), entry.getValue(), nullTo0(emptyRuns.get(entry.getKey())));
+    table.addColumn("Time [ms]", "%10.3f");
+    table.addColumn("Size delta", "%6d");
+    for (final Entry<Class<? extends IOptimizer>, PassStatistic> entry : passes.entrySet()) {
+      final PassStatistic pass = entry.getValue();
+      table.addRow(entry.getKey().getSimpleName(), pass.runs, pass.emptyRuns, toMillis(pass.time), pass.sizeDelta);
     }
-    table.setLatex(true);
-    return table.toString();
+    return table;
   }
   
-  private Integer nullTo0(final Integer integer) {
-    if (integer == null) {
-      return 0;
+  /**
+   * Gets the statistic of the methods as table.
+   * 
+   * @return the method table
+   */
+  public synchronized StringTable getMethodTable() {
+    final StringTable table = new StringTable();
+    table.addColumn("Class", "%s");
+    table.addColumn("Method", "%s");
+    table.addColumn("Iterations", "%4d");
+    table.addColumn("Size before", "%6d");
+    table.addColumn("Size after", "%6d");
+    table.addColumn("Time [ms]", "%10.3f");
+    for (final MethodStatistic method : methods) {
+      table.addRow(method.owner, method.method, method.iterations, method.sizeBefore, method.sizeAfter,
+          toMillis(method.time));
     }
-    return integer;
+    return table;
+  }
+  
+  /**
+   * Gets the definition times of the classes as table.
+   * 
+   * @return the class table
+   */
+  public synchronized StringTable getClassTable() {
+    final StringTable table = new StringTable();
+    table.addColumn("Class", "%s");
+    table.addColumn("Time [ms]", "%10.3f");
+    for (final Entry<String, Long> entry : classes.entrySet()) {
+      table.addRow(entry.getKey(), toMillis(entry.getValue().longValue()));
+    }
+    return table;
+  }
+  
+  private static double toMillis(final long nanos) {
+    return nanos / 1000000.0;
+  }
+  
+  @Override
+  public String getReport() {
+    return toString();
+  }
+  
+  @Override
+  public synchronized String toString() {
+    return getPassTable().toString() + getMethodTable().toString() + getClassTable().toString();
   }
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link OptimizerStatistic}.
+ * 
+ * All times are in nanoseconds.
+ * 
+ * @author Christopher Ewest
+ */
+public interface OptimizerStatisticMXBean {
+  
+  /**
+   * Gets the number of runs of all optimizers.
+   * 
+   * @return the runs
+   */
+  long getRuns();
+  
+  /**
+   * Gets the number of runs of all optimizers, that made no changes.
+   * 
+   * @return the empty runs
+   */
+  long getEmptyRuns();
+  
+  /**
+   * Gets the number of runs per optimizer.
+   * 
+   * @return the runs per optimizer
+   */
+  Map<String, Long> getRunsPerOptimizer();
+  
+  /**
+   * Gets the time per optimizer.
+   * 
+   * @return the time per optimizer
+   */
+  Map<String, Long> getTimePerOptimizer();
+  
+  /**
+   * Gets the number of optimized methods.
+   * 
+   * @return the method count
+   */
+  long getMethodCount();
+  
+  /**
+   * Gets the number of iterations of the optimizers over all methods.
+   * 
+   * @return the iterations
+   */
+  long getIterations();
+  
+  /**
+   * Gets the bytecode size of all methods before the optimization.
+   * 
+   * @return the size before
+   */
+  long getSizeBefore();
+  
+  /**
+   * Gets the bytecode size of all methods after the optimization.
+   * 
+   * @return the size after
+   */
+  long getSizeAfter();
+  
+  /**
+   * Gets the time spent in optimizing methods.
+   * 
+   * @return the optimization time
+   */
+  long getOptimizationTime();
+  
+  /**
+   * Gets the number of class definitions.
+   * 
+   * @return the class count
+   */
+  long getClassCount();
+  
+  /**
+   * Gets the time spent in defining and instantiating the optimized classes.
+   * 
+   * @return the class definition time
+   */
+  long getClassDefinitionTime();
+  
+  /**
+   * Gets the statistic as table.
+   * 
+   * @return the report
+   */
+  String getReport();
+  
+  /**
+   * Clears the statistic.
+   */
+  void reset();
+}
@@ -20,6 +20,8 @@ package de.tuberlin.uebb.jbop.access;
 
 import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.net.MalformedURLException;
@@ -35,6 +37,12 @@ import java.nio.file.StandardOpenOption;
 import java.security.AccessController;
 import java.security.CodeSource;
 import java.security.PrivilegedAction;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -43,6 +51,9 @@ import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Type;
 
+import de.tuberlin.uebb.jbop.events.SpecializationEvents;
+import de.tuberlin.uebb.jbop.events.SpecializationEvents.Measurement;
+import de.tuberlin.uebb.jbop.events.SpecializationStep;
 import de.tuberlin.uebb.jbop.exception.JBOPClassException;
 import de.tuberlin.uebb.jbop.optimizer.utils.rename.ClassRenamer;
 
@@ -55,6 +66,18 @@ import de.tuberlin.uebb.jbop.optimizer.utils.rename.ClassRenamer;
  */
 public final class ClassAccessor {
   
+  /** The getters of the fields, resolved once per class. */
+  private static final ClassValue<Map<String, MethodHandle>> GETTERS = new ClassValue<Map<String, MethodHandle>>() {
+    
+    @Override
+    protected Map<String, MethodHandle> computeValue(final Class<?> type) {
+      return new ConcurrentHashMap<>();
+    }
+  };
+  
+  /** The open snapshots (see {@link #openSnapshot(Object)}), guarded by itself. */
+  private static final Map<Object, Snapshot> SNAPSHOTS = new IdentityHashMap<>();
+  
   private ClassAccessor() {
     //
   }
@@ -75,8 +98,12 @@ public final class ClassAccessor {
     }
   }
   
-  private static final ClassLoader TMP_CLASS_LOADER;
-  static {
+  private static final ClassLoader TMP_CLASS_LOADER = createClassLoader(ClassLoader.getSystemClassLoader());
+  
+  /** The Classloaders for created Classes per parent (see {@link #getClassloader(ClassLoader)}). */
+  private static final Map<ClassLoader, ClassLoader> TMP_CLASS_LOADERS = new WeakHashMap<>();
+  
+  private static ClassLoader createClassLoader(final ClassLoader parent) {
     final URI uri = TMP_DIR.toUri();
     final URL url;
     try {
@@ -87,11 +114,11 @@ public final class ClassAccessor {
     final URL[] urls = new URL[] {
       url
     };
-    TMP_CLASS_LOADER = AccessController.doPrivileged(new PrivilegedAction<ClassLoader>() {
+    return AccessController.doPrivileged(new PrivilegedAction<ClassLoader>() {
       
       @Override
       public ClassLoader run() {
-        return new URLClassLoader(urls);
+        return new URLClassLoader(urls, parent);
       }
     });
   }
@@ -226,6 +253,9 @@ public final class ClassAccessor {
     if (input == null) {
       throw new JBOPClassException("Nullvalue for input is not allowed.", null);
     }
+    final long start = System.nanoTime();
+    final Measurement measurement = SpecializationEvents.isEnabled() ? SpecializationEvents
+        .begin(SpecializationStep.CLASS_READ) : null;
     Path file;
     Class<?> clazz;
     if (input instanceof Class) {
@@ -239,7 +269,11 @@ public final class ClassAccessor {
       file = getPathInJar(filename);
     }
     try {
-      return Files.readAllBytes(file);
+      final byte[] bytes = Files.readAllBytes(file);
+      if (measurement != null) {
+        SpecializationEvents.classRead(measurement, clazz.getName(), bytes.length, System.nanoTime() - start);
+      }
+      return bytes;
     } catch (final IOException e) {
       throw new JBOPClassException("The content of the Classfile (" + filename + ") couldn't be read.", e);
     }
@@ -280,9 +314,39 @@ public final class ClassAccessor {
     return TMP_CLASS_LOADER;
   }
   
+  /**
+   * Returns the Classloader for created Classes that have to see the Classes of <code>parent</code>
+   * (e.g. the Classloader of the input of the optimizer).
+   * 
+   * If parent is the system Classloader, this is {@link #getClassloader()}.
+   * If parent is already a Classloader for created Classes, parent itself is returned.
+   * 
+   * @param parent
+   *          the parent Classloader (may be null)
+   * @return the classloader
+   */
+  public static ClassLoader getClassloader(final ClassLoader parent) {
+    if ((parent == null) || (parent == TMP_CLASS_LOADER) || (parent == TMP_CLASS_LOADER.getParent())) {
+      return TMP_CLASS_LOADER;
+    }
+    synchronized (TMP_CLASS_LOADERS) {
+      if (TMP_CLASS_LOADERS.containsValue(parent)) {
+        return parent;
+      }
+      ClassLoader classLoader = TMP_CLASS_LOADERS.get(parent);
+      if (classLoader == null) {
+        classLoader = createClassLoader(parent);
+        TMP_CLASS_LOADERS.put(parent, classLoader);
+      }
+      return classLoader;
+    }
+  }
+  
   /**
    * Returns the current value of the Field 'fieldName' of the given object.
    * 
+   * While a snapshot of the object is open ({@link #openSnapshot(Object)}) every field is read only once.
+   * 
    * @param instance
    *          the instance
    * @param fieldName
@@ -292,9 +356,21 @@ public final class ClassAccessor {
    *           the jBOP class exception
    */
   public static Object getCurrentValue(final Object instance, final String fieldName) throws JBOPClassException {
-    final PrivilegedGetFieldValue getter = new PrivilegedGetFieldValue(instance);
-    getter.setFieldName(fieldName);
-    return executePrivileged(getter);
+    final Snapshot snapshot;
+    synchronized (SNAPSHOTS) {
+      snapshot = SNAPSHOTS.get(instance);
+    }
+    if (snapshot == null) {
+      return readField(instance, fieldName);
+    }
+    synchronized (snapshot) {
+      if (snapshot.values.containsKey(fieldName)) {
+        return snapshot.values.get(fieldName);
+      }
+      final Object value = readField(instance, fieldName);
+      snapshot.values.put(fieldName, value);
+      return value;
+    }
   }
   
   /**
@@ -312,10 +388,102 @@ public final class ClassAccessor {
    */
   public static Object getCurrentValue(final Object instance, final String fieldName, final int... indexes)
       throws JBOPClassException {
-    final PrivilegedGetArrayValue getter = new PrivilegedGetArrayValue(instance);
-    getter.setFieldName(fieldName);
-    getter.setIndexes(indexes);
-    return executePrivileged(getter);
+    Object array = getCurrentValue(instance, fieldName);
+    try {
+      for (final int index : indexes) {
+        array = Array.get(array, index);
+      }
+    } catch (final IllegalArgumentException | ArrayIndexOutOfBoundsException | NullPointerException e) {
+      throw new JBOPClassException("Field '" + fieldName + "' of class Class<" + instance.getClass().getName()
+          + "> could not be accessed at " + Arrays.toString(indexes) + ".", e);
+    }
+    return array;
+  }
+  
+  /**
+   * Opens a snapshot of the fields of the given object:
+   * until the snapshot is closed ({@link #closeSnapshot(Object)}) each field is read only once
+   * by {@link #getCurrentValue(Object, String)}, later reads return the same value.
+   * 
+   * The optimizer opens a snapshot for its input while optimizing it.
+   * The snapshots are reference counted: if the snapshot of the object is already open (e.g. by a concurrent
+   * optimization of the same input) it is shared and stays open until it is closed as often as it was opened.
+   * 
+   * @param instance
+   *          the instance
+   */
+  public static void openSnapshot(final Object instance) {
+    synchronized (SNAPSHOTS) {
+      Snapshot snapshot = SNAPSHOTS.get(instance);
+      if (snapshot == null) {
+        snapshot = new Snapshot();
+        SNAPSHOTS.put(instance, snapshot);
+      }
+      snapshot.references++;
+    }
+  }
+  
+  /**
+   * Closes the snapshot of the given object (once for every {@link #openSnapshot(Object)}).
+   * 
+   * @param instance
+   *          the instance
+   */
+  public static void closeSnapshot(final Object instance) {
+    synchronized (SNAPSHOTS) {
+      final Snapshot snapshot = SNAPSHOTS.get(instance);
+      if ((snapshot != null) && (--snapshot.references == 0)) {
+        SNAPSHOTS.remove(instance);
+      }
+    }
+  }
+  
+  /**
+   * Attaches an object (e.g. a copy of values derived from the fields) to the open snapshot of the given object,
+   * so that it is created only once per snapshot and shared by all users of the snapshot.
+   * 
+   * If an object is already attached under the key, this object is returned instead.
+   * If no snapshot of the object is open, the given attachment is returned without storing it.
+   * 
+   * @param instance
+   *          the instance
+   * @param key
+   *          the key of the attachment
+   * @param attachment
+   *          the attachment
+   * @return the attachment of the snapshot
+   */
+  public static Object attachToSnapshot(final Object instance, final Object key, final Object attachment) {
+    final Snapshot snapshot;
+    synchronized (SNAPSHOTS) {
+      snapshot = SNAPSHOTS.get(instance);
+    }
+    if (snapshot == null) {
+      return attachment;
+    }
+    synchronized (snapshot) {
+      final Object attached = snapshot.attachments.get(key);
+      if (attached != null) {
+        return attached;
+      }
+      snapshot.attachments.put(key, attachment);
+      return attachment;
+    }
+  }
+  
+  private static Object readField(final Object instance, final String fieldName) throws JBOPClassException {
+    final Map<String, MethodHandle> getters = GETTERS.get(instance.getClass());
+    MethodHandle getter = getters.get(fieldName);
+    if (getter == null) {
+      getter = executePrivileged(new PrivilegedGetFieldHandle(instance.getClass(), fieldName));
+      getters.put(fieldName, getter);
+    }
+    try {
+      return getter.invokeExact(instance);
+    } catch (final Throwable e) {
+      throw new JBOPClassException("Field '" + fieldName + "' of class Class<" + instance.getClass().getName()
+          + "> could not be accessed.", e);
+    }
   }
   
   private static <T> T executePrivileged(final PrivilegedAction<T> action) throws JBOPClassException {
@@ -379,4 +547,14 @@ public final class ClassAccessor {
     FileUtils.deleteQuietly(TMP_DIR.toFile());
   }
   
+  
+  /**
+   * The values read while a snapshot is open and the number of open references.
+   */
+  private static final class Snapshot {
+    
+    private final Map<String, Object> values = new HashMap<>();
+    private final Map<Object, Object> attachments = new HashMap<>();
+    private int references;
+  }
 }
@@ -56,6 +56,9 @@ public final class ConstructorBuilder {
    * and adds it to the method-List of <code>node</code>.
    * A List with all Values (in order of the parameters) is returned.
    * 
+   * The parameters have the types of the fields, so primitive values are passed without boxing
+   * (see {@link #getDescriptor(ClassNode)}).
+   * 
    * If such a constructor already exists, only the parameters are returned,
    * no change is made to to the classNode.
    * 
@@ -70,7 +73,6 @@ public final class ConstructorBuilder {
   public static List<Object> createConstructor(final ClassNode node, final Object object) throws JBOPClassException {
     final Class<? extends Object> clazz = object.getClass();
     int param = 1;
-    final StringBuilder desc = new StringBuilder("(");
     final MethodNode constructor = createMethodNode(node);
     final List<Object> params = new ArrayList<>();
     for (final FieldNode field : node.fields) {
@@ -79,11 +81,9 @@ public final class ConstructorBuilder {
       final Object value = getValue(clazz, field, object);
       params.add(value);
       constructor.instructions.add(instructions);
-      desc.append(expand(field.desc, false));
     }
     constructor.instructions.add(new InsnNode(Opcodes.RETURN));
-    desc.append(")V");
-    constructor.desc = desc.toString();
+    constructor.desc = getDescriptor(node);
     for (final MethodNode method : node.methods) {
       if ("<init>".equals(method.name)) {
         if (constructor.desc.equals(method.desc)) {
@@ -95,45 +95,21 @@ public final class ConstructorBuilder {
     return params;
   }
   
-  private static String expand(final String desc, final boolean isArray) {
-    if (desc.startsWith("L")) {
-      return desc;
-    }
-    if (desc.startsWith("[")) {
-      return Type.getType("[" + expand(desc.substring(1), true)).getDescriptor();
-    }
-    if (isArray) {
-      return desc;
-    }
-    return expandPrimitives(desc);
-  }
-  
-  private static String expandPrimitives(final String desc) {
-    if ("I".equals(desc)) {
-      return Type.getDescriptor(Integer.class);
-    }
-    if ("F".equals(desc)) {
-      return Type.getDescriptor(Float.class);
-    }
-    if ("J".equals(desc)) {
-      return Type.getDescriptor(Long.class);
-    }
-    if ("D".equals(desc)) {
-      return Type.getDescriptor(Double.class);
-    }
-    if ("S".equals(desc)) {
-      return Type.getDescriptor(Short.class);
-    }
-    if ("B".equals(desc)) {
-      return Type.getDescriptor(Byte.class);
-    }
-    if ("C".equals(desc)) {
-      return Type.getDescriptor(Character.class);
-    }
-    if ("Z".equals(desc)) {
-      return Type.getDescriptor(Boolean.class);
+  /**
+   * Gets the descriptor of the constructor created by {@link #createConstructor(ClassNode, Object)}:
+   * the types of all fields in order of their declaration.
+   * 
+   * @param node
+   *          the ClassNode
+   * @return the descriptor
+   */
+  public static String getDescriptor(final ClassNode node) {
+    final StringBuilder desc = new StringBuilder("(");
+    for (final FieldNode field : node.fields) {
+      desc.append(field.desc);
     }
-    return Type.getDescriptor(Object.class);
+    desc.append(")V");
+    return desc.toString();
   }
   
   private static Object getValue(final Class<? extends Object> clazz, final FieldNode field, final Object object)
@@ -160,18 +136,14 @@ public final class ConstructorBuilder {
   private static int createInstructions(final int param, final FieldNode field, final ClassNode node,
       final InsnList instructions) {
     final AbstractInsnNode nThis = new VarInsnNode(Opcodes.ALOAD, 0);
-    final int opcode = Opcodes.ALOAD;
-    final int nextParam = param + 1;
-    final AbstractInsnNode unboxing = getUnboxingNode(field);
+    final Type type = Type.getType(field.desc);
+    final int opcode = type.getOpcode(Opcodes.ILOAD);
+    final int nextParam = param + type.getSize();
     
     instructions.add(nThis);
     final AbstractInsnNode nParam = new VarInsnNode(opcode, param);
     instructions.add(nParam);
     
-    if (unboxing != null) {
-      instructions.add(unboxing);
-    }
-    
     final AbstractInsnNode nPut = new FieldInsnNode(Opcodes.PUTFIELD, node.name, field.name, field.desc);
     instructions.add(nPut);
     
@@ -194,7 +166,7 @@ public final class ConstructorBuilder {
     } else if (sort == Type.LONG) {
       unboxing = new MethodInsnNode(Opcodes.INVOKEVIRTUAL, Type.getInternalName(Long.class), "longValue", "()J");
     } else if (sort == Type.FLOAT) {
-      unboxing = new MethodInsnNode(Opcodes.INVOKEVIRTUAL, Type.getInternalName(Float.class), "intValue", "()F");
+      unboxing = new MethodInsnNode(Opcodes.INVOKEVIRTUAL, Type.getInternalName(Float.class), "floatValue", "()F");
     } else if (sort == Type.DOUBLE) {
       unboxing = new MethodInsnNode(Opcodes.INVOKEVIRTUAL, Type.getInternalName(Double.class), "doubleValue", "()D");
     } else if (sort == Type.BOOLEAN) {
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.access;
+
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.apache.commons.collections15.map.HashedMap;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.annotations.ImmutableArray;
+
+/**
+ * The Class FactoryBuilder.
+ * 
+ * Creates {@link IInstanceFactory}s for optimized classes.
+ * 
+ * For every optimized class a factory class is generated, which holds the values of the fields
+ * (with their own types) and calls the constructor created by {@link ConstructorBuilder}:
+ * 
+ * <pre>
+ * public final class Input_optimized_Factory implements IInstanceFactory {
+ *   private final int size;
+ *   private final double[] values;
+ * 
+ *   public Input_optimized_Factory(int size, double[] values) {
+ *     ...
+ *   }
+ * 
+ *   public Object create() {
+ *     return new Input_optimized(size, (double[]) FactoryBuilder.copy(values));
+ *   }
+ * }
+ * </pre>
+ * 
+ * So creating an instance neither needs reflection nor boxing nor a lookup in a cache.
+ * 
+ * Arrays that are not annotated with {@link ImmutableArray} are copied (with all dimensions) for every instance,
+ * so changes of one instance are not seen by the others. Immutable arrays and other objects are shared.
+ * 
+ * @author Christopher Ewest
+ */
+public final class FactoryBuilder {
+  
+  private static final String SUFFIX = "_Factory";
+  
+  private static final HashedMap<Class<?>, Class<?>> FACTORIES = new HashedMap<>();
+  
+  private FactoryBuilder() {
+    //
+  }
+  
+  /**
+   * Creates a factory for instances with the class and the field values of <code>instance</code>.
+   * 
+   * The class of the factory is generated only once per class of the instance.
+   * 
+   * @param <T>
+   *          the type of the instance
+   * @param instance
+   *          the instance (created by the optimizer)
+   * @return the factory
+   * @throws JBOPClassException
+   *           if the class of the instance has no constructor for all fields or the factory couldn't be created.
+   */
+  public static <T> IInstanceFactory<T> createFactory(final T instance) throws JBOPClassException {
+    final ClassNode classNode = OptimizerUtils.readClass(instance);
+    final String desc = ConstructorBuilder.getDescriptor(classNode);
+    if (!hasConstructor(classNode, desc)) {
+      throw new JBOPClassException("The class " + instance.getClass().getName() + " has no constructor " + desc
+          + ".", null);
+    }
+    final ClassNode factoryNode = createFactoryNode(classNode, desc);
+    final List<Object> params = ConstructorBuilder.createConstructor(factoryNode, instance);
+    final MethodHandle constructor = OptimizerUtils.getConstructor(getFactoryClass(instance.getClass(), factoryNode),
+        desc);
+    try {
+      final Object factory = constructor.invokeExact(params.toArray(new Object[params.size()]));
+      return (IInstanceFactory<T>) factory;
+    } catch (final Throwable e) {
+      throw new JBOPClassException("The factory for " + instance.getClass().getName() + " could not be instantiated.",
+          e);
+    }
+  }
+  
+  /**
+   * Copies the array with all dimensions (used by the generated factories).
+   * 
+   * @param array
+   *          the array (or null)
+   * @return the copy
+   */
+  public static Object copy(final Object array) {
+    if (array instanceof Object[]) {
+      final Object[] copy = ((Object[]) array).clone();
+      if (array.getClass().getComponentType().isArray()) {
+        for (int i = 0; i < copy.length; ++i) {
+          copy[i] = copy(copy[i]);
+        }
+      }
+      return copy;
+    }
+    if (array instanceof double[]) {
+      return ((double[]) array).clone();
+    }
+    if (array instanceof float[]) {
+      return ((float[]) array).clone();
+    }
+    if (array instanceof long[]) {
+      return ((long[]) array).clone();
+    }
+    if (array instanceof int[]) {
+      return ((int[]) array).clone();
+    }
+    if (array instanceof short[]) {
+      return ((short[]) array).clone();
+    }
+    if (array instanceof byte[]) {
+      return ((byte[]) array).clone();
+    }
+    if (array instanceof char[]) {
+      return ((char[]) array).clone();
+    }
+    if (array instanceof boolean[]) {
+      return ((boolean[]) array).clone();
+    }
+    return array;
+  }
+  
+  private static Class<?> getFactoryClass(final Class<?> clazz, final ClassNode factoryNode)
+      throws JBOPClassException {
+    final Class<?> cached = FACTORIES.get(clazz);
+    if (cached != null) {
+      return cached;
+    }
+    final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+    factoryNode.accept(writer);
+    final String name = Type.getObjectType(factoryNode.name).getClassName();
+    final String file = Paths.get(ClassAccessor.getTmpdir().toString(), factoryNode.name + ".class").toString();
+    ClassAccessor.store(new ClassDescriptor(name, writer.toByteArray(), file));
+    final Class<?> factoryClass;
+    try {
+      factoryClass = Class.forName(name, true, ClassAccessor.getClassloader(clazz.getClassLoader()));
+    } catch (final ClassNotFoundException e) {
+      throw new JBOPClassException("The factory for " + clazz.getName() + " could not be loaded.", e);
+    }
+    FACTORIES.put(clazz, factoryClass);
+    return factoryClass;
+  }
+  
+  private static boolean hasConstructor(final ClassNode classNode, final String desc) {
+    for (final MethodNode method : classNode.methods) {
+      if ("<init>".equals(method.name) && desc.equals(method.desc)) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * Creates the ClassNode of the factory without its constructor
+   * (see {@link ConstructorBuilder#createConstructor(ClassNode, Object)}).
+   * 
+   * @param classNode
+   *          the ClassNode of the optimized class
+   * @param desc
+   *          the descriptor of the constructor of the optimized class
+   * @return the ClassNode of the factory
+   */
+  static ClassNode createFactoryNode(final ClassNode classNode, final String desc) {
+    final ClassNode factory = new ClassNode(Opcodes.ASM5);
+    factory.version = Opcodes.V1_7;
+    factory.access = Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER;
+    factory.name = classNode.name + SUFFIX;
+    factory.superName = Type.getInternalName(Object.class);
+    factory.interfaces.add(Type.getInternalName(IInstanceFactory.class));
+    final MethodNode create = new MethodNode(Opcodes.ACC_PUBLIC, "create", "()Ljava/lang/Object;", null, null);
+    final InsnList instructions = create.instructions;
+    instructions.add(new TypeInsnNode(Opcodes.NEW, classNode.name));
+    instructions.add(new InsnNode(Opcodes.DUP));
+    for (final FieldNode field : classNode.fields) {
+      factory.fields.add(new FieldNode(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, field.name, field.desc, null, null));
+      instructions.add(new VarInsnNode(Opcodes.ALOAD, 0));
+      instructions.add(new FieldInsnNode(Opcodes.GETFIELD, factory.name, field.name, field.desc));
+      if (isMutableArray(field)) {
+        instructions.add(new MethodInsnNode(Opcodes.INVOKESTATIC, Type.getInternalName(FactoryBuilder.class), "copy",
+            "(Ljava/lang/Object;)Ljava/lang/Object;"));
+        instructions.add(new TypeInsnNode(Opcodes.CHECKCAST, field.desc));
+      }
+    }
+    instructions.add(new MethodInsnNode(Opcodes.INVOKESPECIAL, classNode.name, "<init>", desc));
+    instructions.add(new InsnNode(Opcodes.ARETURN));
+    factory.methods.add(create);
+    return factory;
+  }
+  
+  private static boolean isMutableArray(final FieldNode field) {
+    if (Type.getType(field.desc).getSort() != Type.ARRAY) {
+      return false;
+    }
+    if (field.visibleAnnotations == null) {
+      return true;
+    }
+    final String immutable = Type.getDescriptor(ImmutableArray.class);
+    for (final AnnotationNode annotation : field.visibleAnnotations) {
+      if (immutable.equals(annotation.desc)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
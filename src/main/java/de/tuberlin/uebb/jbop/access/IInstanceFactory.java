@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.access;
+
+/**
+ * The Interface IInstanceFactory.
+ * 
+ * A generated factory for instances of an optimized class (see {@link FactoryBuilder}).
+ * Every instance created by the factory has the field values of the instance the factory was created for.
+ * Arrays that are not annotated with {@link de.tuberlin.uebb.jbop.optimizer.annotations.ImmutableArray} are copied
+ * for every instance, so an instance can change its arrays without affecting the others.
+ * Immutable arrays and other objects are not copied, they are shared by all instances.
+ * 
+ * @param <T>
+ *          the type of the instances
+ * @author Christopher Ewest
+ */
+public interface IInstanceFactory<T> {
+  
+  /**
+   * Creates a new instance.
+   * 
+   * @return the instance
+   */
+  T create();
+  
+}
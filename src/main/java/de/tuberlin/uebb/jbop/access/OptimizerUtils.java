@@ -18,16 +18,22 @@
  */
 package de.tuberlin.uebb.jbop.access;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.util.List;
 
 import org.apache.commons.collections15.map.HashedMap;
-import org.apache.commons.lang3.reflect.ConstructorUtils;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
 
+import de.tuberlin.uebb.jbop.events.SpecializationEvents;
+import de.tuberlin.uebb.jbop.events.SpecializationEvents.Measurement;
+import de.tuberlin.uebb.jbop.events.SpecializationStep;
 import de.tuberlin.uebb.jbop.exception.JBOPClassException;
 import de.tuberlin.uebb.jbop.optimizer.utils.RemoveUnusedFields;
 
@@ -40,6 +46,10 @@ public final class OptimizerUtils {
   
   private static final HashedMap<Object, Object> CACHE = new HashedMap<>();
   
+  private static final HashedMap<Class<?>, MethodHandle> CONSTRUCTORS = new HashedMap<>();
+  
+  private static final MethodType SPREAD_TYPE = MethodType.methodType(Object.class, Object[].class);
+  
   private OptimizerUtils() {
     //
   }
@@ -49,6 +59,7 @@ public final class OptimizerUtils {
    */
   public static void init() {
     CACHE.clear();
+    CONSTRUCTORS.clear();
   }
   
   /**
@@ -86,38 +97,133 @@ public final class OptimizerUtils {
    */
   public static <T> T createInstance(final ClassNode classNode, final T input, final String suffix)
       throws JBOPClassException {
+    return createInstance(classNode, input, suffix, input);
+  }
+  
+  /**
+   * Write class and instantiate the Object like {@link #createInstance(ClassNode, Object, String)},
+   * but the new instance is cached with the given key.
+   * 
+   * @param <T>
+   *          the generic type
+   * @param classNode
+   *          the class node
+   * @param input
+   *          the input
+   * @param suffix
+   *          the suffix
+   * @param key
+   *          the key for the cache
+   * @return the newe Class-instance
+   * @throws JBOPClassException
+   *           the jBOP class exception
+   */
+  public static <T> T createInstance(final ClassNode classNode, final T input, final String suffix, final Object key)
+      throws JBOPClassException {
+    final long start = System.nanoTime();
+    final Measurement measurement = SpecializationEvents.isEnabled() ? SpecializationEvents
+        .begin(SpecializationStep.CLASS_DEFINE) : null;
     RemoveUnusedFields.removeUnusedFields(classNode);
     final List<Object> params = ConstructorBuilder.createConstructor(classNode, input);
     final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
     classNode.accept(writer);
     
     final byte[] bytes = writer.toByteArray();
-    final T newInstance = instanceOf(bytes, input, params, suffix);
-    CACHE.put(input, newInstance);
+    final T newInstance = instanceOf(bytes, input, params, suffix, ConstructorBuilder.getDescriptor(classNode));
+    CACHE.put(key, newInstance);
+    if (measurement != null) {
+      SpecializationEvents.classDefined(measurement, newInstance.getClass().getName(), bytes.length,
+          System.nanoTime() - start);
+    }
     return newInstance;
   }
   
   private static <T> T instanceOf(final byte[] newClass, final T originalObject, final List<Object> params,
-      final String suffix) throws JBOPClassException {
+      final String suffix, final String desc) throws JBOPClassException {
     final ClassDescriptor classDescriptor = ClassAccessor.getClassDescriptor(originalObject.getClass());
     classDescriptor.setClassData(newClass);
     final ClassDescriptor renamedClass = ClassAccessor.rename(classDescriptor, suffix);
     ClassAccessor.store(renamedClass);
     
+    final Class<?> forName;
+    try {
+      forName = Class.forName(renamedClass.getName(), true,
+          ClassAccessor.getClassloader(originalObject.getClass().getClassLoader()));
+    } catch (final ClassNotFoundException e) {
+      throw new JBOPClassException("Optimized class could not be instantiated.", e);
+    }
+    final MethodHandle constructor = getConstructor(forName, desc);
     try {
-      final Class<?> forName = Class.forName(renamedClass.getName(), true, ClassAccessor.getClassloader());
-      return (T) ConstructorUtils.invokeConstructor(forName, params.toArray(new Object[params.size()]));
-    } catch (InstantiationException | IllegalAccessException | ClassNotFoundException | NoSuchMethodException
-        | InvocationTargetException e) {
+      final Object instance = constructor.invokeExact(params.toArray(new Object[params.size()]));
+      return (T) instance;
+    } catch (final Throwable e) {
       throw new JBOPClassException("Optimized class could not be instantiated.", e);
     }
   }
   
   /**
-   * Exists already a specialized instance for input?.
+   * Gets the constructor with the given descriptor of the class as {@link MethodHandle}.
+   * 
+   * The handle takes the (boxed) parameters as Object[] and returns the new instance as Object.
+   * The handles are cached per class.
    * 
+   * @param clazz
+   *          the class
+   * @param desc
+   *          the descriptor of the constructor
+   * @return the constructor
+   * @throws JBOPClassException
+   *           if there is no such constructor or it couldn't be accessed
+   */
+  static MethodHandle getConstructor(final Class<?> clazz, final String desc) throws JBOPClassException {
+    final MethodHandle cached = CONSTRUCTORS.get(clazz);
+    if (cached != null) {
+      return cached;
+    }
+    for (final Constructor<?> constructor : clazz.getDeclaredConstructors()) {
+      if (!desc.equals(Type.getConstructorDescriptor(constructor))) {
+        continue;
+      }
+      final MethodHandle handle;
+      try {
+        constructor.setAccessible(true);
+        handle = MethodHandles.lookup().unreflectConstructor(constructor);
+      } catch (IllegalAccessException | SecurityException e) {
+        throw new JBOPClassException("The constructor of " + clazz.getName() + " couldn't be accessed.", e);
+      }
+      final MethodHandle spread = handle.asSpreader(Object[].class, constructor.getParameterTypes().length).asType(
+          SPREAD_TYPE);
+      CONSTRUCTORS.put(clazz, spread);
+      return spread;
+    }
+    throw new JBOPClassException("The class " + clazz.getName() + " has no constructor " + desc + ".", null);
+  }
+  
+  /**
+   * Gets an instance of the class specialized for input at build time (see {@link SpecializationIndex}).
+   * The instance is cached like the instances created at runtime.
+   * 
+   * @param <T>
+   *          the generic type
    * @param input
    *          the input
+   * @return the instance or null if there is no class specialized at build time
+   * @throws JBOPClassException
+   *           if the specialized class couldn't be instantiated
+   */
+  public static <T> T getPrecompiledInstance(final T input) throws JBOPClassException {
+    final T instance = SpecializationIndex.lookup(input);
+    if (instance != null) {
+      CACHE.put(input, instance);
+    }
+    return instance;
+  }
+  
+  /**
+   * Exists already a specialized instance for input?.
+   * 
+   * @param input
+   *          the input (or the key of the cache)
    * @return true, if successful
    */
   public static boolean existsInstance(final Object input) {
@@ -133,10 +239,10 @@ public final class OptimizerUtils {
    * @param <T>
    *          the generic type
    * @param input
-   *          the input
+   *          the input (or the key of the cache)
    * @return the instance
    */
-  public static <T> T getInstanceFor(final T input) {
+  public static <T> T getInstanceFor(final Object input) {
     return (T) CACHE.get(input);
   }
 }
@@ -18,77 +18,64 @@
  */
 package de.tuberlin.uebb.jbop.access;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.security.PrivilegedAction;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
- * The Class PrivilegedGetFieldValue.
+ * The Class PrivilegedGetFieldHandle.
  * 
- * Privileged getter for Reflection-Use.
+ * Privileged lookup of a getter for a (possibly private) field.
+ * 
+ * The getter takes the instance as Object and returns the (boxed) value as Object.
  * 
  * @author Christopher Ewest
  */
-class PrivilegedGetFieldValue implements PrivilegedAction<Object> {
-  
-  private static final Logger LOG = Logger.getLogger("PrivilegedGetField");
+class PrivilegedGetFieldHandle implements PrivilegedAction<MethodHandle> {
   
-  private String fieldName;
-  private final Object instance;
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
   
-  private final Class<? extends Object> clazz;
+  private final Class<?> clazz;
+  private final String fieldName;
   
   /**
-   * Instantiates a new {@link PrivilegedGetFieldValue}.
+   * Instantiates a new {@link PrivilegedGetFieldHandle}.
    * 
-   * @param instance
-   *          the instance
+   * @param clazz
+   *          the class declaring the field
+   * @param fieldName
+   *          the field name
    */
-  public PrivilegedGetFieldValue(final Object instance) {
-    this.instance = instance;
-    clazz = instance.getClass();
+  public PrivilegedGetFieldHandle(final Class<?> clazz, final String fieldName) {
+    this.clazz = clazz;
+    this.fieldName = fieldName;
   }
   
   /**
    * Run.
    * 
-   * @return the object
+   * @return the getter
    */
   @Override
-  public Object run() {
+  public MethodHandle run() {
     final Field field = getField();
-    final boolean isAccessible = field.isAccessible();
     try {
       field.setAccessible(true);
-      final Object value = field.get(instance);
-      return transform(value);
-    } catch (SecurityException | IllegalAccessException | IllegalArgumentException e) {
+      MethodHandle getter = MethodHandles.lookup().unreflectGetter(field);
+      if (Modifier.isStatic(field.getModifiers())) {
+        getter = MethodHandles.dropArguments(getter, 0, Object.class);
+      }
+      return getter.asType(GETTER_TYPE);
+    } catch (SecurityException | IllegalAccessException e) {
       throw new RuntimeException("Field '" + fieldName + "' of class Class<" + //
-          instance.getClass().getName() + //
+          clazz.getName() + //
           "> could not be accessed.", e);
-    } finally {
-      try {
-        field.setAccessible(isAccessible);
-      } catch (final SecurityException e) {
-        // skip e in favor for above exception
-        LOG.log(Level.INFO, "skipped exception", e);
-      }
     }
   }
   
-  /**
-   * Hook for subclasses to perform additional actions with 'value'
-   * before returning it.
-   * 
-   * @param value
-   *          the value
-   * @return the object
-   */
-  protected Object transform(final Object value) {
-    return value;
-  }
-  
   private Field getField() {
     try {
       return clazz.getDeclaredField(fieldName);
@@ -98,14 +85,4 @@ class PrivilegedGetFieldValue implements PrivilegedAction<Object> {
           ">.", e);
     }
   }
-  
-  /**
-   * Sets the field name.
-   * 
-   * @param fieldName
-   *          the new field name
-   */
-  public void setFieldName(final String fieldName) {
-    this.fieldName = fieldName;
-  }
 }
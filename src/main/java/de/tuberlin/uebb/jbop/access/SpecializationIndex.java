@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.access;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.lang3.StringUtils;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+
+/**
+ * The Class SpecializationIndex.
+ * 
+ * Index of classes that were specialized at build time (ahead of time).
+ * 
+ * The index is read from all resources {@value #RESOURCE} of the classloader of the input.
+ * Every entry has the key <code>inputClass#fingerprint</code>, where the fingerprint is a hash of the serialized
+ * input ({@link #getFingerprint(Object)}), and the value
+ * <code>specializedClass constructorDescriptor field1 field2 ...</code>.
+ * 
+ * For an input with such an entry, the specialized class is simply loaded and instantiated with
+ * the current values of the fields. No class is read, optimized or written.
+ * 
+ * Only {@link Serializable} inputs can be specialized ahead of time.
+ * 
+ * @author Christopher Ewest
+ */
+public final class SpecializationIndex {
+  
+  /** The name of the index resource. */
+  public static final String RESOURCE = "META-INF/jbop/specializations.properties";
+  
+  private static final String SEPARATOR = "#";
+  
+  /** The entries of the index per input class, keyed by fingerprint. */
+  private static final ClassValue<Map<String, String>> ENTRIES = new ClassValue<Map<String, String>>() {
+    
+    @Override
+    protected Map<String, String> computeValue(final Class<?> type) {
+      return readEntries(type);
+    }
+  };
+  
+  private SpecializationIndex() {
+    //
+  }
+  
+  /**
+   * Gets the key of the index entry for the input.
+   * 
+   * @param input
+   *          the input
+   * @return the key
+   * @throws JBOPClassException
+   *           if the input is not serializable
+   */
+  public static String getKey(final Object input) throws JBOPClassException {
+    return input.getClass().getName() + SEPARATOR + getFingerprint(input);
+  }
+  
+  /**
+   * Gets the value of the index entry for the input specialized to the given instance
+   * (created by the optimizer).
+   * 
+   * @param specialized
+   *          the specialized instance
+   * @return the value
+   * @throws JBOPClassException
+   *           if the class of the specialized instance couldn't be read
+   */
+  public static String getValue(final Object specialized) throws JBOPClassException {
+    final ClassNode classNode = OptimizerUtils.readClass(specialized);
+    final StringBuilder value = new StringBuilder(specialized.getClass().getName());
+    value.append(' ').append(ConstructorBuilder.getDescriptor(classNode));
+    for (final FieldNode field : classNode.fields) {
+      value.append(' ').append(field.name);
+    }
+    return value.toString();
+  }
+  
+  /**
+   * Gets the fingerprint (SHA-1 of the serialized form) of the input.
+   * 
+   * @param input
+   *          the input
+   * @return the fingerprint
+   * @throws JBOPClassException
+   *           if the input is not serializable
+   */
+  public static String getFingerprint(final Object input) throws JBOPClassException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(input);
+    } catch (final IOException e) {
+      throw new JBOPClassException("The input " + input.getClass().getName() + " couldn't be serialized.", e);
+    }
+    final byte[] digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1").digest(bytes.toByteArray());
+    } catch (final NoSuchAlgorithmException e) {
+      throw new JBOPClassException("The fingerprint couldn't be computed.", e);
+    }
+    final StringBuilder fingerprint = new StringBuilder();
+    for (final byte b : digest) {
+      fingerprint.append(String.format("%02x", Integer.valueOf(b & 0xff)));
+    }
+    return fingerprint.toString();
+  }
+  
+  /**
+   * Creates an instance of the class that was specialized at build time for the input.
+   * 
+   * @param <T>
+   *          the type of the input
+   * @param input
+   *          the input
+   * @return the instance or null if there is no specialized class for the input
+   * @throws JBOPClassException
+   *           if the specialized class couldn't be instantiated
+   */
+  public static <T> T lookup(final T input) throws JBOPClassException {
+    return lookup(input, ENTRIES.get(input.getClass()));
+  }
+  
+  /**
+   * Creates an instance of the specialized class for the input from the given entries.
+   * 
+   * @param <T>
+   *          the type of the input
+   * @param input
+   *          the input
+   * @param entries
+   *          the entries for the class of the input, keyed by fingerprint
+   * @return the instance or null if there is no entry for the input
+   * @throws JBOPClassException
+   *           if the specialized class couldn't be instantiated
+   */
+  static <T> T lookup(final T input, final Map<String, String> entries) throws JBOPClassException {
+    if (entries.isEmpty() || !(input instanceof Serializable)) {
+      return null;
+    }
+    final String fingerprint;
+    try {
+      fingerprint = getFingerprint(input);
+    } catch (final JBOPClassException e) {
+      if (e.getCause() instanceof NotSerializableException) {
+        return null;
+      }
+      throw e;
+    }
+    final String value = entries.get(fingerprint);
+    if (value == null) {
+      return null;
+    }
+    final String[] parts = StringUtils.split(value, ' ');
+    final Class<?> specialized;
+    try {
+      specialized = Class.forName(parts[0], true, input.getClass().getClassLoader());
+    } catch (final ClassNotFoundException e) {
+      throw new JBOPClassException("The specialized class " + parts[0] + " couldn't be loaded.", e);
+    }
+    final Object[] params = new Object[parts.length - 2];
+    for (int i = 0; i < params.length; ++i) {
+      params[i] = ClassAccessor.getCurrentValue(input, parts[i + 2]);
+    }
+    final MethodHandle constructor = OptimizerUtils.getConstructor(specialized, parts[1]);
+    try {
+      final Object instance = constructor.invokeExact(params);
+      return (T) instance;
+    } catch (final Throwable e) {
+      throw new JBOPClassException("The specialized class " + parts[0] + " couldn't be instantiated.", e);
+    }
+  }
+  
+  private static Map<String, String> readEntries(final Class<?> clazz) {
+    final ClassLoader classLoader = clazz.getClassLoader();
+    if (classLoader == null) {
+      return Collections.emptyMap();
+    }
+    final Properties index = new Properties();
+    try {
+      final Enumeration<URL> resources = classLoader.getResources(RESOURCE);
+      while (resources.hasMoreElements()) {
+        try (final InputStream stream = resources.nextElement().openStream()) {
+          index.load(stream);
+        }
+      }
+    } catch (final IOException e) {
+      // no (readable) index: the class is specialized at runtime
+      return Collections.emptyMap();
+    }
+    final String prefix = clazz.getName() + SEPARATOR;
+    final Map<String, String> entries = new HashMap<>();
+    for (final String key : index.stringPropertyNames()) {
+      if (key.startsWith(prefix)) {
+        entries.put(key.substring(prefix.length()), index.getProperty(key));
+      }
+    }
+    return entries;
+  }
+}
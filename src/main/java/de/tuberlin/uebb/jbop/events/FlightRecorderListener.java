@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.events;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The Class FlightRecorderListener.
+ * 
+ * Emits the events as Java Flight Recorder events.
+ * 
+ * jBOP is compiled for Java 7, so the event types are created at runtime via <code>jdk.jfr.EventFactory</code>
+ * (Java 9+) using reflection. If the API is not available the constructor fails.
+ * 
+ * The events of the measured steps are begun in {@link #begin(SpecializationStep)} and ended when the step
+ * is reported, so the start time and the duration of the jfr-events are the ones of the work.
+ * 
+ * The labels of the size fields name their unit, sizes in bytes are additionally marked as
+ * <code>jdk.jfr.DataAmount</code>.
+ * 
+ * @author Christopher Ewest
+ */
+final class FlightRecorderListener implements ISpecializationListener {
+  
+  private static final String PREFIX = "de.tuberlin.uebb.jbop.";
+  private static final String CATEGORY = "jBOP";
+  /** The suffix of the labels of fields in bytes. */
+  private static final String BYTES = " [bytes]";
+  private static final String INSTRUCTIONS = " [instructions]";
+  
+  private final EventType classRead;
+  private final EventType passRun;
+  private final EventType methodSplit;
+  private final EventType classDefined;
+  private final EventType cacheLookup;
+  
+  /**
+   * Instantiates a new {@link FlightRecorderListener}.
+   * 
+   * @throws ReflectiveOperationException
+   *           if the Java Flight Recorder API is not available
+   */
+  FlightRecorderListener() throws ReflectiveOperationException {
+    final Jfr jfr = new Jfr();
+    classRead = new EventType(jfr, "ClassRead", "Class Read", //
+        new String[] {
+            "className", "size"
+        }, new String[] {
+            "Class Name", "Classfile Size" + BYTES
+        }, new Class<?>[] {
+            String.class, int.class
+        });
+    passRun = new EventType(jfr, "PassRun", "Optimizer Run", //
+        new String[] {
+            "className", "method", "optimizer", "iteration", "optimized", "sizeBefore", "sizeAfter"
+        }, new String[] {
+            "Class Name", "Method", "Optimizer", "Iteration", "Optimized", "Size Before" + INSTRUCTIONS,
+            "Size After" + INSTRUCTIONS
+        }, new Class<?>[] {
+            String.class, String.class, String.class, int.class, boolean.class, int.class, int.class
+        });
+    methodSplit = new EventType(jfr, "MethodSplit", "Method Split", //
+        new String[] {
+            "className", "method", "parts", "size"
+        }, new String[] {
+            "Class Name", "Method", "Parts", "Method Size" + BYTES
+        }, new Class<?>[] {
+            String.class, String.class, int.class, int.class
+        });
+    classDefined = new EventType(jfr, "ClassDefine", "Class Define", //
+        new String[] {
+            "className", "size"
+        }, new String[] {
+            "Class Name", "Classfile Size" + BYTES
+        }, new Class<?>[] {
+            String.class, int.class
+        });
+    cacheLookup = new EventType(jfr, "CacheLookup", "Cache Lookup", //
+        new String[] {
+            "className", "hit"
+        }, new String[] {
+            "Class Name", "Hit"
+        }, new Class<?>[] {
+            String.class, boolean.class
+        });
+  }
+  
+  @Override
+  public Object begin(final SpecializationStep step) {
+    switch (step) {
+      case CLASS_READ:
+        return classRead.begin();
+      case PASS_RUN:
+        return passRun.begin();
+      case METHOD_SPLIT:
+        return methodSplit.begin();
+      case CLASS_DEFINE:
+        return classDefined.begin();
+      default:
+        return null;
+    }
+  }
+  
+  @Override
+  public void classRead(final Object begun, final String className, final int size, final long duration) {
+    classRead.end(begun, className, Integer.valueOf(size));
+  }
+  
+  @Override
+  public void passRun(final Object begun, final String className, final String method, final String optimizer,
+      final int iteration, final boolean optimized, final int sizeBefore, final int sizeAfter, final long duration) {
+    passRun.end(begun, className, method, optimizer, Integer.valueOf(iteration), Boolean.valueOf(optimized),
+        Integer.valueOf(sizeBefore), Integer.valueOf(sizeAfter));
+  }
+  
+  @Override
+  public void methodSplit(final Object begun, final String className, final String method, final int parts,
+      final int size, final long duration) {
+    methodSplit.end(begun, className, method, Integer.valueOf(parts), Integer.valueOf(size));
+  }
+  
+  @Override
+  public void classDefined(final Object begun, final String className, final int size, final long duration) {
+    classDefined.end(begun, className, Integer.valueOf(size));
+  }
+  
+  @Override
+  public void cacheLookup(final String className, final boolean hit) {
+    // an instant event: no begin / end
+    cacheLookup.commit(cacheLookup.newEvent(), className, Boolean.valueOf(hit));
+  }
+  
+  /**
+   * The reflectively accessed parts of the jdk.jfr-API.
+   */
+  private static final class Jfr {
+    
+    private final Constructor<?> annotationElement;
+    private final Constructor<?> valueDescriptor;
+    private final Method create;
+    private final Class<?> name;
+    private final Class<?> label;
+    private final Class<?> category;
+    private final Class<?> dataAmount;
+    
+    Jfr() throws ReflectiveOperationException {
+      annotationElement = Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class, Object.class);
+      valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class,
+          List.class);
+      create = Class.forName("jdk.jfr.EventFactory").getMethod("create", List.class, List.class);
+      name = Class.forName("jdk.jfr.Name");
+      label = Class.forName("jdk.jfr.Label");
+      category = Class.forName("jdk.jfr.Category");
+      dataAmount = Class.forName("jdk.jfr.DataAmount");
+    }
+    
+    Object annotation(final Class<?> type, final Object value) throws ReflectiveOperationException {
+      return annotationElement.newInstance(type.asSubclass(Annotation.class), value);
+    }
+  }
+  
+  /**
+   * One type of events (a <code>jdk.jfr.EventFactory</code>).
+   */
+  private static final class EventType {
+    
+    private final Object factory;
+    private final Method newEvent;
+    private final Method isEnabled;
+    private final Method set;
+    private final Method begin;
+    private final Method end;
+    private final Method commit;
+    
+    EventType(final Jfr jfr, final String name, final String label, final String[] fieldNames,
+        final String[] fieldLabels, final Class<?>[] fieldTypes) throws ReflectiveOperationException {
+      final List<Object> annotations = Arrays.asList(jfr.annotation(jfr.name, PREFIX + name),
+          jfr.annotation(jfr.label, label), jfr.annotation(jfr.category, new String[] {
+            CATEGORY
+          }));
+      final List<Object> fields = new ArrayList<>();
+      for (int i = 0; i < fieldNames.length; ++i) {
+        final List<Object> fieldAnnotations = new ArrayList<>();
+        fieldAnnotations.add(jfr.annotation(jfr.label, fieldLabels[i]));
+        if (fieldLabels[i].endsWith(BYTES)) {
+          fieldAnnotations.add(jfr.annotation(jfr.dataAmount, "BYTES"));
+        }
+        fields.add(jfr.valueDescriptor.newInstance(fieldTypes[i], fieldNames[i], fieldAnnotations));
+      }
+      factory = jfr.create.invoke(null, annotations, fields);
+      newEvent = factory.getClass().getMethod("newEvent");
+      final Class<?> event = Class.forName("jdk.jfr.Event");
+      isEnabled = event.getMethod("isEnabled");
+      set = event.getMethod("set", int.class, Object.class);
+      begin = event.getMethod("begin");
+      end = event.getMethod("end");
+      commit = event.getMethod("commit");
+    }
+    
+    /**
+     * Creates a new event.
+     * 
+     * @return the event or null if the event type is not enabled
+     */
+    Object newEvent() {
+      try {
+        final Object event = newEvent.invoke(factory);
+        return ((Boolean) isEnabled.invoke(event)).booleanValue() ? event : null;
+      } catch (IllegalAccessException | InvocationTargetException e) {
+        return null;
+      }
+    }
+    
+    /**
+     * Creates a new event and begins the timing.
+     * 
+     * @return the event or null if the event type is not enabled
+     */
+    Object begin() {
+      final Object event = newEvent();
+      if (event == null) {
+        return null;
+      }
+      try {
+        begin.invoke(event);
+        return event;
+      } catch (IllegalAccessException | InvocationTargetException e) {
+        return null;
+      }
+    }
+    
+    /**
+     * Ends the timing of the begun event and commits it.
+     */
+    void end(final Object event, final Object... values) {
+      if (event == null) {
+        return;
+      }
+      try {
+        end.invoke(event);
+      } catch (IllegalAccessException | InvocationTargetException e) {
+        return;
+      }
+      commit(event, values);
+    }
+    
+    void commit(final Object event, final Object... values) {
+      if (event == null) {
+        return;
+      }
+      try {
+        for (int i = 0; i < values.length; ++i) {
+          set.invoke(event, Integer.valueOf(i), values[i]);
+        }
+        commit.invoke(event);
+      } catch (IllegalAccessException | InvocationTargetException e) {
+        // events must never break the specialization
+        return;
+      }
+    }
+  }
+}
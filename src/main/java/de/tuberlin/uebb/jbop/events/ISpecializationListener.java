@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.events;
+
+/**
+ * The Interface ISpecializationListener.
+ * 
+ * Is notified about the steps of the specialization (see {@link SpecializationEvents}).
+ * 
+ * Before the work of a measured step is done, {@link #begin(SpecializationStep)} is called. Its result is passed
+ * to the event method of the step, which is called after the work is done (on the same thread). If the step fails,
+ * the event method is not called. Steps may be nested.
+ * 
+ * All durations are in nanoseconds. The sizes of classfiles and methods are in bytes, only the sizes of
+ * {@link #passRun(Object, String, String, String, int, boolean, int, int, long) passRun} are numbers of
+ * instructions (the nodes of the method, including labels and line numbers).
+ * 
+ * @author Christopher Ewest
+ */
+public interface ISpecializationListener {
+  
+  /**
+   * A measured step begins.
+   * 
+   * @param step
+   *          the step
+   * @return an Object of the listener that is passed to the event method of the step (may be null)
+   */
+  Object begin(SpecializationStep step);
+  
+  /**
+   * A classfile was read.
+   * 
+   * @param begun
+   *          the result of {@link #begin(SpecializationStep)}
+   * @param className
+   *          the name of the class
+   * @param size
+   *          the size of the classfile in bytes
+   * @param duration
+   *          the duration
+   */
+  void classRead(Object begun, String className, int size, long duration);
+  
+  /**
+   * An optimizer ran on a method.
+   * 
+   * @param begun
+   *          the result of {@link #begin(SpecializationStep)}
+   * @param className
+   *          the internal name of the class
+   * @param method
+   *          the name and descriptor of the method
+   * @param optimizer
+   *          the name of the optimizer
+   * @param iteration
+   *          the iteration of the optimizers
+   * @param optimized
+   *          whether the optimizer made changes
+   * @param sizeBefore
+   *          the number of instructions before the run (not bytes)
+   * @param sizeAfter
+   *          the number of instructions after the run (not bytes)
+   * @param duration
+   *          the duration
+   */
+  void passRun(Object begun, String className, String method, String optimizer, int iteration,
+      boolean optimized, int sizeBefore, int sizeAfter, long duration);
+  
+  /**
+   * A method was split.
+   * 
+   * @param begun
+   *          the result of {@link #begin(SpecializationStep)}
+   * @param className
+   *          the internal name of the class
+   * @param method
+   *          the name and descriptor of the method
+   * @param parts
+   *          the number of created methods
+   * @param size
+   *          the bytecode size of the method before splitting in bytes
+   * @param duration
+   *          the duration
+   */
+  void methodSplit(Object begun, String className, String method, int parts, int size, long duration);
+  
+  /**
+   * An optimized class was defined and instantiated.
+   * 
+   * @param begun
+   *          the result of {@link #begin(SpecializationStep)}
+   * @param className
+   *          the name of the class
+   * @param size
+   *          the size of the classfile in bytes
+   * @param duration
+   *          the duration
+   */
+  void classDefined(Object begun, String className, int size, long duration);
+  
+  /**
+   * The cache of optimized instances was queried.
+   * 
+   * @param className
+   *          the name of the class of the input
+   * @param hit
+   *          whether an optimized instance was found
+   */
+  void cacheLookup(String className, boolean hit);
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.events;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The Class SpecializationEvents.
+ * 
+ * Dispatches the events of the specialization to the registered {@link ISpecializationListener}s.
+ * 
+ * If no listener is registered ({@link #isEnabled()}) the callers should skip measuring
+ * so that the events cost nothing.
+ * 
+ * A measured step is started with {@link #begin(SpecializationStep)} before its work is done,
+ * the returned {@link Measurement} is passed to the event method after the work.
+ * 
+ * With {@link #enableFlightRecorder()} the events are emitted as Java Flight Recorder events,
+ * if the running JVM supports this.
+ * 
+ * @author Christopher Ewest
+ */
+public final class SpecializationEvents {
+  
+  private static final List<ISpecializationListener> LISTENERS = new CopyOnWriteArrayList<>();
+  private static volatile boolean enabled;
+  private static FlightRecorderListener flightRecorder;
+  
+  private SpecializationEvents() {
+    //
+  }
+  
+  /**
+   * Adds the listener.
+   * 
+   * @param listener
+   *          the listener
+   */
+  public static synchronized void addListener(final ISpecializationListener listener) {
+    LISTENERS.add(listener);
+    enabled = true;
+  }
+  
+  /**
+   * Removes the listener.
+   * 
+   * @param listener
+   *          the listener
+   */
+  public static synchronized void removeListener(final ISpecializationListener listener) {
+    LISTENERS.remove(listener);
+    enabled = !LISTENERS.isEmpty();
+  }
+  
+  /**
+   * Registers a listener that emits the events as Java Flight Recorder events
+   * (category "jBOP").
+   * 
+   * @return true, if the running JVM supports Java Flight Recorder
+   */
+  public static synchronized boolean enableFlightRecorder() {
+    if (flightRecorder == null) {
+      try {
+        flightRecorder = new FlightRecorderListener();
+      } catch (final ReflectiveOperationException | LinkageError e) {
+        return false;
+      }
+    }
+    if (!LISTENERS.contains(flightRecorder)) {
+      addListener(flightRecorder);
+    }
+    return true;
+  }
+  
+  /**
+   * Removes the Java Flight Recorder listener.
+   */
+  public static synchronized void disableFlightRecorder() {
+    if (flightRecorder != null) {
+      removeListener(flightRecorder);
+    }
+  }
+  
+  /**
+   * Checks if there is any listener.
+   * 
+   * @return true, if is enabled
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+  
+  /**
+   * Begins a measured step: calls {@link ISpecializationListener#begin(SpecializationStep)} of the listeners.
+   * 
+   * @param step
+   *          the step
+   * @return the measurement, that is passed to the event method of the step
+   */
+  public static Measurement begin(final SpecializationStep step) {
+    return new Measurement(step);
+  }
+  
+  /**
+   * Fires {@link ISpecializationListener#classRead(Object, String, int, long)}.
+   * 
+   * @param measurement
+   *          the result of {@link #begin(SpecializationStep)}
+   * @param className
+   *          the class name
+   * @param size
+   *          the size of the classfile in bytes
+   * @param duration
+   *          the duration
+   */
+  public static void classRead(final Measurement measurement, final String className, final int size,
+      final long duration) {
+    for (int i = 0; i < measurement.listeners.length; ++i) {
+      measurement.listeners[i].classRead(measurement.begun[i], className, size, duration);
+    }
+  }
+  
+  /**
+   * Fires {@link ISpecializationListener#passRun(Object, String, String, String, int, boolean, int, int, long)}.
+   * 
+   * @param measurement
+   *          the result of {@link #begin(SpecializationStep)}
+   * @param className
+   *          the class name
+   * @param method
+   *          the method
+   * @param optimizer
+   *          the optimizer
+   * @param iteration
+   *          the iteration
+   * @param optimized
+   *          the optimized
+   * @param sizeBefore
+   *          the number of instructions before the run
+   * @param sizeAfter
+   *          the number of instructions after the run
+   * @param duration
+   *          the duration
+   */
+  public static void passRun(final Measurement measurement, final String className, final String method,
+      final String optimizer, final int iteration, final boolean optimized, final int sizeBefore,
+      final int sizeAfter, final long duration) {
+    for (int i = 0; i < measurement.listeners.length; ++i) {
+      measurement.listeners[i].passRun(measurement.begun[i], className, method, optimizer, iteration, optimized,
+          sizeBefore, sizeAfter, duration);
+    }
+  }
+  
+  /**
+   * Fires {@link ISpecializationListener#methodSplit(Object, String, String, int, int, long)}.
+   * 
+   * @param measurement
+   *          the result of {@link #begin(SpecializationStep)}
+   * @param className
+   *          the class name
+   * @param method
+   *          the method
+   * @param parts
+   *          the parts
+   * @param size
+   *          the bytecode size of the method in bytes
+   * @param duration
+   *          the duration
+   */
+  public static void methodSplit(final Measurement measurement, final String className, final String method,
+      final int parts, final int size, final long duration) {
+    for (int i = 0; i < measurement.listeners.length; ++i) {
+      measurement.listeners[i].methodSplit(measurement.begun[i], className, method, parts, size, duration);
+    }
+  }
+  
+  /**
+   * Fires {@link ISpecializationListener#classDefined(Object, String, int, long)}.
+   * 
+   * @param measurement
+   *          the result of {@link #begin(SpecializationStep)}
+   * @param className
+   *          the class name
+   * @param size
+   *          the size of the classfile in bytes
+   * @param duration
+   *          the duration
+   */
+  public static void classDefined(final Measurement measurement, final String className, final int size,
+      final long duration) {
+    for (int i = 0; i < measurement.listeners.length; ++i) {
+      measurement.listeners[i].classDefined(measurement.begun[i], className, size, duration);
+    }
+  }
+  
+  /**
+   * Fires {@link ISpecializationListener#cacheLookup(String, boolean)}.
+   * 
+   * @param className
+   *          the class name
+   * @param hit
+   *          the hit
+   */
+  public static void cacheLookup(final String className, final boolean hit) {
+    for (final ISpecializationListener listener : LISTENERS) {
+      listener.cacheLookup(className, hit);
+    }
+  }
+  
+  /**
+   * A begun step. Holds the listeners registered at the beginning and their results of
+   * {@link ISpecializationListener#begin(SpecializationStep)}.
+   */
+  public static final class Measurement {
+    
+    private final ISpecializationListener[] listeners;
+    private final Object[] begun;
+    
+    Measurement(final SpecializationStep step) {
+      listeners = LISTENERS.toArray(new ISpecializationListener[0]);
+      begun = new Object[listeners.length];
+      for (int i = 0; i < listeners.length; ++i) {
+        begun[i] = listeners[i].begin(step);
+      }
+    }
+  }
+}
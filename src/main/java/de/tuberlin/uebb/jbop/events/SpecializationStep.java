@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.events;
+
+/**
+ * The measured steps of the specialization (see {@link ISpecializationListener#begin(SpecializationStep)}).
+ * 
+ * @author Christopher Ewest
+ */
+public enum SpecializationStep {
+  
+  /** A classfile is read. */
+  CLASS_READ,
+  /** An optimizer runs on a method. */
+  PASS_RUN,
+  /** A method is split. */
+  METHOD_SPLIT,
+  /** An optimized class is defined and instantiated. */
+  CLASS_DEFINE
+}
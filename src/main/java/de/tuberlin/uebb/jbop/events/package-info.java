@@ -0,0 +1,4 @@
+/**
+ * This package contains the events of the specialization lifecycle (e.g. for Java Flight Recorder).
+ */
+package de.tuberlin.uebb.jbop.events;
\ No newline at end of file
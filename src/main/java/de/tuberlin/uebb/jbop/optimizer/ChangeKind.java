@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer;
+
+/**
+ * The kinds of changes an {@link IOptimizer} could make to an instructionlist.
+ * 
+ * Used by the {@link PassScheduler} to decide which optimizers have to run again
+ * (see {@link IChangeAware}).
+ * 
+ * @author Christopher Ewest
+ */
+public enum ChangeKind {
+  
+  /** Instructions were replaced by constants (xCONST, BIPUSH, SIPUSH, LDC). */
+  CONSTANTS,
+  /** Loads / stores / iincs of local variables were added or removed. */
+  LOCALS,
+  /** Jumps, labels or whole branches were added or removed. */
+  CONTROL_FLOW,
+  /** New instructions were created (eg. copies of loop bodies). */
+  CODE
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+/**
+ * The Class DirtyRegions.
+ * <p>
+ * Tracks the regions of a method an {@link IRegionAware} optimizer has to examine in its next run.
+ * <p>
+ * The {@link PassScheduler} collects the nodes changed by the optimizers (see {@link #markChanged(AbstractInsnNode)}).
+ * Before the next run of an optimizer the basic blocks containing these nodes are computed
+ * ({@link #prepare(MethodNode)}). A node is dirty if it is part of such a block, of a successor of such a block or of
+ * the block right before it (the optimizers match patterns of adjacent instructions, which may span a label).
+ * <p>
+ * Initially the whole method is dirty.
+ *
+ * @author Christopher Ewest
+ */
+public class DirtyRegions {
+
+  private final Set<AbstractInsnNode> changed = newIdentitySet();
+  private final Set<AbstractInsnNode> dirty = newIdentitySet();
+  private final List<AbstractInsnNode> changes = new ArrayList<>();
+  private boolean all = true;
+
+  /**
+   * Marks the whole method as dirty.
+   */
+  public void markAll() {
+    all = true;
+    changed.clear();
+    dirty.clear();
+  }
+
+  /**
+   * Adds nodes that were changed by other optimizers.
+   *
+   * @param nodes
+   *          the changed nodes
+   */
+  public void addChanged(final Collection<AbstractInsnNode> nodes) {
+    if (!all) {
+      changed.addAll(nodes);
+    }
+  }
+
+  /**
+   * Checks if the whole method is dirty.
+   *
+   * @return true, if is all
+   */
+  public boolean isAll() {
+    return all;
+  }
+
+  /**
+   * Computes the dirty nodes of the method from the changed nodes.
+   *
+   * @param methodNode
+   *          the method node
+   */
+  public void prepare(final MethodNode methodNode) {
+    dirty.clear();
+    if (all || changed.isEmpty()) {
+      return;
+    }
+    final Map<LabelNode, Integer> leaders = getLeaders(methodNode);
+    final List<AbstractInsnNode> starts = new ArrayList<>();
+    final List<AbstractInsnNode> lasts = new ArrayList<>();
+    final BitSet changedBlocks = new BitSet();
+    AbstractInsnNode last = null;
+    for (AbstractInsnNode node = methodNode.instructions.getFirst(); node != null; node = node.getNext()) {
+      if ((last == null) || isEnd(last) || leaders.containsKey(node)) {
+        if (last != null) {
+          lasts.add(last);
+        }
+        if (node instanceof LabelNode && leaders.containsKey(node)) {
+          leaders.put((LabelNode) node, Integer.valueOf(starts.size()));
+        }
+        starts.add(node);
+      }
+      if (changed.contains(node)) {
+        changedBlocks.set(starts.size() - 1);
+      }
+      last = node;
+    }
+    if (last != null) {
+      lasts.add(last);
+    }
+    final BitSet dirtyBlocks = new BitSet();
+    for (int block = changedBlocks.nextSetBit(0); block >= 0; block = changedBlocks.nextSetBit(block + 1)) {
+      dirtyBlocks.set(Math.max(0, block - 1), Math.min(starts.size(), block + 2));
+      for (final LabelNode target : getTargets(lasts.get(block))) {
+        final Integer targetBlock = leaders.get(target);
+        if (targetBlock != null && targetBlock.intValue() >= 0) {
+          dirtyBlocks.set(targetBlock.intValue());
+        }
+      }
+    }
+    for (int block = dirtyBlocks.nextSetBit(0); block >= 0; block = dirtyBlocks.nextSetBit(block + 1)) {
+      final AbstractInsnNode end = lasts.get(block).getNext();
+      for (AbstractInsnNode node = starts.get(block); node != end; node = node.getNext()) {
+        dirty.add(node);
+      }
+    }
+  }
+
+  /**
+   * Checks if the node has to be examined by the optimizer.
+   *
+   * @param node
+   *          the node
+   * @return true, if is dirty
+   */
+  public boolean isDirty(final AbstractInsnNode node) {
+    return all || dirty.contains(node);
+  }
+
+  /**
+   * Reports a node (or a node of the region) that was changed by the optimizer.
+   *
+   * The node has to be part of the instructions after the change,
+   * e.g. a replacement instead of the replaced nodes.
+   *
+   * @param node
+   *          the node
+   */
+  public void markChanged(final AbstractInsnNode node) {
+    if (node != null) {
+      changes.add(node);
+      dirty.add(node);
+    }
+  }
+
+  /**
+   * Gets the nodes reported by the optimizer since the last {@link #clear()}.
+   *
+   * @return the changes
+   */
+  public List<AbstractInsnNode> getChanges() {
+    return Collections.unmodifiableList(changes);
+  }
+
+  /**
+   * Marks everything as examined, the reported changes are discarded.
+   */
+  public void clear() {
+    all = false;
+    changed.clear();
+    dirty.clear();
+    changes.clear();
+  }
+
+  private static Map<LabelNode, Integer> getLeaders(final MethodNode methodNode) {
+    final Integer unknown = Integer.valueOf(-1);
+    final Map<LabelNode, Integer> leaders = new IdentityHashMap<>();
+    for (AbstractInsnNode node = methodNode.instructions.getFirst(); node != null; node = node.getNext()) {
+      for (final LabelNode target : getTargets(node)) {
+        leaders.put(target, unknown);
+      }
+    }
+    if (methodNode.tryCatchBlocks != null) {
+      for (final TryCatchBlockNode block : methodNode.tryCatchBlocks) {
+        leaders.put(block.start, unknown);
+        leaders.put(block.end, unknown);
+        leaders.put(block.handler, unknown);
+      }
+    }
+    return leaders;
+  }
+
+  private static List<LabelNode> getTargets(final AbstractInsnNode node) {
+    if (node instanceof JumpInsnNode) {
+      return Collections.singletonList(((JumpInsnNode) node).label);
+    }
+    if (node instanceof TableSwitchInsnNode) {
+      final TableSwitchInsnNode tableSwitch = (TableSwitchInsnNode) node;
+      final List<LabelNode> targets = new ArrayList<>(tableSwitch.labels);
+      targets.add(tableSwitch.dflt);
+      return targets;
+    }
+    if (node instanceof LookupSwitchInsnNode) {
+      final LookupSwitchInsnNode lookupSwitch = (LookupSwitchInsnNode) node;
+      final List<LabelNode> targets = new ArrayList<>(lookupSwitch.labels);
+      targets.add(lookupSwitch.dflt);
+      return targets;
+    }
+    return Collections.emptyList();
+  }
+
+  private static boolean isEnd(final AbstractInsnNode node) {
+    final int opcode = node.getOpcode();
+    if (node instanceof JumpInsnNode || node instanceof TableSwitchInsnNode || node instanceof LookupSwitchInsnNode) {
+      return true;
+    }
+    return ((opcode >= Opcodes.IRETURN) && (opcode <= Opcodes.RETURN)) || (opcode == Opcodes.ATHROW);
+  }
+
+  private static Set<AbstractInsnNode> newIdentitySet() {
+    return Collections.newSetFromMap(new IdentityHashMap<AbstractInsnNode, Boolean>());
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer;
+
+import java.util.Set;
+
+/**
+ * The Interface IChangeAware.
+ * 
+ * An {@link IOptimizer} implementing this interface declares which kinds of changes
+ * could enable it and which kinds of changes it makes itself.
+ * The {@link PassScheduler} only reruns an optimizer if another optimizer made a change that enables it.
+ * 
+ * Optimizers that don't implement this interface are rerun after every change.
+ * 
+ * @author Christopher Ewest
+ */
+public interface IChangeAware {
+  
+  /**
+   * Gets the changes that could enable this optimizer to optimize (again).
+   * 
+   * @return the enabling changes
+   */
+  Set<ChangeKind> getEnablingChanges();
+  
+  /**
+   * Gets the changes this optimizer makes, if {@link IOptimizer#isOptimized()} is true.
+   * 
+   * @return the produced changes
+   */
+  Set<ChangeKind> getProducedChanges();
+  
+}
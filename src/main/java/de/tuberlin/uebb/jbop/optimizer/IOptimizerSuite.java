@@ -1,5 +1,7 @@
 package de.tuberlin.uebb.jbop.optimizer;
 
+import de.tuberlin.uebb.jbop.OptimizerStatistic;
+import de.tuberlin.uebb.jbop.access.IInstanceFactory;
 import de.tuberlin.uebb.jbop.exception.JBOPClassException;
 
 /**
@@ -12,8 +14,18 @@ public interface IOptimizerSuite {
    */
   <T> T optimize(final T input, String suffix) throws JBOPClassException;
   
-  // /**
-  // * return a statistic of the used steps
-  // */
-  // OptimizerStatistic getStats();
+  /**
+   * Optimize the given method of the Object for constant arguments.
+   */
+  <T> T specialize(final T input, String methodName, Object... constantArgs) throws JBOPClassException;
+  
+  /**
+   * Create a factory for instances like the optimized Object.
+   */
+  <T> IInstanceFactory<T> createFactory(final T optimized) throws JBOPClassException;
+  
+  /**
+   * return a statistic of the used steps.
+   */
+  OptimizerStatistic getStats();
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer;
+
+/**
+ * The Interface IRegionAware.
+ *
+ * An {@link IOptimizer} implementing this interface only examines the dirty nodes
+ * ({@link DirtyRegions#isDirty(org.objectweb.asm.tree.AbstractInsnNode)}) and reports every change it makes
+ * ({@link DirtyRegions#markChanged(org.objectweb.asm.tree.AbstractInsnNode)}), so that
+ * the {@link PassScheduler} can pass the changed regions to the other optimizers.
+ *
+ * If the regions are null the whole method is examined.
+ *
+ * @author Christopher Ewest
+ */
+public interface IRegionAware {
+
+  /**
+   * Sets the regions for the next run.
+   *
+   * @param regions
+   *          the regions (may be null)
+   */
+  void setDirtyRegions(DirtyRegions regions);
+
+}
@@ -19,15 +19,29 @@
 package de.tuberlin.uebb.jbop.optimizer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.collections15.Predicate;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.AnnotationNode;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
 
+import de.tuberlin.uebb.jbop.MethodSizeReport;
+import de.tuberlin.uebb.jbop.OptimizerStatistic;
+import de.tuberlin.uebb.jbop.access.ClassAccessor;
+import de.tuberlin.uebb.jbop.access.FactoryBuilder;
+import de.tuberlin.uebb.jbop.access.IInstanceFactory;
 import de.tuberlin.uebb.jbop.access.OptimizerUtils;
+import de.tuberlin.uebb.jbop.events.SpecializationEvents;
+import de.tuberlin.uebb.jbop.events.SpecializationEvents.Measurement;
+import de.tuberlin.uebb.jbop.events.SpecializationStep;
 import de.tuberlin.uebb.jbop.exception.JBOPClassException;
 import de.tuberlin.uebb.jbop.optimizer.annotations.AdditionalSteps;
 import de.tuberlin.uebb.jbop.optimizer.annotations.StrictLoops;
@@ -37,12 +51,22 @@ import de.tuberlin.uebb.jbop.optimizer.array.FieldArrayValueInliner;
 import de.tuberlin.uebb.jbop.optimizer.array.LocalArrayLengthInliner;
 import de.tuberlin.uebb.jbop.optimizer.array.LocalArrayValueInliner;
 import de.tuberlin.uebb.jbop.optimizer.controlflow.ConstantIfInliner;
+import de.tuberlin.uebb.jbop.optimizer.controlflow.JumpThreader;
+import de.tuberlin.uebb.jbop.optimizer.intrinsics.BoxingEliminator;
+import de.tuberlin.uebb.jbop.optimizer.intrinsics.IntrinsicFolder;
+import de.tuberlin.uebb.jbop.optimizer.intrinsics.StringBuilderFolder;
 import de.tuberlin.uebb.jbop.optimizer.loop.ForLoopUnroller;
+import de.tuberlin.uebb.jbop.optimizer.loop.LoopInvariantCodeMotion;
+import de.tuberlin.uebb.jbop.optimizer.methodsplitter.JitThresholds;
 import de.tuberlin.uebb.jbop.optimizer.methodsplitter.MethodSplitter;
+import de.tuberlin.uebb.jbop.optimizer.peephole.PeepholeOptimizer;
 import de.tuberlin.uebb.jbop.optimizer.utils.predicates.OptimizablePredicate;
+import de.tuberlin.uebb.jbop.optimizer.var.ArgumentInliner;
 import de.tuberlin.uebb.jbop.optimizer.var.FinalFieldInliner;
 import de.tuberlin.uebb.jbop.optimizer.var.LocalVarInliner;
 import de.tuberlin.uebb.jbop.optimizer.var.RemoveUnusedLocalVars;
+import de.tuberlin.uebb.jbop.optimizer.var.StaticFieldInliner;
+import de.tuberlin.uebb.jbop.optimizer.var.TypeCheckFolder;
 
 /**
  * The Main class for optimizing.
@@ -58,15 +82,26 @@ import de.tuberlin.uebb.jbop.optimizer.var.RemoveUnusedLocalVars;
  * </ol>
  * 
  * Uses a cache to deliver already optimized classes.
+ * Classes specialized at build time are loaded directly ({@link de.tuberlin.uebb.jbop.access.SpecializationIndex}).
+ * 
+ * Methods can be specialized for constant arguments, too ({@link #specialize(Object, String, Object...)}).
+ * 
+ * Further instances of an optimized class can be created by a factory ({@link #createFactory(Object)}).
  * 
  * @author Christopher Ewest
  */
 public class Optimizer implements IOptimizerSuite {
   
+  private static final AtomicInteger VARIANTS = new AtomicInteger();
+  
   private final Predicate<MethodNode> optimizeThis = new OptimizablePredicate();
   private int methodLength = MethodSplitter.MAX_LENGTH;
-  
-  // private final OptimizerStatistic stats = new OptimizerStatistic();
+  private int partLength = MethodSplitter.MAX_LENGTH;
+  private JitThresholds jitThresholds = JitThresholds.DEFAULT;
+  private volatile MethodSizeReport sizeReport = new MethodSizeReport(jitThresholds);
+  private int maxIterations = PassScheduler.DEFAULT_MAX_ITERATIONS;
+  private long timeBudget = PassScheduler.DEFAULT_TIME_BUDGET;
+  private final OptimizerStatistic stats = new OptimizerStatistic();
   
   /**
    * Optimize the given inputObject and return a new Instance of the optimized Class.
@@ -83,71 +118,231 @@ public class Optimizer implements IOptimizerSuite {
    */
   @Override
   public <T> T optimize(final T input, final String suffix) throws JBOPClassException {
-    if (OptimizerUtils.existsInstance(input)) {
+    final boolean cached = OptimizerUtils.existsInstance(input);
+    if (SpecializationEvents.isEnabled()) {
+      SpecializationEvents.cacheLookup(input.getClass().getName(), cached);
+    }
+    if (cached) {
       return OptimizerUtils.getInstanceFor(input);
     }
+    final T precompiled = OptimizerUtils.getPrecompiledInstance(input);
+    if (precompiled != null) {
+      return precompiled;
+    }
     
     final ClassNode classNode = OptimizerUtils.readClass(input);
+    return optimize(classNode, null, input, suffix, input);
+  }
+  
+  /**
+   * Specialize the given method of the inputObject for constant arguments and return a new Instance
+   * of the optimized Class.
+   * 
+   * The parameters of the method are replaced by the constant arguments ({@link ArgumentInliner}),
+   * so that they can be folded like constant fields.
+   * The method is optimized like all methods marked with <code>@</code>Optimizable (which are optimized, too).
+   * 
+   * Each combination of input (by identity), method and arguments is a variant of its own, which is cached.
+   * The specialized method of the returned instance checks the arguments it is called with: if they differ
+   * from the constant arguments, a copy of the original method is called instead
+   * (see {@link ArgumentInliner#addGuard(MethodNode, String, MethodNode)}).
+   * 
+   * @param <T>
+   *          the type of the Object to optimize
+   * @param input
+   *          the input-Object to optimize
+   * @param methodName
+   *          the name of the method
+   * @param constantArgs
+   *          the constant arguments (null for parameters that are not constant)
+   * @return the optimized instance
+   * @throws JBOPClassException
+   *           if there is no (or more than one) method the arguments match or one of the steps fails.
+   */
+  @Override
+  public <T> T specialize(final T input, final String methodName, final Object... constantArgs)
+      throws JBOPClassException {
+    final List<Object> key = Arrays.asList(new IdentityKey(input), methodName, Arrays.asList(constantArgs));
+    final boolean cached = OptimizerUtils.existsInstance(key);
+    if (SpecializationEvents.isEnabled()) {
+      SpecializationEvents.cacheLookup(input.getClass().getName(), cached);
+    }
+    if (cached) {
+      return OptimizerUtils.getInstanceFor(key);
+    }
+    
+    final ClassNode classNode = OptimizerUtils.readClass(input);
+    final ArgumentInliner argumentInliner = new ArgumentInliner(constantArgs);
+    final MethodNode methodNode = getMethod(classNode, methodName, argumentInliner);
+    final MethodNode fallback = copyMethod(methodNode, methodName + "__original");
+    classNode.methods.add(fallback);
+    methodNode.instructions = argumentInliner.optimize(methodNode.instructions, methodNode);
+    argumentInliner.addGuard(methodNode, classNode.name, fallback);
+    return optimize(classNode, methodNode, input, "_" + methodName + "_" + VARIANTS.incrementAndGet(), key);
+  }
+  
+  /**
+   * Create a factory for new instances of the class of an optimized instance
+   * (returned by {@link #optimize(Object, String)} or {@link #specialize(Object, String, Object...)}).
+   * 
+   * The new instances have the current field values of the optimized instance,
+   * arrays without <code>@</code>ImmutableArray are copied for every instance (see {@link IInstanceFactory}).
+   * 
+   * @param <T>
+   *          the type of the optimized Object
+   * @param optimized
+   *          the optimized instance
+   * @return the factory
+   * @throws JBOPClassException
+   *           if the factory couldn't be created.
+   */
+  @Override
+  public <T> IInstanceFactory<T> createFactory(final T optimized) throws JBOPClassException {
+    return FactoryBuilder.createFactory(optimized);
+  }
+  
+  private MethodNode getMethod(final ClassNode classNode, final String methodName,
+      final ArgumentInliner argumentInliner) throws JBOPClassException {
+    MethodNode result = null;
+    for (final MethodNode methodNode : classNode.methods) {
+      if (!methodName.equals(methodNode.name) || !argumentInliner.matches(methodNode.desc)) {
+        continue;
+      }
+      if (result != null) {
+        throw new JBOPClassException("The method " + methodName + " of " + classNode.name
+            + " is ambiguous for the given arguments.", null);
+      }
+      result = methodNode;
+    }
+    if (result == null) {
+      throw new JBOPClassException("There is no method " + methodName + " in " + classNode.name
+          + " matching the given arguments.", null);
+    }
+    return result;
+  }
+  
+  /**
+   * Creates a private copy of the method with the given name, that is called by the guard of the specialized method.
+   */
+  private static MethodNode copyMethod(final MethodNode methodNode, final String name) {
+    final int access = (methodNode.access & (Opcodes.ACC_STATIC | Opcodes.ACC_STRICT)) | Opcodes.ACC_PRIVATE
+        | Opcodes.ACC_SYNTHETIC;
+    final String[] exceptions = methodNode.exceptions.toArray(new String[methodNode.exceptions.size()]);
+    final MethodNode copy = new MethodNode(Opcodes.ASM5, access, name, methodNode.desc, methodNode.signature,
+        exceptions);
+    final LabelMap labels = new LabelMap();
+    for (final AbstractInsnNode node : methodNode.instructions.toArray()) {
+      copy.instructions.add(node.clone(labels));
+    }
+    for (final TryCatchBlockNode block : methodNode.tryCatchBlocks) {
+      copy.tryCatchBlocks.add(new TryCatchBlockNode(labels.get(block.start), labels.get(block.end), labels
+          .get(block.handler), block.type));
+    }
+    return copy;
+  }
+  
+  private <T> T optimize(final ClassNode classNode, final MethodNode specialized, final T input, final String suffix,
+      final Object key) throws JBOPClassException {
+    ClassAccessor.openSnapshot(input);
+    try {
+      optimizeMethods(classNode, specialized, input, true);
+    } finally {
+      ClassAccessor.closeSnapshot(input);
+    }
     
+    final long start = System.nanoTime();
+    final T instance = OptimizerUtils.createInstance(classNode, input, suffix, key);
+    stats.addClassDefinition(classNode.name, System.nanoTime() - start);
+    return instance;
+  }
+  
+  /**
+   * Optimize the methods marked with <code>@</code>Optimizable of the given class in place for the input.
+   * 
+   * In contrast to {@link #optimize(Object, String)} no methods are split, no fields are removed,
+   * no constructor is created and the class is not renamed, so the result can be used to redefine
+   * the class of the input (e.g. by an agent).
+   * The values of the input are inlined into the code of the class, so the input has to be the only instance.
+   * 
+   * @param classNode
+   *          the class node of the class of the input
+   * @param input
+   *          the input (the only instance of the class)
+   * @throws JBOPClassException
+   *           if on of the steps fails.
+   */
+  public void optimizeMethods(final ClassNode classNode, final Object input) throws JBOPClassException {
+    ClassAccessor.openSnapshot(input);
+    try {
+      optimizeMethods(classNode, null, input, false);
+    } finally {
+      ClassAccessor.closeSnapshot(input);
+    }
+  }
+  
+  private void optimizeMethods(final ClassNode classNode, final MethodNode specialized, final Object input,
+      final boolean split) throws JBOPClassException {
     final List<MethodNode> additionalMethods = new ArrayList<>();
+    // a new report per call, so that a long living optimizer doesn't collect the methods of all calls
+    final MethodSizeReport report = new MethodSizeReport(jitThresholds);
     for (final MethodNode methodNode : classNode.methods) {
-      if (optimizeThis.evaluate(methodNode)) {
+      if ((methodNode == specialized) || optimizeThis.evaluate(methodNode)) {
         
         final List<IOptimizer> optimizers = initOptimizers(classNode, methodNode, input);
         // stores newly created Methods (see de.tuberlin.uebb.jbop.optimizer.methodsplitter.MethodSplitter)
         // for later usage.
         // Direct adding to classNode.methods would cause a concurrentModification-Exception
-        additionalMethods.addAll(runOptimization(optimizers, methodNode, classNode));
+        final int sizeBefore = MethodSizeReport.getSize(methodNode);
+        final long start = System.nanoTime();
+        final PassScheduler scheduler = new PassScheduler(optimizers, maxIterations, timeBudget);
+        scheduler.setStatistic(stats);
+        scheduler.setOwner(classNode.name);
+        final List<MethodNode> splitMethods = runOptimization(scheduler, methodNode, classNode, split);
+        final long time = System.nanoTime() - start;
+        additionalMethods.addAll(splitMethods);
+        report.add(classNode.name, methodNode);
+        int sizeAfter = MethodSizeReport.getSize(methodNode);
+        for (final MethodNode splitMethod : splitMethods) {
+          report.add(classNode.name, splitMethod);
+          sizeAfter += MethodSizeReport.getSize(splitMethod);
+        }
+        stats.addMethod(classNode.name, methodNode.name + methodNode.desc, scheduler.getIterations(), sizeBefore,
+            sizeAfter, time);
       }
       
     }
     
     classNode.methods.addAll(additionalMethods);
-    
-    return OptimizerUtils.createInstance(classNode, input, suffix);
+    sizeReport = report;
   }
   
   /**
    * Perform the OptimizationSteps.
    * 
-   * Runs as long as one of the steps has made changes.
+   * Runs as long as one of the steps has made changes that could enable another step
+   * (see {@link PassScheduler}).
    * 
-   * At the end, the {@link MethodSplitter} runs.
+   * At the end, the {@link MethodSplitter} runs (if split is true).
    */
-  private List<MethodNode> runOptimization(final List<IOptimizer> optimizers, final MethodNode methodNode,
-      final ClassNode classNode) throws JBOPClassException {
-    boolean canOptimize = false;
-    // int counter = 1;
-    // final StringTable table = new StringTable();
-    // table.setDebug(true);
-    // table.addColumn("", "%03d");
-    // for (final IOptimizer optimizer : optimizers) {
-    // table.addColumn(StringUtils.abbreviate(optimizer.getClass().getSimpleName(), 12), "%1s");
-    // }
-    do {
-      // int step = 1;
-      // final Object[] results = new Object[optimizers.size() + 1];
-      // results[0] = Integer.valueOf(counter);
-      boolean optimized = false;
-      for (final IOptimizer optimizer : optimizers) {
-        methodNode.instructions = optimizer.optimize(methodNode.instructions, methodNode);
-        final boolean currentOptimizerHasOptimized = optimizer.isOptimized();
-        // results[step] = currentOptimizerHasOptimized ? "X" : " ";
-        // stats.addRun(optimizer, currentOptimizerHasOptimized);
-        optimized |= currentOptimizerHasOptimized;
-        // step++;
-      }
-      // table.addRow(results);
-      canOptimize = optimized;
-      // counter++;
-    } while (canOptimize);
-    
-    // table.setLatex(true);
-    // System.out.println(table);
+  private List<MethodNode> runOptimization(final PassScheduler scheduler, final MethodNode methodNode,
+      final ClassNode classNode, final boolean split) throws JBOPClassException {
+    scheduler.run(methodNode);
+    if (!split) {
+      return Collections.<MethodNode> emptyList();
+    }
     
-    final MethodSplitter methodSplitter = new MethodSplitter(classNode, methodLength);
+    final Measurement measurement = SpecializationEvents.isEnabled() ? SpecializationEvents
+        .begin(SpecializationStep.METHOD_SPLIT) : null;
+    final int size = measurement != null ? MethodSizeReport.getSize(methodNode) : 0;
+    final long start = System.nanoTime();
+    final MethodSplitter methodSplitter = new MethodSplitter(classNode, methodLength, partLength);
     methodNode.instructions = methodSplitter.optimize(methodNode.instructions, methodNode);
-    return methodSplitter.getAdditionalMethods();
+    final List<MethodNode> additionalMethods = methodSplitter.getAdditionalMethods();
+    if ((measurement != null) && !additionalMethods.isEmpty()) {
+      SpecializationEvents.methodSplit(measurement, classNode.name, methodNode.name + methodNode.desc, additionalMethods.size(),
+          size, System.nanoTime() - start);
+    }
+    return additionalMethods;
   }
   
   /**
@@ -170,6 +365,12 @@ public class Optimizer implements IOptimizerSuite {
     final FinalFieldInliner finalFieldInliner = new FinalFieldInliner();
     optimizers.add(finalFieldInliner);
     
+    final StaticFieldInliner staticFieldInliner = new StaticFieldInliner();
+    optimizers.add(staticFieldInliner);
+    
+    final IOptimizer typeChecks = new TypeCheckFolder();
+    optimizers.add(typeChecks);
+    
     initAdditionalSteps(methodNode, optimizers);
     
     final IOptimizer arrayLength = new FieldArrayLengthInliner();
@@ -184,6 +385,15 @@ public class Optimizer implements IOptimizerSuite {
     final IOptimizer localVars = new LocalVarInliner();
     optimizers.add(localVars);
     
+    final IOptimizer boxing = new BoxingEliminator();
+    optimizers.add(boxing);
+    
+    final IOptimizer intrinsics = new IntrinsicFolder();
+    optimizers.add(intrinsics);
+    
+    final IOptimizer stringBuilder = new StringBuilderFolder();
+    optimizers.add(stringBuilder);
+    
     final IOptimizer arithmeticInterpreter = new ArithmeticExpressionInterpreter();
     optimizers.add(arithmeticInterpreter);
     
@@ -192,6 +402,12 @@ public class Optimizer implements IOptimizerSuite {
     
     initLoopOptimizer(methodNode, optimizers);
     
+    final IOptimizer loopInvariants = new LoopInvariantCodeMotion();
+    optimizers.add(loopInvariants);
+    
+    final IOptimizer jumpThreader = new JumpThreader();
+    optimizers.add(jumpThreader);
+    
     final LocalArrayValueInliner localArrayValue = new LocalArrayValueInliner();
     localArrayValue.setInputObject(input);
     optimizers.add(localArrayValue);
@@ -199,6 +415,9 @@ public class Optimizer implements IOptimizerSuite {
     final IOptimizer unusedLocals = new RemoveUnusedLocalVars();
     optimizers.add(unusedLocals);
     
+    final IOptimizer peephole = new PeepholeOptimizer();
+    optimizers.add(peephole);
+    
     init(optimizers, classNode, input);
     return optimizers;
   }
@@ -210,6 +429,9 @@ public class Optimizer implements IOptimizerSuite {
   }
   
   private void initLoopOptimizer(final MethodNode methodNode, final List<IOptimizer> optimizers) {
+    if (methodNode.visibleAnnotations == null) {
+      return;
+    }
     final String strictLoops = Type.getType(StrictLoops.class).getDescriptor();
     for (final AnnotationNode annotation : methodNode.visibleAnnotations) {
       if (strictLoops.equals(annotation.desc)) {
@@ -222,6 +444,9 @@ public class Optimizer implements IOptimizerSuite {
   
   private void initAdditionalSteps(final MethodNode methodNode, final List<IOptimizer> optimizers)
       throws JBOPClassException {
+    if (methodNode.visibleAnnotations == null) {
+      return;
+    }
     final String additionalSteps = Type.getType(AdditionalSteps.class).getDescriptor();
     for (final AnnotationNode annotation : methodNode.visibleAnnotations) {
       if (additionalSteps.equals(annotation.desc)) {
@@ -263,10 +488,91 @@ public class Optimizer implements IOptimizerSuite {
    */
   public void setMethodLength(final int methodLength) {
     this.methodLength = methodLength;
+    partLength = methodLength;
+  }
+  
+  /**
+   * Sets the maximum number of iterations of the optimization steps per method.
+   * 
+   * @param maxIterations
+   *          the new max iterations
+   */
+  public void setMaxIterations(final int maxIterations) {
+    this.maxIterations = maxIterations;
   }
   
-  // @Override
-  // public OptimizerStatistic getStats() {
-  // return stats;
-  // }
+  /**
+   * Sets the time budget for the optimization steps per method in milliseconds.
+   * If the budget is exceeded, the optimization of the method is stopped
+   * (a value &lt;= 0 means no budget).
+   * 
+   * @param timeBudget
+   *          the new time budget
+   */
+  public void setTimeBudget(final long timeBudget) {
+    this.timeBudget = timeBudget;
+  }
+  
+  /**
+   * Enables / disables the JIT-aware mode.
+   * 
+   * If enabled, the method size limits of the running JVM are read ({@link JitThresholds#fromRuntime()}).
+   * Only methods that are too long to be compiled (<code>-XX:HugeMethodLimit</code>) are split,
+   * but into parts that are small enough to be inlined when hot (<code>-XX:FreqInlineSize</code>).
+   * Otherwise the default ({@link MethodSplitter#MAX_LENGTH}) is used.
+   * 
+   * This resets the {@link #getMethodSizeReport() method size report}.
+   * 
+   * @param jitAware
+   *          the new jit aware
+   */
+  public void setJitAware(final boolean jitAware) {
+    if (jitAware) {
+      jitThresholds = JitThresholds.fromRuntime();
+      methodLength = jitThresholds.getSplitLength();
+      partLength = jitThresholds.getPartLength();
+    } else {
+      jitThresholds = JitThresholds.DEFAULT;
+      methodLength = MethodSplitter.MAX_LENGTH;
+      partLength = MethodSplitter.MAX_LENGTH;
+    }
+    sizeReport = new MethodSizeReport(jitThresholds);
+  }
+  
+  /**
+   * Gets the report of the sizes of the methods generated by the last call of {@link #optimize(Object, String)},
+   * {@link #specialize(Object, String, Object...)} or {@link #optimizeMethods(ClassNode, Object)}.
+   * 
+   * @return the method size report
+   */
+  public MethodSizeReport getMethodSizeReport() {
+    return sizeReport;
+  }
+  
+  @Override
+  public OptimizerStatistic getStats() {
+    return stats;
+  }
+  
+  /**
+   * Key for the cache, that compares the wrapped Object by identity.
+   */
+  private static final class IdentityKey {
+    
+    private final Object object;
+    
+    IdentityKey(final Object object) {
+      this.object = object;
+    }
+    
+    @Override
+    public boolean equals(final Object obj) {
+      return (obj instanceof IdentityKey) && (((IdentityKey) obj).object == object);
+    }
+    
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(object);
+    }
+  }
 }
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.MethodNode;
+
+import de.tuberlin.uebb.jbop.OptimizerStatistic;
+import de.tuberlin.uebb.jbop.events.SpecializationEvents;
+import de.tuberlin.uebb.jbop.events.SpecializationEvents.Measurement;
+import de.tuberlin.uebb.jbop.events.SpecializationStep;
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+
+/**
+ * The Class PassScheduler.
+ * <p>
+ * Runs a list of {@link IOptimizer}s on a method until none of them makes any changes.
+ * <p>
+ * Instead of rerunning every optimizer as soon as one of them has optimized, a worklist is used:
+ * Initially all optimizers are queued. If an optimizer has optimized, only the optimizers that are
+ * enabled by the kind of changes it made (see {@link IChangeAware}) are queued again.
+ * The queued optimizers are always run in the order of the list.
+ * <p>
+ * Optimizers implementing {@link IRegionAware} only examine the regions changed since their last run
+ * (see {@link DirtyRegions}). Every change of an optimizer that
+ * isn't region aware (or that replaces the instruction list) makes the whole method dirty again.
+ * <p>
+ * To guarantee termination the number of iterations (rounds over the list) is limited and
+ * there is a time budget per method. If one of the limits is reached the scheduler stops
+ * (the instructions are valid after every single optimizer, so this is safe).
+ * 
+ * @author Christopher Ewest
+ */
+public class PassScheduler {
+  
+  /** Default for the max number of iterations per method. */
+  public static final int DEFAULT_MAX_ITERATIONS = 100;
+  
+  /** Default time budget per method in milliseconds. */
+  public static final long DEFAULT_TIME_BUDGET = 60 * 1000;
+  
+  private static final Set<ChangeKind> ALL = Collections.unmodifiableSet(EnumSet.allOf(ChangeKind.class));
+  
+  private final List<IOptimizer> optimizers;
+  private final int maxIterations;
+  private final long timeBudget;
+  
+  private OptimizerStatistic statistic;
+  private String owner;
+  private int iterations;
+  private int runs;
+  private boolean aborted;
+  
+  /**
+   * Instantiates a new {@link PassScheduler} with the default limits.
+   * 
+   * @param optimizers
+   *          the optimizers
+   */
+  public PassScheduler(final List<IOptimizer> optimizers) {
+    this(optimizers, DEFAULT_MAX_ITERATIONS, DEFAULT_TIME_BUDGET);
+  }
+  
+  /**
+   * Instantiates a new {@link PassScheduler}.
+   * 
+   * @param optimizers
+   *          the optimizers
+   * @param maxIterations
+   *          the max number of iterations
+   * @param timeBudget
+   *          the time budget in milliseconds (a value &lt;= 0 means no budget)
+   */
+  public PassScheduler(final List<IOptimizer> optimizers, final int maxIterations, final long timeBudget) {
+    this.optimizers = optimizers;
+    this.maxIterations = maxIterations;
+    this.timeBudget = timeBudget;
+  }
+  
+  /**
+   * Runs the optimizers on the method.
+   * 
+   * @param methodNode
+   *          the method node
+   * @throws JBOPClassException
+   *           if one of the optimizers fails
+   */
+  public void run(final MethodNode methodNode) throws JBOPClassException {
+    final int size = optimizers.size();
+    final BitSet queued = new BitSet(size);
+    queued.set(0, size);
+    final List<DirtyRegions> regions = new ArrayList<>(size);
+    for (int i = 0; i < size; ++i) {
+      regions.add(new DirtyRegions());
+    }
+    iterations = 0;
+    runs = 0;
+    aborted = false;
+    try {
+      runIntern(methodNode, queued, regions);
+    } finally {
+      for (final IOptimizer optimizer : optimizers) {
+        if (optimizer instanceof IRegionAware) {
+          ((IRegionAware) optimizer).setDirtyRegions(null);
+        }
+      }
+    }
+  }
+  
+  private void runIntern(final MethodNode methodNode, final BitSet queued, final List<DirtyRegions> regions)
+      throws JBOPClassException {
+    final long deadline = System.nanoTime() + (timeBudget * 1000 * 1000);
+    while (!queued.isEmpty()) {
+      if (iterations >= maxIterations) {
+        aborted = true;
+        return;
+      }
+      iterations++;
+      for (int i = queued.nextSetBit(0); i >= 0; i = queued.nextSetBit(i + 1)) {
+        queued.clear(i);
+        final IOptimizer optimizer = optimizers.get(i);
+        final DirtyRegions dirtyRegions = regions.get(i);
+        if (optimizer instanceof IRegionAware) {
+          dirtyRegions.prepare(methodNode);
+          ((IRegionAware) optimizer).setDirtyRegions(dirtyRegions);
+        }
+        final InsnList instructions = methodNode.instructions;
+        final int sizeBefore = instructions.size();
+        final Measurement measurement = SpecializationEvents.isEnabled() ? SpecializationEvents
+            .begin(SpecializationStep.PASS_RUN) : null;
+        final long start = System.nanoTime();
+        methodNode.instructions = optimizer.optimize(instructions, methodNode);
+        final long time = System.nanoTime() - start;
+        runs++;
+        if (statistic != null) {
+          statistic.addRun(optimizer, optimizer.isOptimized(), time, sizeBefore, methodNode.instructions.size());
+        }
+        if (measurement != null) {
+          SpecializationEvents.passRun(measurement, owner, methodNode.name + methodNode.desc, optimizer.getClass()
+              .getName(), iterations, optimizer.isOptimized(), sizeBefore, methodNode.instructions.size(), time);
+        }
+        final List<AbstractInsnNode> changes = new ArrayList<>(dirtyRegions.getChanges());
+        dirtyRegions.clear();
+        if (optimizer.isOptimized()) {
+          enqueue(queued, getProducedChanges(optimizer));
+          final boolean all = (instructions != methodNode.instructions) || !(optimizer instanceof IRegionAware)
+              || changes.isEmpty();
+          markDirty(regions, changes, all);
+        }
+        if ((timeBudget > 0) && ((System.nanoTime() - deadline) > 0)) {
+          aborted = true;
+          return;
+        }
+      }
+    }
+  }
+  
+  private void markDirty(final List<DirtyRegions> regions, final List<AbstractInsnNode> changes, final boolean all) {
+    // the changes may enable the optimizer itself again, so its own regions are marked, too
+    for (int i = 0; i < optimizers.size(); ++i) {
+      if (!(optimizers.get(i) instanceof IRegionAware)) {
+        continue;
+      }
+      if (all) {
+        regions.get(i).markAll();
+      } else {
+        regions.get(i).addChanged(changes);
+      }
+    }
+  }
+  
+  private void enqueue(final BitSet queued, final Set<ChangeKind> changes) {
+    for (int i = 0; i < optimizers.size(); ++i) {
+      if (!Collections.disjoint(getEnablingChanges(optimizers.get(i)), changes)) {
+        queued.set(i);
+      }
+    }
+  }
+  
+  private static Set<ChangeKind> getEnablingChanges(final IOptimizer optimizer) {
+    if (optimizer instanceof IChangeAware) {
+      return ((IChangeAware) optimizer).getEnablingChanges();
+    }
+    return ALL;
+  }
+  
+  private static Set<ChangeKind> getProducedChanges(final IOptimizer optimizer) {
+    if (optimizer instanceof IChangeAware) {
+      return ((IChangeAware) optimizer).getProducedChanges();
+    }
+    return ALL;
+  }
+  
+  /**
+   * Sets the statistic, that records every run of an optimizer.
+   * 
+   * @param statistic
+   *          the statistic (may be null)
+   */
+  public void setStatistic(final OptimizerStatistic statistic) {
+    this.statistic = statistic;
+  }
+  
+  /**
+   * Sets the internal name of the class of the optimized methods (used for the events).
+   * 
+   * @param owner
+   *          the owner
+   */
+  public void setOwner(final String owner) {
+    this.owner = owner;
+  }
+  
+  /**
+   * Gets the number of iterations (rounds over the list of optimizers) of the last run.
+   * 
+   * @return the iterations
+   */
+  public int getIterations() {
+    return iterations;
+  }
+  
+  /**
+   * Gets the number of single optimizer runs of the last run.
+   * 
+   * @return the runs
+   */
+  public int getRuns() {
+    return runs;
+  }
+  
+  /**
+   * Checks if the last run was stopped because the iteration limit or the time budget was reached.
+   * 
+   * @return true, if aborted
+   */
+  public boolean isAborted() {
+    return aborted;
+  }
+}
@@ -47,14 +47,21 @@ import static org.objectweb.asm.Opcodes.LSUB;
 import static org.objectweb.asm.Opcodes.LUSHR;
 import static org.objectweb.asm.Opcodes.LXOR;
 
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Iterator;
+import java.util.Set;
 
 import org.apache.commons.math3.exception.NotANumberException;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.InsnList;
 import org.objectweb.asm.tree.MethodNode;
 
+import de.tuberlin.uebb.jbop.optimizer.ChangeKind;
+import de.tuberlin.uebb.jbop.optimizer.DirtyRegions;
+import de.tuberlin.uebb.jbop.optimizer.IChangeAware;
 import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
+import de.tuberlin.uebb.jbop.optimizer.IRegionAware;
 import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
 
 /**
@@ -78,10 +85,16 @@ import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
  * 
  * @author Christopher Ewest
  */
-public class ArithmeticExpressionInterpreter implements IOptimizer {
+public class ArithmeticExpressionInterpreter implements IOptimizer, IChangeAware, IRegionAware {
+  
+  private static final Set<ChangeKind> ENABLING_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.CONSTANTS, ChangeKind.CODE));
+  private static final Set<ChangeKind> PRODUCED_CHANGES = Collections.unmodifiableSet(EnumSet.of(ChangeKind.CONSTANTS));
   
   private boolean optimized = false;
   
+  private DirtyRegions regions;
+  
   @Override
   public boolean isOptimized() {
     return optimized;
@@ -102,6 +115,9 @@ public class ArithmeticExpressionInterpreter implements IOptimizer {
     final Iterator<AbstractInsnNode> iterator = original.iterator();
     while (iterator.hasNext()) {
       final AbstractInsnNode currentNode = iterator.next();
+      if ((regions != null) && !regions.isDirty(currentNode)) {
+        continue;
+      }
       Number one, two;
       AbstractInsnNode numberNode;
       AbstractInsnNode castNode1 = null;
@@ -126,6 +142,9 @@ public class ArithmeticExpressionInterpreter implements IOptimizer {
         final AbstractInsnNode replacement = getReplacement(one, two, op);
         original.insert(op, replacement);
         clean(original, iterator, currentNode, numberNode, castNode1, castNode2, op);
+        if (regions != null) {
+          regions.markChanged(replacement);
+        }
         optimized = true;
         intern = true;
       }
@@ -424,4 +443,19 @@ public class ArithmeticExpressionInterpreter implements IOptimizer {
     
     return false;
   }
+  
+  @Override
+  public void setDirtyRegions(final DirtyRegions regions) {
+    this.regions = regions;
+  }
+  
+  @Override
+  public Set<ChangeKind> getEnablingChanges() {
+    return ENABLING_CHANGES;
+  }
+  
+  @Override
+  public Set<ChangeKind> getProducedChanges() {
+    return PRODUCED_CHANGES;
+  }
 }
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.array;
+
+import java.lang.reflect.Array;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+
+import de.tuberlin.uebb.jbop.access.ClassAccessor;
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
+
+/**
+ * Snapshot of the array fields of an object for {@link FieldArrayValueInliner}.
+ * 
+ * Each array field is read only once and copied (with all dimensions) to a mirror of the same type,
+ * e.g. a <code>double[][]</code> to a new <code>double[][]</code>.
+ * The elements are read directly from the typed mirror, so every single element read neither needs reflection
+ * nor {@link Array#get(Object, int)}.
+ * 
+ * Changes of the original arrays after the copy are not seen.
+ * 
+ * While a snapshot of the object is open ({@link ClassAccessor#openSnapshot(Object)}), {@link #of(Object)} returns
+ * the same {@link ArraySnapshot} for all methods and optimizers, so every array is copied only once per input.
+ * 
+ * @author Christopher Ewest
+ */
+class ArraySnapshot {
+  
+  private final Object instance;
+  private final Map<String, Object> mirrors = new HashMap<>();
+  
+  /**
+   * Instantiates a new {@link ArraySnapshot}.
+   * 
+   * @param instance
+   *          the instance
+   */
+  ArraySnapshot(final Object instance) {
+    this.instance = instance;
+  }
+  
+  /**
+   * Gets the {@link ArraySnapshot} of the open snapshot of the instance
+   * (or a new one if no snapshot is open).
+   * 
+   * @param instance
+   *          the instance
+   * @return the array snapshot
+   */
+  static ArraySnapshot of(final Object instance) {
+    return (ArraySnapshot) ClassAccessor.attachToSnapshot(instance, ArraySnapshot.class, new ArraySnapshot(instance));
+  }
+  
+  /**
+   * Gets the instruction that loads the value of the element as constant.
+   * 
+   * @param fieldName
+   *          the name of the array field
+   * @param indexes
+   *          the indexes of the element
+   * @return the instruction or null if the element is an object (not null and no String)
+   * @throws JBOPClassException
+   *           if the field couldn't be read or the indexes are out of bounds
+   */
+  AbstractInsnNode getConstant(final String fieldName, final int... indexes) throws JBOPClassException {
+    final Object container = getContainer(fieldName, indexes);
+    final int index = indexes[indexes.length - 1];
+    try {
+      if (container instanceof double[]) {
+        return NodeHelper.getInsnNodeFor(Double.valueOf(((double[]) container)[index]));
+      }
+      if (container instanceof float[]) {
+        return NodeHelper.getInsnNodeFor(Float.valueOf(((float[]) container)[index]));
+      }
+      if (container instanceof long[]) {
+        return NodeHelper.getInsnNodeFor(Long.valueOf(((long[]) container)[index]));
+      }
+      if (container instanceof int[]) {
+        return NodeHelper.getInsnNodeFor(Integer.valueOf(((int[]) container)[index]));
+      }
+      if (container instanceof short[]) {
+        return NodeHelper.getInsnNodeFor(Integer.valueOf(((short[]) container)[index]));
+      }
+      if (container instanceof byte[]) {
+        return NodeHelper.getInsnNodeFor(Integer.valueOf(((byte[]) container)[index]));
+      }
+      if (container instanceof char[]) {
+        return NodeHelper.getInsnNodeFor(Integer.valueOf(((char[]) container)[index]));
+      }
+      if (container instanceof boolean[]) {
+        return NodeHelper.getInsnNodeFor(Integer.valueOf(((boolean[]) container)[index] ? 1 : 0));
+      }
+      final Object value = ((Object[]) container)[index];
+      if (value == null) {
+        return new InsnNode(Opcodes.ACONST_NULL);
+      }
+      if (value instanceof String) {
+        return new LdcInsnNode(value);
+      }
+      return null;
+    } catch (final ArrayIndexOutOfBoundsException e) {
+      throw new JBOPClassException("Field '" + fieldName + "' has no element at index " + index + ".", e);
+    }
+  }
+  
+  /**
+   * Gets the element of an array of objects.
+   * 
+   * @param fieldName
+   *          the name of the array field
+   * @param indexes
+   *          the indexes of the element
+   * @return the element
+   * @throws JBOPClassException
+   *           if the field couldn't be read or the indexes are out of bounds
+   */
+  Object getValue(final String fieldName, final int... indexes) throws JBOPClassException {
+    final Object container = getContainer(fieldName, indexes);
+    final int index = indexes[indexes.length - 1];
+    try {
+      return ((Object[]) container)[index];
+    } catch (final ArrayIndexOutOfBoundsException | ClassCastException e) {
+      throw new JBOPClassException("Field '" + fieldName + "' has no object at index " + index + ".", e);
+    }
+  }
+  
+  private Object getContainer(final String fieldName, final int... indexes) throws JBOPClassException {
+    Object array = getMirror(fieldName);
+    try {
+      for (int i = 0; i < (indexes.length - 1); ++i) {
+        array = ((Object[]) array)[indexes[i]];
+      }
+    } catch (final ArrayIndexOutOfBoundsException e) {
+      throw new JBOPClassException("Field '" + fieldName + "' has no element at index " + e.getMessage() + ".", e);
+    }
+    if (array == null) {
+      throw new JBOPClassException("Field '" + fieldName + "' contains a null-array.", null);
+    }
+    return array;
+  }
+  
+  private synchronized Object getMirror(final String fieldName) throws JBOPClassException {
+    if (!mirrors.containsKey(fieldName)) {
+      mirrors.put(fieldName, copy(ClassAccessor.getCurrentValue(instance, fieldName)));
+    }
+    return mirrors.get(fieldName);
+  }
+  
+  private static Object copy(final Object array) {
+    if (array instanceof Object[]) {
+      final Object[] copy = ((Object[]) array).clone();
+      if (array.getClass().getComponentType().isArray()) {
+        for (int i = 0; i < copy.length; ++i) {
+          copy[i] = copy(copy[i]);
+        }
+      }
+      return copy;
+    }
+    if (array instanceof double[]) {
+      return ((double[]) array).clone();
+    }
+    if (array instanceof float[]) {
+      return ((float[]) array).clone();
+    }
+    if (array instanceof long[]) {
+      return ((long[]) array).clone();
+    }
+    if (array instanceof int[]) {
+      return ((int[]) array).clone();
+    }
+    if (array instanceof short[]) {
+      return ((short[]) array).clone();
+    }
+    if (array instanceof byte[]) {
+      return ((byte[]) array).clone();
+    }
+    if (array instanceof char[]) {
+      return ((char[]) array).clone();
+    }
+    if (array instanceof boolean[]) {
+      return ((boolean[]) array).clone();
+    }
+    return array;
+  }
+}
@@ -18,7 +18,10 @@
  */
 package de.tuberlin.uebb.jbop.optimizer.array;
 
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.ListIterator;
+import java.util.Set;
 
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.ClassNode;
@@ -26,9 +29,13 @@ import org.objectweb.asm.tree.InsnList;
 import org.objectweb.asm.tree.MethodNode;
 
 import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.ChangeKind;
+import de.tuberlin.uebb.jbop.optimizer.DirtyRegions;
+import de.tuberlin.uebb.jbop.optimizer.IChangeAware;
 import de.tuberlin.uebb.jbop.optimizer.IClassNodeAware;
 import de.tuberlin.uebb.jbop.optimizer.IInputObjectAware;
 import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
+import de.tuberlin.uebb.jbop.optimizer.IRegionAware;
 import de.tuberlin.uebb.jbop.optimizer.var.GetFieldChainInliner;
 
 /**
@@ -77,7 +84,11 @@ import de.tuberlin.uebb.jbop.optimizer.var.GetFieldChainInliner;
  * 
  * @author Christopher Ewest
  */
-public class FieldArrayLengthInliner implements IOptimizer, IInputObjectAware, IClassNodeAware {
+public class FieldArrayLengthInliner implements IOptimizer, IInputObjectAware, IClassNodeAware, IChangeAware,
+    IRegionAware {
+  
+  private static final Set<ChangeKind> ENABLING_CHANGES = Collections.unmodifiableSet(EnumSet.of(ChangeKind.CODE));
+  private static final Set<ChangeKind> PRODUCED_CHANGES = Collections.unmodifiableSet(EnumSet.of(ChangeKind.CONSTANTS));
   
   private boolean optimized = false;
   
@@ -85,6 +96,8 @@ public class FieldArrayLengthInliner implements IOptimizer, IInputObjectAware, I
   
   private ClassNode classNode;
   
+  private DirtyRegions regions;
+  
   @Override
   public boolean isOptimized() {
     return optimized;
@@ -97,12 +110,16 @@ public class FieldArrayLengthInliner implements IOptimizer, IInputObjectAware, I
     final ArrayHelper arrayHelper = new ArrayHelper();
     while (iterator.hasNext()) {
       final AbstractInsnNode aload = iterator.next();
+      if ((regions != null) && !regions.isDirty(aload)) {
+        continue;
+      }
       if (!arrayHelper.isArrayInstruction(classNode, aload, null)) {
         continue;
       }
       if (!arrayHelper.isArrayLength()) {
         continue;
       }
+      final AbstractInsnNode previous = aload.getPrevious();
       final GetFieldChainInliner fieldChainInliner = new GetFieldChainInliner();
       fieldChainInliner.setIterator(iterator);
       fieldChainInliner.setInputObject(instance);
@@ -110,6 +127,9 @@ public class FieldArrayLengthInliner implements IOptimizer, IInputObjectAware, I
       if (fieldChainInliner.isOptimized()) {
         optimized = true;
         original.remove(aload);
+        if (regions != null) {
+          regions.markChanged(previous == null ? original.getFirst() : previous.getNext());
+        }
       }
     }
     return original;
@@ -124,4 +144,19 @@ public class FieldArrayLengthInliner implements IOptimizer, IInputObjectAware, I
   public void setClassNode(final ClassNode classNode) {
     this.classNode = classNode;
   }
+  
+  @Override
+  public void setDirtyRegions(final DirtyRegions regions) {
+    this.regions = regions;
+  }
+  
+  @Override
+  public Set<ChangeKind> getEnablingChanges() {
+    return ENABLING_CHANGES;
+  }
+  
+  @Override
+  public Set<ChangeKind> getProducedChanges() {
+    return PRODUCED_CHANGES;
+  }
 }
@@ -20,21 +20,24 @@ package de.tuberlin.uebb.jbop.optimizer.array;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Set;
 
-import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.InsnList;
-import org.objectweb.asm.tree.InsnNode;
-import org.objectweb.asm.tree.LdcInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 
 import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.ChangeKind;
+import de.tuberlin.uebb.jbop.optimizer.DirtyRegions;
+import de.tuberlin.uebb.jbop.optimizer.IChangeAware;
 import de.tuberlin.uebb.jbop.optimizer.IClassNodeAware;
 import de.tuberlin.uebb.jbop.optimizer.IInputObjectAware;
 import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
+import de.tuberlin.uebb.jbop.optimizer.IRegionAware;
 import de.tuberlin.uebb.jbop.optimizer.annotations.ImmutableArray;
 import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
 import de.tuberlin.uebb.jbop.optimizer.var.GetFieldChainInliner;
@@ -80,18 +83,27 @@ import de.tuberlin.uebb.jbop.optimizer.var.GetFieldChainInliner;
  * 
  * depending on the real size of d
  * 
+ * The arrays are read only once per input object (see {@link ArraySnapshot}).
+ * 
  * @author Christopher Ewest
  */
-public class FieldArrayValueInliner implements IOptimizer, IInputObjectAware, IClassNodeAware {
+public class FieldArrayValueInliner implements IOptimizer, IInputObjectAware, IClassNodeAware, IChangeAware,
+    IRegionAware {
+  
+  private static final Set<ChangeKind> ENABLING_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.CONSTANTS, ChangeKind.CODE));
+  private static final Set<ChangeKind> PRODUCED_CHANGES = Collections.unmodifiableSet(EnumSet.of(ChangeKind.CONSTANTS));
   
   private final ArrayList<NonNullArrayValue> nonNullArrayValues = new ArrayList<>();
   
   private boolean optimized = false;
   
-  private Object instance;
+  private ArraySnapshot snapshot;
   
   private ClassNode classNode;
   
+  private DirtyRegions regions;
+  
   @Override
   public boolean isOptimized() {
     return optimized;
@@ -104,6 +116,9 @@ public class FieldArrayValueInliner implements IOptimizer, IInputObjectAware, IC
     final ArrayHelper arrayHelper = new ArrayHelper();
     while (iterator.hasNext()) {
       final AbstractInsnNode aload = iterator.next();
+      if ((regions != null) && !regions.isDirty(aload)) {
+        continue;
+      }
       if (!arrayHelper.isArrayInstruction(classNode, aload, ImmutableArray.class)) {
         continue;
       }
@@ -127,38 +142,32 @@ public class FieldArrayValueInliner implements IOptimizer, IInputObjectAware, IC
   private void handleValue(final InsnList newList, final AbstractInsnNode aload, final ArrayHelper arrayHelper,
       final ListIterator<AbstractInsnNode> iterator) throws JBOPClassException {
     
-    final Object value = arrayHelper.getValue(instance);
-    
-    final AbstractInsnNode replacementNode;
-    if (value == null) {
-      replacementNode = new InsnNode(Opcodes.ACONST_NULL);
-    } else if ((value instanceof Number)) {
-      replacementNode = NodeHelper.getInsnNodeFor((Number) value);
-    } else if (value instanceof String) {
-      replacementNode = new LdcInsnNode(value);
-    } else {
+    final String fieldName = NodeHelper.getFieldname(arrayHelper.getFieldNode());
+    final int[] indexes = arrayHelper.getIndexArray();
+    final AbstractInsnNode replacementNode = snapshot.getConstant(fieldName, indexes);
+    if (replacementNode == null) {
+      final Object value = snapshot.getValue(fieldName, indexes);
       moveIterator(iterator, arrayHelper);
       final GetFieldChainInliner fieldChainInliner = new GetFieldChainInliner();
       fieldChainInliner.setIterator(iterator);
       fieldChainInliner.setInputObject(value);
       fieldChainInliner.optimize(newList, null);
-      if (fieldChainInliner.isOptimized()) {
-        // the new valuenode is already put in the list, the chain-nodes are consumed.
-        // but aload, getfield... have to be removed yet.
-        replacementNode = null;
-      } else {
+      if (!fieldChainInliner.isOptimized()) {
         // this is not a value we can handle, but its definitly not null.
         final NonNullArrayValue arrayValue = new NonNullArrayValue(aload, arrayHelper.getFieldNode(),
             arrayHelper.getIndexes(), arrayHelper.getArrayloads());
         nonNullArrayValues.add(arrayValue);
         return;
       }
+      // the new valuenode is already put in the list, the chain-nodes are consumed.
+      // but aload, getfield... have to be removed yet.
     }
     replaceNodes(newList, aload, arrayHelper, replacementNode, iterator);
   }
   
   private void replaceNodes(final InsnList newList, final AbstractInsnNode aload, final ArrayHelper arrayHelper,
       final AbstractInsnNode replacementNode, final ListIterator<AbstractInsnNode> iterator) {
+    final AbstractInsnNode previous = aload.getPrevious();
     if (replacementNode != null) {
       newList.insert(arrayHelper.getLastLoad(), replacementNode);
     }
@@ -174,6 +183,9 @@ public class FieldArrayValueInliner implements IOptimizer, IInputObjectAware, IC
     }
     newList.remove(arrayHelper.getFieldNode());
     optimized = true;
+    if (regions != null) {
+      regions.markChanged(previous == null ? newList.getFirst() : previous.getNext());
+    }
   }
   
   /**
@@ -185,9 +197,14 @@ public class FieldArrayValueInliner implements IOptimizer, IInputObjectAware, IC
     return Collections.unmodifiableList(nonNullArrayValues);
   }
   
+  @Override
+  public void setDirtyRegions(final DirtyRegions regions) {
+    this.regions = regions;
+  }
+  
   @Override
   public void setInputObject(final Object input) {
-    instance = input;
+    snapshot = ArraySnapshot.of(input);
   }
   
   @Override
@@ -195,4 +212,13 @@ public class FieldArrayValueInliner implements IOptimizer, IInputObjectAware, IC
     this.classNode = classNode;
   }
   
+  @Override
+  public Set<ChangeKind> getEnablingChanges() {
+    return ENABLING_CHANGES;
+  }
+  
+  @Override
+  public Set<ChangeKind> getProducedChanges() {
+    return PRODUCED_CHANGES;
+  }
 }
@@ -20,8 +20,11 @@ package de.tuberlin.uebb.jbop.optimizer.array;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.math3.exception.NotANumberException;
 import org.objectweb.asm.Opcodes;
@@ -30,6 +33,8 @@ import org.objectweb.asm.tree.InsnList;
 import org.objectweb.asm.tree.MultiANewArrayInsnNode;
 import org.objectweb.asm.tree.VarInsnNode;
 
+import de.tuberlin.uebb.jbop.optimizer.ChangeKind;
+import de.tuberlin.uebb.jbop.optimizer.IChangeAware;
 import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
 
 /**
@@ -71,7 +76,11 @@ import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
  * 
  * @author Christopher Ewest
  */
-public class LocalArrayLengthInliner extends AbstractLocalArrayOptimizer {
+public class LocalArrayLengthInliner extends AbstractLocalArrayOptimizer implements IChangeAware {
+  
+  private static final Set<ChangeKind> ENABLING_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.LOCALS, ChangeKind.CODE));
+  private static final Set<ChangeKind> PRODUCED_CHANGES = Collections.unmodifiableSet(EnumSet.of(ChangeKind.CONSTANTS));
   
   @Override
   protected boolean handleValues(final InsnList original, final Map<Integer, Object> knownArrays,
@@ -159,4 +168,14 @@ public class LocalArrayLengthInliner extends AbstractLocalArrayOptimizer {
     knownArrays.put(Integer.valueOf(index), Array.newInstance(Object.class, sizes));
     return 2;
   }
+  
+  @Override
+  public Set<ChangeKind> getEnablingChanges() {
+    return ENABLING_CHANGES;
+  }
+  
+  @Override
+  public Set<ChangeKind> getProducedChanges() {
+    return PRODUCED_CHANGES;
+  }
 }
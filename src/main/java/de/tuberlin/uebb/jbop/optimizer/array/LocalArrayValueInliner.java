@@ -20,13 +20,18 @@ package de.tuberlin.uebb.jbop.optimizer.array;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.InsnList;
 import org.objectweb.asm.tree.VarInsnNode;
 
+import de.tuberlin.uebb.jbop.optimizer.ChangeKind;
+import de.tuberlin.uebb.jbop.optimizer.IChangeAware;
 import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
 import de.tuberlin.uebb.jbop.optimizer.utils.predicates.Predicates;
 
@@ -64,7 +69,11 @@ import de.tuberlin.uebb.jbop.optimizer.utils.predicates.Predicates;
  * 
  * @author Christopher Ewest
  */
-public class LocalArrayValueInliner extends AbstractLocalArrayOptimizer {
+public class LocalArrayValueInliner extends AbstractLocalArrayOptimizer implements IChangeAware {
+  
+  private static final Set<ChangeKind> ENABLING_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.CONSTANTS, ChangeKind.LOCALS, ChangeKind.CODE));
+  private static final Set<ChangeKind> PRODUCED_CHANGES = Collections.unmodifiableSet(EnumSet.of(ChangeKind.CONSTANTS));
   
   @Override
   protected boolean handleValues(final InsnList original, final Map<Integer, Object> knownArrays,
@@ -117,4 +126,14 @@ public class LocalArrayValueInliner extends AbstractLocalArrayOptimizer {
     
     return true;
   }
+  
+  @Override
+  public Set<ChangeKind> getEnablingChanges() {
+    return ENABLING_CHANGES;
+  }
+  
+  @Override
+  public Set<ChangeKind> getProducedChanges() {
+    return PRODUCED_CHANGES;
+  }
 }
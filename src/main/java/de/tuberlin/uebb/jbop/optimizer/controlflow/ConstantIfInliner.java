@@ -20,7 +20,10 @@ package de.tuberlin.uebb.jbop.optimizer.controlflow;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Iterator;
+import java.util.Set;
 
 import org.apache.commons.math3.exception.NotANumberException;
 import org.objectweb.asm.Opcodes;
@@ -31,6 +34,8 @@ import org.objectweb.asm.tree.MethodNode;
 
 import de.tuberlin.uebb.jbop.access.ClassAccessor;
 import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.ChangeKind;
+import de.tuberlin.uebb.jbop.optimizer.IChangeAware;
 import de.tuberlin.uebb.jbop.optimizer.IInputObjectAware;
 import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
 import de.tuberlin.uebb.jbop.optimizer.array.FieldArrayValueInliner;
@@ -108,7 +113,12 @@ import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
  * 
  * @author Christopher Ewest
  */
-public class ConstantIfInliner implements IOptimizer, IInputObjectAware {
+public class ConstantIfInliner implements IOptimizer, IInputObjectAware, IChangeAware {
+  
+  private static final Set<ChangeKind> ENABLING_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.CONSTANTS, ChangeKind.CODE));
+  private static final Set<ChangeKind> PRODUCED_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.CONTROL_FLOW, ChangeKind.LOCALS));
   
   private static final BigDecimal NONNULL = BigDecimal.ZERO;
   private boolean optimized;
@@ -427,4 +437,14 @@ public class ConstantIfInliner implements IOptimizer, IInputObjectAware {
   public void setInputObject(final Object inputObject) {
     this.inputObject = inputObject;
   }
+  
+  @Override
+  public Set<ChangeKind> getEnablingChanges() {
+    return ENABLING_CHANGES;
+  }
+  
+  @Override
+  public Set<ChangeKind> getProducedChanges() {
+    return PRODUCED_CHANGES;
+  }
 }
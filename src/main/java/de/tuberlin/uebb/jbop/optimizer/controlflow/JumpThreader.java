@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.controlflow;
+
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFNONNULL;
+import static org.objectweb.asm.Opcodes.IFNULL;
+import static org.objectweb.asm.Opcodes.IF_ACMPNE;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.RETURN;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+import de.tuberlin.uebb.jbop.optimizer.ChangeKind;
+import de.tuberlin.uebb.jbop.optimizer.IChangeAware;
+import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
+
+/**
+ * The Class JumpThreader.
+ * 
+ * Simplifies the jumps of a method:
+ * 
+ * Jumps (and switch targets) to a goto are retargeted to the final destination of the goto chain:
+ * 
+ * <pre>
+ * ifeq L1        ifeq L2
+ * ...            ...
+ * L1:      -&gt;    L1:
+ * goto L2        goto L2
+ * </pre>
+ * 
+ * A goto to a return is replaced by a copy of the return.
+ * 
+ * A conditional jump over a goto is inverted:
+ * 
+ * <pre>
+ * ifeq L1        ifne L2
+ * goto L2  -&gt;    L1:
+ * L1:
+ * </pre>
+ * 
+ * Instructions that follow an unconditional jump, return or throw and are no jump target
+ * (eg. the gotos left over by the threading) are unreachable and removed, so that
+ * the remaining blocks form straight-line code.
+ * A goto to the directly following instruction is removed as well.
+ * 
+ * Unreachable instructions inside of try-catch-blocks are kept, so that no handler range becomes empty.
+ * 
+ * @author Christopher Ewest
+ */
+public class JumpThreader implements IOptimizer, IChangeAware {
+  
+  private static final Set<ChangeKind> ENABLING_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.CONTROL_FLOW, ChangeKind.CODE));
+  private static final Set<ChangeKind> PRODUCED_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.LOCALS, ChangeKind.CONTROL_FLOW, ChangeKind.CODE));
+  
+  private final Set<AbstractInsnNode> targets = Collections
+      .newSetFromMap(new IdentityHashMap<AbstractInsnNode, Boolean>());
+  private boolean optimized;
+  
+  @Override
+  public boolean isOptimized() {
+    return optimized;
+  }
+  
+  @Override
+  public InsnList optimize(final InsnList original, final MethodNode methodNode) {
+    optimized = false;
+    boolean changed;
+    do {
+      changed = thread(original);
+      changed |= invertJumps(original, methodNode);
+      changed |= removeUnreachable(original, methodNode);
+      optimized |= changed;
+    } while (changed);
+    return original;
+  }
+  
+  private boolean thread(final InsnList original) {
+    boolean changed = false;
+    for (AbstractInsnNode node = original.getFirst(); node != null; node = node.getNext()) {
+      if (node instanceof JumpInsnNode) {
+        final JumpInsnNode jump = (JumpInsnNode) node;
+        final LabelNode label = getDestination(jump.label);
+        if (label != jump.label) {
+          jump.label = label;
+          changed = true;
+        }
+        final AbstractInsnNode target = getInstruction(label);
+        if ((jump.getOpcode() == GOTO) && (target != null) && isReturn(target)) {
+          final AbstractInsnNode copy = new InsnNode(target.getOpcode());
+          original.set(jump, copy);
+          node = copy;
+          changed = true;
+        }
+      } else if (node instanceof TableSwitchInsnNode) {
+        final TableSwitchInsnNode tableSwitch = (TableSwitchInsnNode) node;
+        changed |= thread(tableSwitch.labels);
+        final LabelNode dflt = getDestination(tableSwitch.dflt);
+        changed |= dflt != tableSwitch.dflt;
+        tableSwitch.dflt = dflt;
+      } else if (node instanceof LookupSwitchInsnNode) {
+        final LookupSwitchInsnNode lookupSwitch = (LookupSwitchInsnNode) node;
+        changed |= thread(lookupSwitch.labels);
+        final LabelNode dflt = getDestination(lookupSwitch.dflt);
+        changed |= dflt != lookupSwitch.dflt;
+        lookupSwitch.dflt = dflt;
+      }
+    }
+    return changed;
+  }
+  
+  private boolean thread(final List<LabelNode> labels) {
+    boolean changed = false;
+    for (final ListIterator<LabelNode> iterator = labels.listIterator(); iterator.hasNext();) {
+      final LabelNode label = iterator.next();
+      final LabelNode destination = getDestination(label);
+      if (destination != label) {
+        iterator.set(destination);
+        changed = true;
+      }
+    }
+    return changed;
+  }
+  
+  /**
+   * Follows the chain of gotos starting at the label (cycles end at the first repeated goto).
+   */
+  private LabelNode getDestination(final LabelNode label) {
+    final Set<AbstractInsnNode> visited = Collections.newSetFromMap(new IdentityHashMap<AbstractInsnNode, Boolean>());
+    LabelNode destination = label;
+    AbstractInsnNode target = getInstruction(destination);
+    while ((target != null) && (target.getOpcode() == GOTO) && visited.add(target)) {
+      destination = ((JumpInsnNode) target).label;
+      target = getInstruction(destination);
+    }
+    return destination;
+  }
+  
+  private boolean invertJumps(final InsnList original, final MethodNode methodNode) {
+    collectTargets(original, methodNode);
+    boolean changed = false;
+    for (AbstractInsnNode node = original.getFirst(); node != null; node = node.getNext()) {
+      if (!(node instanceof JumpInsnNode) || (node.getOpcode() == GOTO) || (getInverse(node.getOpcode()) < 0)) {
+        continue;
+      }
+      final JumpInsnNode jump = (JumpInsnNode) node;
+      final AbstractInsnNode next = getNextInstruction(jump);
+      if ((next == null) || (next.getOpcode() != GOTO) || !isFollowing(next, jump.label)) {
+        continue;
+      }
+      jump.setOpcode(getInverse(jump.getOpcode()));
+      jump.label = ((JumpInsnNode) next).label;
+      original.remove(next);
+      changed = true;
+    }
+    return changed;
+  }
+  
+  private boolean removeUnreachable(final InsnList original, final MethodNode methodNode) {
+    collectTargets(original, methodNode);
+    final Set<AbstractInsnNode> protectedNodes = getProtectedNodes(original, methodNode);
+    boolean changed = false;
+    AbstractInsnNode node = original.getFirst();
+    while (node != null) {
+      AbstractInsnNode next = node.getNext();
+      if ((node.getOpcode() == GOTO) && isFollowing(node, ((JumpInsnNode) node).label)) {
+        original.remove(node);
+        changed = true;
+      } else if (isEnd(node)) {
+        while ((next != null) && !targets.contains(next)) {
+          final AbstractInsnNode current = next;
+          next = next.getNext();
+          if ((current.getOpcode() >= 0) && !protectedNodes.contains(current)) {
+            original.remove(current);
+            changed = true;
+          }
+        }
+      }
+      node = next;
+    }
+    return changed;
+  }
+  
+  private void collectTargets(final InsnList original, final MethodNode methodNode) {
+    targets.clear();
+    for (AbstractInsnNode node = original.getFirst(); node != null; node = node.getNext()) {
+      if (node instanceof JumpInsnNode) {
+        targets.add(((JumpInsnNode) node).label);
+      } else if (node instanceof TableSwitchInsnNode) {
+        targets.add(((TableSwitchInsnNode) node).dflt);
+        targets.addAll(((TableSwitchInsnNode) node).labels);
+      } else if (node instanceof LookupSwitchInsnNode) {
+        targets.add(((LookupSwitchInsnNode) node).dflt);
+        targets.addAll(((LookupSwitchInsnNode) node).labels);
+      }
+    }
+    if (methodNode.tryCatchBlocks != null) {
+      for (final TryCatchBlockNode block : methodNode.tryCatchBlocks) {
+        targets.add(block.start);
+        targets.add(block.end);
+        targets.add(block.handler);
+      }
+    }
+  }
+  
+  private static Set<AbstractInsnNode> getProtectedNodes(final InsnList original, final MethodNode methodNode) {
+    final Set<AbstractInsnNode> protectedNodes = Collections
+        .newSetFromMap(new IdentityHashMap<AbstractInsnNode, Boolean>());
+    if (methodNode.tryCatchBlocks == null) {
+      return protectedNodes;
+    }
+    for (final TryCatchBlockNode block : methodNode.tryCatchBlocks) {
+      for (AbstractInsnNode node = block.start; (node != null) && (node != block.end); node = node.getNext()) {
+        protectedNodes.add(node);
+      }
+    }
+    return protectedNodes;
+  }
+  
+  /**
+   * Checks if the label follows the node, only separated by labels, line numbers and frames
+   * that are no jump targets.
+   */
+  private boolean isFollowing(final AbstractInsnNode node, final LabelNode label) {
+    AbstractInsnNode current = node.getNext();
+    while (isPseudo(current)) {
+      if (current == label) {
+        return true;
+      }
+      if (targets.contains(current)) {
+        return false;
+      }
+      current = current.getNext();
+    }
+    return false;
+  }
+  
+  private AbstractInsnNode getNextInstruction(final AbstractInsnNode node) {
+    AbstractInsnNode current = node.getNext();
+    while (isPseudo(current) && !targets.contains(current)) {
+      current = current.getNext();
+    }
+    return current;
+  }
+  
+  /**
+   * Gets the first real instruction at the label.
+   */
+  private static AbstractInsnNode getInstruction(final LabelNode label) {
+    AbstractInsnNode current = label;
+    while (isPseudo(current)) {
+      current = current.getNext();
+    }
+    return current;
+  }
+  
+  private static boolean isPseudo(final AbstractInsnNode node) {
+    return (node instanceof LabelNode) || (node instanceof LineNumberNode) || (node instanceof FrameNode);
+  }
+  
+  private static boolean isReturn(final AbstractInsnNode node) {
+    return (node.getOpcode() >= IRETURN) && (node.getOpcode() <= RETURN);
+  }
+  
+  private static boolean isEnd(final AbstractInsnNode node) {
+    return (node.getOpcode() == GOTO) || isReturn(node) || (node.getOpcode() == ATHROW)
+        || (node instanceof TableSwitchInsnNode) || (node instanceof LookupSwitchInsnNode);
+  }
+  
+  /**
+   * Gets the opcode of the jump with the negated condition (-1 for other opcodes).
+   */
+  private static int getInverse(final int opcode) {
+    if ((opcode >= IFEQ) && (opcode <= IF_ACMPNE)) {
+      // the conditional jumps come in pairs: ifeq/ifne, iflt/ifge, ifgt/ifle, ...
+      return ((opcode - IFEQ) % 2) == 0 ? opcode + 1 : opcode - 1;
+    }
+    if (opcode == IFNULL) {
+      return IFNONNULL;
+    }
+    if (opcode == IFNONNULL) {
+      return IFNULL;
+    }
+    return -1;
+  }
+  
+  @Override
+  public Set<ChangeKind> getEnablingChanges() {
+    return ENABLING_CHANGES;
+  }
+  
+  @Override
+  public Set<ChangeKind> getProducedChanges() {
+    return PRODUCED_CHANGES;
+  }
+}
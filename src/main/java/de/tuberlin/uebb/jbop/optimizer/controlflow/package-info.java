@@ -1,5 +1,5 @@
 /**
  * This package contains classes that deals with controlflow.
- * Currently this is exactly one class that handles if-expressions.
+ * These are a class that handles if-expressions and one that threads chains of jumps.
  */
 package de.tuberlin.uebb.jbop.optimizer.controlflow;
\ No newline at end of file
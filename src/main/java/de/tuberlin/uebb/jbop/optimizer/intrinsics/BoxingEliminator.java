@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.intrinsics;
+
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.D2F;
+import static org.objectweb.asm.Opcodes.D2I;
+import static org.objectweb.asm.Opcodes.D2L;
+import static org.objectweb.asm.Opcodes.F2D;
+import static org.objectweb.asm.Opcodes.F2I;
+import static org.objectweb.asm.Opcodes.F2L;
+import static org.objectweb.asm.Opcodes.I2B;
+import static org.objectweb.asm.Opcodes.I2D;
+import static org.objectweb.asm.Opcodes.I2F;
+import static org.objectweb.asm.Opcodes.I2L;
+import static org.objectweb.asm.Opcodes.I2S;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.L2D;
+import static org.objectweb.asm.Opcodes.L2F;
+import static org.objectweb.asm.Opcodes.L2I;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+import de.tuberlin.uebb.jbop.optimizer.ChangeKind;
+import de.tuberlin.uebb.jbop.optimizer.DirtyRegions;
+import de.tuberlin.uebb.jbop.optimizer.IChangeAware;
+import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
+import de.tuberlin.uebb.jbop.optimizer.IRegionAware;
+import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
+import de.tuberlin.uebb.jbop.optimizer.utils.StackProducers;
+import de.tuberlin.uebb.jbop.optimizer.utils.predicates.Predicates;
+
+/**
+ * The Class BoxingEliminator.
+ * 
+ * Removes the boxing of primitive values that are unboxed right away
+ * (e.g. in generic helper code, after the fields were inlined).
+ * 
+ * eg:
+ * 
+ * <pre>
+ * iload 1
+ * invokestatic Integer.valueOf(I)Ljava/lang/Integer;
+ * checkcast java/lang/Number
+ * invokevirtual Number.doubleValue()D
+ * </pre>
+ * 
+ * becomes
+ * 
+ * <pre>
+ * iload 1
+ * i2d
+ * </pre>
+ * 
+ * and
+ * 
+ * <pre>
+ * ldc 3.0
+ * invokestatic Double.valueOf(D)Ljava/lang/Double;
+ * invokevirtual Double.intValue()I
+ * </pre>
+ * 
+ * becomes
+ * 
+ * <pre>
+ * iconst_3
+ * </pre>
+ * 
+ * The box and the unboxing call don't have to be adjacent (see {@link StackProducers}), but the boxed value
+ * may not be used otherwise.
+ * 
+ * @author Christopher Ewest
+ */
+public class BoxingEliminator implements IOptimizer, IChangeAware, IRegionAware {
+  
+  private static final Set<ChangeKind> ENABLING_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.CONSTANTS, ChangeKind.CODE));
+  private static final Set<ChangeKind> PRODUCED_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.CONSTANTS, ChangeKind.CODE));
+  
+  private static final String NUMBER = "java/lang/Number";
+  private static final String OBJECT = "java/lang/Object";
+  
+  /** The primitive types of the wrapper classes. */
+  private static final Map<String, Type> BOXES = new HashMap<>();
+  static {
+    BOXES.put("java/lang/Boolean", Type.BOOLEAN_TYPE);
+    BOXES.put("java/lang/Character", Type.CHAR_TYPE);
+    BOXES.put("java/lang/Byte", Type.BYTE_TYPE);
+    BOXES.put("java/lang/Short", Type.SHORT_TYPE);
+    BOXES.put("java/lang/Integer", Type.INT_TYPE);
+    BOXES.put("java/lang/Long", Type.LONG_TYPE);
+    BOXES.put("java/lang/Float", Type.FLOAT_TYPE);
+    BOXES.put("java/lang/Double", Type.DOUBLE_TYPE);
+  }
+  
+  /** The conversions between the stack types int, long, float and double. */
+  private static final int[][] CONVERSIONS = { { -1, I2L, I2F, I2D }, { L2I, -1, L2F, L2D },
+      { F2I, F2L, -1, F2D }, { D2I, D2L, D2F, -1 } };
+  
+  private boolean optimized;
+  private DirtyRegions regions;
+  
+  @Override
+  public boolean isOptimized() {
+    return optimized;
+  }
+  
+  @Override
+  public InsnList optimize(final InsnList original, final MethodNode methodNode) {
+    optimized = false;
+    final StackProducers producers = new StackProducers(original, methodNode.tryCatchBlocks);
+    for (final AbstractInsnNode node : original.toArray()) {
+      if ((regions != null) && !regions.isDirty(node)) {
+        continue;
+      }
+      if (node.getOpcode() == INVOKEVIRTUAL) {
+        eliminate(original, producers, (MethodInsnNode) node);
+      }
+    }
+    return original;
+  }
+  
+  private void eliminate(final InsnList original, final StackProducers producers, final MethodInsnNode unbox) {
+    final Type to = Type.getReturnType(unbox.desc);
+    if (!isUnboxing(unbox, to)) {
+      return;
+    }
+    AbstractInsnNode box = producers.getProducer(unbox, 0);
+    AbstractInsnNode cast = null;
+    if ((box != null) && (box.getOpcode() == CHECKCAST)) {
+      cast = box;
+      box = producers.getProducer(cast, 0);
+    }
+    if (!isBoxing(box)) {
+      return;
+    }
+    final MethodInsnNode boxing = (MethodInsnNode) box;
+    final Type from = BOXES.get(boxing.owner);
+    if (!isApplicable(boxing, (TypeInsnNode) cast, unbox, from, to)) {
+      return;
+    }
+    if ((producers.getConsumer(boxing) != (cast == null ? unbox : cast))
+        || ((cast != null) && (producers.getConsumer(cast) != unbox))) {
+      return;
+    }
+    final AbstractInsnNode value = producers.getProducer(boxing, 0);
+    final AbstractInsnNode replacement;
+    if (isFoldable(value, producers, boxing, from)) {
+      replacement = NodeHelper.getInsnNodeFor(convert(NodeHelper.getNumberValue(value), to));
+      original.set(value, replacement);
+    } else {
+      final InsnList conversion = getConversion(from, to);
+      replacement = conversion.getFirst();
+      original.insert(unbox, conversion);
+    }
+    original.remove(boxing);
+    if (cast != null) {
+      original.remove(cast);
+    }
+    original.remove(unbox);
+    if (regions != null) {
+      regions.markChanged(replacement == null ? value : replacement);
+    }
+    optimized = true;
+  }
+  
+  private static boolean isBoxing(final AbstractInsnNode node) {
+    if ((node == null) || (node.getOpcode() != INVOKESTATIC)) {
+      return false;
+    }
+    final MethodInsnNode method = (MethodInsnNode) node;
+    final Type primitive = BOXES.get(method.owner);
+    if ((primitive == null) || !"valueOf".equals(method.name)) {
+      return false;
+    }
+    return method.desc.equals(Type.getMethodDescriptor(Type.getObjectType(method.owner), primitive));
+  }
+  
+  private static boolean isUnboxing(final MethodInsnNode node, final Type to) {
+    if (!node.name.equals(to.getClassName() + "Value") || (Type.getArgumentTypes(node.desc).length != 0)) {
+      return false;
+    }
+    return NUMBER.equals(node.owner) || BOXES.containsKey(node.owner);
+  }
+  
+  private static boolean isApplicable(final MethodInsnNode boxing, final TypeInsnNode cast,
+      final MethodInsnNode unbox, final Type from, final Type to) {
+    if ((cast != null) && !cast.desc.equals(boxing.owner) && !cast.desc.equals(NUMBER) && !cast.desc.equals(OBJECT)) {
+      return false;
+    }
+    if (isBooleanOrChar(from) || isBooleanOrChar(to)) {
+      return from.equals(to) && unbox.owner.equals(boxing.owner);
+    }
+    return unbox.owner.equals(boxing.owner) || unbox.owner.equals(NUMBER);
+  }
+  
+  private static boolean isFoldable(final AbstractInsnNode value, final StackProducers producers,
+      final AbstractInsnNode boxing, final Type from) {
+    if ((value == null) || NodeHelper.isCast(value) || !Predicates.IS_NUMBER_VALUE.evaluate(value)) {
+      return false;
+    }
+    return !isBooleanOrChar(from) && (producers.getConsumer(value) == boxing);
+  }
+  
+  private static boolean isBooleanOrChar(final Type type) {
+    return (type.getSort() == Type.BOOLEAN) || (type.getSort() == Type.CHAR);
+  }
+  
+  private static Number convert(final Number value, final Type to) {
+    switch (to.getSort()) {
+      case Type.BYTE:
+        return Integer.valueOf(value.byteValue());
+      case Type.SHORT:
+        return Integer.valueOf(value.shortValue());
+      case Type.LONG:
+        return Long.valueOf(value.longValue());
+      case Type.FLOAT:
+        return Float.valueOf(value.floatValue());
+      case Type.DOUBLE:
+        return Double.valueOf(value.doubleValue());
+      default:
+        return Integer.valueOf(value.intValue());
+    }
+  }
+  
+  private static InsnList getConversion(final Type from, final Type to) {
+    final InsnList conversion = new InsnList();
+    final int source = getStackIndex(from);
+    final int target = getStackIndex(to);
+    if (source != target) {
+      conversion.add(new InsnNode(CONVERSIONS[source][target]));
+    }
+    if ((to.getSort() == Type.BYTE) && (from.getSort() != Type.BYTE)) {
+      conversion.add(new InsnNode(I2B));
+    } else if ((to.getSort() == Type.SHORT) && (from.getSort() != Type.BYTE) && (from.getSort() != Type.SHORT)) {
+      conversion.add(new InsnNode(I2S));
+    }
+    return conversion;
+  }
+  
+  private static int getStackIndex(final Type type) {
+    switch (type.getSort()) {
+      case Type.LONG:
+        return 1;
+      case Type.FLOAT:
+        return 2;
+      case Type.DOUBLE:
+        return 3;
+      default:
+        return 0;
+    }
+  }
+  
+  @Override
+  public void setDirtyRegions(final DirtyRegions regions) {
+    this.regions = regions;
+  }
+  
+  @Override
+  public Set<ChangeKind> getEnablingChanges() {
+    return ENABLING_CHANGES;
+  }
+  
+  @Override
+  public Set<ChangeKind> getProducedChanges() {
+    return PRODUCED_CHANGES;
+  }
+}
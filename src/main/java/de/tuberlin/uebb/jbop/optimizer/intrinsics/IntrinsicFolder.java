@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.intrinsics;
+
+import static org.objectweb.asm.Opcodes.DCONST_1;
+import static org.objectweb.asm.Opcodes.DMUL;
+import static org.objectweb.asm.Opcodes.DUP2;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.POP2;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.apache.commons.math3.exception.NotANumberException;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import de.tuberlin.uebb.jbop.optimizer.ChangeKind;
+import de.tuberlin.uebb.jbop.optimizer.DirtyRegions;
+import de.tuberlin.uebb.jbop.optimizer.IChangeAware;
+import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
+import de.tuberlin.uebb.jbop.optimizer.IRegionAware;
+import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
+import de.tuberlin.uebb.jbop.optimizer.utils.StackProducers;
+
+/**
+ * The Class IntrinsicFolder.
+ * 
+ * Evaluates the calls of pure methods (see {@link PureMethods}) with constant arguments.
+ * 
+ * eg:
+ * 
+ * <pre>
+ * ldc 2.0
+ * invokestatic Math.sqrt(D)D
+ * ldc &quot;abc&quot;
+ * invokevirtual String.length()I
+ * </pre>
+ * 
+ * becomes
+ * 
+ * <pre>
+ * ldc 1.4142135623730951
+ * iconst_3
+ * </pre>
+ * 
+ * Calls that throw an exception are kept.
+ * 
+ * Additionally <code>Math.pow(x, n)</code> with a constant exponent n in [0, {@value #MAX_POW}] is reduced to
+ * <code>1</code>, <code>x</code> or <code>x * x</code>. These are exact (a single correctly rounded multiplication
+ * at most), so the result equals the one of {@link Math#pow(double, double)}. Greater exponents would need more than
+ * one rounding and may differ by more than one ulp. <code>StrictMath.pow</code> is never reduced, it has to return
+ * the exact result of the fdlibm algorithm.
+ * 
+ * @author Christopher Ewest
+ */
+public class IntrinsicFolder implements IOptimizer, IChangeAware, IRegionAware {
+  
+  private static final Set<ChangeKind> ENABLING_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.CONSTANTS, ChangeKind.CODE));
+  private static final Set<ChangeKind> PRODUCED_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.CONSTANTS, ChangeKind.CODE));
+  
+  /** The greatest exponent of Math.pow that is reduced to a multiplication (the result stays exact). */
+  public static final int MAX_POW = 2;
+  
+  private boolean optimized;
+  private DirtyRegions regions;
+  
+  @Override
+  public boolean isOptimized() {
+    return optimized;
+  }
+  
+  @Override
+  public InsnList optimize(final InsnList original, final MethodNode methodNode) {
+    optimized = false;
+    final StackProducers producers = new StackProducers(original, methodNode.tryCatchBlocks);
+    for (final AbstractInsnNode node : original.toArray()) {
+      if ((regions != null) && !regions.isDirty(node)) {
+        continue;
+      }
+      if ((node.getOpcode() != INVOKESTATIC) && (node.getOpcode() != INVOKEVIRTUAL)) {
+        continue;
+      }
+      final MethodInsnNode call = (MethodInsnNode) node;
+      if (!fold(original, producers, call)) {
+        reducePow(original, producers, call);
+      }
+    }
+    return original;
+  }
+  
+  private boolean fold(final InsnList original, final StackProducers producers, final MethodInsnNode call) {
+    final Method method = PureMethods.getMethod(call);
+    if (method == null) {
+      return false;
+    }
+    final boolean isStatic = Modifier.isStatic(method.getModifiers());
+    if (isStatic != (call.getOpcode() == INVOKESTATIC)) {
+      return false;
+    }
+    final int count = producers.getOperandCount(call);
+    final AbstractInsnNode[] operands = new AbstractInsnNode[count];
+    final Object[] values = new Object[count];
+    for (int i = 0; i < count; ++i) {
+      operands[i] = producers.getProducer(call, i);
+      if ((operands[i] == null) || (producers.getConsumer(operands[i]) != call) || NodeHelper.isCast(operands[i])) {
+        return false;
+      }
+      try {
+        values[i] = NodeHelper.getValue(operands[i]);
+      } catch (final NotANumberException nane) {
+        return false;
+      }
+    }
+    final AbstractInsnNode replacement = evaluate(method, isStatic, values);
+    if (replacement == null) {
+      return false;
+    }
+    for (final AbstractInsnNode operand : operands) {
+      original.remove(operand);
+    }
+    original.set(call, replacement);
+    markChanged(replacement);
+    return true;
+  }
+  
+  private static AbstractInsnNode evaluate(final Method method, final boolean isStatic, final Object[] values) {
+    final Class<?>[] parameterTypes = method.getParameterTypes();
+    final int offset = isStatic ? 0 : 1;
+    final Object receiver = isStatic ? null : values[0];
+    if (!isStatic && !method.getDeclaringClass().isInstance(receiver)) {
+      return null;
+    }
+    final Object[] arguments = new Object[parameterTypes.length];
+    for (int i = 0; i < arguments.length; ++i) {
+      arguments[i] = toArgument(values[i + offset], parameterTypes[i]);
+      if (arguments[i] == null) {
+        return null;
+      }
+    }
+    final Object result;
+    try {
+      result = method.invoke(receiver, arguments);
+    } catch (final InvocationTargetException | IllegalAccessException | IllegalArgumentException e) {
+      return null;
+    }
+    if (result instanceof String) {
+      return new LdcInsnNode(result);
+    }
+    if ((result instanceof Byte) || (result instanceof Short)) {
+      return NodeHelper.getInsnNodeFor(Integer.valueOf(((Number) result).intValue()));
+    }
+    if (result == null) {
+      return null;
+    }
+    return NodeHelper.getInsnNodeFor(result);
+  }
+  
+  private static Object toArgument(final Object value, final Class<?> type) {
+    if ((type == String.class) || (type == Object.class)) {
+      return value instanceof String ? value : null;
+    }
+    if (!(value instanceof Number)) {
+      return null;
+    }
+    final Number number = (Number) value;
+    if (type == boolean.class) {
+      return Boolean.valueOf(number.intValue() != 0);
+    }
+    if (type == char.class) {
+      return Character.valueOf((char) number.intValue());
+    }
+    if (type == byte.class) {
+      return Byte.valueOf((byte) number.intValue());
+    }
+    if (type == short.class) {
+      return Short.valueOf((short) number.intValue());
+    }
+    return number;
+  }
+  
+  private void reducePow(final InsnList original, final StackProducers producers, final MethodInsnNode call) {
+    if (!"java/lang/Math".equals(call.owner) || !"pow".equals(call.name) || !"(DD)D".equals(call.desc)) {
+      return;
+    }
+    final AbstractInsnNode exponentNode = producers.getProducer(call, 1);
+    if ((exponentNode == null) || (producers.getConsumer(exponentNode) != call) || NodeHelper.isCast(exponentNode)) {
+      return;
+    }
+    final double exponent;
+    try {
+      exponent = NodeHelper.getNumberValue(exponentNode).doubleValue();
+    } catch (final NotANumberException nane) {
+      return;
+    }
+    if ((exponent < 0) || (exponent > MAX_POW) || (exponent != Math.rint(exponent))) {
+      return;
+    }
+    final InsnList multiplications = new InsnList();
+    if (exponent == 0) {
+      multiplications.add(new InsnNode(POP2));
+      multiplications.add(new InsnNode(DCONST_1));
+    } else if (exponent == 2) {
+      multiplications.add(new InsnNode(DUP2));
+      multiplications.add(new InsnNode(DMUL));
+    }
+    original.remove(exponentNode);
+    final AbstractInsnNode first = multiplications.size() == 0 ? call.getPrevious() : multiplications.getFirst();
+    original.insert(call, multiplications);
+    original.remove(call);
+    markChanged(first);
+  }
+  
+  private void markChanged(final AbstractInsnNode node) {
+    optimized = true;
+    if ((regions != null) && (node != null)) {
+      regions.markChanged(node);
+    }
+  }
+  
+  @Override
+  public void setDirtyRegions(final DirtyRegions regions) {
+    this.regions = regions;
+  }
+  
+  @Override
+  public Set<ChangeKind> getEnablingChanges() {
+    return ENABLING_CHANGES;
+  }
+  
+  @Override
+  public Set<ChangeKind> getProducedChanges() {
+    return PRODUCED_CHANGES;
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.intrinsics;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.MethodInsnNode;
+
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+
+/**
+ * The Class PureMethods.
+ * 
+ * The registry of the methods the {@link IntrinsicFolder} may evaluate at specialization time.
+ * A method can be registered, if it is pure and deterministic (the result depends only on the arguments, there are
+ * no side effects), takes only primitives and Strings (or Objects, which get String constants) and returns a
+ * primitive or a String.
+ * Instance methods are only evaluated for String constants as receiver.
+ * 
+ * Registered by default are the static methods of {@link Math}, {@link StrictMath}, the wrapper classes and
+ * {@link String} (e.g. <code>Math.sqrt</code>, <code>Integer.bitCount</code>, <code>String.valueOf</code>)
+ * and the instance methods of {@link String} (e.g. <code>length</code>), except the ones that depend on global state
+ * ({@link Math#random()}, {@link Integer#getInteger(String)}, {@link String#toUpperCase()}, ...).
+ * 
+ * Own methods can be added:
+ * 
+ * <pre>
+ * PureMethods.register(Units.class, &quot;toMillis&quot;, double.class);
+ * </pre>
+ * 
+ * @author Christopher Ewest
+ */
+public final class PureMethods {
+  
+  private static final Map<String, Method> METHODS = new ConcurrentHashMap<>();
+  
+  private static final Set<String> IMPURE = new HashSet<>(Arrays.asList("random", "getInteger", "getLong",
+      "getBoolean", "toUpperCase", "toLowerCase"));
+  
+  static {
+    registerDefaults(Math.class, StrictMath.class, Boolean.class, Character.class, Byte.class, Short.class,
+        Integer.class, Long.class, Float.class, Double.class, String.class);
+  }
+  
+  private PureMethods() {
+    //
+  }
+  
+  /**
+   * Registers the method.
+   * 
+   * @param method
+   *          the method
+   * @throws JBOPClassException
+   *           if the method doesn't take and return only primitives and Strings
+   */
+  public static void register(final Method method) throws JBOPClassException {
+    if (!isApplicable(method)) {
+      throw new JBOPClassException("The method " + method + " can't be evaluated with constant arguments.", null);
+    }
+    METHODS.put(getKey(method), method);
+  }
+  
+  /**
+   * Registers the public method with the given parameter types.
+   * 
+   * @param owner
+   *          the class declaring the method
+   * @param name
+   *          the name of the method
+   * @param parameterTypes
+   *          the parameter types
+   * @throws JBOPClassException
+   *           if there is no such method or the method doesn't take and return only primitives and Strings
+   */
+  public static void register(final Class<?> owner, final String name, final Class<?>... parameterTypes)
+      throws JBOPClassException {
+    try {
+      register(owner.getMethod(name, parameterTypes));
+    } catch (final NoSuchMethodException | SecurityException e) {
+      throw new JBOPClassException("The method " + owner.getName() + "." + name + " doesn't exist.", e);
+    }
+  }
+  
+  /**
+   * Removes the method from the registry.
+   * 
+   * @param method
+   *          the method
+   */
+  public static void unregister(final Method method) {
+    METHODS.remove(getKey(method));
+  }
+  
+  /**
+   * Gets the registered method called by the node.
+   * 
+   * @param node
+   *          the node
+   * @return the method or null if the method is not registered
+   */
+  public static Method getMethod(final MethodInsnNode node) {
+    return METHODS.get(node.owner + "." + node.name + node.desc);
+  }
+  
+  private static void registerDefaults(final Class<?>... classes) {
+    for (final Class<?> clazz : classes) {
+      for (final Method method : clazz.getMethods()) {
+        if ((method.getDeclaringClass() == clazz) && !IMPURE.contains(method.getName()) && isApplicable(method)) {
+          METHODS.put(getKey(method), method);
+        }
+      }
+    }
+  }
+  
+  private static boolean isApplicable(final Method method) {
+    if (!Modifier.isPublic(method.getModifiers()) || !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+      return false;
+    }
+    if (!Modifier.isStatic(method.getModifiers()) && (method.getDeclaringClass() != String.class)) {
+      return false;
+    }
+    if (!isConstantType(method.getReturnType())) {
+      return false;
+    }
+    for (final Class<?> parameterType : method.getParameterTypes()) {
+      if (!isConstantType(parameterType) && (parameterType != Object.class)) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  private static boolean isConstantType(final Class<?> type) {
+    return (type == String.class) || (type.isPrimitive() && (type != void.class));
+  }
+  
+  private static String getKey(final Method method) {
+    return Type.getInternalName(method.getDeclaringClass()) + "." + method.getName()
+        + Type.getMethodDescriptor(method);
+  }
+}
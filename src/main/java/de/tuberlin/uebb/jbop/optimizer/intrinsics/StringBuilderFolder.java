@@ -0,0 +1,337 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.intrinsics;
+
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.LDC;
+import static org.objectweb.asm.Opcodes.NEW;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.math3.exception.NotANumberException;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+import de.tuberlin.uebb.jbop.optimizer.ChangeKind;
+import de.tuberlin.uebb.jbop.optimizer.DirtyRegions;
+import de.tuberlin.uebb.jbop.optimizer.IChangeAware;
+import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
+import de.tuberlin.uebb.jbop.optimizer.IRegionAware;
+import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
+import de.tuberlin.uebb.jbop.optimizer.utils.StackProducers;
+
+/**
+ * The Class StringBuilderFolder.
+ * 
+ * Folds the constant parts of String concatenations (chains of <code>StringBuilder.append</code>).
+ * 
+ * Adjacent appends of constants are merged into one append of a String constant
+ * (or into the String the builder is created with):
+ * 
+ * <pre>
+ * new StringBuilder().append(&quot;id=&quot;).append(42).append(name).append(':').append(1.5)
+ * </pre>
+ * 
+ * becomes
+ * 
+ * <pre>
+ * new StringBuilder(&quot;id=42&quot;).append(name).append(&quot;:1.5&quot;)
+ * </pre>
+ * 
+ * and if the whole chain is constant
+ * 
+ * <pre>
+ * new StringBuilder(&quot;id=&quot;).append(42).toString()
+ * </pre>
+ * 
+ * becomes
+ * 
+ * <pre>
+ * ldc &quot;id=42&quot;
+ * </pre>
+ * 
+ * The same is done for {@link StringBuffer}.
+ * 
+ * @author Christopher Ewest
+ */
+public class StringBuilderFolder implements IOptimizer, IChangeAware, IRegionAware {
+  
+  private static final Set<ChangeKind> ENABLING_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.CONSTANTS, ChangeKind.CODE));
+  private static final Set<ChangeKind> PRODUCED_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.CONSTANTS, ChangeKind.CODE));
+  
+  private static final Set<String> BUILDERS = new HashSet<>(Arrays.asList("java/lang/StringBuilder",
+      "java/lang/StringBuffer"));
+  private static final String STRING_INIT = "(Ljava/lang/String;)V";
+  
+  /** The String constants merged into the argument of an append or a constructor. */
+  private final Map<AbstractInsnNode, LdcInsnNode> mergedArguments = new IdentityHashMap<>();
+  private boolean optimized;
+  private DirtyRegions regions;
+  
+  @Override
+  public boolean isOptimized() {
+    return optimized;
+  }
+  
+  @Override
+  public InsnList optimize(final InsnList original, final MethodNode methodNode) {
+    optimized = false;
+    mergedArguments.clear();
+    mergeAppends(original, new StackProducers(original, methodNode.tryCatchBlocks));
+    foldToString(original, new StackProducers(original, methodNode.tryCatchBlocks));
+    return original;
+  }
+  
+  private void mergeAppends(final InsnList original, final StackProducers producers) {
+    // appends that were merged into the previous append of the chain
+    final Map<AbstractInsnNode, AbstractInsnNode> merged = new IdentityHashMap<>();
+    for (final AbstractInsnNode node : original.toArray()) {
+      if (!isAppend(node) || ((regions != null) && !regions.isDirty(node))) {
+        continue;
+      }
+      final MethodInsnNode append = (MethodInsnNode) node;
+      final AbstractInsnNode argument = producers.getProducer(append, 1);
+      final String value = getConstant(argument, append, producers);
+      if (value == null) {
+        continue;
+      }
+      AbstractInsnNode receiver = producers.getProducer(append, 0);
+      while (merged.containsKey(receiver)) {
+        receiver = merged.get(receiver);
+      }
+      final AbstractInsnNode changed;
+      if (isAppend(receiver)) {
+        changed = mergeInto((MethodInsnNode) receiver, value, original, producers);
+      } else {
+        changed = mergeIntoInit(getInit(receiver, producers), value, original, producers);
+      }
+      if (changed == null) {
+        continue;
+      }
+      merged.put(append, receiver);
+      original.remove(argument);
+      original.remove(append);
+      markChanged(changed);
+    }
+  }
+  
+  private AbstractInsnNode mergeInto(final MethodInsnNode previous, final String value, final InsnList original,
+      final StackProducers producers) {
+    AbstractInsnNode previousArgument = mergedArguments.get(previous);
+    final String previousValue;
+    if (previousArgument == null) {
+      previousArgument = producers.getProducer(previous, 1);
+      previousValue = getConstant(previousArgument, previous, producers);
+    } else {
+      previousValue = (String) ((LdcInsnNode) previousArgument).cst;
+    }
+    if (previousValue == null) {
+      return null;
+    }
+    final LdcInsnNode replacement = new LdcInsnNode(previousValue + value);
+    original.set(previousArgument, replacement);
+    previous.desc = Type.getMethodDescriptor(Type.getObjectType(previous.owner), Type.getType(String.class));
+    mergedArguments.put(previous, replacement);
+    return replacement;
+  }
+  
+  private AbstractInsnNode mergeIntoInit(final MethodInsnNode init, final String value, final InsnList original,
+      final StackProducers producers) {
+    if (init == null) {
+      return null;
+    }
+    final LdcInsnNode replacement;
+    if ("()V".equals(init.desc)) {
+      replacement = new LdcInsnNode(value);
+      original.insertBefore(init, replacement);
+      init.desc = STRING_INIT;
+    } else if (STRING_INIT.equals(init.desc)) {
+      AbstractInsnNode initArgument = mergedArguments.get(init);
+      if (initArgument == null) {
+        initArgument = producers.getProducer(init, 1);
+        if (!(initArgument instanceof LdcInsnNode) || (producers.getConsumer(initArgument) != init)) {
+          return null;
+        }
+      }
+      replacement = new LdcInsnNode(((LdcInsnNode) initArgument).cst + value);
+      original.set(initArgument, replacement);
+    } else {
+      return null;
+    }
+    mergedArguments.put(init, replacement);
+    return replacement;
+  }
+  
+  private void foldToString(final InsnList original, final StackProducers producers) {
+    for (final AbstractInsnNode node : original.toArray()) {
+      if ((node.getOpcode() != INVOKEVIRTUAL) || ((regions != null) && !regions.isDirty(node))) {
+        continue;
+      }
+      final MethodInsnNode toString = (MethodInsnNode) node;
+      if (!BUILDERS.contains(toString.owner) || !"toString".equals(toString.name)) {
+        continue;
+      }
+      final AbstractInsnNode dup = producers.getProducer(toString, 0);
+      final MethodInsnNode init = getInit(dup, producers);
+      if ((init == null) || (producers.getConsumers(dup).size() != 2)) {
+        continue;
+      }
+      String value = "";
+      AbstractInsnNode initArgument = null;
+      if (STRING_INIT.equals(init.desc)) {
+        initArgument = producers.getProducer(init, 1);
+        if (!(initArgument instanceof LdcInsnNode) || (producers.getConsumer(initArgument) != init)) {
+          continue;
+        }
+        value = (String) ((LdcInsnNode) initArgument).cst;
+      } else if (!"()V".equals(init.desc)) {
+        continue;
+      }
+      final LdcInsnNode replacement = new LdcInsnNode(value);
+      original.remove(producers.getProducer(dup, 0));
+      original.remove(dup);
+      if (initArgument != null) {
+        original.remove(initArgument);
+      }
+      original.remove(init);
+      original.set(toString, replacement);
+      markChanged(replacement);
+    }
+  }
+  
+  /**
+   * Gets the constructor call of the builder, if the node is the dup of
+   * <code>new StringBuilder; dup; ...; invokespecial &lt;init&gt;</code>.
+   */
+  private static MethodInsnNode getInit(final AbstractInsnNode dup, final StackProducers producers) {
+    if ((dup == null) || (dup.getOpcode() != DUP)) {
+      return null;
+    }
+    final AbstractInsnNode newNode = producers.getProducer(dup, 0);
+    if ((newNode == null) || (newNode.getOpcode() != NEW) || !BUILDERS.contains(((TypeInsnNode) newNode).desc)
+        || (producers.getConsumer(newNode) != dup)) {
+      return null;
+    }
+    final List<AbstractInsnNode> consumers = producers.getConsumers(dup);
+    for (final AbstractInsnNode consumer : consumers) {
+      if ((consumer.getOpcode() == INVOKESPECIAL) && "<init>".equals(((MethodInsnNode) consumer).name)
+          && (producers.getProducer(consumer, 0) == dup)) {
+        return (MethodInsnNode) consumer;
+      }
+    }
+    return null;
+  }
+  
+  private static boolean isAppend(final AbstractInsnNode node) {
+    if ((node == null) || (node.getOpcode() != INVOKEVIRTUAL)) {
+      return false;
+    }
+    final MethodInsnNode method = (MethodInsnNode) node;
+    return BUILDERS.contains(method.owner) && "append".equals(method.name)
+        && (Type.getArgumentTypes(method.desc).length == 1);
+  }
+  
+  /**
+   * Gets the String the argument of the append is converted to, or null if it isn't a constant.
+   */
+  private static String getConstant(final AbstractInsnNode argument, final MethodInsnNode append,
+      final StackProducers producers) {
+    if ((argument == null) || NodeHelper.isCast(argument) || (producers.getConsumer(argument) != append)) {
+      return null;
+    }
+    final Type type = Type.getArgumentTypes(append.desc)[0];
+    if ((type.getSort() == Type.OBJECT) && !"java/lang/String".equals(type.getInternalName())
+        && !"java/lang/CharSequence".equals(type.getInternalName())
+        && !"java/lang/Object".equals(type.getInternalName())) {
+      return null;
+    }
+    if (type.getSort() == Type.OBJECT) {
+      if (argument.getOpcode() == ACONST_NULL) {
+        return "null";
+      }
+      if ((argument.getOpcode() == LDC) && (((LdcInsnNode) argument).cst instanceof String)) {
+        return (String) ((LdcInsnNode) argument).cst;
+      }
+      return null;
+    }
+    final Number number;
+    try {
+      number = NodeHelper.getNumberValue(argument);
+    } catch (final NotANumberException nane) {
+      return null;
+    }
+    switch (type.getSort()) {
+      case Type.BOOLEAN:
+        return String.valueOf(number.intValue() != 0);
+      case Type.CHAR:
+        return String.valueOf((char) number.intValue());
+      case Type.BYTE:
+      case Type.SHORT:
+      case Type.INT:
+        return String.valueOf(number.intValue());
+      case Type.LONG:
+        return String.valueOf(number.longValue());
+      case Type.FLOAT:
+        return String.valueOf(number.floatValue());
+      case Type.DOUBLE:
+        return String.valueOf(number.doubleValue());
+      default:
+        return null;
+    }
+  }
+  
+  private void markChanged(final AbstractInsnNode node) {
+    optimized = true;
+    if (regions != null) {
+      regions.markChanged(node);
+    }
+  }
+  
+  @Override
+  public void setDirtyRegions(final DirtyRegions regions) {
+    this.regions = regions;
+  }
+  
+  @Override
+  public Set<ChangeKind> getEnablingChanges() {
+    return ENABLING_CHANGES;
+  }
+  
+  @Override
+  public Set<ChangeKind> getProducedChanges() {
+    return PRODUCED_CHANGES;
+  }
+}
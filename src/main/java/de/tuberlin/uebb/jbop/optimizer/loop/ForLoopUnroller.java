@@ -18,13 +18,18 @@
  */
 package de.tuberlin.uebb.jbop.optimizer.loop;
 
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Set;
 
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.InsnList;
 import org.objectweb.asm.tree.MethodNode;
 
+import de.tuberlin.uebb.jbop.optimizer.ChangeKind;
+import de.tuberlin.uebb.jbop.optimizer.IChangeAware;
 import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
 import de.tuberlin.uebb.jbop.optimizer.utils.Loop;
 import de.tuberlin.uebb.jbop.optimizer.utils.LoopMatcher;
@@ -96,7 +101,11 @@ import de.tuberlin.uebb.jbop.optimizer.utils.LoopMatcher;
  * 
  * @author Christopher Ewest
  */
-public class ForLoopUnroller implements IOptimizer {
+public class ForLoopUnroller implements IOptimizer, IChangeAware {
+  
+  private static final Set<ChangeKind> ENABLING_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.CONSTANTS, ChangeKind.CONTROL_FLOW, ChangeKind.CODE));
+  private static final Set<ChangeKind> PRODUCED_CHANGES = Collections.unmodifiableSet(EnumSet.allOf(ChangeKind.class));
   
   private boolean optimized = false;
   
@@ -147,4 +156,13 @@ public class ForLoopUnroller implements IOptimizer {
     }
   }
   
+  @Override
+  public Set<ChangeKind> getEnablingChanges() {
+    return ENABLING_CHANGES;
+  }
+  
+  @Override
+  public Set<ChangeKind> getProducedChanges() {
+    return PRODUCED_CHANGES;
+  }
 }
@@ -0,0 +1,394 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.loop;
+
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARRAYLENGTH;
+import static org.objectweb.asm.Opcodes.DCMPG;
+import static org.objectweb.asm.Opcodes.DLOAD;
+import static org.objectweb.asm.Opcodes.DNEG;
+import static org.objectweb.asm.Opcodes.DSTORE;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.I2L;
+import static org.objectweb.asm.Opcodes.I2S;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.IDIV;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.IREM;
+import static org.objectweb.asm.Opcodes.ISHL;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.LCMP;
+import static org.objectweb.asm.Opcodes.LDC;
+import static org.objectweb.asm.Opcodes.LDIV;
+import static org.objectweb.asm.Opcodes.LLOAD;
+import static org.objectweb.asm.Opcodes.LREM;
+import static org.objectweb.asm.Opcodes.LSTORE;
+import static org.objectweb.asm.Opcodes.LXOR;
+import static org.objectweb.asm.Opcodes.SIPUSH;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import de.tuberlin.uebb.jbop.access.ClassAccessor;
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.ChangeKind;
+import de.tuberlin.uebb.jbop.optimizer.IChangeAware;
+import de.tuberlin.uebb.jbop.optimizer.IInputObjectAware;
+import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
+import de.tuberlin.uebb.jbop.optimizer.annotations.ImmutableArray;
+import de.tuberlin.uebb.jbop.optimizer.utils.Loop;
+import de.tuberlin.uebb.jbop.optimizer.utils.LoopMatcher;
+import de.tuberlin.uebb.jbop.optimizer.utils.StackProducers;
+
+/**
+ * Moves loop invariant computations in front of the loops that are not unrolled.
+ * eg:
+ * 
+ * <pre>
+ * for (int i = 0; i &lt; n; ++i) {
+ *   sum += d[i] * this.factor * this.scale.length;
+ * }
+ * </pre>
+ * 
+ * becomes
+ * 
+ * <pre>
+ * double tmp = this.factor * this.scale.length;
+ * for (int i = 0; i &lt; n; ++i) {
+ *   sum += d[i] * tmp;
+ * }
+ * </pre>
+ * 
+ * The loops are found by the {@link LoopMatcher}. The computed value is stored to a new local variable
+ * in front of the start value of the loop counter, so that the loop is still recognized by the {@link LoopMatcher}.
+ * 
+ * An expression is invariant if it consists only of
+ * <ul>
+ * <li>constants and loads of variables that are not written inside of the loop</li>
+ * <li>getfields of final or {@link ImmutableArray} fields of objects known to be not null (this and the values of such
+ * fields of the input object)</li>
+ * <li>arraylength of such arrays</li>
+ * <li>arithmetic that can't throw an exception (no integer division / remainder)</li>
+ * </ul>
+ * so the computation can be moved even if the loop is never entered.
+ * 
+ * @author Christopher Ewest
+ */
+public class LoopInvariantCodeMotion implements IOptimizer, IInputObjectAware, IChangeAware {
+  
+  private static final Set<ChangeKind> ENABLING_CHANGES = Collections.unmodifiableSet(EnumSet.allOf(ChangeKind.class));
+  private static final Set<ChangeKind> PRODUCED_CHANGES = Collections.unmodifiableSet(EnumSet.of(ChangeKind.LOCALS,
+      ChangeKind.CODE));
+  
+  /** The result types of the conversions i2l ... i2s. */
+  private static final Type[] CONVERSION_TYPES = {
+      Type.LONG_TYPE, Type.FLOAT_TYPE, Type.DOUBLE_TYPE, //
+      Type.INT_TYPE, Type.FLOAT_TYPE, Type.DOUBLE_TYPE, //
+      Type.INT_TYPE, Type.LONG_TYPE, Type.DOUBLE_TYPE, //
+      Type.INT_TYPE, Type.LONG_TYPE, Type.FLOAT_TYPE, //
+      Type.INT_TYPE, Type.INT_TYPE, Type.INT_TYPE };
+  
+  /** The types of the arithmetic operations iadd ... dneg. */
+  private static final Type[] ARITHMETIC_TYPES = {
+      Type.INT_TYPE, Type.LONG_TYPE, Type.FLOAT_TYPE, Type.DOUBLE_TYPE };
+  
+  private boolean optimized;
+  private Object input;
+  
+  @Override
+  public boolean isOptimized() {
+    return optimized;
+  }
+  
+  @Override
+  public void setInputObject(final Object input) {
+    this.input = input;
+  }
+  
+  @Override
+  public InsnList optimize(final InsnList original, final MethodNode methodNode) throws JBOPClassException {
+    optimized = false;
+    while (hoistNext(original, methodNode)) {
+      optimized = true;
+    }
+    return original;
+  }
+  
+  /**
+   * Moves the first invariant expression found in any loop.
+   */
+  private boolean hoistNext(final InsnList original, final MethodNode methodNode) throws JBOPClassException {
+    StackProducers producers = null;
+    for (AbstractInsnNode node = original.getFirst(); node != null; node = node.getNext()) {
+      if (node.getOpcode() != ISTORE) {
+        continue;
+      }
+      final Loop loop = LoopMatcher.getLoop(node);
+      if (loop == null) {
+        continue;
+      }
+      if (producers == null) {
+        producers = new StackProducers(original, methodNode.tryCatchBlocks);
+      }
+      final Invariants invariants = new Invariants(loop, producers, methodNode);
+      for (AbstractInsnNode current = node.getNext(); current != null; current = current.getNext()) {
+        if (invariants.isRoot(current) && hoist(original, methodNode, loop, producers, current)) {
+          return true;
+        }
+        if (current == loop.getEndOfLoop()) {
+          break;
+        }
+      }
+    }
+    return false;
+  }
+  
+  private boolean hoist(final InsnList original, final MethodNode methodNode, final Loop loop,
+      final StackProducers producers, final AbstractInsnNode root) {
+    final AbstractInsnNode preheader = producers.getFirstOfStack(loop.getCounter());
+    final List<AbstractInsnNode> tree = new ArrayList<>();
+    collect(root, producers, tree);
+    Collections.sort(tree, new Comparator<AbstractInsnNode>() {
+      
+      @Override
+      public int compare(final AbstractInsnNode o1, final AbstractInsnNode o2) {
+        return Integer.compare(producers.indexOf(o1), producers.indexOf(o2));
+      }
+    });
+    if ((preheader == null) || !isContiguous(tree)) {
+      return false;
+    }
+    final Type type = getResultType(root);
+    final int var = getNewLocal(original, methodNode, type.getSize());
+    original.insert(root, new VarInsnNode(type.getOpcode(ILOAD), var));
+    final InsnList hoisted = new InsnList();
+    for (final AbstractInsnNode node : tree) {
+      original.remove(node);
+      hoisted.add(node);
+    }
+    hoisted.add(new VarInsnNode(type.getOpcode(ISTORE), var));
+    original.insertBefore(preheader, hoisted);
+    return true;
+  }
+  
+  private static void collect(final AbstractInsnNode node, final StackProducers producers,
+      final List<AbstractInsnNode> tree) {
+    tree.add(node);
+    for (int i = 0; i < producers.getOperandCount(node); ++i) {
+      collect(producers.getProducer(node, i), producers, tree);
+    }
+  }
+  
+  /**
+   * Checks that only line numbers and frames are between the nodes of the expression.
+   */
+  private static boolean isContiguous(final List<AbstractInsnNode> tree) {
+    final AbstractInsnNode end = tree.get(tree.size() - 1);
+    int index = 0;
+    for (AbstractInsnNode node = tree.get(0); node != end; node = node.getNext()) {
+      if (node == tree.get(index)) {
+        index++;
+      } else if ((node.getOpcode() >= 0) || (node instanceof LabelNode)) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  private static int getNewLocal(final InsnList original, final MethodNode methodNode, final int size) {
+    int maxLocals = Math.max(methodNode.maxLocals, Type.getArgumentsAndReturnSizes(methodNode.desc) >> 2);
+    for (AbstractInsnNode node = original.getFirst(); node != null; node = node.getNext()) {
+      if (node instanceof VarInsnNode) {
+        maxLocals = Math.max(maxLocals, ((VarInsnNode) node).var + getSize(node.getOpcode()));
+      } else if (node instanceof IincInsnNode) {
+        maxLocals = Math.max(maxLocals, ((IincInsnNode) node).var + 1);
+      }
+    }
+    methodNode.maxLocals = maxLocals + size;
+    return maxLocals;
+  }
+  
+  private static int getSize(final int opcode) {
+    return (opcode == LLOAD) || (opcode == DLOAD) || (opcode == LSTORE) || (opcode == DSTORE) ? 2 : 1;
+  }
+  
+  private static Type getResultType(final AbstractInsnNode node) {
+    final int opcode = node.getOpcode();
+    if (opcode == GETFIELD) {
+      return Type.getType(((FieldInsnNode) node).desc);
+    }
+    if ((opcode >= IADD) && (opcode <= DNEG)) {
+      return ARITHMETIC_TYPES[(opcode - IADD) % 4];
+    }
+    if ((opcode >= ISHL) && (opcode <= LXOR)) {
+      return ARITHMETIC_TYPES[(opcode - ISHL) % 2];
+    }
+    if ((opcode >= I2L) && (opcode <= I2S)) {
+      return CONVERSION_TYPES[opcode - I2L];
+    }
+    // arraylength, lcmp ... dcmpg
+    return Type.INT_TYPE;
+  }
+  
+  private static boolean isArithmetic(final int opcode) {
+    if ((opcode == IDIV) || (opcode == LDIV) || (opcode == IREM) || (opcode == LREM)) {
+      return false;
+    }
+    return ((opcode >= IADD) && (opcode <= LXOR)) || ((opcode >= I2L) && (opcode <= DCMPG));
+  }
+  
+  @Override
+  public Set<ChangeKind> getEnablingChanges() {
+    return ENABLING_CHANGES;
+  }
+  
+  @Override
+  public Set<ChangeKind> getProducedChanges() {
+    return PRODUCED_CHANGES;
+  }
+  
+  /**
+   * The invariant expressions of a single loop.
+   */
+  private final class Invariants {
+    
+    private final Set<AbstractInsnNode> region = Collections
+        .newSetFromMap(new IdentityHashMap<AbstractInsnNode, Boolean>());
+    private final Map<AbstractInsnNode, Boolean> invariant = new IdentityHashMap<>();
+    private final Map<AbstractInsnNode, Object> values = new IdentityHashMap<>();
+    private final BitSet written = new BitSet();
+    private final StackProducers producers;
+    private final boolean isStatic;
+    
+    Invariants(final Loop loop, final StackProducers producers, final MethodNode methodNode) {
+      this.producers = producers;
+      isStatic = (methodNode.access & ACC_STATIC) != 0;
+      for (AbstractInsnNode node = loop.getCounter().getNext(); node != null; node = node.getNext()) {
+        region.add(node);
+        if ((node instanceof VarInsnNode) && (node.getOpcode() >= ISTORE)) {
+          written.set(((VarInsnNode) node).var, ((VarInsnNode) node).var + getSize(node.getOpcode()));
+        } else if (node instanceof IincInsnNode) {
+          written.set(((IincInsnNode) node).var);
+        }
+        if (node == loop.getEndOfLoop()) {
+          break;
+        }
+      }
+    }
+    
+    /**
+     * Checks if the node computes an invariant value worth to be moved, that is not part of a bigger one.
+     */
+    boolean isRoot(final AbstractInsnNode node) throws JBOPClassException {
+      final int opcode = node.getOpcode();
+      if ((opcode != GETFIELD) && (opcode != ARRAYLENGTH) && !isArithmetic(opcode)) {
+        return false;
+      }
+      if (!isInvariant(node)) {
+        return false;
+      }
+      final AbstractInsnNode consumer = producers.getConsumer(node);
+      return !region.contains(consumer) || !isInvariant(consumer);
+    }
+    
+    private boolean isInvariant(final AbstractInsnNode node) throws JBOPClassException {
+      final Boolean known = invariant.get(node);
+      if (known != null) {
+        return known.booleanValue();
+      }
+      final boolean result = (node != null) && region.contains(node) && (producers.getConsumer(node) != null)
+          && isInvariantIntern(node);
+      invariant.put(node, Boolean.valueOf(result));
+      return result;
+    }
+    
+    private boolean isInvariantIntern(final AbstractInsnNode node) throws JBOPClassException {
+      final int opcode = node.getOpcode();
+      if (((opcode >= ACONST_NULL) && (opcode <= SIPUSH)) || (opcode == LDC)) {
+        return true;
+      }
+      if ((opcode >= ILOAD) && (opcode <= ALOAD)) {
+        final int var = ((VarInsnNode) node).var;
+        return written.get(var, var + getSize(opcode)).isEmpty();
+      }
+      if ((opcode == GETFIELD) || (opcode == ARRAYLENGTH)) {
+        final AbstractInsnNode owner = producers.getProducer(node, 0);
+        if (!isInvariant(owner) || (getValue(owner) == null)) {
+          return false;
+        }
+        return (opcode == ARRAYLENGTH) || isConstantField(getValue(owner), ((FieldInsnNode) node).name);
+      }
+      if (!isArithmetic(opcode)) {
+        return false;
+      }
+      for (int i = 0; i < producers.getOperandCount(node); ++i) {
+        final AbstractInsnNode operand = producers.getProducer(node, i);
+        if (!isInvariant(operand) || (producers.getConsumer(operand) != node)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    
+    /**
+     * Gets the object produced by the node (this or the value of a final field), null if it is unknown.
+     */
+    private Object getValue(final AbstractInsnNode node) throws JBOPClassException {
+      if (values.containsKey(node)) {
+        return values.get(node);
+      }
+      Object value = null;
+      if (input == null) {
+        value = null;
+      } else if ((node.getOpcode() == ALOAD) && (((VarInsnNode) node).var == 0) && !isStatic) {
+        value = input;
+      } else if (node.getOpcode() == GETFIELD) {
+        final Object owner = getValue(producers.getProducer(node, 0));
+        final String name = ((FieldInsnNode) node).name;
+        if ((owner != null) && isConstantField(owner, name)) {
+          value = ClassAccessor.getCurrentValue(owner, name);
+        }
+      }
+      values.put(node, value);
+      return value;
+    }
+    
+    private boolean isConstantField(final Object owner, final String name) {
+      return ClassAccessor.isFinal(owner, name) || ClassAccessor.hasAnnotation(owner, name, ImmutableArray.class);
+    }
+  }
+}
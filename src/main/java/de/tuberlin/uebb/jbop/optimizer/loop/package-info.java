@@ -1,5 +1,6 @@
 /**
  * This package contains classes that deals loops.
- * for / do / while loops are unroled.
+ * for / do / while loops are unroled,
+ * loop invariant computations of the remaining loops are moved in front of them.
  */
 package de.tuberlin.uebb.jbop.optimizer.loop;
\ No newline at end of file
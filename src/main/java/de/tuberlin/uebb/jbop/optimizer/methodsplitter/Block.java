@@ -21,504 +21,297 @@ package de.tuberlin.uebb.jbop.optimizer.methodsplitter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.commons.CodeSizeEvaluator;
 import org.objectweb.asm.tree.AbstractInsnNode;
-import org.objectweb.asm.tree.FieldInsnNode;
 import org.objectweb.asm.tree.IincInsnNode;
 import org.objectweb.asm.tree.InsnList;
 import org.objectweb.asm.tree.InsnNode;
-import org.objectweb.asm.tree.IntInsnNode;
 import org.objectweb.asm.tree.MethodInsnNode;
-import org.objectweb.asm.tree.MultiANewArrayInsnNode;
 import org.objectweb.asm.tree.TypeInsnNode;
 import org.objectweb.asm.tree.VarInsnNode;
 
-import de.tuberlin.uebb.jbop.optimizer.loop.SplitMarkNode;
 import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
 
+import de.tuberlin.uebb.jbop.optimizer.loop.SplitMarkNode;
+
 /**
  * The Class Block.
- * 
- * This is a DTO / BO that holds instructions for a Method.
- * Whenever a instruction is added to the block, parameters of the method
- * are updated on the fly.
- * 
+ *
+ * This is a DTO / BO that describes a part of a split method:
+ * the range of instructions [start, end) of the original method,
+ * the variables that are live on entry (parameters of the part)
+ * and the variables that are live on exit (results of the part).
+ *
+ * A single result is returned directly, several results are returned (boxed) in an Object[].
+ *
+ * The original method becomes a dispatcher that calls all blocks sequentially,
+ * passing the parameters and storing the results into the original locals.
+ *
  * @author Christopher Ewest
  */
 class Block {
-  
-  private final VarList readers = new VarList();
-  private final VarList writers = new VarList();
-  private final VarList parameters = new VarList();
-  private final Type[] args;
-  
-  /** The insns. */
-  private final List<AbstractInsnNode> insns = new ArrayList<>();
-  
-  private CodeSizeEvaluator sizeEvaluator = new CodeSizeEvaluator(null);
-  
-  /** The num. */
+
+  private static final Type RESULTS_TYPE = Type.getType(Object[].class);
+
   private final int num;
-  private final Map<Integer, Integer> varMap = new HashMap<Integer, Integer>();
-  private final InsnList pushParameters = new InsnList();
-  private int varIndex = 1;
-  private final int firstLocal;
-  private final int parameterIndexes[];
-  private final StringBuilder descBuilder = new StringBuilder("(");
-  private final Type returnType;
-  
+  private final int start;
+  private final int end;
+  private final boolean last;
+  private final List<Var> parameters = new ArrayList<>();
+  private final List<Var> results = new ArrayList<>();
+  private Type returnType;
+
   /**
    * Instantiates a new {@link Block}.
-   * 
+   *
    * @param num
    *          the number of the block
-   * @param args
-   *          the top-Level parameters of the method
+   * @param start
+   *          the index of the first instruction (inclusive)
+   * @param end
+   *          the index of the last instruction (exclusive)
    * @param returnType
-   *          the return type
+   *          the return type of the original method, if this is the last block, otherwise null
    */
-  Block(final int num, final Type[] args, final Type returnType) {
-    this.args = args;
+  Block(final int num, final int start, final int end, final Type returnType) {
     this.num = num;
-    this.returnType = returnType;
-    int i = 0;
-    parameterIndexes = new int[args.length];
-    for (final Type type : args) {
-      parameterIndexes[i] = varIndex;
-      pushParameters.add(new VarInsnNode(getOpcode(type), varIndex));
-      parameters.add(new Var(varIndex, -1, VarType.READ, type));
-      varMap.put(Integer.valueOf(varIndex), Integer.valueOf(varIndex));
-      varIndex += type.getSize();
-      i++;
-      descBuilder.append(type.getDescriptor());
-    }
-    firstLocal = varIndex;
-  }
-  
-  private int getOpcode(final Type type) {
-    if (Type.BOOLEAN_TYPE.equals(type)) {
-      return Opcodes.ILOAD;
-    }
-    if (Type.INT_TYPE.equals(type)) {
-      return Opcodes.ILOAD;
-    }
-    if (Type.FLOAT_TYPE.equals(type)) {
-      return Opcodes.FLOAD;
-    }
-    if (Type.LONG_TYPE.equals(type)) {
-      return Opcodes.LLOAD;
-    }
-    if (Type.DOUBLE_TYPE.equals(type)) {
-      return Opcodes.DLOAD;
-    }
-    if (Type.CHAR_TYPE.equals(type)) {
-      return Opcodes.ILOAD;
-    }
-    return Opcodes.ALOAD;
+    this.start = start;
+    this.end = end;
+    last = returnType != null;
+    this.returnType = last ? returnType : Type.VOID_TYPE;
   }
-  
-  /**
-   * Gets the current Size of the method.
-   * 
-   * @return the size
-   * @see CodeSizeEvaluator
-   */
-  int getSize() {
-    return sizeEvaluator.getMaxSize();
-  }
-  
-  /**
-   * To string.
-   * 
-   * @return the string
-   */
-  @Override
-  public String toString() {
-    return "Block " + num + ": " + getSize() + "bytes, " + getDescriptor();
-  }
-  
-  /**
-   * Gets the descriptor.
-   * 
-   * @return the descriptor
-   */
-  String getDescriptor() {
-    return descBuilder.toString() + ")" + returnType.getDescriptor();
-  }
-  
+
   /**
-   * Adds the insn to this block.
-   * 
-   * @param insn
-   *          the insn
+   * Adds a variable that is live on entry of this block.
+   *
+   * @param index
+   *          the index of the variable in the original method
+   * @param type
+   *          the type
    */
-  void addInsn(final AbstractInsnNode insn) {
-    addInsn(insn, false);
+  void addParameter(final int index, final Type type) {
+    for (final Var parameter : parameters) {
+      if (parameter.getVarIndex() == index) {
+        return;
+      }
+    }
+    parameters.add(new Var(index, start, VarType.READ, type));
   }
-  
+
   /**
-   * Adds the insn to this block.
-   * Computes parameters and types if deep is true.
-   * 
-   * @param insn
-   *          the insn
-   * @param deep
-   *          compute parameters and types?
+   * Adds a variable that is live on exit of this block.
+   *
+   * @param index
+   *          the index of the variable in the original method
+   * @param type
+   *          the type
    */
-  void addInsn(final AbstractInsnNode insn, final boolean deep) {
-    insns.add(insn);
-    if (!(insn instanceof SplitMarkNode)) {
-      insn.accept(sizeEvaluator);
-    }
-    if (!deep) {
-      return;
-    }
-    if (isStore(insn)) {
-      final int index = getIndex(insn);
-      if (writers.containsIndex(index)) {
-        return;
-      }
-      final Type findType = findType(insn);
-      if (insn instanceof InsnNode) {
-        writers.add(new Var(-1, insns.indexOf(insn), VarType.WRITE, findType));
-      } else {
-        final VarInsnNode var = (VarInsnNode) insn;
-        writers.add(new Var(var.var, insns.indexOf(insn), VarType.WRITE, findType));
-      }
-    } else if (isLoad(insn)) {
-      final VarInsnNode var = (VarInsnNode) insn;
-      final int index = var.var;
-      if (index == 0) {
+  void addResult(final int index, final Type type) {
+    for (final Var result : results) {
+      if (result.getVarIndex() == index) {
         return;
       }
-      
-      final Type findType = findType(insn);
-      
-      final Var e = new Var(index, insns.indexOf(insn), VarType.READ, findType);
-      readers.add(e);
-      if (!writers.containsIndex(index) && !parameters.containsIndex(index)) {
-        parameters.add(e);
-        
-        final VarInsnNode node = new VarInsnNode(var.getOpcode(), index);
-        pushParameters.add(node);
-        descBuilder.append(findType.getDescriptor());
-        addVarMapping(var, findType);
-      }
-    }
-  }
-  
-  private void addVarMapping(final VarInsnNode var, final Type type) {
-    final Integer index = Integer.valueOf(var.var);
-    if (varMap.containsKey(index)) {
-      return;
     }
-    varMap.put(index, Integer.valueOf(varIndex));
-    varIndex += type.getSize();
+    results.add(new Var(index, end, VarType.WRITE, type));
+    returnType = results.size() == 1 ? type : RESULTS_TYPE;
   }
-  
+
   /**
-   * Gets the parameter types (including top-level parameters).
-   * 
-   * @return the parameter types
+   * Gets the descriptor.
+   *
+   * @return the descriptor
    */
-  Type[] getParameterTypes() {
+  String getDescriptor() {
     final Type[] types = new Type[parameters.size()];
-    int i = 0;
-    for (final Var parameter : parameters) {
-      types[i++] = parameter.getParameterType();
+    for (int i = 0; i < types.length; ++i) {
+      types[i] = parameters.get(i).getParameterType();
     }
-    return types;
+    return Type.getMethodDescriptor(returnType, types);
   }
-  
+
   /**
    * Gets the push parameters.
-   * 
-   * This is an instruction list preparing the stack to call *this* method.
-   * 
+   *
+   * This is an instruction list preparing the stack (of the dispatcher) to call *this* method.
+   *
    * @return the push parameters
    */
   InsnList getPushParameters() {
-    return pushParameters;
-  }
-  
-  /**
-   * Gets the end type.
-   * 
-   * @return the end type
-   */
-  Type getEndType() {
-    final AbstractInsnNode lastStore = getLastStore();
-    final int index = getIndex(lastStore);
-    if (index == -1) {
-      return Type.VOID_TYPE;
-    }
-    final Var lastVar = writers.getLastVar(index);
-    if ((lastVar == null)) {
-      if ((lastStore == null)) {
-        return Type.VOID_TYPE;
-      }
-      return findType(lastStore);
-    }
-    return lastVar.getParameterType();
-  }
-  
-  /**
-   * Finds the type of the given node.
-   * 
-   * @param node
-   *          the node
-   * @return the type
-   */
-  Type findType(final AbstractInsnNode node) {
-    final int index = getIndex(node);
-    
-    Type type = getTypeFromParam(index);
-    if (type != null) {
-      return type;
-    }
-    
-    type = getTypeIfSimpleType(node);
-    if (type != null) {
-      return type;
-    }
-    // ALOAD
-    
-    type = getAlreadyKnownType(node, index);
-    if (type != null) {
-      return type;
-    }
-    
-    return resolveType(node);
-  }
-  
-  /**
-   * Objects that are not parameters and not written before
-   * these can be:
-   * getField
-   * getStatic
-   * new
-   * new array
-   * new multi array
-   * return type of method call
-   */
-  private Type resolveType(final AbstractInsnNode node) {
-    int arrayCount = 0;
-    AbstractInsnNode currentNode = NodeHelper.getPrevious(node);
-    while (currentNode != null) {
-      final int opcode2 = currentNode.getOpcode();
-      if (opcode2 == Opcodes.NEWARRAY) {
-        final int operand = ((IntInsnNode) currentNode).operand;
-        return getObjectType(operand);
-      } else if (opcode2 == Opcodes.ANEWARRAY) {
-        return getObjectType(((TypeInsnNode) currentNode).desc);
-      } else if (opcode2 == Opcodes.MULTIANEWARRAY) {
-        return getObjectType(((MultiANewArrayInsnNode) currentNode).desc);
-      } else if (opcode2 == Opcodes.NEW) {
-        final String desc = ((TypeInsnNode) currentNode).desc;
-        return getObjectType(desc);
-      } else if ((opcode2 >= Opcodes.IALOAD) && (opcode2 <= Opcodes.AALOAD)) {
-        arrayCount++;
-      } else if ((opcode2 == Opcodes.GETFIELD) || (opcode2 == Opcodes.GETSTATIC)) {
-        final String desc = ((FieldInsnNode) currentNode).desc;
-        return getObjectType(removeArrayType(desc, arrayCount));
-      } else if ((opcode2 == Opcodes.ALOAD)) {
-        final Type type2 = readers.getFirstVar(((VarInsnNode) currentNode).var).getParameterType();
-        return getObjectType(removeArrayType(type2.getDescriptor(), arrayCount));
-      } else if ((opcode2 >= Opcodes.INVOKEVIRTUAL) && (opcode2 <= Opcodes.INVOKEDYNAMIC)) {
-        return Type.getReturnType(((MethodInsnNode) currentNode).desc);
-      }
-      currentNode = NodeHelper.getPrevious(currentNode);
+    final InsnList list = new InsnList();
+    for (final Var parameter : parameters) {
+      list.add(new VarInsnNode(parameter.getParameterType().getOpcode(Opcodes.ILOAD), parameter.getVarIndex()));
     }
-    return Type.VOID_TYPE;
+    return list;
   }
-  
+
   /**
-   * Objects that are loaded and are not parameters must have been written before
+   * Gets the instructions that store the result of *this* method
+   * in the local of the dispatcher.
+   *
+   * @return the store result
    */
-  private Type getAlreadyKnownType(final AbstractInsnNode node, final int index) {
-    if (isLoad(node)) {
-      final Var firstVar = writers.getFirstVar(index);
-      if (firstVar == null) {
-        // write was in a different block, so this is a new parameter for this method
-        // so find the writer and return the type of it.
-        return findType(getWriter(node));
+  InsnList getStoreResult() {
+    final InsnList list = new InsnList();
+    if (results.size() == 1) {
+      final Var result = results.get(0);
+      list.add(new VarInsnNode(result.getParameterType().getOpcode(Opcodes.ISTORE), result.getVarIndex()));
+      return list;
+    }
+    for (int i = 0; i < results.size(); ++i) {
+      final Var result = results.get(i);
+      if (i < (results.size() - 1)) {
+        list.add(new InsnNode(Opcodes.DUP));
       }
-      return firstVar.getParameterType();
-    }
-    return null;
-  }
-  
-  private Type getTypeIfSimpleType(final AbstractInsnNode node) {
-    final int opcode = node.getOpcode();
-    if ((opcode == Opcodes.ILOAD) || (opcode == Opcodes.ISTORE) || (opcode == Opcodes.IRETURN)) {
-      return Type.INT_TYPE;
-    }
-    if ((opcode == Opcodes.FLOAD) || (opcode == Opcodes.FSTORE) || (opcode == Opcodes.FRETURN)) {
-      return Type.FLOAT_TYPE;
-    }
-    if ((opcode == Opcodes.LLOAD) || (opcode == Opcodes.LSTORE) || (opcode == Opcodes.LRETURN)) {
-      return Type.LONG_TYPE;
+      list.add(NodeHelper.getInsnNodeFor(Integer.valueOf(i)));
+      list.add(new InsnNode(Opcodes.AALOAD));
+      list.add(unbox(result.getParameterType()));
+      list.add(new VarInsnNode(result.getParameterType().getOpcode(Opcodes.ISTORE), result.getVarIndex()));
     }
-    if ((opcode == Opcodes.DLOAD) || (opcode == Opcodes.DSTORE) || (opcode == Opcodes.DRETURN)) {
-      return Type.DOUBLE_TYPE;
-    }
-    return null;
+    return list;
   }
-  
-  /**
-   * Types from methodParameters via methodDescriptor
+
+  /*
+   * The instructions that return the results (of the locals in the block) from the block.
    */
-  private Type getTypeFromParam(final int index) {
-    if ((index > 0) && (index < firstLocal)) {
-      int argsIndex = 1;
-      for (final Type type : args) {
-        if (index == argsIndex) {
-          return type;
-        }
-        argsIndex += type.getSize();
-      }
-    }
-    return null;
-  }
-  
-  private AbstractInsnNode getWriter(final AbstractInsnNode node) {
-    final int index = getIndex(node);
-    AbstractInsnNode currentNode = NodeHelper.getPrevious(node);
-    while (currentNode != null) {
-      currentNode = NodeHelper.getPrevious(currentNode);
-      if (isStore(currentNode) && (getIndex(currentNode) == index)) {
-        return currentNode;
-      }
-    }
-    return null;
-  }
-  
-  private String removeArrayType(final String desc, final int count) {
-    String s = desc;
-    for (int i = 0; i < count; ++i) {
-      if (s.charAt(0) == '[') {
-        s = s.substring(1);
-      }
-    }
-    return s;
+  private InsnList getReturnResults(final Map<Integer, Integer> varMap) {
+    final InsnList list = new InsnList();
+    if (results.size() == 1) {
+      final Type type = results.get(0).getParameterType();
+      list.add(new VarInsnNode(type.getOpcode(Opcodes.ILOAD), varMap.get(
+          Integer.valueOf(results.get(0).getVarIndex())).intValue()));
+      list.add(new InsnNode(type.getOpcode(Opcodes.IRETURN)));
+      return list;
+    }
+    list.add(NodeHelper.getInsnNodeFor(Integer.valueOf(results.size())));
+    list.add(new TypeInsnNode(Opcodes.ANEWARRAY, "java/lang/Object"));
+    for (int i = 0; i < results.size(); ++i) {
+      final Var result = results.get(i);
+      final Type type = result.getParameterType();
+      list.add(new InsnNode(Opcodes.DUP));
+      list.add(NodeHelper.getInsnNodeFor(Integer.valueOf(i)));
+      list.add(new VarInsnNode(type.getOpcode(Opcodes.ILOAD), varMap.get(Integer.valueOf(result.getVarIndex()))
+          .intValue()));
+      list.add(box(type));
+      list.add(new InsnNode(Opcodes.AASTORE));
+    }
+    list.add(new InsnNode(Opcodes.ARETURN));
+    return list;
   }
-  
-  private Type getObjectType(final int operand) {
-    if (Opcodes.T_INT == operand) {
-      return Type.getType(int[].class);
-    }
-    if (Opcodes.T_FLOAT == operand) {
-      return Type.getType(float[].class);
-    }
-    if (Opcodes.T_LONG == operand) {
-      return Type.getType(long[].class);
-    }
-    if (Opcodes.T_DOUBLE == operand) {
-      return Type.getType(double[].class);
+
+  private static InsnList box(final Type type) {
+    final InsnList list = new InsnList();
+    final Type boxed = getBoxType(type);
+    if (boxed != null) {
+      list.add(new MethodInsnNode(Opcodes.INVOKESTATIC, boxed.getInternalName(), "valueOf", Type.getMethodDescriptor(
+          boxed, type)));
     }
-    return Type.getType(Object.class);
+    return list;
   }
-  
-  private Type getObjectType(final String operand) {
-    return Type.getType(operand);
+
+  private static InsnList unbox(final Type type) {
+    final InsnList list = new InsnList();
+    final Type boxed = getBoxType(type);
+    if (boxed != null) {
+      list.add(new TypeInsnNode(Opcodes.CHECKCAST, boxed.getInternalName()));
+      list.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, boxed.getInternalName(), type.getClassName() + "Value", Type
+          .getMethodDescriptor(type)));
+    } else if (!"null".equals(type.getInternalName())) {
+      list.add(new TypeInsnNode(Opcodes.CHECKCAST, type.getInternalName()));
+    }
+    return list;
   }
-  
-  /**
-   * Gets the writers.
-   * 
-   * @return the writers
+
+  /*
+   * The locals of the split method only have the types of the jvm (int for boolean, char...).
    */
-  VarList getWriters() {
-    return writers;
-  }
-  
-  private static boolean isLoad(final AbstractInsnNode currentNode) {
-    if (currentNode == null) {
-      return false;
+  private static Type getBoxType(final Type type) {
+    switch (type.getSort()) {
+      case Type.INT:
+        return Type.getType(Integer.class);
+      case Type.LONG:
+        return Type.getType(Long.class);
+      case Type.FLOAT:
+        return Type.getType(Float.class);
+      case Type.DOUBLE:
+        return Type.getType(Double.class);
+      default:
+        return null;
     }
-    if ((currentNode.getOpcode() >= Opcodes.ILOAD) && (currentNode.getOpcode() <= Opcodes.ALOAD)) {
-      return true;
-    }
-    return false;
   }
-  
-  private static boolean isStore(final AbstractInsnNode currentNode) {
-    if (currentNode == null) {
-      return false;
-    }
-    if ((currentNode.getOpcode() >= Opcodes.ISTORE) && (currentNode.getOpcode() <= Opcodes.ASTORE)) {
-      return true;
-    }
-    if ((currentNode.getOpcode() >= Opcodes.IRETURN) && (currentNode.getOpcode() <= Opcodes.RETURN)) {
-      return true;
-    }
-    return false;
-  }
-  
+
   /**
-   * Adds the block to this block.
-   * Thereby the parameters and types are calculated.
-   * 
-   * @param otherBlock
-   *          the other block
+   * Creates the body of the block.
+   * The variables are renamed, so that the parameters are at the beginning
+   * followed by the remaining locals of the block.
+   *
+   * The nodes have to be removed from the original list before.
+   *
+   * @param insns
+   *          the instructions of the original method
+   * @param isStatic
+   *          whether the original method is static
+   * @return the instructions
    */
-  void add(final Block otherBlock) {
-    for (final AbstractInsnNode node : otherBlock.insns) {
-      addInsn(node, true);
+  InsnList getInstructions(final AbstractInsnNode[] insns, final boolean isStatic) {
+    final Map<Integer, Integer> varMap = new HashMap<>();
+    int varIndex = 0;
+    if (!isStatic) {
+      varMap.put(Integer.valueOf(0), Integer.valueOf(0));
+      varIndex++;
     }
-  }
-  
-  /**
-   * Clears this block.
-   */
-  void clear() {
-    readers.clear();
-    writers.clear();
-    parameters.clear();
-    insns.clear();
-    varMap.clear();
-    pushParameters.clear();
-    sizeEvaluator = new CodeSizeEvaluator(null);
-  }
-  
-  /**
-   * Rename insns.
-   * This means: correct the indexes of the local variables to match the parameters.
-   * 
-   * @param paramRenameMap
-   *          the param rename map
-   */
-  void renameInsns(final Map<Integer, Integer> paramRenameMap) {
-    for (final AbstractInsnNode node : insns) {
-      renameIfVar(node, varMap);
+    for (final Var parameter : parameters) {
+      varMap.put(Integer.valueOf(parameter.getVarIndex()), Integer.valueOf(varIndex));
+      varIndex += parameter.getParameterType().getSize();
+    }
+    final Map<Integer, Integer> sizes = getLocalSizes(insns);
+    final InsnList list = new InsnList();
+    for (int i = start; i < end; ++i) {
+      final AbstractInsnNode node = insns[i];
+      if ((node instanceof SplitMarkNode) || (node.getOpcode() == Opcodes.NOP)) {
+        continue;
+      }
+      final int index = getIndex(node);
+      if (index >= 0) {
+        final Integer key = Integer.valueOf(index);
+        Integer mapped = varMap.get(key);
+        if (mapped == null) {
+          mapped = Integer.valueOf(varIndex);
+          varIndex += sizes.get(key).intValue();
+          varMap.put(key, mapped);
+        }
+        setIndex(node, mapped.intValue());
+      }
+      list.add(node);
     }
-    for (final Iterator<AbstractInsnNode> it = pushParameters.iterator(); it.hasNext();) {
-      renameIfVar(it.next(), paramRenameMap);
+    if (!results.isEmpty()) {
+      list.add(getReturnResults(varMap));
+    } else if (!last) {
+      list.add(new InsnNode(Opcodes.RETURN));
     }
+    return list;
   }
-  
-  private void renameIfVar(final AbstractInsnNode currentNode, final Map<Integer, Integer> varRenameMap) {
-    final int index = getIndex(currentNode);
-    if (index < firstLocal) {
-      return;
-    }
-    final Integer key = Integer.valueOf(index);
-    Integer value = varRenameMap.get(key);
-    if (value == null) {
-      value = Integer.valueOf(varIndex);
-      varIndex += writers.getFirstVar(index).getParameterType().getSize();
-      varRenameMap.put(key, value);
+
+  private Map<Integer, Integer> getLocalSizes(final AbstractInsnNode[] insns) {
+    final Map<Integer, Integer> sizes = new HashMap<>();
+    for (int i = start; i < end; ++i) {
+      final int index = getIndex(insns[i]);
+      if (index < 0) {
+        continue;
+      }
+      final Integer key = Integer.valueOf(index);
+      final Integer size = sizes.get(key);
+      final int newSize = Liveness.getSize(insns[i]);
+      if ((size == null) || (size.intValue() < newSize)) {
+        sizes.put(key, Integer.valueOf(newSize));
+      }
     }
-    final int mapped = value.intValue();
-    setIndex(currentNode, mapped);
+    return sizes;
   }
-  
+
   private int getIndex(final AbstractInsnNode node) {
     if (node instanceof VarInsnNode) {
       return ((VarInsnNode) node).var;
@@ -528,7 +321,7 @@ class Block {
       return -1;
     }
   }
-  
+
   private void setIndex(final AbstractInsnNode node, final int index) {
     if (node instanceof VarInsnNode) {
       ((VarInsnNode) node).var = index;
@@ -536,56 +329,56 @@ class Block {
       ((IincInsnNode) node).var = index;
     }
   }
-  
+
   /**
-   * Gets the last store.
-   * 
-   * @return the last store or null if no store occurs
+   * Checks if the instruction with the given index belongs to this block.
+   *
+   * @param index
+   *          the index
+   * @return true, if successful
    */
-  AbstractInsnNode getLastStore() {
-    for (int i = insns.size() - 1; i >= 0; --i) {
-      final AbstractInsnNode insn = insns.get(i);
-      if (isStore(insn)) {
-        return insn;
-      }
-    }
-    return null;
+  boolean contains(final int index) {
+    return (index >= start) && (index < end);
   }
-  
+
   /**
    * Gets the block number.
-   * 
+   *
    * @return the block number
    */
   int getBlockNumber() {
     return num;
   }
-  
+
   /**
-   * Gets the instructions.
-   * 
-   * @return the instructions
+   * Checks if this is the last block.
+   *
+   * @return true, if is last
    */
-  List<AbstractInsnNode> getInstructions() {
-    return Collections.unmodifiableList(insns);
+  boolean isLast() {
+    return last;
   }
-  
+
   /**
    * Gets the parameters.
-   * 
+   *
    * @return the parameters
    */
-  VarList getParameters() {
-    return parameters;
+  List<Var> getParameters() {
+    return Collections.unmodifiableList(parameters);
   }
-  
+
   /**
-   * Gets the var map.
-   * 
-   * @return the var map
+   * Gets the results.
+   *
+   * @return the results (empty if the block has no result)
    */
-  Map<Integer, Integer> getVarMap() {
-    return Collections.unmodifiableMap(varMap);
+  List<Var> getResults() {
+    return Collections.unmodifiableList(results);
+  }
+
+  @Override
+  public String toString() {
+    return "Block " + num + ": [" + start + ", " + end + "), " + getDescriptor();
   }
-  
 }
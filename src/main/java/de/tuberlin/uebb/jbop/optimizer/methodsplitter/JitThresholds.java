@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.methodsplitter;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * The Class JitThresholds.
+ * <p>
+ * Holds the method size limits of the HotSpot JIT-Compiler:
+ * <ul>
+ * <li><code>-XX:MaxInlineSize</code>: methods up to this size are always inlined</li>
+ * <li><code>-XX:FreqInlineSize</code>: hot methods up to this size are inlined</li>
+ * <li><code>-XX:HugeMethodLimit</code>: methods above this size are not compiled at all (if
+ * <code>-XX:+DontCompileHugeMethods</code>)</li>
+ * </ul>
+ * The values of the running JVM can be read via the HotSpotDiagnostic-MXBean ({@link #fromRuntime()}).
+ *
+ * @author Christopher Ewest
+ */
+public final class JitThresholds {
+
+  /** Default of <code>-XX:MaxInlineSize</code>. */
+  public static final int MAX_INLINE_SIZE = 35;
+
+  /** The HotSpot defaults. */
+  public static final JitThresholds DEFAULT = new JitThresholds(MAX_INLINE_SIZE, MethodSplitter.FREQ_INLINE_SIZE,
+      MethodSplitter.HUGE_METHOD_LIMIT, true);
+
+  private static final String HOTSPOT_DIAGNOSTIC = "com.sun.management:type=HotSpotDiagnostic";
+
+  private final int maxInlineSize;
+  private final int freqInlineSize;
+  private final int hugeMethodLimit;
+  private final boolean dontCompileHugeMethods;
+
+  /**
+   * Instantiates new {@link JitThresholds}.
+   *
+   * @param maxInlineSize
+   *          the max inline size
+   * @param freqInlineSize
+   *          the freq inline size
+   * @param hugeMethodLimit
+   *          the huge method limit
+   * @param dontCompileHugeMethods
+   *          whether huge methods are excluded from compilation
+   */
+  public JitThresholds(final int maxInlineSize, final int freqInlineSize, final int hugeMethodLimit,
+      final boolean dontCompileHugeMethods) {
+    this.maxInlineSize = maxInlineSize;
+    this.freqInlineSize = freqInlineSize;
+    this.hugeMethodLimit = hugeMethodLimit;
+    this.dontCompileHugeMethods = dontCompileHugeMethods;
+  }
+
+  /**
+   * Reads the thresholds of the running JVM.
+   * If a flag couldn't be read (e.g. on a non-HotSpot-JVM) the default is used.
+   *
+   * @return the thresholds
+   */
+  public static JitThresholds fromRuntime() {
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    final int maxInline = getIntOption(server, "MaxInlineSize", DEFAULT.maxInlineSize);
+    final int freqInline = getIntOption(server, "FreqInlineSize", DEFAULT.freqInlineSize);
+    final int hugeMethod = getIntOption(server, "HugeMethodLimit", DEFAULT.hugeMethodLimit);
+    final String dontCompile = getOption(server, "DontCompileHugeMethods");
+    final boolean dontCompileHuge = dontCompile == null ? DEFAULT.dontCompileHugeMethods : Boolean
+        .parseBoolean(dontCompile);
+    return new JitThresholds(maxInline, freqInline, hugeMethod, dontCompileHuge);
+  }
+
+  private static int getIntOption(final MBeanServer server, final String flag, final int defaultValue) {
+    final String value = getOption(server, flag);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value);
+    } catch (final NumberFormatException nfe) {
+      return defaultValue;
+    }
+  }
+
+  private static String getOption(final MBeanServer server, final String flag) {
+    try {
+      final CompositeData option = (CompositeData) server.invoke(new ObjectName(HOTSPOT_DIAGNOSTIC), "getVMOption",
+          new Object[] {
+            flag
+          }, new String[] {
+            String.class.getName()
+          });
+      return (String) option.get("value");
+    } catch (JMException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Gets the max inline size.
+   *
+   * @return the max inline size
+   */
+  public int getMaxInlineSize() {
+    return maxInlineSize;
+  }
+
+  /**
+   * Gets the freq inline size.
+   *
+   * @return the freq inline size
+   */
+  public int getFreqInlineSize() {
+    return freqInlineSize;
+  }
+
+  /**
+   * Gets the huge method limit.
+   *
+   * @return the huge method limit
+   */
+  public int getHugeMethodLimit() {
+    return hugeMethodLimit;
+  }
+
+  /**
+   * Checks if huge methods are excluded from compilation.
+   *
+   * @return true, if huge methods are not compiled
+   */
+  public boolean isDontCompileHugeMethods() {
+    return dontCompileHugeMethods;
+  }
+
+  /**
+   * Gets the size above which methods are split, so that they are still compiled.
+   *
+   * @return the split length
+   */
+  public int getSplitLength() {
+    return hugeMethodLimit;
+  }
+
+  /**
+   * Gets the target size of the parts of split methods, so that hot parts are still inlined.
+   *
+   * @return the part length
+   */
+  public int getPartLength() {
+    return freqInlineSize;
+  }
+
+  /**
+   * Checks if a method of the given size could be inlined when hot.
+   *
+   * @param size
+   *          the size in bytes
+   * @return true, if is inlinable
+   */
+  public boolean isInlinable(final int size) {
+    return size <= freqInlineSize;
+  }
+
+  /**
+   * Checks if a method of the given size is compiled at all.
+   *
+   * @param size
+   *          the size in bytes
+   * @return true, if is compilable
+   */
+  public boolean isCompilable(final int size) {
+    return !dontCompileHugeMethods || (size <= hugeMethodLimit);
+  }
+
+  @Override
+  public String toString() {
+    return "JitThresholds [MaxInlineSize=" + maxInlineSize + ", FreqInlineSize=" + freqInlineSize
+        + ", HugeMethodLimit=" + hugeMethodLimit + ", DontCompileHugeMethods=" + dontCompileHugeMethods + "]";
+  }
+}
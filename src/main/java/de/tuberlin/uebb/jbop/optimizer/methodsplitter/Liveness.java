@@ -0,0 +1,514 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.methodsplitter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.CodeSizeEvaluator;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+import org.objectweb.asm.tree.analysis.Value;
+
+import de.tuberlin.uebb.jbop.optimizer.loop.SplitMarkNode;
+
+/**
+ * The Class Liveness.
+ * <p>
+ * Computes the def-use chains of the local variables of a method with an ASM {@link Analyzer}
+ * ({@link SourceInterpreter}) and the types of the locals ({@link TypedInterpreter}).
+ * <p>
+ * Based on this the class knows for every instruction index
+ * <ul>
+ * <li>whether the method could be split right before the instruction ({@link #isSplitPoint(int)})</li>
+ * <li>how many variables are live across that point ({@link #getLiveCount(int)})</li>
+ * <li>the (max) code size of any instruction range ({@link #getCodeSize(int, int)})</li>
+ * </ul>
+ *
+ * A split point has to be a {@link SplitMarkNode} with an empty stack that is not crossed by
+ * any jump, switch or try-catch-block and that lies before the first return instruction.
+ *
+ * @author Christopher Ewest
+ */
+class Liveness {
+
+  /** Position of the definition of method parameters. */
+  static final int PARAMETER = -1;
+
+  private final AbstractInsnNode[] insns;
+  private final Frame<BasicValue>[] types;
+  private final boolean isStatic;
+
+  /** Code size of the instructions [0, i). */
+  private final int[] codeSize;
+  /** Number of distinct variables live right before instruction i. */
+  private final int[] liveCount;
+  private final boolean[] splitPoint;
+  /** The last instruction that reads the value defined by instruction i (-1 if unused). */
+  private final int[] lastUse;
+  /** The reaching definitions of the variable read by instruction i. */
+  private final int[][] reachingDefs;
+  /** The live intervals of each variable (sorted and merged). */
+  private final Map<Integer, List<int[]>> liveIntervals = new HashMap<>();
+
+  /**
+   * Instantiates a new {@link Liveness}.
+   *
+   * @param owner
+   *          the internal name of the class containing the method
+   * @param methodNode
+   *          the method node
+   * @throws AnalyzerException
+   *           if the method couldn't be analyzed
+   */
+  Liveness(final String owner, final MethodNode methodNode) throws AnalyzerException {
+    insns = methodNode.instructions.toArray();
+    isStatic = (methodNode.access & Opcodes.ACC_STATIC) != 0;
+    final int size = insns.length;
+    codeSize = new int[size + 1];
+    liveCount = new int[size + 1];
+    splitPoint = new boolean[size + 1];
+    lastUse = new int[size];
+    reachingDefs = new int[size][];
+    Arrays.fill(lastUse, -1);
+
+    computeMaxLocals(methodNode);
+    final Frame<SourceValue>[] sources = analyze(new Analyzer<>(new SourceInterpreter()), owner, methodNode);
+    types = analyze(new Analyzer<>(new TypedInterpreter()), owner, methodNode);
+
+    computeCodeSize();
+    final Map<Integer, List<int[]>> edges = computeDefUse(methodNode.instructions, sources);
+    computeLiveCount(edges);
+    computeSplitPoints(methodNode);
+  }
+
+  /*
+   * the maxs of the method could be outdated because of previous optimizations
+   * (or even not set at all), so maxLocals is computed from the instructions.
+   */
+  private void computeMaxLocals(final MethodNode methodNode) {
+    int maxLocals = Type.getArgumentsAndReturnSizes(methodNode.desc) >> 2;
+    if (isStatic) {
+      maxLocals--;
+    }
+    for (final AbstractInsnNode insn : insns) {
+      if (insn instanceof VarInsnNode) {
+        maxLocals = Math.max(maxLocals, ((VarInsnNode) insn).var + getSize(insn));
+      } else if (insn instanceof IincInsnNode) {
+        maxLocals = Math.max(maxLocals, ((IincInsnNode) insn).var + 1);
+      }
+    }
+    methodNode.maxLocals = Math.max(methodNode.maxLocals, maxLocals);
+  }
+
+  /*
+   * maxStack couldn't be computed without writing the method (which fails for methods > 64kb),
+   * so the analysis is repeated with a doubled stack size if the stack overflows.
+   */
+  private <V extends Value> Frame<V>[] analyze(final Analyzer<V> analyzer,
+      final String owner, final MethodNode methodNode) throws AnalyzerException {
+    methodNode.maxStack = Math.max(methodNode.maxStack, 8);
+    while (true) {
+      try {
+        return analyzer.analyze(owner, methodNode);
+      } catch (final AnalyzerException ae) {
+        if (!(ae.getCause() instanceof IndexOutOfBoundsException) || (methodNode.maxStack > 0xFFFF)) {
+          throw ae;
+        }
+        methodNode.maxStack *= 2;
+      }
+    }
+  }
+
+  private void computeCodeSize() {
+    final CodeSizeEvaluator evaluator = new CodeSizeEvaluator(null);
+    for (int i = 0; i < insns.length; ++i) {
+      final AbstractInsnNode insn = insns[i];
+      if (insn.getOpcode() != Opcodes.NOP) {
+        insn.accept(evaluator);
+      }
+      codeSize[i + 1] = evaluator.getMaxSize();
+    }
+  }
+
+  private Map<Integer, List<int[]>> computeDefUse(final InsnList list, final Frame<SourceValue>[] sources) {
+    final Map<Integer, List<int[]>> edges = new HashMap<>();
+    for (int i = 0; i < insns.length; ++i) {
+      final int var = getReadVar(insns[i]);
+      if ((var < 0) || (sources[i] == null)) {
+        continue;
+      }
+      final SourceValue value = sources[i].getLocal(var);
+      final int[] defs;
+      if (value.insns.isEmpty()) {
+        defs = new int[] {
+          PARAMETER
+        };
+      } else {
+        defs = new int[value.insns.size()];
+        int j = 0;
+        for (final AbstractInsnNode def : value.insns) {
+          defs[j++] = list.indexOf(def);
+        }
+      }
+      reachingDefs[i] = defs;
+      List<int[]> varEdges = edges.get(Integer.valueOf(var));
+      if (varEdges == null) {
+        varEdges = new ArrayList<>();
+        edges.put(Integer.valueOf(var), varEdges);
+      }
+      for (final int def : defs) {
+        if (def >= 0) {
+          lastUse[def] = Math.max(lastUse[def], i);
+        }
+        varEdges.add(new int[] {
+            def, i
+        });
+      }
+    }
+    return edges;
+  }
+
+  /*
+   * a variable is live at point p (right before instruction p),
+   * if a definition before p reaches a use after p.
+   */
+  private void computeLiveCount(final Map<Integer, List<int[]>> edges) {
+    final int[] delta = new int[insns.length + 2];
+    for (final Entry<Integer, List<int[]>> entry : edges.entrySet()) {
+      final List<int[]> intervals = merge(entry.getValue());
+      liveIntervals.put(entry.getKey(), intervals);
+      for (final int[] interval : intervals) {
+        delta[interval[0]]++;
+        delta[interval[1] + 1]--;
+      }
+    }
+    int live = 0;
+    for (int i = 0; i <= insns.length; ++i) {
+      live += delta[i];
+      liveCount[i] = live;
+    }
+  }
+
+  /*
+   * merges the def-use-edges to closed intervals of points [def + 1, use].
+   */
+  private List<int[]> merge(final List<int[]> edges) {
+    final List<int[]> intervals = new ArrayList<>(edges.size());
+    for (final int[] edge : edges) {
+      if (edge[0] < edge[1]) {
+        intervals.add(new int[] {
+            edge[0] + 1, edge[1]
+        });
+      } else {
+        // backward edge (loop): the variable is live in the whole loop
+        intervals.add(new int[] {
+            Math.max(0, edge[1]), Math.max(edge[0], edge[1])
+        });
+      }
+    }
+    Collections.sort(intervals, new Comparator<int[]>() {
+
+      @Override
+      public int compare(final int[] o1, final int[] o2) {
+        return Integer.compare(o1[0], o2[0]);
+      }
+    });
+    final List<int[]> merged = new ArrayList<>();
+    int[] current = null;
+    for (final int[] interval : intervals) {
+      if ((current != null) && (interval[0] <= current[1])) {
+        current[1] = Math.max(current[1], interval[1]);
+      } else {
+        current = interval;
+        merged.add(current);
+      }
+    }
+    return merged;
+  }
+
+  private void computeSplitPoints(final MethodNode methodNode) {
+    final InsnList list = methodNode.instructions;
+    final int[] blocked = new int[insns.length + 2];
+    int firstReturn = insns.length;
+    for (int i = 0; i < insns.length; ++i) {
+      final AbstractInsnNode insn = insns[i];
+      final int opcode = insn.getOpcode();
+      if ((opcode == Opcodes.JSR) || (opcode == Opcodes.RET)) {
+        // subroutines are not supported
+        return;
+      }
+      if (!isStatic && isStore(insn) && (((VarInsnNode) insn).var == 0)) {
+        // "this" is overwritten
+        return;
+      }
+      if ((opcode >= Opcodes.IRETURN) && (opcode <= Opcodes.RETURN)) {
+        firstReturn = Math.min(firstReturn, i);
+      }
+      if (insn instanceof JumpInsnNode) {
+        block(blocked, i, list.indexOf(((JumpInsnNode) insn).label));
+      } else if (insn instanceof TableSwitchInsnNode) {
+        final TableSwitchInsnNode node = (TableSwitchInsnNode) insn;
+        block(blocked, i, list.indexOf(node.dflt));
+        for (final LabelNode label : node.labels) {
+          block(blocked, i, list.indexOf(label));
+        }
+      } else if (insn instanceof LookupSwitchInsnNode) {
+        final LookupSwitchInsnNode node = (LookupSwitchInsnNode) insn;
+        block(blocked, i, list.indexOf(node.dflt));
+        for (final LabelNode label : node.labels) {
+          block(blocked, i, list.indexOf(label));
+        }
+      }
+    }
+    for (final TryCatchBlockNode tryCatch : methodNode.tryCatchBlocks) {
+      final int start = list.indexOf(tryCatch.start);
+      block(blocked, start, list.indexOf(tryCatch.end));
+      block(blocked, start, list.indexOf(tryCatch.handler));
+    }
+
+    int blockCount = 0;
+    for (int i = 0; i < insns.length; ++i) {
+      blockCount += blocked[i];
+      splitPoint[i] = (i > 0) && (i < firstReturn) && (blockCount == 0) && (insns[i] instanceof SplitMarkNode)
+          && (types[i] != null) && (types[i].getStackSize() == 0);
+    }
+  }
+
+  private void block(final int[] blocked, final int index, final int target) {
+    final int from = Math.min(index, target);
+    final int to = Math.max(index, target);
+    blocked[from + 1]++;
+    blocked[to + 1]--;
+  }
+
+  /**
+   * Number of instructions.
+   *
+   * @return the size
+   */
+  int size() {
+    return insns.length;
+  }
+
+  /**
+   * Gets the instruction at the given index.
+   *
+   * @param index
+   *          the index
+   * @return the instruction
+   */
+  AbstractInsnNode get(final int index) {
+    return insns[index];
+  }
+
+  /**
+   * Checks if the method could be split right before the instruction at the given index.
+   *
+   * @param index
+   *          the index
+   * @return true, if is split point
+   */
+  boolean isSplitPoint(final int index) {
+    return splitPoint[index];
+  }
+
+  /**
+   * Gets the number of variables that are live right before the instruction at the given index.
+   *
+   * @param index
+   *          the index
+   * @return the live count
+   */
+  int getLiveCount(final int index) {
+    return liveCount[index];
+  }
+
+  /**
+   * Gets the (max) code size of the instructions [from, to).
+   *
+   * @param from
+   *          the from
+   * @param to
+   *          the to
+   * @return the code size
+   */
+  int getCodeSize(final int from, final int to) {
+    return codeSize[to] - codeSize[from];
+  }
+
+  /**
+   * Gets the variable defined by the instruction at index, if the value is read later.
+   *
+   * @param index
+   *          the index
+   * @return the variable or -1
+   */
+  int getDefinedVar(final int index) {
+    if (lastUse[index] <= index) {
+      return -1;
+    }
+    final AbstractInsnNode insn = insns[index];
+    if (insn instanceof IincInsnNode) {
+      return ((IincInsnNode) insn).var;
+    }
+    if (isStore(insn)) {
+      return ((VarInsnNode) insn).var;
+    }
+    return -1;
+  }
+
+  /**
+   * Gets the last instruction that reads the value defined at index.
+   *
+   * @param index
+   *          the index
+   * @return the last use
+   */
+  int getLastUse(final int index) {
+    return lastUse[index];
+  }
+
+  /**
+   * Gets the variables that are read in [start, end) but were defined before start
+   * (this includes method parameters but not <code>this</code>).
+   *
+   * @param start
+   *          the start
+   * @param end
+   *          the end
+   * @return the live in variables
+   */
+  SortedSet<Integer> getLiveIn(final int start, final int end) {
+    final SortedSet<Integer> liveIn = new TreeSet<>();
+    for (int i = start; i < end; ++i) {
+      if (reachingDefs[i] == null) {
+        continue;
+      }
+      for (final int def : reachingDefs[i]) {
+        if (def < start) {
+          liveIn.add(Integer.valueOf(getReadVar(insns[i])));
+          break;
+        }
+      }
+    }
+    if (!isStatic) {
+      liveIn.remove(Integer.valueOf(0));
+    }
+    return liveIn;
+  }
+
+  /**
+   * Checks if the variable is live right before the instruction at index.
+   *
+   * @param var
+   *          the var
+   * @param index
+   *          the index
+   * @return true, if is live
+   */
+  boolean isLiveAt(final int var, final int index) {
+    final List<int[]> intervals = liveIntervals.get(Integer.valueOf(var));
+    if (intervals == null) {
+      return false;
+    }
+    for (final int[] interval : intervals) {
+      if ((interval[0] <= index) && (index <= interval[1])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the type of the variable right before the instruction at index.
+   *
+   * @param var
+   *          the var
+   * @param index
+   *          the index
+   * @return the type
+   */
+  Type getType(final int var, final int index) {
+    return TypedInterpreter.getType(types[index].getLocal(var));
+  }
+
+  /**
+   * Checks if the method is static.
+   *
+   * @return true, if is static
+   */
+  boolean isStatic() {
+    return isStatic;
+  }
+
+  private static int getReadVar(final AbstractInsnNode insn) {
+    if (insn instanceof IincInsnNode) {
+      return ((IincInsnNode) insn).var;
+    }
+    if ((insn.getOpcode() >= Opcodes.ILOAD) && (insn.getOpcode() <= Opcodes.ALOAD)) {
+      return ((VarInsnNode) insn).var;
+    }
+    return -1;
+  }
+
+  private static boolean isStore(final AbstractInsnNode insn) {
+    return (insn.getOpcode() >= Opcodes.ISTORE) && (insn.getOpcode() <= Opcodes.ASTORE);
+  }
+
+  /**
+   * Gets the number of slots used by the variable accessed by insn.
+   *
+   * @param insn
+   *          the insn
+   * @return the size
+   */
+  static int getSize(final AbstractInsnNode insn) {
+    final int opcode = insn.getOpcode();
+    if ((opcode == Opcodes.LLOAD) || (opcode == Opcodes.DLOAD) || (opcode == Opcodes.LSTORE)
+        || (opcode == Opcodes.DSTORE)) {
+      return 2;
+    }
+    return 1;
+  }
+}
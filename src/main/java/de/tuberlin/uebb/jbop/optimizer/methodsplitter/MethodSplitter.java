@@ -22,26 +22,23 @@ import static org.objectweb.asm.Opcodes.IRETURN;
 import static org.objectweb.asm.Opcodes.NOP;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 
-import org.objectweb.asm.AnnotationVisitor;
-import org.objectweb.asm.Attribute;
-import org.objectweb.asm.Handle;
-import org.objectweb.asm.Label;
-import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.CodeSizeEvaluator;
-import org.objectweb.asm.commons.LocalVariablesSorter;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.InsnList;
 import org.objectweb.asm.tree.InsnNode;
 import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
 import org.objectweb.asm.tree.VarInsnNode;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
 
 import de.tuberlin.uebb.jbop.exception.JBOPClassException;
 import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
@@ -52,15 +49,27 @@ import de.tuberlin.uebb.jbop.optimizer.loop.SplitMarkNode;
  * <p>
  * This Class can split methods that are longer than a given threshold<br>
  * in submethods (default is {@link #MAX_LENGTH}: {@value #MAX_LENGTH} byte).
+ * The size of the submethods can be limited separately (e.g. methods are only split if they are too long to be
+ * compiled, but then into parts that are small enough to be inlined when hot).
  * <p>
  * Currently only methods that are preprocessed with the {@link de.tuberlin.uebb.jbop.optimizer.loop.ForLoopUnroller
  * ForLoopUnroller} <br>
  * can be splitted (and only if they were not to long before this preprocessing).
  * <p>
+ * The method is split at {@link SplitMarkNode}s. Out of the possible split points, that keep a part below the
+ * threshold, the one with the fewest live variables (see {@link Liveness}) is chosen, because every variable that is
+ * live across a split point has to be passed as parameter. The variables that are still needed after a part are
+ * returned by the part (a single one directly, several ones in an Object[]).
+ * <p>
+ * The original method becomes a flat dispatcher, that calls all parts one after another<br>
+ * (instead of a chain where each part calls the next one).
+ * <p>
  * The Limit for Java-Methods is 64 kilobytes, therefore classes that contains methods longer than<br>
  * this size could not be loaded.
  * <p>
- * Also the JIT-Compiler of the JVM cannot process Methods that are too long(about 8 kb).<br>
+ * Also the JIT-Compiler of the JVM cannot process Methods that are too long ({@value #HUGE_METHOD_LIMIT} byte,
+ * <code>-XX:HugeMethodLimit</code>) and doesn't inline hot methods that are longer than {@value #FREQ_INLINE_SIZE}
+ * byte (<code>-XX:FreqInlineSize</code>).<br>
  * See {@link http://blog.leenarts.net/2010/05/26/dontcompilehugemethods/} for more.
  * <p>
  * This Class tries to prevent this cases.
@@ -69,140 +78,17 @@ import de.tuberlin.uebb.jbop.optimizer.loop.SplitMarkNode;
  */
 public class MethodSplitter implements IOptimizer {
   
-  private static final class EmptyMethodVisitor extends MethodVisitor {
-    
-    private EmptyMethodVisitor(final int api) {
-      super(api);
-    }
-    
-    @Override
-    public AnnotationVisitor visitAnnotationDefault() {
-      return super.visitAnnotationDefault();
-    }
-    
-    @Override
-    public AnnotationVisitor visitAnnotation(final String desc, final boolean visible) {
-      return super.visitAnnotation(desc, visible);
-    }
-    
-    @Override
-    public AnnotationVisitor visitParameterAnnotation(final int parameter, final String desc, final boolean visible) {
-      return super.visitParameterAnnotation(parameter, desc, visible);
-    }
-    
-    @Override
-    public void visitAttribute(final Attribute attr) {
-      super.visitAttribute(attr);
-    }
-    
-    @Override
-    public void visitCode() {
-      super.visitCode();
-    }
-    
-    @Override
-    public void visitFrame(final int type, final int nLocal, final Object[] local, final int nStack,
-        final Object[] stack) {
-      super.visitFrame(type, nLocal, local, nStack, stack);
-    }
-    
-    @Override
-    public void visitInsn(final int opcode) {
-      super.visitInsn(opcode);
-    }
-    
-    @Override
-    public void visitIntInsn(final int opcode, final int operand) {
-      super.visitIntInsn(opcode, operand);
-    }
-    
-    @Override
-    public void visitVarInsn(final int opcode, final int var) {
-      super.visitVarInsn(opcode, var);
-    }
-    
-    @Override
-    public void visitTypeInsn(final int opcode, final String type) {
-      super.visitTypeInsn(opcode, type);
-    }
-    
-    @Override
-    public void visitFieldInsn(final int opcode, final String owner, final String name, final String desc) {
-      super.visitFieldInsn(opcode, owner, name, desc);
-    }
-    
-    @Override
-    public void visitMethodInsn(final int opcode, final String owner, final String name, final String desc) {
-      super.visitMethodInsn(opcode, owner, name, desc);
-    }
-    
-    @Override
-    public void visitInvokeDynamicInsn(final String name, final String desc, final Handle bsm,//
-        final Object... bsmArgs) {
-      super.visitInvokeDynamicInsn(name, desc, bsm, bsmArgs);
-    }
-    
-    @Override
-    public void visitJumpInsn(final int opcode, final Label label) {
-      super.visitJumpInsn(opcode, label);
-    }
-    
-    @Override
-    public void visitLabel(final Label label) {
-      super.visitLabel(label);
-    }
-    
-    @Override
-    public void visitLdcInsn(final Object cst) {
-      super.visitLdcInsn(cst);
-    }
-    
-    @Override
-    public void visitIincInsn(final int var, final int increment) {
-      super.visitIincInsn(var, increment);
-    }
-    
-    @Override
-    public void visitTableSwitchInsn(final int min, final int max, final Label dflt, final Label... labels) {
-      super.visitTableSwitchInsn(min, max, dflt, labels);
-    }
-    
-    @Override
-    public void visitLookupSwitchInsn(final Label dflt, final int[] keys, final Label[] labels) {
-      super.visitLookupSwitchInsn(dflt, keys, labels);
-    }
-    
-    @Override
-    public void visitMultiANewArrayInsn(final String desc, final int dims) {
-      super.visitMultiANewArrayInsn(desc, dims);
-    }
-    
-    @Override
-    public void visitTryCatchBlock(final Label start, final Label end, final Label handler, final String type) {
-      super.visitTryCatchBlock(start, end, handler, type);
-    }
-    
-    @Override
-    public void visitLocalVariable(final String name, final String desc, final String signature, final Label start,
-        final Label end, final int index) {
-      super.visitLocalVariable(name, desc, signature, start, end, index);
-    }
-    
-    @Override
-    public void visitLineNumber(final int line, final Label start) {
-      super.visitLineNumber(line, start);
-    }
-    
-    @Override
-    public void visitMaxs(final int maxStack, final int maxLocals) {
-      super.visitMaxs(maxStack, maxLocals);
-    }
-    
-    @Override
-    public void visitEnd() {
-      super.visitEnd();
-    }
-  }
+  /**
+   * Default of the HotSpot-Flag <code>-XX:HugeMethodLimit</code>.
+   * Methods longer than this are not compiled by the JIT-Compiler.
+   */
+  public static final int HUGE_METHOD_LIMIT = 8000;
+  
+  /**
+   * Default of the HotSpot-Flag <code>-XX:FreqInlineSize</code>.
+   * Hot methods longer than this are not inlined by the JIT-Compiler.
+   */
+  public static final int FREQ_INLINE_SIZE = 325;
   
   /**
    * Default Max-Length for methods.
@@ -211,8 +97,17 @@ public class MethodSplitter implements IOptimizer {
    */
   public static final int MAX_LENGTH = (7 * 1024) + 512;
   
+  /** Max size of the instructions that return the result of a part (wide load + return). */
+  private static final int RESULT_LENGTH = 5;
+  
+  /** Max size of the instructions that store one of several results in the returned array (dup, index, load, box). */
+  private static final int BOXED_RESULT_LENGTH = 12;
+  
+  private static final int ACCESS = Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL;
+  
   private final ClassNode classNode;
   private final int maxInsns;
+  private final int partInsns;
   private final List<MethodNode> additionalMethods = new ArrayList<>();
   
   /**
@@ -231,16 +126,29 @@ public class MethodSplitter implements IOptimizer {
    * @param classNode
    *          the class node
    * @param maxInsns
-   *          the max Nu,ber of insns per method.
+   *          the max size (in bytes) of the generated methods.
    */
   public MethodSplitter(final ClassNode classNode, final int maxInsns) {
+    this(classNode, maxInsns, maxInsns);
+  }
+  
+  /**
+   * Instantiates a new {@link MethodSplitter}.
+   * 
+   * @param classNode
+   *          the class node
+   * @param maxInsns
+   *          the size (in bytes) above which methods are split
+   * @param partInsns
+   *          the target size (in bytes) of the parts of a split method
+   */
+  public MethodSplitter(final ClassNode classNode, final int maxInsns, final int partInsns) {
     super();
     this.classNode = classNode;
     this.maxInsns = maxInsns;
+    this.partInsns = partInsns;
   }
   
-  private static final int ACCESS = Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL;
-  
   @Override
   public boolean isOptimized() {
     return false;
@@ -249,48 +157,56 @@ public class MethodSplitter implements IOptimizer {
   @Override
   public InsnList optimize(final InsnList original, final MethodNode methodNode) throws JBOPClassException {
     
-    LocalVariablesSorter sorter = new LocalVariablesSorter(methodNode.access, methodNode.desc, new EmptyMethodVisitor(
-        Opcodes.ASM5));
-    methodNode.accept(sorter);
-    
     if (getLength(methodNode) < maxInsns) {
       return clean(original);
     }
     
-    final List<Block> blocks = getBlocks(original, methodNode);
+    final Liveness liveness;
+    try {
+      liveness = new Liveness(classNode.name, methodNode);
+    } catch (final AnalyzerException e) {
+      throw new JBOPClassException("Method '" + methodNode.name + "' couldn't be analyzed for splitting.", e);
+    }
     
-    final String baseName = methodNode.name;
-    final String[] exceptions = getExceptions(methodNode);
+    final List<Block> blocks = getBlocks(liveness, Type.getReturnType(methodNode.desc));
+    if (blocks.size() < 2) {
+      return clean(original);
+    }
     
-    final InsnList returnList = new InsnList();
-    InsnList list = returnList;
+    final AbstractInsnNode[] insns = original.toArray();
+    final Map<Block, List<TryCatchBlockNode>> tryCatchBlocks = getTryCatchBlocks(blocks, methodNode);
+    original.clear();
     
-    Block block = blocks.get(0);
-    block.renameInsns(block.getVarMap());
+    final String name = methodNode.name + "__split__part__";
+    final String[] exceptions = getExceptions(methodNode);
+    final boolean isStatic = liveness.isStatic();
+    final int access = isStatic ? ACCESS | Opcodes.ACC_STATIC : ACCESS;
+    final int invoke = isStatic ? Opcodes.INVOKESTATIC : Opcodes.INVOKESPECIAL;
     
-    final String name = baseName + "__split__part__";
-    final Type endType = Type.getReturnType(methodNode.desc);
-    for (int i = 1; i < blocks.size(); ++i) {
-      final Map<Integer, Integer> paramRenameMap = block.getVarMap();
-      add(list, block.getInstructions(), original);
-      block = blocks.get(i);
-      block.renameInsns(paramRenameMap);
+    final InsnList dispatcher = new InsnList();
+    for (final Block block : blocks) {
       final String methodDescriptor = block.getDescriptor();
-      final String newMethodName = name + block.getBlockNumber();
-      final MethodNode splitMethod = new MethodNode(Opcodes.ASM5, ACCESS, newMethodName, methodDescriptor, null,
-          exceptions);
+      final MethodNode splitMethod = new MethodNode(Opcodes.ASM5, access, name + block.getBlockNumber(),
+          methodDescriptor, null, exceptions);
+      splitMethod.instructions = block.getInstructions(insns, isStatic);
+      splitMethod.tryCatchBlocks.addAll(tryCatchBlocks.get(block));
       additionalMethods.add(splitMethod);
       
-      list.add(new VarInsnNode(Opcodes.ALOAD, 0));
-      list.add(block.getPushParameters());
-      list.add(new MethodInsnNode(Opcodes.INVOKESPECIAL, classNode.name, splitMethod.name, methodDescriptor));
-      list.add(new InsnNode(endType.getOpcode(IRETURN)));
-      sorter = new LocalVariablesSorter(splitMethod.access, splitMethod.desc, new EmptyMethodVisitor(Opcodes.ASM5));
-      splitMethod.accept(sorter);
-      list = splitMethod.instructions;
+      if (!isStatic) {
+        dispatcher.add(new VarInsnNode(Opcodes.ALOAD, 0));
+      }
+      dispatcher.add(block.getPushParameters());
+      dispatcher.add(new MethodInsnNode(invoke, classNode.name, splitMethod.name, methodDescriptor));
+      dispatcher.add(block.getStoreResult());
     }
-    add(list, block.getInstructions(), original);
-    return returnList;
+    dispatcher.add(new InsnNode(Type.getReturnType(methodNode.desc).getOpcode(IRETURN)));
+    
+    methodNode.tryCatchBlocks.clear();
+    if (methodNode.localVariables != null) {
+      // the labels of the local variables are moved to the split methods
+      methodNode.localVariables.clear();
+    }
+    return dispatcher;
   }
   
   private InsnList clean(final InsnList original) {
@@ -311,13 +227,6 @@ public class MethodSplitter implements IOptimizer {
     return codeSizeEvaluator.getMaxSize();
   }
   
-  private void add(final InsnList list, final List<AbstractInsnNode> insns, final InsnList original) {
-    for (final AbstractInsnNode node : insns) {
-      original.remove(node);
-      list.add(node);
-    }
-  }
-  
   private String[] getExceptions(final MethodNode methodNode) {
     final List<String> exceptions = methodNode.exceptions;
     if ((exceptions == null) || (exceptions.size() == 0)) {
@@ -326,50 +235,147 @@ public class MethodSplitter implements IOptimizer {
     return exceptions.toArray(new String[exceptions.size()]);
   }
   
-  private List<Block> getBlocks(final InsnList original, final MethodNode methodNode) {
-    final ListIterator<AbstractInsnNode> iterator = original.iterator();
-    final Type[] args = Type.getArgumentTypes(methodNode.desc);
-    
-    final Type returnType = Type.getReturnType(methodNode.desc);
-    final Block currentBlock = new Block(-1, args, returnType);
+  /*
+   * try-catch-blocks never span a split point (see Liveness), so each one belongs to exactly one block.
+   */
+  private Map<Block, List<TryCatchBlockNode>> getTryCatchBlocks(final List<Block> blocks,
+      final MethodNode methodNode) {
+    final Map<Block, List<TryCatchBlockNode>> tryCatchBlocks = new HashMap<>();
+    for (final Block block : blocks) {
+      tryCatchBlocks.put(block, new ArrayList<TryCatchBlockNode>());
+    }
+    for (final TryCatchBlockNode tryCatch : methodNode.tryCatchBlocks) {
+      final int index = methodNode.instructions.indexOf(tryCatch.start);
+      for (final Block block : blocks) {
+        if (block.contains(index)) {
+          tryCatchBlocks.get(block).add(tryCatch);
+          break;
+        }
+      }
+    }
+    return tryCatchBlocks;
+  }
+  
+  private List<Block> getBlocks(final Liveness liveness, final Type returnType) {
     final List<Block> blocks = new ArrayList<>();
-    boolean added = false;
-    int num = 0;
-    Block methodBlock = new Block(num, args, returnType);
-    
-    while (iterator.hasNext()) {
-      final AbstractInsnNode current = iterator.next();
-      if (current instanceof SplitMarkNode) {
-        final int methodLength = currentBlock.getSize() + methodBlock.getSize();
-        if (methodLength < maxInsns) {
-          methodBlock.add(currentBlock);
-          currentBlock.clear();
-        } else {
-          if (methodBlock.getSize() == 0) {
-            methodBlock.add(currentBlock);
-            currentBlock.clear();
+    final int size = liveness.size();
+    int start = 0;
+    while (liveness.getCodeSize(start, size) > partInsns) {
+      final int end = findSplitPoint(liveness, start);
+      if (end < 0) {
+        break;
+      }
+      blocks.add(createBlock(liveness, blocks.size(), start, end, null));
+      start = end;
+    }
+    blocks.add(createBlock(liveness, blocks.size(), start, size, returnType));
+    return blocks;
+  }
+  
+  /*
+   * Scans the split points after start.
+   * The variables defined in [start, point) that are read after point are returned by the part,
+   * the size of the code for this is added to the size of the part.
+   * Out of the points, whose part fills at least the half of partInsns, the one with the smallest
+   * number of live variables is taken.
+   * If there are none, the last valid point below partInsns or (if the first segment alone
+   * is too large) the first valid point is taken.
+   */
+  private int findSplitPoint(final Liveness liveness, final int start) {
+    final int budget = partInsns - RESULT_LENGTH;
+    final Map<Integer, Integer> liveOut = new HashMap<>();
+    final Map<Integer, List<Integer>> expiring = new HashMap<>();
+    int best = -1;
+    int fallback = -1;
+    for (int i = start; i < liveness.size(); ++i) {
+      if ((i > start) && liveness.isSplitPoint(i)) {
+        final int codeSize = liveness.getCodeSize(start, i) + getResultLength(liveOut.size());
+        if (codeSize > budget) {
+          if ((best < 0) && (fallback < 0)) {
+            return i;
           }
-          added = true;
-          blocks.add(methodBlock);
-          num++;
-          methodBlock = new Block(num, args, returnType);
-          if (currentBlock.getSize() > 0) {
-            methodBlock.add(currentBlock);
-            currentBlock.clear();
+          break;
+        }
+        if (codeSize >= (budget / 2)) {
+          if ((best < 0) || (liveness.getLiveCount(i) <= liveness.getLiveCount(best))) {
+            best = i;
           }
+        } else {
+          fallback = i;
         }
+      } else if (((best >= 0) || (fallback >= 0)) && (liveness.getCodeSize(start, i) > budget)) {
+        break;
+      }
+      define(liveness, i, liveOut, expiring);
+      expire(i, liveOut, expiring);
+    }
+    if (best >= 0) {
+      return best;
+    }
+    return fallback;
+  }
+  
+  private static int getResultLength(final int results) {
+    if (results <= 1) {
+      return 0;
+    }
+    // new array + areturn
+    return RESULT_LENGTH + (results * BOXED_RESULT_LENGTH);
+  }
+  
+  private void define(final Liveness liveness, final int index, final Map<Integer, Integer> liveOut,
+      final Map<Integer, List<Integer>> expiring) {
+    final int var = liveness.getDefinedVar(index);
+    if (var < 0) {
+      return;
+    }
+    final Integer key = Integer.valueOf(var);
+    final Integer count = liveOut.get(key);
+    liveOut.put(key, Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+    final Integer lastUse = Integer.valueOf(liveness.getLastUse(index));
+    List<Integer> vars = expiring.get(lastUse);
+    if (vars == null) {
+      vars = new ArrayList<>();
+      expiring.put(lastUse, vars);
+    }
+    vars.add(key);
+  }
+  
+  private void expire(final int index, final Map<Integer, Integer> liveOut, final Map<Integer, List<Integer>> expiring) {
+    final List<Integer> vars = expiring.remove(Integer.valueOf(index));
+    if (vars == null) {
+      return;
+    }
+    for (final Integer var : vars) {
+      final int count = liveOut.get(var).intValue() - 1;
+      if (count == 0) {
+        liveOut.remove(var);
       } else {
-        currentBlock.addInsn(current);
-        added = false;
+        liveOut.put(var, Integer.valueOf(count));
       }
     }
-    
-    if (!added) {
-      methodBlock.add(currentBlock);
-      blocks.add(methodBlock);
+  }
+  
+  private Block createBlock(final Liveness liveness, final int num, final int start, final int end,
+      final Type returnType) {
+    final Block block = new Block(num, start, end, returnType);
+    for (final Integer var : liveness.getLiveIn(start, end)) {
+      block.addParameter(var.intValue(), liveness.getType(var.intValue(), start));
+    }
+    if (block.isLast()) {
+      return block;
+    }
+    for (int i = start; i < end; ++i) {
+      final int var = liveness.getDefinedVar(i);
+      if ((var >= 0) && (liveness.getLastUse(i) > end)) {
+        if (liveness.isLiveAt(var, start)) {
+          // the variable is maybe not written on every path through the block
+          block.addParameter(var, liveness.getType(var, start));
+        }
+        block.addResult(var, liveness.getType(var, end));
+      }
     }
-    
-    return blocks;
+    return block;
   }
   
   /**
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.methodsplitter;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicInterpreter;
+import org.objectweb.asm.tree.analysis.BasicValue;
+
+/**
+ * The Class TypedInterpreter.
+ *
+ * A {@link BasicInterpreter} that keeps the exact type of references instead
+ * of collapsing them to {@link BasicValue#REFERENCE_VALUE}.
+ *
+ * This is needed to build correct descriptors for the parameters of split methods.
+ * Unlike {@link org.objectweb.asm.tree.analysis.SimpleVerifier} no classes are loaded,
+ * different reference types are simply merged to {@link Object}.
+ *
+ * @author Christopher Ewest
+ */
+class TypedInterpreter extends BasicInterpreter {
+
+  private static final Type OBJECT_TYPE = Type.getType(Object.class);
+
+  private static final Type NULL_TYPE = Type.getObjectType("null");
+
+  /** Value of ACONST_NULL, merges to any other reference. */
+  private static final BasicValue NULL_VALUE = new BasicValue(NULL_TYPE);
+
+  /**
+   * Instantiates a new {@link TypedInterpreter}.
+   */
+  TypedInterpreter() {
+    super(Opcodes.ASM5);
+  }
+
+  @Override
+  public BasicValue newValue(final Type type) {
+    if (type == null) {
+      return BasicValue.UNINITIALIZED_VALUE;
+    }
+    if (NULL_TYPE.equals(type)) {
+      return NULL_VALUE;
+    }
+    if ((type.getSort() == Type.OBJECT) || (type.getSort() == Type.ARRAY)) {
+      return new BasicValue(type);
+    }
+    return super.newValue(type);
+  }
+
+  @Override
+  public BasicValue binaryOperation(final AbstractInsnNode insn, final BasicValue value1, final BasicValue value2)
+      throws AnalyzerException {
+    if ((insn.getOpcode() == Opcodes.AALOAD) && (value1.getType() != null)
+        && (value1.getType().getSort() == Type.ARRAY)) {
+      return newValue(Type.getType(value1.getType().getDescriptor().substring(1)));
+    }
+    return super.binaryOperation(insn, value1, value2);
+  }
+
+  @Override
+  public BasicValue merge(final BasicValue v, final BasicValue w) {
+    if (v.equals(w)) {
+      return v;
+    }
+    if (NULL_VALUE.equals(v) && w.isReference()) {
+      return w;
+    }
+    if (NULL_VALUE.equals(w) && v.isReference()) {
+      return v;
+    }
+    if (v.isReference() && w.isReference()) {
+      return new BasicValue(OBJECT_TYPE);
+    }
+    return super.merge(v, w);
+  }
+
+  /**
+   * Gets the type that could be used in a descriptor for the given value.
+   *
+   * @param value
+   *          the value
+   * @return the type
+   */
+  static Type getType(final BasicValue value) {
+    if ((value == null) || (value.getType() == null)) {
+      return null;
+    }
+    if (NULL_VALUE.equals(value)) {
+      return OBJECT_TYPE;
+    }
+    return value.getType();
+  }
+}
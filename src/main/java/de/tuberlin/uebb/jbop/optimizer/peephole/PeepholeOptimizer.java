@@ -0,0 +1,363 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.peephole;
+
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.DCONST_1;
+import static org.objectweb.asm.Opcodes.DLOAD;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.DUP2;
+import static org.objectweb.asm.Opcodes.FLOAD;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.ICONST_M1;
+import static org.objectweb.asm.Opcodes.IINC;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.LCONST_0;
+import static org.objectweb.asm.Opcodes.LDC;
+import static org.objectweb.asm.Opcodes.LLOAD;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.POP2;
+import static org.objectweb.asm.Opcodes.SIPUSH;
+import static org.objectweb.asm.Opcodes.SWAP;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import de.tuberlin.uebb.jbop.optimizer.ChangeKind;
+import de.tuberlin.uebb.jbop.optimizer.DirtyRegions;
+import de.tuberlin.uebb.jbop.optimizer.IChangeAware;
+import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
+import de.tuberlin.uebb.jbop.optimizer.IRegionAware;
+import de.tuberlin.uebb.jbop.optimizer.var.LocalVarLiveness;
+
+/**
+ * The Class PeepholeOptimizer.
+ * 
+ * Rewrites short sequences of instructions left by the other optimizers (see {@link Rule}):
+ * 
+ * <pre>
+ * xstore n; xload n   (n is dead afterwards)  -&gt; -
+ * xload n; xstore n                           -&gt; -
+ * dup; pop / dup2; pop2 / swap; swap          -&gt; -
+ * iconst (or any other constant / load); pop  -&gt; -
+ * goto L; L:                                  -&gt; L:
+ * iinc n 0                                    -&gt; -
+ * </pre>
+ * 
+ * The instructions of a pattern may be separated by line numbers, frames and labels
+ * that are no jump targets.
+ * 
+ * @author Christopher Ewest
+ */
+public class PeepholeOptimizer implements IOptimizer, IChangeAware, IRegionAware {
+  
+  private static final Set<ChangeKind> ENABLING_CHANGES = Collections.unmodifiableSet(EnumSet
+      .allOf(ChangeKind.class));
+  private static final Set<ChangeKind> PRODUCED_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.LOCALS, ChangeKind.CONTROL_FLOW, ChangeKind.CODE));
+  
+  private final Set<AbstractInsnNode> jumpTargets = newIdentitySet();
+  private final Set<AbstractInsnNode> lastUses = newIdentitySet();
+  private final BitSet incremented = new BitSet();
+  private boolean optimized;
+  private DirtyRegions regions;
+  
+  @Override
+  public boolean isOptimized() {
+    return optimized;
+  }
+  
+  @Override
+  public InsnList optimize(final InsnList original, final MethodNode methodNode) {
+    optimized = false;
+    boolean isOptimized;
+    do {
+      isOptimized = runIntern(original, methodNode);
+    } while (isOptimized);
+    return original;
+  }
+  
+  private boolean runIntern(final InsnList original, final MethodNode methodNode) {
+    analyze(original, methodNode);
+    boolean intern = false;
+    AbstractInsnNode node = original.getFirst();
+    while (node != null) {
+      AbstractInsnNode next = node.getNext();
+      if ((regions == null) || regions.isDirty(node)) {
+        final AbstractInsnNode previous = node.getPrevious();
+        for (final Rule rule : Rule.values()) {
+          if (rule.rewrite(this, original, node)) {
+            // the rewritten code may form a new pattern with the previous instruction
+            next = previous == null ? original.getFirst() : previous;
+            if (regions != null) {
+              regions.markChanged(next);
+            }
+            optimized = true;
+            intern = true;
+            break;
+          }
+        }
+      }
+      node = next;
+    }
+    return intern;
+  }
+  
+  private void analyze(final InsnList original, final MethodNode methodNode) {
+    jumpTargets.clear();
+    lastUses.clear();
+    incremented.clear();
+    for (AbstractInsnNode node = original.getFirst(); node != null; node = node.getNext()) {
+      if (node instanceof JumpInsnNode) {
+        jumpTargets.add(((JumpInsnNode) node).label);
+      } else if (node instanceof TableSwitchInsnNode) {
+        jumpTargets.add(((TableSwitchInsnNode) node).dflt);
+        jumpTargets.addAll(((TableSwitchInsnNode) node).labels);
+      } else if (node instanceof LookupSwitchInsnNode) {
+        jumpTargets.add(((LookupSwitchInsnNode) node).dflt);
+        jumpTargets.addAll(((LookupSwitchInsnNode) node).labels);
+      } else if (node instanceof IincInsnNode) {
+        incremented.set(((IincInsnNode) node).var);
+      }
+    }
+    if (methodNode.tryCatchBlocks != null) {
+      for (final TryCatchBlockNode block : methodNode.tryCatchBlocks) {
+        jumpTargets.add(block.start);
+        jumpTargets.add(block.end);
+        jumpTargets.add(block.handler);
+      }
+    }
+    final LocalVarLiveness liveness = new LocalVarLiveness(original, methodNode);
+    final AbstractInsnNode[] insns = liveness.getInstructions();
+    final BitSet uses = liveness.getLastUses();
+    for (int i = uses.nextSetBit(0); i >= 0; i = uses.nextSetBit(i + 1)) {
+      lastUses.add(insns[i]);
+    }
+  }
+  
+  /**
+   * Gets the next node, skipping line numbers, frames and labels that are no jump targets.
+   */
+  AbstractInsnNode getNext(final AbstractInsnNode node) {
+    AbstractInsnNode current = node.getNext();
+    while ((current instanceof LineNumberNode) || (current instanceof FrameNode)
+        || ((current instanceof LabelNode) && !jumpTargets.contains(current))) {
+      current = current.getNext();
+    }
+    return current;
+  }
+  
+  private static Set<AbstractInsnNode> newIdentitySet() {
+    return Collections.newSetFromMap(new IdentityHashMap<AbstractInsnNode, Boolean>());
+  }
+  
+  @Override
+  public void setDirtyRegions(final DirtyRegions regions) {
+    this.regions = regions;
+  }
+  
+  @Override
+  public Set<ChangeKind> getEnablingChanges() {
+    return ENABLING_CHANGES;
+  }
+  
+  @Override
+  public Set<ChangeKind> getProducedChanges() {
+    return PRODUCED_CHANGES;
+  }
+  
+  /**
+   * The rewrite rules.
+   */
+  enum Rule {
+    
+    /** xstore n; xload n -&gt; -, if n is dead after the load. */
+    STORE_LOAD {
+      
+      @Override
+      boolean rewrite(final PeepholeOptimizer optimizer, final InsnList original, final AbstractInsnNode node) {
+        if ((node.getOpcode() < ISTORE) || (node.getOpcode() > ASTORE)) {
+          return false;
+        }
+        final AbstractInsnNode load = optimizer.getNext(node);
+        final int var = ((VarInsnNode) node).var;
+        if (!isVar(load, node.getOpcode() - (ISTORE - ILOAD), var) || !optimizer.lastUses.contains(load)
+            || optimizer.incremented.get(var)) {
+          return false;
+        }
+        original.remove(node);
+        original.remove(load);
+        return true;
+      }
+    },
+    
+    /** xload n; xstore n -&gt; -. */
+    LOAD_STORE {
+      
+      @Override
+      boolean rewrite(final PeepholeOptimizer optimizer, final InsnList original, final AbstractInsnNode node) {
+        if ((node.getOpcode() < ILOAD) || (node.getOpcode() > ALOAD)) {
+          return false;
+        }
+        final AbstractInsnNode store = optimizer.getNext(node);
+        if (!isVar(store, node.getOpcode() + (ISTORE - ILOAD), ((VarInsnNode) node).var)) {
+          return false;
+        }
+        original.remove(node);
+        original.remove(store);
+        return true;
+      }
+    },
+    
+    /** dup; pop / dup2; pop2 / swap; swap -&gt; -. */
+    CANCEL_STACK_OPS {
+      
+      @Override
+      boolean rewrite(final PeepholeOptimizer optimizer, final InsnList original, final AbstractInsnNode node) {
+        final AbstractInsnNode next = optimizer.getNext(node);
+        if (next == null) {
+          return false;
+        }
+        final int opcode = node.getOpcode();
+        final int nextOpcode = next.getOpcode();
+        if (((opcode == DUP) && (nextOpcode == POP)) || ((opcode == DUP2) && (nextOpcode == POP2))
+            || ((opcode == SWAP) && (nextOpcode == SWAP))) {
+          original.remove(node);
+          original.remove(next);
+          return true;
+        }
+        return false;
+      }
+    },
+    
+    /** push; pop -&gt; - (for constants and loads). */
+    PUSH_POP {
+      
+      @Override
+      boolean rewrite(final PeepholeOptimizer optimizer, final InsnList original, final AbstractInsnNode node) {
+        final int size = getPushSize(node);
+        if (size == 0) {
+          return false;
+        }
+        final AbstractInsnNode pop = optimizer.getNext(node);
+        if ((pop == null) || (pop.getOpcode() != (size == 1 ? POP : POP2))) {
+          return false;
+        }
+        original.remove(node);
+        original.remove(pop);
+        return true;
+      }
+    },
+    
+    /** goto L; L: -&gt; L:. */
+    GOTO_NEXT {
+      
+      @Override
+      boolean rewrite(final PeepholeOptimizer optimizer, final InsnList original, final AbstractInsnNode node) {
+        if (node.getOpcode() != GOTO) {
+          return false;
+        }
+        final LabelNode label = ((JumpInsnNode) node).label;
+        AbstractInsnNode current = node.getNext();
+        while ((current instanceof LabelNode) || (current instanceof LineNumberNode)
+            || (current instanceof FrameNode)) {
+          if (current == label) {
+            original.remove(node);
+            return true;
+          }
+          current = current.getNext();
+        }
+        return false;
+      }
+    },
+    
+    /** iinc n 0 -&gt; -. */
+    IINC_ZERO {
+      
+      @Override
+      boolean rewrite(final PeepholeOptimizer optimizer, final InsnList original, final AbstractInsnNode node) {
+        if ((node.getOpcode() != IINC) || (((IincInsnNode) node).incr != 0)) {
+          return false;
+        }
+        original.remove(node);
+        return true;
+      }
+    };
+    
+    /**
+     * Rewrites the sequence starting at the node.
+     * 
+     * @param optimizer
+     *          the optimizer
+     * @param original
+     *          the instructions
+     * @param node
+     *          the first node of the sequence
+     * @return true, if the sequence was rewritten
+     */
+    abstract boolean rewrite(PeepholeOptimizer optimizer, InsnList original, AbstractInsnNode node);
+    
+    private static boolean isVar(final AbstractInsnNode node, final int opcode, final int var) {
+      return (node != null) && (node.getOpcode() == opcode) && (((VarInsnNode) node).var == var);
+    }
+    
+    /**
+     * Gets the number of slots pushed by a node that has no other effect (0 for other nodes).
+     */
+    private static int getPushSize(final AbstractInsnNode node) {
+      final int opcode = node.getOpcode();
+      if ((opcode >= LCONST_0) && (opcode <= DCONST_1)) {
+        return ((opcode <= LCONST_0 + 1) || (opcode >= DCONST_1 - 1)) ? 2 : 1;
+      }
+      if ((opcode == ACONST_NULL) || ((opcode >= ICONST_M1) && (opcode <= SIPUSH)) || (opcode == ILOAD)
+          || (opcode == FLOAD) || (opcode == ALOAD)) {
+        return 1;
+      }
+      if ((opcode == LLOAD) || (opcode == DLOAD)) {
+        return 2;
+      }
+      if (opcode == LDC) {
+        final Object cst = ((LdcInsnNode) node).cst;
+        return (cst instanceof Long) || (cst instanceof Double) ? 2 : 1;
+      }
+      return 0;
+    }
+  }
+}
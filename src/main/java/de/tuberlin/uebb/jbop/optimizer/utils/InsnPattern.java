@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.collections15.Predicate;
+import org.apache.commons.collections15.functors.TruePredicate;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+
+import de.tuberlin.uebb.jbop.optimizer.utils.predicates.OpcodePredicate;
+
+/**
+ * The Class InsnPattern.
+ * 
+ * A declarative pattern over an instruction and (recursively) the producers of its operands
+ * ({@link StackProducers}). The instructions are matched by {@link Predicate}s
+ * (e.g. the ones of {@link de.tuberlin.uebb.jbop.optimizer.utils.predicates.Predicates}).
+ * 
+ * eg. an access to a constant index of an array held by a field of this:
+ * 
+ * <pre>
+ * InsnPattern pattern = insn(IS_XALOAD).as("load").with(//
+ *     opcode(GETFIELD).as("field").with(opcode(ALOAD)), //
+ *     insn(IS_NUMBER_VALUE).as("index"));
+ * Match match = pattern.match(node, producers);
+ * if (match != null) {
+ *   AbstractInsnNode field = match.get("field");
+ *   ...
+ * }
+ * </pre>
+ * 
+ * Patterns are immutable and can be shared.
+ * 
+ * @author Christopher Ewest
+ */
+public final class InsnPattern {
+  
+  private final Predicate<AbstractInsnNode> predicate;
+  private final InsnPattern[] operands;
+  private final String name;
+  
+  private InsnPattern(final Predicate<AbstractInsnNode> predicate, final InsnPattern[] operands, final String name) {
+    this.predicate = predicate;
+    this.operands = operands;
+    this.name = name;
+  }
+  
+  /**
+   * Creates a pattern that matches the instructions the predicate evaluates to true for.
+   * 
+   * @param predicate
+   *          the predicate
+   * @return the pattern
+   */
+  public static InsnPattern insn(final Predicate<AbstractInsnNode> predicate) {
+    return new InsnPattern(predicate, null, null);
+  }
+  
+  /**
+   * Creates a pattern that matches the instructions with one of the given opcodes.
+   * 
+   * @param opcodes
+   *          the opcodes
+   * @return the pattern
+   */
+  public static InsnPattern opcode(final int... opcodes) {
+    return insn(new OpcodePredicate(opcodes));
+  }
+  
+  /**
+   * Creates a pattern that matches any instruction.
+   * 
+   * @return the pattern
+   */
+  public static InsnPattern any() {
+    return insn(TruePredicate.<AbstractInsnNode> getInstance());
+  }
+  
+  /**
+   * Returns a copy of this pattern, that additionally requires the instruction to take exactly
+   * the given number of operands from the stack, each of them produced by a (unique) instruction
+   * that matches the corresponding pattern (the first pattern is the deepest value on the stack).
+   * 
+   * @param operandPatterns
+   *          the operand patterns
+   * @return the pattern
+   */
+  public InsnPattern with(final InsnPattern... operandPatterns) {
+    return new InsnPattern(predicate, Arrays.copyOf(operandPatterns, operandPatterns.length), name);
+  }
+  
+  /**
+   * Returns a copy of this pattern, whose matched instruction is bound to the given name.
+   * 
+   * @param bindingName
+   *          the name
+   * @return the pattern
+   */
+  public InsnPattern as(final String bindingName) {
+    return new InsnPattern(predicate, operands, bindingName);
+  }
+  
+  /**
+   * Matches the pattern against the node.
+   * 
+   * @param node
+   *          the node
+   * @param producers
+   *          the producers of the method containing the node
+   * @return the match or null if the pattern doesn't match
+   */
+  public Match match(final AbstractInsnNode node, final StackProducers producers) {
+    final Match match = new Match(node, producers);
+    if (!match(node, producers, match)) {
+      return null;
+    }
+    return match;
+  }
+  
+  /**
+   * Checks if the pattern matches the node.
+   * 
+   * @param node
+   *          the node
+   * @param producers
+   *          the producers of the method containing the node
+   * @return true, if the pattern matches
+   */
+  public boolean matches(final AbstractInsnNode node, final StackProducers producers) {
+    return match(node, producers) != null;
+  }
+  
+  /**
+   * Finds all matches in the given instructions.
+   * 
+   * @param instructions
+   *          the instructions
+   * @param producers
+   *          the producers of the instructions
+   * @return the matches
+   */
+  public List<Match> findAll(final InsnList instructions, final StackProducers producers) {
+    final List<Match> matches = new ArrayList<>();
+    for (AbstractInsnNode node = instructions.getFirst(); node != null; node = node.getNext()) {
+      final Match match = match(node, producers);
+      if (match != null) {
+        matches.add(match);
+      }
+    }
+    return matches;
+  }
+  
+  private boolean match(final AbstractInsnNode node, final StackProducers producers, final Match match) {
+    if ((node == null) || !predicate.evaluate(node)) {
+      return false;
+    }
+    if (operands != null) {
+      if (producers.getOperandCount(node) != operands.length) {
+        return false;
+      }
+      for (int i = 0; i < operands.length; ++i) {
+        final AbstractInsnNode producer = producers.getProducer(node, i);
+        if (!operands[i].match(producer, producers, match)) {
+          return false;
+        }
+      }
+    }
+    match.add(name, node);
+    return true;
+  }
+  
+  /**
+   * The result of a successful match.
+   */
+  public static final class Match {
+    
+    private final AbstractInsnNode root;
+    private final StackProducers producers;
+    private final Map<String, AbstractInsnNode> bindings = new HashMap<>();
+    private final List<AbstractInsnNode> nodes = new ArrayList<>();
+    
+    Match(final AbstractInsnNode root, final StackProducers producers) {
+      this.root = root;
+      this.producers = producers;
+    }
+    
+    void add(final String name, final AbstractInsnNode node) {
+      if (name != null) {
+        bindings.put(name, node);
+      }
+      nodes.add(node);
+    }
+    
+    /**
+     * Gets the instruction bound to the name.
+     * 
+     * @param name
+     *          the name
+     * @return the node or null
+     */
+    public AbstractInsnNode get(final String name) {
+      return bindings.get(name);
+    }
+    
+    /**
+     * Gets the instruction the pattern was matched against.
+     * 
+     * @return the root
+     */
+    public AbstractInsnNode getRoot() {
+      return root;
+    }
+    
+    /**
+     * Gets all matched instructions in the order of the instruction list.
+     * 
+     * @return the nodes
+     */
+    public List<AbstractInsnNode> getNodes() {
+      final List<AbstractInsnNode> sorted = new ArrayList<>(nodes);
+      Collections.sort(sorted, new Comparator<AbstractInsnNode>() {
+        
+        @Override
+        public int compare(final AbstractInsnNode o1, final AbstractInsnNode o2) {
+          return Integer.compare(producers.indexOf(o1), producers.indexOf(o2));
+        }
+      });
+      return sorted;
+    }
+  }
+}
@@ -302,6 +302,10 @@ public final class LoopMatcher {
       endValue = previous.getNext();
       varIndex2 = NodeHelper.getVarIndex(counter);
       
+    } else if ((varIndex2 != varIndex) && (NodeHelper.getVarIndex(target) == varIndex)) {
+      // i < n: the end value is a local variable
+      endValue = target.getNext();
+      varIndex2 = varIndex;
     }
     if (varIndex != varIndex2) {
       return null;
@@ -382,12 +386,12 @@ public final class LoopMatcher {
     AbstractInsnNode previous = ifNode.getPrevious();
     AbstractInsnNode endValue = previous.getPrevious();
     int varIndex2 = NodeHelper.getVarIndex(previous);
-    if (varIndex2 == -1) {
+    final int varIndex = NodeHelper.getVarIndex(counter);
+    if ((varIndex2 == -1) || ((varIndex2 != varIndex) && (NodeHelper.getVarIndex(label.getNext()) == varIndex))) {
       previous = label.getNext();
       varIndex2 = NodeHelper.getVarIndex(previous);
       endValue = previous.getNext();
     }
-    final int varIndex = NodeHelper.getVarIndex(counter);
     if (varIndex != varIndex2) {
       return null;
     }
@@ -26,7 +26,6 @@ import static org.objectweb.asm.Opcodes.ASTORE;
 import static org.objectweb.asm.Opcodes.D2F;
 import static org.objectweb.asm.Opcodes.D2I;
 import static org.objectweb.asm.Opcodes.D2L;
-import static org.objectweb.asm.Opcodes.DREM;
 import static org.objectweb.asm.Opcodes.F2D;
 import static org.objectweb.asm.Opcodes.F2I;
 import static org.objectweb.asm.Opcodes.F2L;
@@ -35,26 +34,21 @@ import static org.objectweb.asm.Opcodes.I2D;
 import static org.objectweb.asm.Opcodes.I2F;
 import static org.objectweb.asm.Opcodes.I2L;
 import static org.objectweb.asm.Opcodes.I2S;
-import static org.objectweb.asm.Opcodes.IADD;
-import static org.objectweb.asm.Opcodes.IALOAD;
 import static org.objectweb.asm.Opcodes.ILOAD;
-import static org.objectweb.asm.Opcodes.INVOKEDYNAMIC;
-import static org.objectweb.asm.Opcodes.INVOKESTATIC;
-import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
 import static org.objectweb.asm.Opcodes.ISTORE;
 import static org.objectweb.asm.Opcodes.L2D;
 import static org.objectweb.asm.Opcodes.L2F;
 import static org.objectweb.asm.Opcodes.L2I;
-import static org.objectweb.asm.Opcodes.LDC;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.math3.exception.NotANumberException;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Opcodes;
-import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.FieldInsnNode;
@@ -140,25 +134,28 @@ public final class NodeHelper {
     return null;
   }
   
+  // the xCONST-nodes are only used for the exact values (bitwise, so -0.0 and fractions are loaded with ldc)
   private static AbstractInsnNode getDoubleInsnNode(final Number newNumber) {
-    if (newNumber.doubleValue() == 0) {
+    final long bits = Double.doubleToLongBits(newNumber.doubleValue());
+    if (bits == Double.doubleToLongBits(0.0)) {
       return new InsnNode(Opcodes.DCONST_0);
-    } else if (newNumber.doubleValue() == 1) {
+    } else if (bits == Double.doubleToLongBits(1.0)) {
       return new InsnNode(Opcodes.DCONST_1);
     } else {
-      return new LdcInsnNode(newNumber);
+      return new LdcInsnNode(Double.valueOf(newNumber.doubleValue()));
     }
   }
   
   private static AbstractInsnNode getFloatInsnNode(final Number newNumber) {
-    if (newNumber.longValue() == 0) {
+    final int bits = Float.floatToIntBits(newNumber.floatValue());
+    if (bits == Float.floatToIntBits(0f)) {
       return new InsnNode(Opcodes.FCONST_0);
-    } else if (newNumber.floatValue() == 1) {
+    } else if (bits == Float.floatToIntBits(1f)) {
       return new InsnNode(Opcodes.FCONST_1);
-    } else if (newNumber.floatValue() == 2) {
+    } else if (bits == Float.floatToIntBits(2f)) {
       return new InsnNode(Opcodes.FCONST_2);
     } else {
-      return new LdcInsnNode(newNumber);
+      return new LdcInsnNode(Float.valueOf(newNumber.floatValue()));
     }
   }
   
@@ -778,7 +775,7 @@ public final class NodeHelper {
       return cast(Float.valueOf(1), checkNode, node);
     }
     if (checkNode.getOpcode() == Opcodes.FCONST_2) {
-      return cast(Float.valueOf(1), checkNode, node);
+      return cast(Float.valueOf(2), checkNode, node);
     }
     if (checkNode.getOpcode() == Opcodes.DCONST_0) {
       return cast(Double.valueOf(0), checkNode, node);
@@ -1085,11 +1082,14 @@ public final class NodeHelper {
   
   /**
    * returns the first Element of the "Stack" that produces the value, that is stored
-   * by this node.
+   * by this node ({@link StackProducers#getFirstOfStack(AbstractInsnNode)}).
    * 
    * returns null if node is null.
    * returns null if node is not a store.
    * 
+   * This analyzes the whole method containing the node. Passes that need this for many nodes
+   * should use one {@link StackProducers} instead.
+   * 
    * @param node
    *          the node
    * @return the first of stack
@@ -1098,52 +1098,20 @@ public final class NodeHelper {
     if (node == null) {
       return null;
     }
-    int opcode = node.getOpcode();
+    final int opcode = node.getOpcode();
     if (opcode < ISTORE || opcode > ASTORE) {
       return null;
     }
-    
-    int stackCounter = 1;
-    AbstractInsnNode prev = getPrevious(node);
-    while (prev != null) {
-      opcode = prev.getOpcode();
-      stackCounter = getStackCounter(opcode, stackCounter, prev);
-      
-      if (stackCounter == 0) {
-        return prev;
-      }
-      prev = prev.getPrevious();
+    AbstractInsnNode first = node;
+    while (first.getPrevious() != null) {
+      first = first.getPrevious();
     }
-    return null;
-  }
-  
-  private static int getStackCounter(final int opcode, final int currentStackCounter, final AbstractInsnNode prev) {
-    int localStackCounter = currentStackCounter;
-    if (opcode >= ACONST_NULL && opcode <= LDC) {
-      localStackCounter--;
-    } else if (opcode >= ILOAD && opcode <= ALOAD) {
-      localStackCounter--;
-    } else if (opcode >= IALOAD && opcode <= AALOAD) {
-      localStackCounter++;
-    } else if (opcode >= IADD && opcode <= DREM) {
-      localStackCounter++;
-    } else if (opcode >= INVOKEVIRTUAL && opcode <= INVOKEDYNAMIC) {
-      final String desc = ((MethodInsnNode) prev).desc;
-      final Type methodType = Type.getMethodType(desc);
-      final Type[] argumentTypes = methodType.getArgumentTypes();
-      final int length = argumentTypes.length;
-      if (length == 0) {
-        localStackCounter++;
-      } else {
-        localStackCounter += length;
-      }
-      if (opcode == INVOKESTATIC) {
-        localStackCounter--;
-      }
-    } else if (prev instanceof LabelNode) {
-      localStackCounter++;
+    final List<AbstractInsnNode> nodes = new ArrayList<>();
+    for (AbstractInsnNode current = first; current != null; current = current.getNext()) {
+      nodes.add(current);
     }
-    return localStackCounter;
+    final StackProducers producers = new StackProducers(nodes.toArray(new AbstractInsnNode[nodes.size()]), null);
+    return producers.getFirstOfStack(node);
   }
   
   /**
@@ -0,0 +1,690 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.utils;
+
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.DALOAD;
+import static org.objectweb.asm.Opcodes.DCMPG;
+import static org.objectweb.asm.Opcodes.DCONST_0;
+import static org.objectweb.asm.Opcodes.DCONST_1;
+import static org.objectweb.asm.Opcodes.DLOAD;
+import static org.objectweb.asm.Opcodes.DNEG;
+import static org.objectweb.asm.Opcodes.DREM;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.DUP2;
+import static org.objectweb.asm.Opcodes.DUP2_X1;
+import static org.objectweb.asm.Opcodes.DUP2_X2;
+import static org.objectweb.asm.Opcodes.DUP_X1;
+import static org.objectweb.asm.Opcodes.DUP_X2;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.I2L;
+import static org.objectweb.asm.Opcodes.I2S;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.IALOAD;
+import static org.objectweb.asm.Opcodes.IASTORE;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFLE;
+import static org.objectweb.asm.Opcodes.IFNONNULL;
+import static org.objectweb.asm.Opcodes.IFNULL;
+import static org.objectweb.asm.Opcodes.IF_ACMPNE;
+import static org.objectweb.asm.Opcodes.IF_ICMPEQ;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INEG;
+import static org.objectweb.asm.Opcodes.INSTANCEOF;
+import static org.objectweb.asm.Opcodes.INVOKEDYNAMIC;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.ISHL;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.JSR;
+import static org.objectweb.asm.Opcodes.LALOAD;
+import static org.objectweb.asm.Opcodes.LCMP;
+import static org.objectweb.asm.Opcodes.LCONST_0;
+import static org.objectweb.asm.Opcodes.LCONST_1;
+import static org.objectweb.asm.Opcodes.LDC;
+import static org.objectweb.asm.Opcodes.LLOAD;
+import static org.objectweb.asm.Opcodes.LOOKUPSWITCH;
+import static org.objectweb.asm.Opcodes.LXOR;
+import static org.objectweb.asm.Opcodes.MONITOREXIT;
+import static org.objectweb.asm.Opcodes.MULTIANEWARRAY;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.NEWARRAY;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.POP2;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.PUTSTATIC;
+import static org.objectweb.asm.Opcodes.RET;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SALOAD;
+import static org.objectweb.asm.Opcodes.SASTORE;
+import static org.objectweb.asm.Opcodes.SWAP;
+import static org.objectweb.asm.Opcodes.TABLESWITCH;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.MultiANewArrayInsnNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+/**
+ * The Class StackProducers.
+ * 
+ * Links every instruction of a method to the instructions that produced its operands
+ * (and vice versa) by a simulation of the operand stack along the control flow.
+ * If the stack of a jump target is reached on several paths, an operand can have more than one producer.
+ * Values whose producer is unknown (e.g. the exception at the start of a handler) have no producer at all.
+ * 
+ * The simulation is done once (linear in the size of the method for structured code),
+ * afterwards every query is O(1).
+ * Instructions of the dup-family and swap are producers of all values they push.
+ * 
+ * The links refer to the nodes, so they stay valid as long as only self-contained
+ * (stack-neutral) ranges of instructions are removed.
+ * 
+ * @author Christopher Ewest
+ */
+public class StackProducers {
+  
+  private static final int[] CONVERSION_SIZES = {
+      2, 1, 2, 1, 1, 2, 1, 2, 2, 1, 2, 1, 1, 1, 1
+  };
+  private static final StackValue[] NO_OPERANDS = new StackValue[0];
+  
+  private final AbstractInsnNode[] insns;
+  private final Map<AbstractInsnNode, Integer> indexes = new IdentityHashMap<>();
+  private final StackValue[][] operands;
+  private final int[][] consumers;
+  
+  /**
+   * Instantiates new {@link StackProducers} for the instructions of the method.
+   * 
+   * @param methodNode
+   *          the method node
+   */
+  public StackProducers(final MethodNode methodNode) {
+    this(methodNode.instructions.toArray(), methodNode.tryCatchBlocks);
+  }
+  
+  /**
+   * Instantiates new {@link StackProducers} for the given instructions.
+   * 
+   * @param instructions
+   *          the instructions
+   * @param tryCatchBlocks
+   *          the try catch blocks (may be null)
+   */
+  public StackProducers(final InsnList instructions, final List<TryCatchBlockNode> tryCatchBlocks) {
+    this(instructions.toArray(), tryCatchBlocks);
+  }
+  
+  StackProducers(final AbstractInsnNode[] insns, final List<TryCatchBlockNode> tryCatchBlocks) {
+    this.insns = insns;
+    for (int i = 0; i < insns.length; ++i) {
+      indexes.put(insns[i], Integer.valueOf(i));
+    }
+    operands = new StackValue[insns.length][];
+    simulate(tryCatchBlocks == null ? Collections.<TryCatchBlockNode> emptyList() : tryCatchBlocks);
+    consumers = computeConsumers();
+  }
+  
+  /**
+   * Gets the index of the node (at the time of the analysis).
+   * 
+   * @param node
+   *          the node
+   * @return the index or -1 if the node is unknown
+   */
+  public int indexOf(final AbstractInsnNode node) {
+    final Integer index = indexes.get(node);
+    if (index == null) {
+      return -1;
+    }
+    return index.intValue();
+  }
+  
+  /**
+   * Gets the number of values the node takes from the stack.
+   * 
+   * @param node
+   *          the node
+   * @return the operand count (-1 if the node is unknown or not reachable)
+   */
+  public int getOperandCount(final AbstractInsnNode node) {
+    final int index = indexOf(node);
+    if ((index < 0) || (operands[index] == null)) {
+      return -1;
+    }
+    return operands[index].length;
+  }
+  
+  /**
+   * Gets all instructions that may have produced the given operand of the node.
+   * Operand 0 is the deepest value on the stack (e.g. the array of an xaload).
+   * 
+   * @param node
+   *          the node
+   * @param operand
+   *          the operand
+   * @return the producers (empty if unknown)
+   */
+  public List<AbstractInsnNode> getProducers(final AbstractInsnNode node, final int operand) {
+    final int count = getOperandCount(node);
+    if ((operand < 0) || (operand >= count)) {
+      return Collections.emptyList();
+    }
+    final int[] producers = operands[indexOf(node)][operand].producers;
+    final List<AbstractInsnNode> result = new ArrayList<>(producers.length);
+    for (final int producer : producers) {
+      result.add(insns[producer]);
+    }
+    return result;
+  }
+  
+  /**
+   * Gets the instruction that produced the given operand of the node.
+   * Operand 0 is the deepest value on the stack (e.g. the array of an xaload).
+   * 
+   * @param node
+   *          the node
+   * @param operand
+   *          the operand
+   * @return the producer or null if it is unknown or not unique
+   */
+  public AbstractInsnNode getProducer(final AbstractInsnNode node, final int operand) {
+    final int count = getOperandCount(node);
+    if ((operand < 0) || (operand >= count)) {
+      return null;
+    }
+    final int[] producers = operands[indexOf(node)][operand].producers;
+    if (producers.length != 1) {
+      return null;
+    }
+    return insns[producers[0]];
+  }
+  
+  /**
+   * Gets all instructions that may consume the value(s) pushed by the node.
+   * 
+   * @param node
+   *          the node
+   * @return the consumers
+   */
+  public List<AbstractInsnNode> getConsumers(final AbstractInsnNode node) {
+    final int index = indexOf(node);
+    if ((index < 0) || (consumers[index] == null)) {
+      return Collections.emptyList();
+    }
+    final List<AbstractInsnNode> result = new ArrayList<>(consumers[index].length);
+    for (final int consumer : consumers[index]) {
+      result.add(insns[consumer]);
+    }
+    return result;
+  }
+  
+  /**
+   * Gets the instruction that consumes the value pushed by the node.
+   * 
+   * @param node
+   *          the node
+   * @return the consumer or null if there is none or it is not unique
+   */
+  public AbstractInsnNode getConsumer(final AbstractInsnNode node) {
+    final int index = indexOf(node);
+    if ((index < 0) || (consumers[index] == null) || (consumers[index].length != 1)) {
+      return null;
+    }
+    return insns[consumers[index][0]];
+  }
+  
+  /**
+   * Returns the first instruction of the code that computes the operands of the node,
+   * i.e. the first instruction of all (transitive) producers.
+   * 
+   * @param node
+   *          the node
+   * @return the first of stack or null if the node has no operands or any producer is unknown
+   */
+  public AbstractInsnNode getFirstOfStack(final AbstractInsnNode node) {
+    final int index = indexOf(node);
+    if ((index < 0) || (operands[index] == null) || (operands[index].length == 0)) {
+      return null;
+    }
+    final BitSet visited = new BitSet();
+    final Deque<Integer> todo = new ArrayDeque<>();
+    todo.push(Integer.valueOf(index));
+    int first = index;
+    while (!todo.isEmpty()) {
+      final int current = todo.pop().intValue();
+      if (operands[current] == null) {
+        return null;
+      }
+      for (final StackValue value : operands[current]) {
+        if (value.producers.length == 0) {
+          return null;
+        }
+        for (final int producer : value.producers) {
+          if (!visited.get(producer)) {
+            visited.set(producer);
+            first = Math.min(first, producer);
+            todo.push(Integer.valueOf(producer));
+          }
+        }
+      }
+    }
+    return insns[first];
+  }
+  
+  private void simulate(final List<TryCatchBlockNode> tryCatchBlocks) {
+    if (insns.length == 0) {
+      return;
+    }
+    final List<StackValue>[] entries = newStackArray(insns.length);
+    final BitSet leaders = computeLeaders(tryCatchBlocks);
+    final Deque<Integer> worklist = new ArrayDeque<>();
+    entries[0] = new ArrayList<>();
+    worklist.add(Integer.valueOf(0));
+    for (final TryCatchBlockNode tryCatch : tryCatchBlocks) {
+      final int handler = indexOf(tryCatch.handler);
+      if ((handler >= 0) && (entries[handler] == null)) {
+        entries[handler] = new ArrayList<>();
+        entries[handler].add(StackValue.UNKNOWN);
+        worklist.add(Integer.valueOf(handler));
+      }
+    }
+    while (!worklist.isEmpty()) {
+      final int start = worklist.poll().intValue();
+      final List<StackValue> stack = new ArrayList<>(entries[start]);
+      for (int i = start; i < insns.length; ++i) {
+        operands[i] = execute(i, stack);
+        final AbstractInsnNode node = insns[i];
+        final int opcode = node.getOpcode();
+        if (node instanceof JumpInsnNode) {
+          propagate(entries, worklist, indexOf(((JumpInsnNode) node).label), stack);
+          if ((opcode == GOTO) || (opcode == JSR)) {
+            break;
+          }
+        } else if ((opcode == TABLESWITCH) || (opcode == LOOKUPSWITCH)) {
+          for (final LabelNode label : getSwitchLabels(node)) {
+            propagate(entries, worklist, indexOf(label), stack);
+          }
+          break;
+        } else if (isExit(opcode)) {
+          break;
+        }
+        if (((i + 1) < insns.length) && leaders.get(i + 1)) {
+          propagate(entries, worklist, i + 1, stack);
+          break;
+        }
+      }
+    }
+  }
+  
+  @SuppressWarnings("unchecked")
+  private static List<StackValue>[] newStackArray(final int length) {
+    return new List[length];
+  }
+  
+  private BitSet computeLeaders(final List<TryCatchBlockNode> tryCatchBlocks) {
+    final BitSet leaders = new BitSet(insns.length);
+    for (final AbstractInsnNode node : insns) {
+      if (node instanceof JumpInsnNode) {
+        setLeader(leaders, ((JumpInsnNode) node).label);
+      } else if ((node instanceof TableSwitchInsnNode) || (node instanceof LookupSwitchInsnNode)) {
+        for (final LabelNode label : getSwitchLabels(node)) {
+          setLeader(leaders, label);
+        }
+      }
+    }
+    for (final TryCatchBlockNode tryCatch : tryCatchBlocks) {
+      setLeader(leaders, tryCatch.handler);
+    }
+    return leaders;
+  }
+  
+  private void setLeader(final BitSet leaders, final LabelNode label) {
+    final int index = indexOf(label);
+    if (index >= 0) {
+      leaders.set(index);
+    }
+  }
+  
+  private void propagate(final List<StackValue>[] entries, final Deque<Integer> worklist, final int target,
+      final List<StackValue> stack) {
+    if (target < 0) {
+      return;
+    }
+    final List<StackValue> entry = entries[target];
+    if (entry == null) {
+      entries[target] = new ArrayList<>(stack);
+      worklist.add(Integer.valueOf(target));
+      return;
+    }
+    if (entry.size() != stack.size()) {
+      // inconsistent stack heights: not valid bytecode, keep the first one
+      return;
+    }
+    boolean changed = false;
+    for (int i = 0; i < entry.size(); ++i) {
+      final StackValue merged = entry.get(i).merge(stack.get(i));
+      if (merged != entry.get(i)) {
+        entry.set(i, merged);
+        changed = true;
+      }
+    }
+    if (changed) {
+      worklist.add(Integer.valueOf(target));
+    }
+  }
+  
+  private StackValue[] execute(final int index, final List<StackValue> stack) {
+    final AbstractInsnNode node = insns[index];
+    final int opcode = node.getOpcode();
+    switch (opcode) {
+      case POP:
+        return toArray(popSlots(stack, 1));
+      case POP2:
+        return toArray(popSlots(stack, 2));
+      case DUP:
+        return dup(index, stack, 1, 0);
+      case DUP_X1:
+        return dup(index, stack, 1, 1);
+      case DUP_X2:
+        return dup(index, stack, 1, 2);
+      case DUP2:
+        return dup(index, stack, 2, 0);
+      case DUP2_X1:
+        return dup(index, stack, 2, 1);
+      case DUP2_X2:
+        return dup(index, stack, 2, 2);
+      case SWAP: {
+        final List<StackValue> top = popSlots(stack, 1);
+        final List<StackValue> below = popSlots(stack, 1);
+        push(stack, index, top);
+        push(stack, index, below);
+        return concat(below, top);
+      }
+      default:
+        final int count = getPopCount(node);
+        final StackValue[] popped = count == 0 ? NO_OPERANDS : new StackValue[count];
+        for (int i = count - 1; i >= 0; --i) {
+          popped[i] = pop(stack);
+        }
+        final int size = getPushSize(node);
+        if (size > 0) {
+          stack.add(new StackValue(index, size));
+        }
+        return popped;
+    }
+  }
+  
+  /*
+   * [below][top] -> [top][below][top] where top has the given number of slots and below has
+   * belowSlots slots.
+   */
+  private StackValue[] dup(final int index, final List<StackValue> stack, final int slots, final int belowSlots) {
+    final List<StackValue> top = popSlots(stack, slots);
+    final List<StackValue> below = popSlots(stack, belowSlots);
+    push(stack, index, top);
+    push(stack, index, below);
+    push(stack, index, top);
+    return concat(below, top);
+  }
+  
+  private static void push(final List<StackValue> stack, final int index, final List<StackValue> values) {
+    for (final StackValue value : values) {
+      stack.add(new StackValue(index, value.size));
+    }
+  }
+  
+  private static List<StackValue> popSlots(final List<StackValue> stack, final int slots) {
+    final List<StackValue> values = new ArrayList<>(2);
+    int popped = 0;
+    while (popped < slots) {
+      final StackValue value = pop(stack);
+      values.add(0, value);
+      popped += value.size;
+    }
+    return values;
+  }
+  
+  private static StackValue pop(final List<StackValue> stack) {
+    if (stack.isEmpty()) {
+      return StackValue.UNKNOWN;
+    }
+    return stack.remove(stack.size() - 1);
+  }
+  
+  private static StackValue[] toArray(final List<StackValue> values) {
+    return values.toArray(new StackValue[values.size()]);
+  }
+  
+  private static StackValue[] concat(final List<StackValue> first, final List<StackValue> second) {
+    final List<StackValue> values = new ArrayList<>(first);
+    values.addAll(second);
+    return toArray(values);
+  }
+  
+  private int[][] computeConsumers() {
+    final int[] counts = new int[insns.length];
+    for (final StackValue[] values : operands) {
+      if (values != null) {
+        for (final StackValue value : values) {
+          for (final int producer : value.producers) {
+            counts[producer]++;
+          }
+        }
+      }
+    }
+    final int[][] result = new int[insns.length][];
+    for (int i = 0; i < insns.length; ++i) {
+      if (counts[i] > 0) {
+        result[i] = new int[counts[i]];
+        counts[i] = 0;
+      }
+    }
+    for (int i = 0; i < insns.length; ++i) {
+      if (operands[i] != null) {
+        for (final StackValue value : operands[i]) {
+          for (final int producer : value.producers) {
+            result[producer][counts[producer]++] = i;
+          }
+        }
+      }
+    }
+    return result;
+  }
+  
+  private static List<LabelNode> getSwitchLabels(final AbstractInsnNode node) {
+    final List<LabelNode> labels = new ArrayList<>();
+    if (node instanceof TableSwitchInsnNode) {
+      labels.add(((TableSwitchInsnNode) node).dflt);
+      labels.addAll(((TableSwitchInsnNode) node).labels);
+    } else {
+      labels.add(((LookupSwitchInsnNode) node).dflt);
+      labels.addAll(((LookupSwitchInsnNode) node).labels);
+    }
+    return labels;
+  }
+  
+  private static boolean isExit(final int opcode) {
+    return ((opcode >= IRETURN) && (opcode <= RETURN)) || (opcode == ATHROW) || (opcode == RET);
+  }
+  
+  private static int getPopCount(final AbstractInsnNode node) {
+    final int opcode = node.getOpcode();
+    if ((opcode >= IALOAD) && (opcode <= SALOAD)) {
+      return 2;
+    } else if ((opcode >= ISTORE) && (opcode <= ASTORE)) {
+      return 1;
+    } else if ((opcode >= IASTORE) && (opcode <= SASTORE)) {
+      return 3;
+    } else if ((opcode >= IADD) && (opcode <= DREM)) {
+      return 2;
+    } else if ((opcode >= INEG) && (opcode <= DNEG)) {
+      return 1;
+    } else if ((opcode >= ISHL) && (opcode <= LXOR)) {
+      return 2;
+    } else if ((opcode >= I2L) && (opcode <= I2S)) {
+      return 1;
+    } else if ((opcode >= LCMP) && (opcode <= DCMPG)) {
+      return 2;
+    } else if ((opcode >= IFEQ) && (opcode <= IFLE)) {
+      return 1;
+    } else if ((opcode >= IF_ICMPEQ) && (opcode <= IF_ACMPNE)) {
+      return 2;
+    } else if ((opcode == TABLESWITCH) || (opcode == LOOKUPSWITCH)) {
+      return 1;
+    } else if ((opcode >= IRETURN) && (opcode < RETURN)) {
+      return 1;
+    } else if ((opcode == PUTSTATIC) || (opcode == GETFIELD)) {
+      return 1;
+    } else if (opcode == PUTFIELD) {
+      return 2;
+    } else if ((opcode >= INVOKEVIRTUAL) && (opcode <= INVOKEDYNAMIC)) {
+      final int arguments = Type.getArgumentTypes(getMethodDesc(node)).length;
+      if ((opcode == INVOKESTATIC) || (opcode == INVOKEDYNAMIC)) {
+        return arguments;
+      }
+      return arguments + 1;
+    } else if ((opcode >= NEWARRAY) && (opcode <= MONITOREXIT)) {
+      return 1;
+    } else if (opcode == MULTIANEWARRAY) {
+      return ((MultiANewArrayInsnNode) node).dims;
+    } else if ((opcode == IFNULL) || (opcode == IFNONNULL)) {
+      return 1;
+    }
+    return 0;
+  }
+  
+  private static int getPushSize(final AbstractInsnNode node) {
+    final int opcode = node.getOpcode();
+    if ((opcode == LCONST_0) || (opcode == LCONST_1) || (opcode == DCONST_0) || (opcode == DCONST_1)) {
+      return 2;
+    } else if ((opcode >= ACONST_NULL) && (opcode < LDC)) {
+      return 1;
+    } else if (opcode == LDC) {
+      final Object cst = ((LdcInsnNode) node).cst;
+      return ((cst instanceof Long) || (cst instanceof Double)) ? 2 : 1;
+    } else if ((opcode >= ILOAD) && (opcode <= ALOAD)) {
+      return ((opcode == LLOAD) || (opcode == DLOAD)) ? 2 : 1;
+    } else if ((opcode >= IALOAD) && (opcode <= AALOAD)) {
+      return ((opcode == LALOAD) || (opcode == DALOAD)) ? 2 : 1;
+    } else if ((opcode > AALOAD) && (opcode <= SALOAD)) {
+      return 1;
+    } else if ((opcode >= IADD) && (opcode <= DNEG)) {
+      return ((opcode - IADD) % 2) == 1 ? 2 : 1;
+    } else if ((opcode >= ISHL) && (opcode <= LXOR)) {
+      return ((opcode - ISHL) % 2) == 1 ? 2 : 1;
+    } else if ((opcode >= I2L) && (opcode <= I2S)) {
+      return CONVERSION_SIZES[opcode - I2L];
+    } else if ((opcode >= LCMP) && (opcode <= DCMPG)) {
+      return 1;
+    } else if (opcode == JSR) {
+      return 1;
+    } else if ((opcode == GETSTATIC) || (opcode == GETFIELD)) {
+      return Type.getType(((FieldInsnNode) node).desc).getSize();
+    } else if ((opcode >= INVOKEVIRTUAL) && (opcode <= INVOKEDYNAMIC)) {
+      return Type.getReturnType(getMethodDesc(node)).getSize();
+    } else if ((opcode >= NEW) && (opcode <= INSTANCEOF) && (opcode != ATHROW)) {
+      return 1;
+    } else if (opcode == MULTIANEWARRAY) {
+      return 1;
+    }
+    return 0;
+  }
+  
+  private static String getMethodDesc(final AbstractInsnNode node) {
+    if (node instanceof InvokeDynamicInsnNode) {
+      return ((InvokeDynamicInsnNode) node).desc;
+    }
+    return ((MethodInsnNode) node).desc;
+  }
+  
+  /**
+   * A value on the simulated stack: its size (in slots) and the instructions that may have pushed it.
+   */
+  private static final class StackValue {
+    
+    static final StackValue UNKNOWN = new StackValue(new int[0], 1);
+    
+    private final int[] producers;
+    private final int size;
+    
+    StackValue(final int producer, final int size) {
+      this(new int[] {
+        producer
+      }, size);
+    }
+    
+    private StackValue(final int[] producers, final int size) {
+      this.producers = producers;
+      this.size = size;
+    }
+    
+    /*
+     * Returns this, if the other value doesn't add producers.
+     */
+    StackValue merge(final StackValue other) {
+      if ((this == other) || (producers.length == 0)) {
+        return this;
+      }
+      if (other.producers.length == 0) {
+        return UNKNOWN;
+      }
+      int[] merged = producers;
+      for (final int producer : other.producers) {
+        if (Arrays.binarySearch(merged, producer) < 0) {
+          merged = Arrays.copyOf(merged, merged.length + 1);
+          merged[merged.length - 1] = producer;
+          Arrays.sort(merged);
+        }
+      }
+      if (merged == producers) {
+        return this;
+      }
+      return new StackValue(merged, Math.max(size, other.size));
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.utils.predicates;
+
+import java.util.Arrays;
+
+import org.apache.commons.collections15.Predicate;
+import org.objectweb.asm.tree.AbstractInsnNode;
+
+/**
+ * The Class OpcodePredicate.
+ * 
+ * Matches nodes with one of the given opcodes.
+ * 
+ * @author Christopher Ewest
+ */
+public final class OpcodePredicate implements Predicate<AbstractInsnNode> {
+  
+  private final int[] opcodes;
+  
+  /**
+   * Instantiates a new {@link OpcodePredicate}.
+   * 
+   * @param opcodes
+   *          the opcodes
+   */
+  public OpcodePredicate(final int... opcodes) {
+    this.opcodes = Arrays.copyOf(opcodes, opcodes.length);
+  }
+  
+  @Override
+  public boolean evaluate(final AbstractInsnNode object) {
+    if (object == null) {
+      return false;
+    }
+    final int opcode = object.getOpcode();
+    for (final int candidate : opcodes) {
+      if (candidate == opcode) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.var;
+
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.IF_ICMPNE;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.LCMP;
+
+import java.util.Arrays;
+
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
+import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
+
+/**
+ * The Class ArgumentInliner.
+ *
+ * Replaces the parameters of a method by constant values, so that the other
+ * optimizers can handle them like constants (see
+ * {@link de.tuberlin.uebb.jbop.optimizer.Optimizer#specialize(Object, String, Object...)}).
+ *
+ * eg:
+ *
+ * <pre>
+ * int scale(int mode, int x) {
+ *   if (mode == 1) {
+ * ...
+ * </pre>
+ *
+ * with the constant arguments <code>(1, null)</code> becomes
+ *
+ * <pre>
+ * int scale(int mode, int x) {
+ *   if (1 == 1) {
+ * ...
+ * </pre>
+ *
+ * A null-value means that the parameter is not replaced.
+ * Primitive values (and their wrappers) and Strings can be used as constants.
+ *
+ * If the parameter is written in the method, the constant is stored to it at the beginning
+ * of the method, otherwise every load is replaced.
+ *
+ * This Optimizer has to run only once, before the other optimizers.
+ *
+ * The specialized method is only valid for the constant arguments. {@link #addGuard(MethodNode, String, MethodNode)}
+ * adds a check of the actual arguments to the beginning of the method, that calls a copy of the original method
+ * if they differ from the constants.
+ *
+ * @author Christopher Ewest
+ */
+public class ArgumentInliner implements IOptimizer {
+
+  private final Object[] constantArgs;
+  private boolean optimized;
+
+  /**
+   * Instantiates a new {@link ArgumentInliner}.
+   *
+   * @param constantArgs
+   *          the constant arguments (null for parameters that are not replaced)
+   */
+  public ArgumentInliner(final Object... constantArgs) {
+    this.constantArgs = Arrays.copyOf(constantArgs, constantArgs.length);
+  }
+
+  @Override
+  public boolean isOptimized() {
+    return optimized;
+  }
+
+  /**
+   * Checks if the constant arguments can be used for a method with the given descriptor.
+   *
+   * @param desc
+   *          the method descriptor
+   * @return true, if the number of parameters is the same and every constant matches the type of the parameter
+   */
+  public boolean matches(final String desc) {
+    final Type[] types = Type.getArgumentTypes(desc);
+    if (types.length != constantArgs.length) {
+      return false;
+    }
+    for (int i = 0; i < types.length; ++i) {
+      if ((constantArgs[i] != null) && (getConstant(types[i], constantArgs[i]) == null)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public InsnList optimize(final InsnList original, final MethodNode methodNode) throws JBOPClassException {
+    optimized = false;
+    if (!matches(methodNode.desc)) {
+      throw new JBOPClassException("The arguments " + Arrays.toString(constantArgs) + " don't match the parameters of "
+          + methodNode.name + methodNode.desc + ".", null);
+    }
+    final Type[] types = Type.getArgumentTypes(methodNode.desc);
+    int slot = (methodNode.access & ACC_STATIC) == 0 ? 1 : 0;
+    final InsnList prologue = new InsnList();
+    for (int i = 0; i < types.length; ++i) {
+      final Type type = types[i];
+      final Object value = constantArgs[i];
+      if (value != null) {
+        if (isWritten(original, slot)) {
+          prologue.add(getConstant(type, value));
+          prologue.add(new VarInsnNode(type.getOpcode(ISTORE), slot));
+        } else {
+          replaceLoads(original, type, value, slot);
+        }
+        optimized = true;
+      }
+      slot += type.getSize();
+    }
+    original.insert(prologue);
+    return original;
+  }
+
+  /**
+   * Adds a guard to the (already specialized) method, that compares the actual arguments with the constants.
+   * If they differ, the fallback (a copy of the original method in the class owner) is called with the arguments
+   * and its result is returned.
+   *
+   * eg:
+   *
+   * <pre>
+   * int scale(int mode, int x) {
+   *   if (mode != 1) {
+   *     return scale__original(mode, x);
+   *   }
+   * ...
+   * </pre>
+   *
+   * Floating point values are compared by their bits, Strings with equals.
+   *
+   * @param methodNode
+   *          the specialized method
+   * @param owner
+   *          the internal name of the class of the method
+   * @param fallback
+   *          the copy of the original method (private and with the same descriptor)
+   */
+  public void addGuard(final MethodNode methodNode, final String owner, final MethodNode fallback) {
+    final boolean isStatic = (methodNode.access & ACC_STATIC) != 0;
+    final Type[] types = Type.getArgumentTypes(methodNode.desc);
+    final LabelNode differs = new LabelNode();
+    final InsnList guard = new InsnList();
+    final InsnList call = new InsnList();
+    call.add(differs);
+    if (!isStatic) {
+      call.add(new VarInsnNode(ALOAD, 0));
+    }
+    int slot = isStatic ? 0 : 1;
+    for (int i = 0; i < types.length; ++i) {
+      final Type type = types[i];
+      if (constantArgs[i] != null) {
+        guard.add(compare(type, constantArgs[i], slot, differs));
+      }
+      call.add(new VarInsnNode(type.getOpcode(ILOAD), slot));
+      slot += type.getSize();
+    }
+    if (guard.size() == 0) {
+      return;
+    }
+    call.add(new MethodInsnNode(isStatic ? INVOKESTATIC : INVOKESPECIAL, owner, fallback.name, fallback.desc));
+    call.add(new InsnNode(Type.getReturnType(methodNode.desc).getOpcode(IRETURN)));
+    methodNode.instructions.insert(guard);
+    methodNode.instructions.add(call);
+  }
+
+  private static InsnList compare(final Type type, final Object value, final int slot, final LabelNode differs) {
+    final InsnList compare = new InsnList();
+    switch (type.getSort()) {
+      case Type.LONG:
+        compare.add(new VarInsnNode(type.getOpcode(ILOAD), slot));
+        compare.add(getConstant(type, value));
+        compare.add(new InsnNode(LCMP));
+        compare.add(new JumpInsnNode(IFNE, differs));
+        break;
+      case Type.FLOAT:
+        compare.add(new VarInsnNode(type.getOpcode(ILOAD), slot));
+        compare.add(new MethodInsnNode(INVOKESTATIC, "java/lang/Float", "floatToIntBits", "(F)I"));
+        compare.add(NodeHelper.getInsnNodeFor(Integer.valueOf(Float.floatToIntBits(((Number) value).floatValue()))));
+        compare.add(new JumpInsnNode(IF_ICMPNE, differs));
+        break;
+      case Type.DOUBLE:
+        compare.add(new VarInsnNode(type.getOpcode(ILOAD), slot));
+        compare.add(new MethodInsnNode(INVOKESTATIC, "java/lang/Double", "doubleToLongBits", "(D)J"));
+        compare.add(NodeHelper.getInsnNodeFor(Long.valueOf(Double.doubleToLongBits(((Number) value).doubleValue()))));
+        compare.add(new InsnNode(LCMP));
+        compare.add(new JumpInsnNode(IFNE, differs));
+        break;
+      case Type.OBJECT:
+        // the constant is never null, so the argument may be
+        compare.add(getConstant(type, value));
+        compare.add(new VarInsnNode(ALOAD, slot));
+        compare.add(new MethodInsnNode(INVOKEVIRTUAL, "java/lang/String", "equals", "(Ljava/lang/Object;)Z"));
+        compare.add(new JumpInsnNode(IFEQ, differs));
+        break;
+      default:
+        compare.add(new VarInsnNode(type.getOpcode(ILOAD), slot));
+        compare.add(getConstant(type, value));
+        compare.add(new JumpInsnNode(IF_ICMPNE, differs));
+        break;
+    }
+    return compare;
+  }
+
+  private void replaceLoads(final InsnList original, final Type type, final Object value, final int slot) {
+    final int opcode = type.getOpcode(ILOAD);
+    AbstractInsnNode node = original.getFirst();
+    while (node != null) {
+      final AbstractInsnNode next = node.getNext();
+      if ((node.getOpcode() == opcode) && (((VarInsnNode) node).var == slot)) {
+        original.set(node, getConstant(type, value));
+      }
+      node = next;
+    }
+  }
+
+  private boolean isWritten(final InsnList original, final int slot) {
+    for (AbstractInsnNode node = original.getFirst(); node != null; node = node.getNext()) {
+      if ((node instanceof VarInsnNode) && (node.getOpcode() >= ISTORE) && (((VarInsnNode) node).var == slot)) {
+        return true;
+      }
+      if ((node instanceof IincInsnNode) && (((IincInsnNode) node).var == slot)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static AbstractInsnNode getConstant(final Type type, final Object value) {
+    switch (type.getSort()) {
+      case Type.BOOLEAN:
+      case Type.CHAR:
+      case Type.BYTE:
+      case Type.SHORT:
+      case Type.INT:
+        final Integer intValue = toInt(value);
+        return intValue == null ? null : NodeHelper.getInsnNodeFor(intValue);
+      case Type.LONG:
+        return value instanceof Number ? NodeHelper.getInsnNodeFor(Long.valueOf(((Number) value).longValue())) : null;
+      case Type.FLOAT:
+        return value instanceof Number ? NodeHelper.getInsnNodeFor(Float.valueOf(((Number) value).floatValue()))
+            : null;
+      case Type.DOUBLE:
+        return value instanceof Number ? NodeHelper.getInsnNodeFor(Double.valueOf(((Number) value).doubleValue()))
+            : null;
+      default:
+        if ((value instanceof String) && type.getInternalName().equals("java/lang/String")) {
+          return new LdcInsnNode(value);
+        }
+        return null;
+    }
+  }
+
+  private static Integer toInt(final Object value) {
+    if ((value instanceof Integer) || (value instanceof Short) || (value instanceof Byte)) {
+      return Integer.valueOf(((Number) value).intValue());
+    }
+    if (value instanceof Character) {
+      return Integer.valueOf(((Character) value).charValue());
+    }
+    if (value instanceof Boolean) {
+      return Integer.valueOf(((Boolean) value).booleanValue() ? 1 : 0);
+    }
+    return null;
+  }
+}
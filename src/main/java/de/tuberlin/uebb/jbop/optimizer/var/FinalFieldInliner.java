@@ -27,7 +27,10 @@ import static org.objectweb.asm.Type.INT_TYPE;
 import static org.objectweb.asm.Type.LONG_TYPE;
 import static org.objectweb.asm.Type.SHORT_TYPE;
 
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.ListIterator;
+import java.util.Set;
 
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AbstractInsnNode;
@@ -35,8 +38,12 @@ import org.objectweb.asm.tree.InsnList;
 import org.objectweb.asm.tree.MethodNode;
 
 import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.ChangeKind;
+import de.tuberlin.uebb.jbop.optimizer.DirtyRegions;
+import de.tuberlin.uebb.jbop.optimizer.IChangeAware;
 import de.tuberlin.uebb.jbop.optimizer.IInputObjectAware;
 import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
+import de.tuberlin.uebb.jbop.optimizer.IRegionAware;
 import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
 
 /**
@@ -46,7 +53,10 @@ import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
  * 
  * @author Christopher Ewest
  */
-public class FinalFieldInliner implements IOptimizer, IInputObjectAware {
+public class FinalFieldInliner implements IOptimizer, IInputObjectAware, IChangeAware, IRegionAware {
+  
+  private static final Set<ChangeKind> ENABLING_CHANGES = Collections.unmodifiableSet(EnumSet.of(ChangeKind.CODE));
+  private static final Set<ChangeKind> PRODUCED_CHANGES = Collections.unmodifiableSet(EnumSet.of(ChangeKind.CONSTANTS));
   
   private static final Type INT_OBJECT_TYPE = Type.getType(Integer.class);
   private static final Type LONG_OBJECT_TYPE = Type.getType(Long.class);
@@ -60,6 +70,7 @@ public class FinalFieldInliner implements IOptimizer, IInputObjectAware {
   
   private boolean optimized;
   private Object instance;
+  private DirtyRegions regions;
   
   /**
    * Checks if desc is a built in type.
@@ -164,13 +175,20 @@ public class FinalFieldInliner implements IOptimizer, IInputObjectAware {
       if (!NodeHelper.isAload(currentNode)) {
         continue;
       }
+      if ((regions != null) && !regions.isDirty(currentNode)) {
+        continue;
+      }
       
+      final AbstractInsnNode previous = currentNode.getPrevious();
       fieldChainInliner.setInputObject(instance);
       fieldChainInliner.setIterator(iterator);
       fieldChainInliner.optimize(original, methodNode);
       if (fieldChainInliner.isOptimized()) {
         original.remove(currentNode);
         optimized = true;
+        if (regions != null) {
+          regions.markChanged(previous == null ? original.getFirst() : previous.getNext());
+        }
       }
     }
     return original;
@@ -180,4 +198,19 @@ public class FinalFieldInliner implements IOptimizer, IInputObjectAware {
   public void setInputObject(final Object input) {
     instance = input;
   }
+  
+  @Override
+  public void setDirtyRegions(final DirtyRegions regions) {
+    this.regions = regions;
+  }
+  
+  @Override
+  public Set<ChangeKind> getEnablingChanges() {
+    return ENABLING_CHANGES;
+  }
+  
+  @Override
+  public Set<ChangeKind> getProducedChanges() {
+    return PRODUCED_CHANGES;
+  }
 }
@@ -26,8 +26,10 @@ import static org.objectweb.asm.Opcodes.SALOAD;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Set;
 
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AbstractInsnNode;
@@ -36,6 +38,8 @@ import org.objectweb.asm.tree.MethodNode;
 
 import de.tuberlin.uebb.jbop.access.ClassAccessor;
 import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.ChangeKind;
+import de.tuberlin.uebb.jbop.optimizer.IChangeAware;
 import de.tuberlin.uebb.jbop.optimizer.IInputObjectAware;
 import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
 import de.tuberlin.uebb.jbop.optimizer.annotations.ImmutableArray;
@@ -109,7 +113,11 @@ import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
  * 
  * @author Christopher Ewest
  */
-public class GetFieldChainInliner implements IOptimizer, IInputObjectAware, IIteratorAware<AbstractInsnNode> {
+public class GetFieldChainInliner implements IOptimizer, IInputObjectAware, IIteratorAware<AbstractInsnNode>, IChangeAware {
+  
+  private static final Set<ChangeKind> ENABLING_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.CONSTANTS, ChangeKind.CODE));
+  private static final Set<ChangeKind> PRODUCED_CHANGES = Collections.unmodifiableSet(EnumSet.of(ChangeKind.CONSTANTS));
   
   private boolean optimized;
   private Object input;
@@ -244,4 +252,13 @@ public class GetFieldChainInliner implements IOptimizer, IInputObjectAware, IIte
     this.iterator = iterator;
   }
   
+  @Override
+  public Set<ChangeKind> getEnablingChanges() {
+    return ENABLING_CHANGES;
+  }
+  
+  @Override
+  public Set<ChangeKind> getProducedChanges() {
+    return PRODUCED_CHANGES;
+  }
 }
@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.var;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/**
+ * Liveness analysis of the local variables of a method.
+ * 
+ * The instructions are grouped into basic blocks with use- and def-sets ({@link BitSet}s indexed by the
+ * variable index). The live-out-sets of the blocks are computed by the usual backward fixpoint iteration
+ * and each block is scanned backwards once more to find the dead stores and iincs:
+ * instructions that write a variable which is not read before the next write on any path,
+ * and the last uses: loads after which the variable is dead.
+ * 
+ * Blocks inside of a try-catch-block keep everything alive that is live at the start of the handler.
+ * 
+ * The analysis is linear in the number of instructions (times the number of iterations needed for
+ * loops).
+ * 
+ * @author Christopher Ewest
+ */
+public class LocalVarLiveness {
+  
+  private final AbstractInsnNode[] insns;
+  /** The index of the first instruction of each block (plus the length of the method). */
+  private final int[] blockStart;
+  /** The block containing instruction i. */
+  private final int[] blockOf;
+  private final int[][] successors;
+  private final BitSet[] use;
+  private final BitSet[] def;
+  private final BitSet[] liveIn;
+  private final BitSet[] liveOut;
+  /** The variables that are live at a handler of a try-catch-block covering the block (or null). */
+  private final BitSet[] handlerLive;
+  private final BitSet dead = new BitSet();
+  private final BitSet lastUses = new BitSet();
+  
+  /**
+   * Instantiates a new {@link LocalVarLiveness} and runs the analysis.
+   * 
+   * @param original
+   *          the instructions
+   * @param methodNode
+   *          the method node (for the try-catch-blocks)
+   */
+  public LocalVarLiveness(final InsnList original, final MethodNode methodNode) {
+    insns = original.toArray();
+    List<TryCatchBlockNode> tryCatchBlocks = methodNode.tryCatchBlocks;
+    if (tryCatchBlocks == null) {
+      tryCatchBlocks = new ArrayList<>();
+    }
+    blockStart = computeBlocks(original, tryCatchBlocks);
+    final int blockCount = blockStart.length - 1;
+    blockOf = new int[insns.length];
+    for (int block = 0; block < blockCount; ++block) {
+      for (int i = blockStart[block]; i < blockStart[block + 1]; ++i) {
+        blockOf[i] = block;
+      }
+    }
+    successors = new int[blockCount][];
+    use = new BitSet[blockCount];
+    def = new BitSet[blockCount];
+    liveIn = new BitSet[blockCount];
+    liveOut = new BitSet[blockCount];
+    handlerLive = new BitSet[blockCount];
+    for (int block = 0; block < blockCount; ++block) {
+      successors[block] = computeSuccessors(original, block);
+      computeUseDef(block);
+      liveIn[block] = new BitSet();
+      liveOut[block] = new BitSet();
+    }
+    computeLiveness(original, tryCatchBlocks);
+    computeDeadStores();
+  }
+  
+  /**
+   * Gets the indexes of all dead stores and iincs.
+   * 
+   * @return the dead instructions
+   */
+  public BitSet getDead() {
+    return dead;
+  }
+  
+  /**
+   * Gets the indexes of all loads after which the loaded variable is not live.
+   * 
+   * @return the last uses
+   */
+  public BitSet getLastUses() {
+    return lastUses;
+  }
+  
+  /**
+   * Gets the instructions the analysis is based on.
+   * 
+   * @return the instructions
+   */
+  public AbstractInsnNode[] getInstructions() {
+    return insns;
+  }
+  
+  private int[] computeBlocks(final InsnList original, final List<TryCatchBlockNode> tryCatchBlocks) {
+    final BitSet leaders = new BitSet(insns.length + 1);
+    leaders.set(0);
+    leaders.set(insns.length);
+    for (int i = 0; i < insns.length; ++i) {
+      final AbstractInsnNode node = insns[i];
+      if (node instanceof JumpInsnNode) {
+        leaders.set(original.indexOf(((JumpInsnNode) node).label));
+        leaders.set(i + 1);
+      } else if ((node instanceof TableSwitchInsnNode) || (node instanceof LookupSwitchInsnNode)) {
+        for (final LabelNode label : getSwitchLabels(node)) {
+          leaders.set(original.indexOf(label));
+        }
+        leaders.set(i + 1);
+      } else if (isExit(node.getOpcode())) {
+        leaders.set(i + 1);
+      }
+    }
+    for (final TryCatchBlockNode tryCatch : tryCatchBlocks) {
+      leaders.set(original.indexOf(tryCatch.start));
+      leaders.set(original.indexOf(tryCatch.end));
+      leaders.set(original.indexOf(tryCatch.handler));
+    }
+    final int[] starts = new int[leaders.cardinality()];
+    int block = 0;
+    for (int i = leaders.nextSetBit(0); i >= 0; i = leaders.nextSetBit(i + 1)) {
+      starts[block++] = i;
+    }
+    return starts;
+  }
+  
+  private int[] computeSuccessors(final InsnList original, final int block) {
+    final int end = blockStart[block + 1];
+    final AbstractInsnNode last = insns[end - 1];
+    final int opcode = last.getOpcode();
+    final List<Integer> targets = new ArrayList<>();
+    if (last instanceof JumpInsnNode) {
+      targets.add(Integer.valueOf(getBlock(original, ((JumpInsnNode) last).label)));
+      if ((opcode != Opcodes.GOTO) && (end < insns.length)) {
+        targets.add(Integer.valueOf(block + 1));
+      }
+    } else if ((last instanceof TableSwitchInsnNode) || (last instanceof LookupSwitchInsnNode)) {
+      for (final LabelNode label : getSwitchLabels(last)) {
+        targets.add(Integer.valueOf(getBlock(original, label)));
+      }
+    } else if (!isExit(opcode) && (end < insns.length)) {
+      targets.add(Integer.valueOf(block + 1));
+    }
+    final int[] result = new int[targets.size()];
+    for (int i = 0; i < result.length; ++i) {
+      result[i] = targets.get(i).intValue();
+    }
+    return result;
+  }
+  
+  private int getBlock(final InsnList original, final LabelNode label) {
+    return blockOf[original.indexOf(label)];
+  }
+  
+  private void computeUseDef(final int block) {
+    final BitSet blockUse = new BitSet();
+    final BitSet blockDef = new BitSet();
+    for (int i = blockStart[block]; i < blockStart[block + 1]; ++i) {
+      final AbstractInsnNode node = insns[i];
+      final int opcode = node.getOpcode();
+      if (isLoad(opcode) || (opcode == Opcodes.IINC) || (opcode == Opcodes.RET)) {
+        final int var = getVar(node);
+        if (!blockDef.get(var)) {
+          blockUse.set(var);
+        }
+      }
+      if (isStore(opcode) || (opcode == Opcodes.IINC)) {
+        blockDef.set(getVar(node));
+      }
+    }
+    use[block] = blockUse;
+    def[block] = blockDef;
+  }
+  
+  private void computeLiveness(final InsnList original, final List<TryCatchBlockNode> tryCatchBlocks) {
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (final TryCatchBlockNode tryCatch : tryCatchBlocks) {
+        final BitSet handler = liveIn[getBlock(original, tryCatch.handler)];
+        final int first = getBlock(original, tryCatch.start);
+        final int end = original.indexOf(tryCatch.end);
+        for (int block = first; (block < liveIn.length) && (blockStart[block] < end); ++block) {
+          if (handlerLive[block] == null) {
+            handlerLive[block] = new BitSet();
+          }
+          handlerLive[block].or(handler);
+        }
+      }
+      for (int block = liveIn.length - 1; block >= 0; --block) {
+        final BitSet out = new BitSet();
+        for (final int successor : successors[block]) {
+          out.or(liveIn[successor]);
+        }
+        if (handlerLive[block] != null) {
+          out.or(handlerLive[block]);
+        }
+        final BitSet in = (BitSet) out.clone();
+        in.andNot(def[block]);
+        in.or(use[block]);
+        if (handlerLive[block] != null) {
+          in.or(handlerLive[block]);
+        }
+        if (!in.equals(liveIn[block])) {
+          changed = true;
+        }
+        liveIn[block] = in;
+        liveOut[block] = out;
+      }
+    }
+  }
+  
+  private void computeDeadStores() {
+    for (int block = 0; block < liveOut.length; ++block) {
+      final BitSet live = (BitSet) liveOut[block].clone();
+      for (int i = blockStart[block + 1] - 1; i >= blockStart[block]; --i) {
+        if (handlerLive[block] != null) {
+          live.or(handlerLive[block]);
+        }
+        final AbstractInsnNode node = insns[i];
+        final int opcode = node.getOpcode();
+        if (isStore(opcode)) {
+          final int var = getVar(node);
+          if (!live.get(var)) {
+            dead.set(i);
+          }
+          live.clear(var);
+        } else if (opcode == Opcodes.IINC) {
+          if (!live.get(getVar(node))) {
+            dead.set(i);
+          }
+        } else if (isLoad(opcode) || (opcode == Opcodes.RET)) {
+          if (isLoad(opcode) && !live.get(getVar(node))) {
+            lastUses.set(i);
+          }
+          live.set(getVar(node));
+        }
+      }
+    }
+  }
+  
+  private static List<LabelNode> getSwitchLabels(final AbstractInsnNode node) {
+    final List<LabelNode> labels = new ArrayList<>();
+    if (node instanceof TableSwitchInsnNode) {
+      labels.add(((TableSwitchInsnNode) node).dflt);
+      labels.addAll(((TableSwitchInsnNode) node).labels);
+    } else {
+      labels.add(((LookupSwitchInsnNode) node).dflt);
+      labels.addAll(((LookupSwitchInsnNode) node).labels);
+    }
+    return labels;
+  }
+  
+  private static boolean isExit(final int opcode) {
+    return ((opcode >= Opcodes.IRETURN) && (opcode <= Opcodes.RETURN)) || (opcode == Opcodes.ATHROW)
+        || (opcode == Opcodes.RET);
+  }
+  
+  private static boolean isLoad(final int opcode) {
+    return (opcode >= Opcodes.ILOAD) && (opcode <= Opcodes.ALOAD);
+  }
+  
+  private static boolean isStore(final int opcode) {
+    return (opcode >= Opcodes.ISTORE) && (opcode <= Opcodes.ASTORE);
+  }
+  
+  private static int getVar(final AbstractInsnNode node) {
+    if (node instanceof IincInsnNode) {
+      return ((IincInsnNode) node).var;
+    }
+    return ((VarInsnNode) node).var;
+  }
+}
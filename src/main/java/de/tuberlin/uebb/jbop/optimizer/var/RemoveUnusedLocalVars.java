@@ -18,25 +18,31 @@
  */
 package de.tuberlin.uebb.jbop.optimizer.var;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
-import org.objectweb.asm.tree.IincInsnNode;
 import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
 import org.objectweb.asm.tree.MethodNode;
-import org.objectweb.asm.tree.VarInsnNode;
 
+import de.tuberlin.uebb.jbop.optimizer.ChangeKind;
+import de.tuberlin.uebb.jbop.optimizer.IChangeAware;
 import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
-import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
+import de.tuberlin.uebb.jbop.optimizer.utils.StackProducers;
 
 /**
  * Removes unused local variables. <br>
- * Variables are unused if they are stored but never read via load.<br>
- * If a variable is stored and only used by iinc operations,<br>
- * these iinc operations are removed too (not, if this belongs to a loop). <br>
+ * A store (or iinc) is removed if the stored value is never read, i.e. the variable is not live
+ * after the store ({@link LocalVarLiveness}).<br>
+ * This removes variables that are never loaded as well as dead stores to variables
+ * that are loaded elsewhere. <br>
  * eg:
  * 
  * <pre>
@@ -59,10 +65,18 @@ import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
  * System.out.println(i + 2);
  * </pre>
  * 
+ * The first store in <code>int k = 1; k = 2; return k;</code> is removed as well.
+ * 
+ * The computation of the stored value is only removed if it has no side effects,
+ * otherwise the store is replaced by a pop (<code>int r = compute(); r = 0;</code> keeps the call).
  * 
  * @author Christopher Ewest
  */
-public class RemoveUnusedLocalVars implements IOptimizer {
+public class RemoveUnusedLocalVars implements IOptimizer, IChangeAware {
+  
+  private static final Set<ChangeKind> ENABLING_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.LOCALS, ChangeKind.CONTROL_FLOW, ChangeKind.CODE));
+  private static final Set<ChangeKind> PRODUCED_CHANGES = Collections.unmodifiableSet(EnumSet.of(ChangeKind.LOCALS));
   
   private boolean optimized;
   
@@ -74,75 +88,93 @@ public class RemoveUnusedLocalVars implements IOptimizer {
   @Override
   public InsnList optimize(final InsnList original, final MethodNode methodNode) {
     optimized = false;
-    final List<VarInsnNode> stores = new ArrayList<>();
-    final List<VarInsnNode> users = new ArrayList<>();
-    final List<IincInsnNode> iincs = new ArrayList<>();
-    findNodes(original, stores, users, iincs);
-    final List<AbstractInsnNode> toBeRemoved = new ArrayList<>();
-    for (final VarInsnNode node : stores) {
-      if (!usersContains(users, node)) {
-        toBeRemoved.add(node);
-        toBeRemoved.addAll(iincsContains(iincs, node));
-      }
+    final LocalVarLiveness liveness = new LocalVarLiveness(original, methodNode);
+    final AbstractInsnNode[] insns = liveness.getInstructions();
+    final BitSet dead = liveness.getDead();
+    if (dead.isEmpty()) {
+      return original;
     }
-    // final InsnList newList = new InsnList();
-    final Iterator<AbstractInsnNode> iterator = original.iterator();
-    while (iterator.hasNext()) {
-      final AbstractInsnNode currentNode = iterator.next();
-      if (toBeRemoved.contains(currentNode)) {
-        if (currentNode.getOpcode() == Opcodes.IINC) {
-          original.remove(currentNode);
-          optimized = true;
-          continue;
-        }
-        final AbstractInsnNode firstOfStack = NodeHelper.getFirstOfStack(currentNode);
-        if (firstOfStack != null) {
-          optimized = true;
-          AbstractInsnNode remove = firstOfStack;
-          while (remove != currentNode) {
-            final AbstractInsnNode toRemove = remove;
-            remove = remove.getNext();
-            original.remove(toRemove);
-          }
-          original.remove(currentNode);
+    final StackProducers producers = new StackProducers(original, methodNode.tryCatchBlocks);
+    for (int i = dead.nextSetBit(0); i >= 0; i = dead.nextSetBit(i + 1)) {
+      final AbstractInsnNode currentNode = insns[i];
+      if (currentNode.getOpcode() == Opcodes.IINC) {
+        original.remove(currentNode);
+        optimized = true;
+        continue;
+      }
+      final AbstractInsnNode firstOfStack = producers.getFirstOfStack(currentNode);
+      optimized = true;
+      if ((firstOfStack != null) && isRemovable(firstOfStack, currentNode, producers)) {
+        AbstractInsnNode remove = firstOfStack;
+        while (remove != currentNode) {
+          final AbstractInsnNode toRemove = remove;
+          remove = remove.getNext();
+          original.remove(toRemove);
         }
+        original.remove(currentNode);
+      } else {
+        original.set(currentNode, new InsnNode(isWide(currentNode.getOpcode()) ? Opcodes.POP2 : Opcodes.POP));
       }
     }
     return original;
   }
   
-  private List<AbstractInsnNode> iincsContains(final List<IincInsnNode> iincs, final VarInsnNode node) {
-    final List<AbstractInsnNode> nodes = new ArrayList<>();
-    for (final IincInsnNode iinc : iincs) {
-      if (iinc.var == node.var) {
-        nodes.add(iinc);
+  /*
+   * The value of the store is only removed if it is computed in straight-line code
+   * that contains no other write to a local, has no side effects (and can't throw)
+   * and produces no value that is used after the store (e.g. the other half of a dup).
+   * Otherwise the store is replaced by a pop.
+   */
+  private boolean isRemovable(final AbstractInsnNode firstOfStack, final AbstractInsnNode store,
+      final StackProducers producers) {
+    final Set<AbstractInsnNode> range = Collections.newSetFromMap(new IdentityHashMap<AbstractInsnNode, Boolean>());
+    range.add(store);
+    AbstractInsnNode node = store.getPrevious();
+    while (node != null) {
+      if ((node instanceof LabelNode) || (node instanceof JumpInsnNode) || isWrite(node.getOpcode())
+          || ((node.getOpcode() >= 0) && !isSideEffectFree(node.getOpcode()))) {
+        return false;
       }
+      range.add(node);
+      if (node == firstOfStack) {
+        break;
+      }
+      node = node.getPrevious();
     }
-    return nodes;
-  }
-  
-  private boolean usersContains(final List<VarInsnNode> users, final VarInsnNode node) {
-    for (final VarInsnNode user : users) {
-      if (user.var == node.var) {
-        return true;
+    if (node == null) {
+      return false;
+    }
+    for (final AbstractInsnNode rangeNode : range) {
+      if ((rangeNode != store) && !range.containsAll(producers.getConsumers(rangeNode))) {
+        return false;
       }
     }
-    return false;
+    return true;
   }
   
-  private void findNodes(final InsnList original, final List<VarInsnNode> stores, final List<VarInsnNode> users, //
-      final List<IincInsnNode> iincs) {
-    final Iterator<AbstractInsnNode> iterator = original.iterator();
-    while (iterator.hasNext()) {
-      final AbstractInsnNode node = iterator.next();
-      if ((node.getOpcode() >= Opcodes.ISTORE) && (node.getOpcode() <= Opcodes.ASTORE)) {
-        stores.add((VarInsnNode) node);
-      } else if ((node.getOpcode() >= Opcodes.ILOAD) && (node.getOpcode() <= Opcodes.ALOAD)) {
-        users.add((VarInsnNode) node);
-      } else if (node.getOpcode() == Opcodes.IINC) {
-        iincs.add((IincInsnNode) node);
-      }
+  private boolean isSideEffectFree(final int opcode) {
+    if ((opcode == Opcodes.IDIV) || (opcode == Opcodes.LDIV) || (opcode == Opcodes.IREM) || (opcode == Opcodes.LREM)) {
+      return false;
     }
+    return (opcode == Opcodes.NOP) || ((opcode >= Opcodes.ACONST_NULL) && (opcode <= Opcodes.ALOAD))
+        || ((opcode >= Opcodes.POP) && (opcode <= Opcodes.LXOR)) || ((opcode >= Opcodes.I2L) && (opcode <= Opcodes.DCMPG));
   }
   
+  private boolean isWide(final int opcode) {
+    return (opcode == Opcodes.LSTORE) || (opcode == Opcodes.DSTORE);
+  }
+  
+  private boolean isWrite(final int opcode) {
+    return ((opcode >= Opcodes.ISTORE) && (opcode <= Opcodes.ASTORE)) || (opcode == Opcodes.IINC);
+  }
+  
+  @Override
+  public Set<ChangeKind> getEnablingChanges() {
+    return ENABLING_CHANGES;
+  }
+  
+  @Override
+  public Set<ChangeKind> getProducedChanges() {
+    return PRODUCED_CHANGES;
+  }
 }
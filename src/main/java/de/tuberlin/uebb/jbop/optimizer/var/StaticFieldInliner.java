@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.var;
+
+import static org.objectweb.asm.Opcodes.ARRAYLENGTH;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.IALOAD;
+import static org.objectweb.asm.Opcodes.SALOAD;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.MethodNode;
+
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.ChangeKind;
+import de.tuberlin.uebb.jbop.optimizer.DirtyRegions;
+import de.tuberlin.uebb.jbop.optimizer.IChangeAware;
+import de.tuberlin.uebb.jbop.optimizer.IInputObjectAware;
+import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
+import de.tuberlin.uebb.jbop.optimizer.IRegionAware;
+import de.tuberlin.uebb.jbop.optimizer.annotations.ImmutableArray;
+import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
+import de.tuberlin.uebb.jbop.optimizer.utils.predicates.Predicates;
+
+/**
+ * The Class StaticFieldInliner.
+ *
+ * Inlines static final Fields of any class (e.g. lookup tables of utility classes),
+ * {@link FinalFieldInliner} only handles the fields of the input.
+ *
+ * eg:
+ *
+ * <pre>
+ * static final int SIZE = Integer.getInteger("size", 4);
+ * &#64;ImmutableArray
+ * static final double[] TABLE = {1.0, 2.0, 3.0};
+ * ...
+ * double d = Constants.TABLE[2] * Constants.SIZE;
+ * int l = Constants.TABLE.length;
+ * </pre>
+ *
+ * becomes
+ *
+ * <pre>
+ * double d = 3.0 * 4;
+ * int l = 3;
+ * </pre>
+ *
+ * Primitive values and Strings are inlined. Like {@link de.tuberlin.uebb.jbop.optimizer.array.FieldArrayValueInliner}
+ * the elements of arrays are only inlined if the array is annotated with {@link ImmutableArray}. The length of a
+ * static final array is always inlined, because it can't change.
+ *
+ * The class declaring the field is loaded with the Classloader of the input, but never initialized:
+ * fields of classes whose static initializer didn't run yet are not inlined, because specializing a method
+ * must not run foreign code (and the value is not known before the initialization).
+ * The JVM is asked with <code>sun.misc.Unsafe.shouldBeInitialized</code> whether a class is initialized. On JVMs
+ * without this method, only the fields of the class of the input and its superclasses (which are initialized,
+ * because the input exists) are inlined.
+ *
+ * @author Christopher Ewest
+ */
+public class StaticFieldInliner implements IOptimizer, IInputObjectAware, IChangeAware, IRegionAware {
+
+  private static final Set<ChangeKind> ENABLING_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.CONSTANTS, ChangeKind.CODE));
+  private static final Set<ChangeKind> PRODUCED_CHANGES = Collections.unmodifiableSet(EnumSet.of(ChangeKind.CONSTANTS));
+
+  /** Marks fields that can't be inlined. */
+  private static final Object NO_VALUE = new Object();
+
+  /** The value of a static final array whose elements are mutable: only the length is inlined. */
+  private static final class ArrayLength {
+
+    private final int length;
+
+    ArrayLength(final int length) {
+      this.length = length;
+    }
+  }
+
+  /** sun.misc.Unsafe and its method shouldBeInitialized(Class), null if not available. */
+  private static final Object UNSAFE;
+  private static final Method SHOULD_BE_INITIALIZED;
+
+  static {
+    Object unsafe = null;
+    Method shouldBeInitialized = null;
+    try {
+      final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      unsafe = theUnsafe.get(null);
+      shouldBeInitialized = unsafeClass.getMethod("shouldBeInitialized", Class.class);
+    } catch (final ReflectiveOperationException | RuntimeException e) {
+      unsafe = null;
+      shouldBeInitialized = null;
+    }
+    UNSAFE = unsafe;
+    SHOULD_BE_INITIALIZED = shouldBeInitialized;
+  }
+
+  private final Map<String, Object> values = new HashMap<>();
+  private boolean optimized;
+  private ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+  private Class<?> inputClass;
+  private DirtyRegions regions;
+  /** Whether the JVM can be asked if a class is initialized (changeable for tests). */
+  boolean jvmCheckAvailable = SHOULD_BE_INITIALIZED != null;
+
+  @Override
+  public boolean isOptimized() {
+    return optimized;
+  }
+
+  @Override
+  public InsnList optimize(final InsnList original, final MethodNode methodNode) throws JBOPClassException {
+    optimized = false;
+    AbstractInsnNode node = original.getFirst();
+    while (node != null) {
+      if ((node.getOpcode() == GETSTATIC) && ((regions == null) || regions.isDirty(node))) {
+        node = inline(original, (FieldInsnNode) node);
+      } else {
+        node = node.getNext();
+      }
+    }
+    return original;
+  }
+
+  /**
+   * Inlines the value of the field (or of an element or the length of the array).
+   *
+   * @return the node after the handled nodes
+   */
+  private AbstractInsnNode inline(final InsnList original, final FieldInsnNode field) {
+    final Object value = getValue(field);
+    if (value == NO_VALUE) {
+      return field.getNext();
+    }
+    final List<AbstractInsnNode> consumed = new ArrayList<>();
+    consumed.add(field);
+    Object current = value;
+    if (current instanceof ArrayLength) {
+      final AbstractInsnNode next = NodeHelper.getNext(field);
+      if ((next == null) || (next.getOpcode() != ARRAYLENGTH)) {
+        return field.getNext();
+      }
+      consumed.add(next);
+      current = Integer.valueOf(((ArrayLength) current).length);
+    } else if ((current != null) && current.getClass().isArray()) {
+      current = consumeArrayAccess(current, consumed);
+    }
+    final AbstractInsnNode last = consumed.get(consumed.size() - 1);
+    final AbstractInsnNode replacement = NodeHelper.getInsnNodeFor(current);
+    if ((replacement == null) || ((current == null) && (consumed.size() == 1))) {
+      return last.getNext();
+    }
+    original.insert(last, replacement);
+    for (final AbstractInsnNode node : consumed) {
+      original.remove(node);
+    }
+    optimized = true;
+    if (regions != null) {
+      regions.markChanged(replacement);
+    }
+    return replacement.getNext();
+  }
+
+  /**
+   * Follows constant indexes and the length of the array.
+   * The consumed nodes are added to the list.
+   *
+   * @return the value of the accessed element / the length or NO_VALUE if the array itself is used
+   */
+  private static Object consumeArrayAccess(final Object array, final List<AbstractInsnNode> consumed) {
+    Object current = array;
+    AbstractInsnNode last = consumed.get(0);
+    while ((current != null) && current.getClass().isArray()) {
+      final AbstractInsnNode index = NodeHelper.getNext(last);
+      if ((index != null) && (index.getOpcode() == ARRAYLENGTH)) {
+        consumed.add(index);
+        return Integer.valueOf(Array.getLength(current));
+      }
+      final AbstractInsnNode load = NodeHelper.getNext(index);
+      if (!Predicates.IS_NUMBER_VALUE.evaluate(index) || (load == null) || (load.getOpcode() < IALOAD)
+          || (load.getOpcode() > SALOAD)) {
+        return NO_VALUE;
+      }
+      final int indexValue = NodeHelper.getNumberValue(index).intValue();
+      if ((indexValue < 0) || (indexValue >= Array.getLength(current))) {
+        // keep the exception of the original code
+        return NO_VALUE;
+      }
+      current = Array.get(current, indexValue);
+      consumed.add(index);
+      consumed.add(load);
+      last = load;
+    }
+    return current;
+  }
+
+  private Object getValue(final FieldInsnNode node) {
+    final String key = node.owner + "." + node.name;
+    if (!values.containsKey(key)) {
+      values.put(key, readValue(node));
+    }
+    return values.get(key);
+  }
+
+  private Object readValue(final FieldInsnNode node) {
+    final Type type = Type.getType(node.desc);
+    final boolean isArray = type.getSort() == Type.ARRAY;
+    if (!isArray && !FinalFieldInliner.isPrimitive(type) && !"java/lang/String".equals(type.getInternalName())) {
+      return NO_VALUE;
+    }
+    try {
+      final Class<?> owner = Class.forName(Type.getObjectType(node.owner).getClassName(), false, classLoader);
+      if (!isInitialized(owner)) {
+        return NO_VALUE;
+      }
+      final Field field = getField(owner, node.name);
+      if ((field == null) || !Modifier.isStatic(field.getModifiers()) || !Modifier.isFinal(field.getModifiers())) {
+        return NO_VALUE;
+      }
+      field.setAccessible(true);
+      final Object value = field.get(null);
+      if (isArray && (field.getAnnotation(ImmutableArray.class) == null)) {
+        return value == null ? NO_VALUE : new ArrayLength(Array.getLength(value));
+      }
+      return value;
+    } catch (ClassNotFoundException | SecurityException | IllegalAccessException | LinkageError e) {
+      return NO_VALUE;
+    }
+  }
+
+  /**
+   * Checks if the static initializer of the class has run.
+   * The class of the input and its superclasses are initialized,
+   * for other classes the JVM is asked (if this is not possible, the class is treated as uninitialized).
+   */
+  private boolean isInitialized(final Class<?> owner) {
+    if ((inputClass != null) && owner.isAssignableFrom(inputClass) && !owner.isInterface()) {
+      return true;
+    }
+    if (!jvmCheckAvailable) {
+      return false;
+    }
+    try {
+      return !((Boolean) SHOULD_BE_INITIALIZED.invoke(UNSAFE, owner)).booleanValue();
+    } catch (final ReflectiveOperationException | RuntimeException e) {
+      return false;
+    }
+  }
+
+  private static Field getField(final Class<?> owner, final String name) {
+    for (Class<?> clazz = owner; clazz != null; clazz = clazz.getSuperclass()) {
+      try {
+        return clazz.getDeclaredField(name);
+      } catch (final NoSuchFieldException e) {
+        // search in the superclass
+      }
+    }
+    try {
+      // constants of interfaces
+      return owner.getField(name);
+    } catch (final NoSuchFieldException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public void setInputObject(final Object input) {
+    inputClass = input == null ? null : input.getClass();
+    if ((input != null) && (input.getClass().getClassLoader() != null)) {
+      classLoader = input.getClass().getClassLoader();
+    }
+  }
+
+  @Override
+  public void setDirtyRegions(final DirtyRegions regions) {
+    this.regions = regions;
+  }
+
+  @Override
+  public Set<ChangeKind> getEnablingChanges() {
+    return ENABLING_CHANGES;
+  }
+
+  @Override
+  public Set<ChangeKind> getProducedChanges() {
+    return PRODUCED_CHANGES;
+  }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.var;
+
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.INSTANCEOF;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.math3.exception.NotANumberException;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import de.tuberlin.uebb.jbop.access.ClassAccessor;
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.ChangeKind;
+import de.tuberlin.uebb.jbop.optimizer.DirtyRegions;
+import de.tuberlin.uebb.jbop.optimizer.IChangeAware;
+import de.tuberlin.uebb.jbop.optimizer.IInputObjectAware;
+import de.tuberlin.uebb.jbop.optimizer.IOptimizer;
+import de.tuberlin.uebb.jbop.optimizer.IRegionAware;
+import de.tuberlin.uebb.jbop.optimizer.annotations.ImmutableArray;
+import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
+import de.tuberlin.uebb.jbop.optimizer.utils.StackProducers;
+
+/**
+ * The Class TypeCheckFolder.
+ * 
+ * Evaluates <code>instanceof</code> and <code>checkcast</code> for the values of final fields
+ * (chains of getfields starting at this, elements of {@link ImmutableArray}s with constant indexes),
+ * using the runtime class of the value.
+ * 
+ * eg:
+ * 
+ * <pre>
+ * if (shape instanceof Circle) {
+ *   ...
+ * </pre>
+ * 
+ * becomes
+ * 
+ * <pre>
+ * if (1 != 0) {
+ *   ...
+ * </pre>
+ * 
+ * so that the {@link de.tuberlin.uebb.jbop.optimizer.controlflow.ConstantIfInliner} removes the dead branch.
+ * 
+ * A checkcast is removed if the value is null or the declared type of the field is already a subtype of the
+ * cast type. Other casts are needed by the verifier and are kept.
+ * 
+ * @author Christopher Ewest
+ */
+public class TypeCheckFolder implements IOptimizer, IInputObjectAware, IChangeAware, IRegionAware {
+  
+  private static final Set<ChangeKind> ENABLING_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.CONSTANTS, ChangeKind.CODE));
+  private static final Set<ChangeKind> PRODUCED_CHANGES = Collections.unmodifiableSet(EnumSet.of(
+      ChangeKind.CONSTANTS, ChangeKind.CODE));
+  
+  private boolean optimized;
+  private Object input;
+  private DirtyRegions regions;
+  
+  @Override
+  public boolean isOptimized() {
+    return optimized;
+  }
+  
+  @Override
+  public InsnList optimize(final InsnList original, final MethodNode methodNode) throws JBOPClassException {
+    optimized = false;
+    if ((input == null) || ((methodNode.access & ACC_STATIC) != 0)) {
+      return original;
+    }
+    final StackProducers producers = new StackProducers(original, methodNode.tryCatchBlocks);
+    for (final AbstractInsnNode node : original.toArray()) {
+      if ((regions != null) && !regions.isDirty(node)) {
+        continue;
+      }
+      if ((node.getOpcode() != INSTANCEOF) && (node.getOpcode() != CHECKCAST)) {
+        continue;
+      }
+      final List<AbstractInsnNode> chain = new ArrayList<>();
+      final KnownValue value = resolve(producers.getProducer(node, 0), node, producers, chain);
+      if (value != null) {
+        fold(original, (TypeInsnNode) node, value, chain);
+      }
+    }
+    return original;
+  }
+  
+  private void fold(final InsnList original, final TypeInsnNode node, final KnownValue value,
+      final List<AbstractInsnNode> chain) {
+    final Class<?> type = loadClass(node.desc);
+    if (type == null) {
+      return;
+    }
+    final AbstractInsnNode replacement;
+    if (node.getOpcode() == INSTANCEOF) {
+      replacement = NodeHelper.getInsnNodeFor(type.isInstance(value.value) ? 1 : 0);
+    } else if (value.value == null) {
+      replacement = new InsnNode(ACONST_NULL);
+    } else {
+      final Type declaredType = value.type;
+      final Class<?> declared = loadClass(declaredType.getSort() == Type.ARRAY ? declaredType.getDescriptor()
+          : declaredType.getInternalName());
+      if ((declared == null) || !type.isAssignableFrom(declared)) {
+        return;
+      }
+      original.remove(node);
+      markChanged(chain.get(chain.size() - 1));
+      return;
+    }
+    for (final AbstractInsnNode chainNode : chain) {
+      original.remove(chainNode);
+    }
+    original.set(node, replacement);
+    markChanged(replacement);
+  }
+  
+  /**
+   * Resolves the value produced by the node.
+   * The nodes producing the value are added to the chain (in the order of the instructions).
+   */
+  private KnownValue resolve(final AbstractInsnNode node, final AbstractInsnNode consumer,
+      final StackProducers producers, final List<AbstractInsnNode> chain) throws JBOPClassException {
+    if ((node == null) || (producers.getConsumer(node) != consumer)) {
+      return null;
+    }
+    if (node.getOpcode() == GETFIELD) {
+      final FieldInsnNode field = (FieldInsnNode) node;
+      final AbstractInsnNode ownerNode = producers.getProducer(node, 0);
+      final KnownValue owner;
+      if ((ownerNode != null) && (ownerNode.getOpcode() == ALOAD) && (((VarInsnNode) ownerNode).var == 0)
+          && (producers.getConsumer(ownerNode) == node)) {
+        chain.add(ownerNode);
+        owner = new KnownValue(input, null, false);
+      } else {
+        owner = resolve(ownerNode, node, producers, chain);
+      }
+      if ((owner == null) || (owner.value == null) || !ClassAccessor.isFinal(owner.value, field.name)) {
+        return null;
+      }
+      chain.add(node);
+      return new KnownValue(ClassAccessor.getCurrentValue(owner.value, field.name), Type.getType(field.desc),
+          ClassAccessor.hasAnnotation(owner.value, field.name, ImmutableArray.class));
+    }
+    if (node.getOpcode() == AALOAD) {
+      final KnownValue array = resolve(producers.getProducer(node, 0), node, producers, chain);
+      final AbstractInsnNode indexNode = producers.getProducer(node, 1);
+      if ((array == null) || !array.immutable || (array.value == null) || (indexNode == null)
+          || NodeHelper.isCast(indexNode) || (producers.getConsumer(indexNode) != node)) {
+        return null;
+      }
+      final Object[] values = (Object[]) array.value;
+      final int index;
+      try {
+        index = NodeHelper.getNumberValue(indexNode).intValue();
+      } catch (final NotANumberException nane) {
+        return null;
+      }
+      if ((index < 0) || (index >= values.length)) {
+        return null;
+      }
+      chain.add(indexNode);
+      chain.add(node);
+      return new KnownValue(values[index], Type.getType(array.type.getDescriptor().substring(1)), true);
+    }
+    return null;
+  }
+  
+  private Class<?> loadClass(final String internalName) {
+    try {
+      return Class.forName(internalName.replace('/', '.'), false, input.getClass().getClassLoader());
+    } catch (final ClassNotFoundException | LinkageError e) {
+      return null;
+    }
+  }
+  
+  private void markChanged(final AbstractInsnNode node) {
+    optimized = true;
+    if (regions != null) {
+      regions.markChanged(node);
+    }
+  }
+  
+  @Override
+  public void setInputObject(final Object input) {
+    this.input = input;
+  }
+  
+  @Override
+  public void setDirtyRegions(final DirtyRegions regions) {
+    this.regions = regions;
+  }
+  
+  @Override
+  public Set<ChangeKind> getEnablingChanges() {
+    return ENABLING_CHANGES;
+  }
+  
+  @Override
+  public Set<ChangeKind> getProducedChanges() {
+    return PRODUCED_CHANGES;
+  }
+  
+  /**
+   * A known value with its declared type.
+   */
+  private static final class KnownValue {
+    
+    private final Object value;
+    private final Type type;
+    private final boolean immutable;
+    
+    KnownValue(final Object value, final Type type, final boolean immutable) {
+      this.value = value;
+      this.type = type;
+      this.immutable = immutable;
+    }
+  }
+}
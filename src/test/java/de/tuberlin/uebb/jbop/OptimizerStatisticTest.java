@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+
+import org.junit.Test;
+
+import de.tuberlin.uebb.jbop.OptimizerStatistic.PassStatistic;
+import de.tuberlin.uebb.jbop.optimizer.arithmetic.ArithmeticExpressionInterpreter;
+import de.tuberlin.uebb.jbop.optimizer.var.LocalVarInliner;
+
+/**
+ * Tests for {@link OptimizerStatistic}.
+ * 
+ * @author Christopher Ewest
+ */
+public class OptimizerStatisticTest {
+  
+  private final OptimizerStatistic statistic = new OptimizerStatistic();
+  
+  /**
+   * Tests that the runs of the optimizers are aggregated.
+   */
+  @Test
+  public void testAddRun() {
+    // INIT
+    final LocalVarInliner localVarInliner = new LocalVarInliner();
+    final ArithmeticExpressionInterpreter arithmetic = new ArithmeticExpressionInterpreter();
+    
+    // RUN
+    statistic.addRun(localVarInliner, true, 100, 10, 7);
+    statistic.addRun(localVarInliner, false, 50, 7, 7);
+    statistic.addRun(arithmetic, true, 30, 7, 9);
+    
+    // ASSERT
+    final PassStatistic pass = statistic.getPass(LocalVarInliner.class);
+    assertEquals(2, pass.getRuns());
+    assertEquals(1, pass.getEmptyRuns());
+    assertEquals(150, pass.getTime());
+    assertEquals(-3, pass.getSizeDelta());
+    assertEquals(2, statistic.getPass(ArithmeticExpressionInterpreter.class).getSizeDelta());
+    assertEquals(3, statistic.getRuns());
+    assertEquals(1, statistic.getEmptyRuns());
+    final String name = ArithmeticExpressionInterpreter.class.getName();
+    assertEquals(Long.valueOf(30), statistic.getTimePerOptimizer().get(name));
+  }
+  
+  /**
+   * Tests that {@link OptimizerStatistic#getPass(Class)} returns a snapshot.
+   */
+  @Test
+  public void testPassSnapshot() {
+    // INIT
+    final LocalVarInliner localVarInliner = new LocalVarInliner();
+    statistic.addRun(localVarInliner, true, 100, 10, 7);
+    
+    // RUN
+    final PassStatistic pass = statistic.getPass(LocalVarInliner.class);
+    statistic.addRun(localVarInliner, true, 100, 7, 5);
+    
+    // ASSERT
+    assertEquals(1, pass.getRuns());
+    assertEquals(-3, pass.getSizeDelta());
+    assertEquals(2, statistic.getPass(LocalVarInliner.class).getRuns());
+  }
+  
+  /**
+   * Tests that only the most recent methods and classes are kept, but the totals cover all of them.
+   */
+  @Test
+  public void testMaxEntries() {
+    // INIT
+    final OptimizerStatistic limited = new OptimizerStatistic(2);
+    
+    // RUN
+    limited.addMethod("a/B", "m()V", 1, 10, 5, 100);
+    limited.addMethod("a/B", "n()V", 1, 10, 5, 100);
+    limited.addMethod("a/B", "o()V", 1, 10, 5, 100);
+    limited.addClassDefinition("a.B", 100);
+    limited.addClassDefinition("a.C", 100);
+    limited.addClassDefinition("a.D", 100);
+    
+    // ASSERT
+    assertEquals(3, limited.getMethodCount());
+    assertEquals(30, limited.getSizeBefore());
+    assertEquals(2, limited.getMethods().size());
+    assertEquals("n()V", limited.getMethods().get(0).getMethod());
+    assertEquals(3, limited.getClassCount());
+    assertEquals(300, limited.getClassDefinitionTime());
+    assertFalse(limited.getClassTable().toString().contains("a.B"));
+  }
+  
+  /**
+   * Tests that methods and classes are recorded and rendered.
+   */
+  @Test
+  public void testMethodsAndClasses() {
+    // RUN
+    statistic.addMethod("a/B", "m()V", 3, 100, 40, 1000);
+    statistic.addMethod("a/B", "n()V", 2, 50, 10, 500);
+    statistic.addClassDefinition("a.B", 2000);
+    
+    // ASSERT
+    assertEquals(2, statistic.getMethodCount());
+    assertEquals(5, statistic.getIterations());
+    assertEquals(150, statistic.getSizeBefore());
+    assertEquals(50, statistic.getSizeAfter());
+    assertEquals(1500, statistic.getOptimizationTime());
+    assertEquals(1, statistic.getClassCount());
+    assertEquals(2000, statistic.getClassDefinitionTime());
+    assertTrue(statistic.getReport().contains("m()V"));
+    
+    // RUN
+    statistic.reset();
+    
+    // ASSERT
+    assertEquals(0, statistic.getMethodCount());
+    assertNull(statistic.getPass(LocalVarInliner.class));
+  }
+  
+  /**
+   * Tests that the statistic can be read via JMX.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testRegister() throws Exception {
+    // INIT
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    statistic.addMethod("a/B", "m()V", 3, 100, 40, 1000);
+    
+    // RUN
+    statistic.register("test");
+    
+    // ASSERT
+    try {
+      assertEquals(Long.valueOf(1), server.getAttribute(statistic.getObjectName(), "MethodCount"));
+      assertEquals(Long.valueOf(3), server.getAttribute(statistic.getObjectName(), "Iterations"));
+    } finally {
+      statistic.unregister();
+    }
+    assertNull(statistic.getObjectName());
+  }
+}
@@ -265,4 +265,98 @@ public class ClassAccessorTest {
     }
     
   }
+  
+  /**
+   * Tests that getCurrentValue() reads private fields and array elements.
+   * 
+   * @throws JBOPClassException
+   *           the jBOP class exception
+   */
+  @Test
+  public void testGetCurrentValue() throws JBOPClassException {
+    // INIT
+    final ValueHolder holder = new ValueHolder();
+    
+    // RUN
+    final Object value = ClassAccessor.getCurrentValue(holder, "value");
+    final Object element = ClassAccessor.getCurrentValue(holder, "matrix", 1, 0);
+    final Object constant = ClassAccessor.getCurrentValue(holder, "CONSTANT");
+    
+    // ASSERT
+    assertEquals(Integer.valueOf(1), value);
+    assertEquals(Double.valueOf(3.0), element);
+    assertEquals("constant", constant);
+  }
+  
+  /**
+   * Tests that getCurrentValue() fails for unknown fields.
+   * 
+   * @throws JBOPClassException
+   *           the jBOP class exception
+   */
+  @Test(expected = JBOPClassException.class)
+  public void testGetCurrentValueUnknownField() throws JBOPClassException {
+    // RUN
+    ClassAccessor.getCurrentValue(new ValueHolder(), "unknown");
+  }
+  
+  /**
+   * Tests that the fields are read only once while a snapshot is open.
+   * 
+   * @throws JBOPClassException
+   *           the jBOP class exception
+   */
+  @Test
+  public void testSnapshot() throws JBOPClassException {
+    // INIT
+    final ValueHolder holder = new ValueHolder();
+    ClassAccessor.openSnapshot(holder);
+    
+    // RUN
+    final Object before = ClassAccessor.getCurrentValue(holder, "value");
+    holder.value = 2;
+    final Object inSnapshot = ClassAccessor.getCurrentValue(holder, "value");
+    ClassAccessor.closeSnapshot(holder);
+    final Object after = ClassAccessor.getCurrentValue(holder, "value");
+    
+    // ASSERT
+    assertEquals(Integer.valueOf(1), before);
+    assertEquals(Integer.valueOf(1), inSnapshot);
+    assertEquals(Integer.valueOf(2), after);
+  }
+  
+  /**
+   * Tests that a snapshot opened twice (e.g. by concurrent optimizations of the same input)
+   * stays open until it is closed twice.
+   * 
+   * @throws JBOPClassException
+   *           the jBOP class exception
+   */
+  @Test
+  public void testSnapshotReferenceCounted() throws JBOPClassException {
+    // INIT
+    final ValueHolder holder = new ValueHolder();
+    ClassAccessor.openSnapshot(holder);
+    ClassAccessor.openSnapshot(holder);
+    
+    // RUN
+    final Object before = ClassAccessor.getCurrentValue(holder, "value");
+    holder.value = 2;
+    ClassAccessor.closeSnapshot(holder);
+    final Object stillOpen = ClassAccessor.getCurrentValue(holder, "value");
+    ClassAccessor.closeSnapshot(holder);
+    final Object after = ClassAccessor.getCurrentValue(holder, "value");
+    
+    // ASSERT
+    assertEquals(Integer.valueOf(1), before);
+    assertEquals(Integer.valueOf(1), stillOpen);
+    assertEquals(Integer.valueOf(2), after);
+  }
+  
+  private static final class ValueHolder {
+    
+    private static final String CONSTANT = "constant";
+    private int value = 1;
+    private final double[][] matrix = { { 1.0, 2.0 }, { 3.0, 4.0 } };
+  }
 }
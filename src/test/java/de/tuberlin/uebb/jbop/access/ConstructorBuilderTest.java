@@ -19,7 +19,9 @@
 package de.tuberlin.uebb.jbop.access;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.util.List;
@@ -29,6 +31,8 @@ import org.junit.Test;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodInsnNode;
 
 import de.tuberlin.uebb.jbop.exception.JBOPClassException;
 import de.tuberlin.uebb.jbop.optimizer.ClassNodeBuilder;
@@ -85,6 +89,52 @@ public class ConstructorBuilderTest {
     assertEquals(3.0, ((Double) Array.get(array2, 2)).doubleValue(), .00001);
   }
   
+  /**
+   * Tests that the constructor takes primitive parameters and can be invoked through the cached handle.
+   * 
+   * @throws Throwable
+   *           the throwable
+   */
+  @Test
+  public void testPrimitiveConstructor() throws Throwable {
+    // INIT
+    final ClassNodeBuilder builder = ClassNodeBuilder
+        .createClass("de.tuberlin.uebb.jbop.access.ConstructorBuilderPrimitiveTestClass").//
+        addField("floatValue", "F").initWith(2.5f).withGetter().//
+        addField("longValue", "J").initWith(3L).withGetter().//
+        addField("shortValue", "S").initWith((short) 4).withGetter();
+    final ClassNode classNode = builder.getClassNode();
+    final Object testClass = builder.toClass().instance();
+    
+    // RUN
+    final List<Object> parameterValues = ConstructorBuilder.createConstructor(classNode, testClass);
+    
+    // ASSERT
+    assertEquals("(FJS)V", ConstructorBuilder.getDescriptor(classNode));
+    final Class<?> newClass = getClass(classNode, testClass);
+    final MethodHandle constructor = OptimizerUtils.getConstructor(newClass, "(FJS)V");
+    assertSame(constructor, OptimizerUtils.getConstructor(newClass, "(FJS)V"));
+    final Object instance = constructor.invokeExact(parameterValues.toArray(new Object[parameterValues.size()]));
+    assertEquals(2.5f, ((Float) invoke(newClass, "getFloatValue", instance)).floatValue(), .00001);
+    assertEquals(3L, ((Long) invoke(newClass, "getLongValue", instance)).longValue());
+    assertEquals(4, ((Short) invoke(newClass, "getShortValue", instance)).shortValue());
+  }
+  
+  /**
+   * Tests that the unboxing node of a float calls floatValue.
+   */
+  @Test
+  public void testFloatUnboxingNode() {
+    // RUN
+    final MethodInsnNode unboxing = (MethodInsnNode) ConstructorBuilder.getUnboxingNode(new FieldNode(0, "f", "F",
+        null, null));
+    
+    // ASSERT
+    assertEquals("java/lang/Float", unboxing.owner);
+    assertEquals("floatValue", unboxing.name);
+    assertEquals("()F", unboxing.desc);
+  }
+  
   private Object invoke(final Class<?> clazz, final String methodName, final Object object) throws Exception {
     final Method method = clazz.getDeclaredMethod(methodName, new Class<?>[] {});
     method.setAccessible(true);
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.access;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.ClassNodeBuilder;
+import de.tuberlin.uebb.jbop.optimizer.Optimizer;
+import de.tuberlin.uebb.jbop.optimizer.annotations.ImmutableArray;
+
+/**
+ * Tests for {@link FactoryBuilder}.
+ * 
+ * @author Christopher Ewest
+ */
+public class FactoryBuilderTest {
+  
+  private Object input;
+  
+  /**
+   * Init for every test.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Before
+  public void before() throws Exception {
+    final ClassNodeBuilder builder = ClassNodeBuilder
+        .createClass("de.tuberlin.uebb.jbop.access.FactoryBuilderTestClass").//
+        addField("count", "I").initWith(3).withGetterAndSetter().//
+        addField("factor", "D").initWith(2.5).withGetter().//
+        addField("values", "[D").initArrayWith(1.0, 2.0).withGetter().//
+        addField("table", "[D").withAnnotation(ImmutableArray.class).initArrayWith(3.0, 4.0).withGetter();
+    input = builder.toClass().instance();
+  }
+  
+  /**
+   * Tests that the factory creates new instances of the optimized class with the values of the optimized instance.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testCreateFactory() throws Exception {
+    // INIT
+    final Object optimized = new Optimizer().optimize(input, "_factory");
+    
+    // RUN
+    final IInstanceFactory<Object> factory = FactoryBuilder.createFactory(optimized);
+    final Object first = factory.create();
+    final Object second = factory.create();
+    
+    // ASSERT
+    assertNotSame(first, second);
+    assertSame(optimized.getClass(), first.getClass());
+    assertEquals(Integer.valueOf(3), invoke(first, "getCount"));
+    assertEquals(Double.valueOf(2.5), invoke(first, "getFactor"));
+    // mutable arrays are copied per instance, immutable ones are shared
+    final double[] values = (double[]) invoke(first, "getValues");
+    assertNotSame(invoke(optimized, "getValues"), values);
+    assertNotSame(invoke(second, "getValues"), values);
+    assertArrayEquals(new double[] {
+        1.0, 2.0
+    }, values, .0);
+    values[0] = 10.0;
+    assertEquals(1.0, ((double[]) invoke(second, "getValues"))[0], .0);
+    assertSame(invoke(optimized, "getTable"), invoke(first, "getTable"));
+    first.getClass().getMethod("setCount", int.class).invoke(first, Integer.valueOf(7));
+    assertEquals(Integer.valueOf(7), invoke(first, "getCount"));
+    assertEquals(Integer.valueOf(3), invoke(second, "getCount"));
+  }
+  
+  /**
+   * Tests that the factory class is generated only once per optimized class.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testFactoryClassIsReused() throws Exception {
+    // INIT
+    final Object optimized = new Optimizer().optimize(input, "_factoryReuse");
+    final IInstanceFactory<Object> factory = FactoryBuilder.createFactory(optimized);
+    optimized.getClass().getMethod("setCount", int.class).invoke(optimized, Integer.valueOf(5));
+    
+    // RUN
+    final IInstanceFactory<Object> other = FactoryBuilder.createFactory(optimized);
+    
+    // ASSERT
+    assertSame(factory.getClass(), other.getClass());
+    assertEquals(Integer.valueOf(3), invoke(factory.create(), "getCount"));
+    assertEquals(Integer.valueOf(5), invoke(other.create(), "getCount"));
+  }
+  
+  /**
+   * Tests that a class without a constructor for all fields is rejected.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test(expected = JBOPClassException.class)
+  public void testNoConstructor() throws Exception {
+    // RUN
+    FactoryBuilder.createFactory(input);
+  }
+  
+  private Object invoke(final Object instance, final String getter) throws Exception {
+    return instance.getClass().getMethod(getter).invoke(instance);
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.access;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.Type;
+
+import de.tuberlin.uebb.jbop.optimizer.ClassNodeBuilder;
+import de.tuberlin.uebb.jbop.optimizer.Optimizer;
+
+/**
+ * Tests for {@link SpecializationIndex}.
+ * 
+ * @author Christopher Ewest
+ */
+public class SpecializationIndexTest {
+  
+  private Object input;
+  
+  /**
+   * Init for every test.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Before
+  public void before() throws Exception {
+    final ClassNodeBuilder builder = ClassNodeBuilder
+        .createClass("de.tuberlin.uebb.jbop.access.SpecializationIndexTestClass").//
+        implementInterface(Type.getInternalName(Serializable.class)).//
+        addField("count", "I").initWith(3).withGetterAndSetter().//
+        addField("values", "[D").initArrayWith(1.0, 2.0).withGetter();
+    input = builder.toClass().instance();
+  }
+  
+  /**
+   * Tests that the fingerprint depends on the state of the input.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testFingerprint() throws Exception {
+    // RUN
+    final String first = SpecializationIndex.getFingerprint(input);
+    final String second = SpecializationIndex.getFingerprint(input);
+    input.getClass().getMethod("setCount", int.class).invoke(input, Integer.valueOf(4));
+    final String changed = SpecializationIndex.getFingerprint(input);
+    
+    // ASSERT
+    assertEquals(40, first.length());
+    assertEquals(first, second);
+    assertFalse(first.equals(changed));
+    assertTrue(SpecializationIndex.getKey(input).startsWith(input.getClass().getName() + "#"));
+  }
+  
+  /**
+   * Tests that the specialized class of an entry is instantiated with the values of the input.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testLookup() throws Exception {
+    // INIT
+    final Object specialized = new Optimizer().optimize(input, "_aot");
+    final String value = SpecializationIndex.getValue(specialized);
+    final Map<String, String> entries = Collections.singletonMap(SpecializationIndex.getFingerprint(input), value);
+    
+    // RUN
+    final Object instance = SpecializationIndex.lookup(input, entries);
+    
+    // ASSERT
+    assertEquals(specialized.getClass().getName() + " (I[D)V count values", value);
+    assertNotSame(specialized, instance);
+    assertSame(specialized.getClass(), instance.getClass());
+    assertEquals(Integer.valueOf(3), instance.getClass().getMethod("getCount").invoke(instance));
+    assertSame(input.getClass().getMethod("getValues").invoke(input),
+        instance.getClass().getMethod("getValues").invoke(instance));
+  }
+  
+  /**
+   * Tests that there is no instance if the state of the input differs from the state at build time.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testLookupOtherState() throws Exception {
+    // INIT
+    final Object specialized = new Optimizer().optimize(input, "_aotOther");
+    final Map<String, String> entries = Collections.singletonMap(SpecializationIndex.getFingerprint(input),
+        SpecializationIndex.getValue(specialized));
+    input.getClass().getMethod("setCount", int.class).invoke(input, Integer.valueOf(4));
+    
+    // RUN
+    final Object instance = SpecializationIndex.lookup(input, entries);
+    
+    // ASSERT
+    assertNull(instance);
+  }
+  
+  /**
+   * Tests that inputs without an index are not found.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testLookupWithoutIndex() throws Exception {
+    // RUN / ASSERT
+    assertNull(SpecializationIndex.lookup(input));
+    assertNull(SpecializationIndex.lookup(new Object()));
+  }
+}
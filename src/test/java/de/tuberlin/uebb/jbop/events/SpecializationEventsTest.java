@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tuberlin.uebb.jbop.access.OptimizerUtils;
+import de.tuberlin.uebb.jbop.optimizer.ClassNodeBuilder;
+import de.tuberlin.uebb.jbop.optimizer.Optimizer;
+import de.tuberlin.uebb.jbop.optimizer.annotations.Optimizable;
+
+/**
+ * Tests for {@link SpecializationEvents}.
+ * 
+ * @author Christopher Ewest
+ */
+public class SpecializationEventsTest {
+  
+  private final RecordingListener listener = new RecordingListener();
+  private Object input;
+  
+  /**
+   * Init for every test.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Before
+  public void before() throws Exception {
+    OptimizerUtils.init();
+    input = ClassNodeBuilder.createClass("de.tuberlin.uebb.jbop.events.SpecializationEventsTestClass").//
+        addEmptyMethod("optimizable").//
+        withAnnotation(Optimizable.class).//
+        toClass().instance();
+  }
+  
+  /**
+   * Cleanup after every test.
+   */
+  @After
+  public void after() {
+    SpecializationEvents.removeListener(listener);
+    SpecializationEvents.disableFlightRecorder();
+  }
+  
+  /**
+   * Tests that the events of the specialization are fired.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testEvents() throws Exception {
+    // INIT
+    final Optimizer optimizer = new Optimizer();
+    SpecializationEvents.addListener(listener);
+    
+    // RUN
+    optimizer.optimize(input, "_events");
+    optimizer.optimize(input, "_events");
+    
+    // ASSERT
+    assertTrue(listener.events.contains("read " + input.getClass().getName()));
+    assertTrue(listener.events.contains("run optimizable()V"));
+    assertTrue(listener.events.contains("define " + input.getClass().getName() + "_events"));
+    assertEquals("miss", listener.events.get(0));
+    assertEquals("hit", listener.events.get(listener.events.size() - 1));
+  }
+  
+  /**
+   * Tests that no events are fired without listeners.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testNoListener() throws Exception {
+    // INIT
+    SpecializationEvents.addListener(listener);
+    SpecializationEvents.removeListener(listener);
+    
+    // RUN
+    new Optimizer().optimize(input, "_events");
+    
+    // ASSERT
+    assertFalse(SpecializationEvents.isEnabled());
+    assertTrue(listener.events.isEmpty());
+  }
+  
+  /**
+   * Tests that the events are recorded by the Java Flight Recorder (if available).
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testFlightRecorder() throws Exception {
+    Assume.assumeTrue(SpecializationEvents.enableFlightRecorder());
+    // INIT
+    final Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+    final Object recording = recordingClass.getConstructor().newInstance();
+    recordingClass.getMethod("enable", String.class).invoke(recording, "de.tuberlin.uebb.jbop.ClassDefine");
+    recordingClass.getMethod("start").invoke(recording);
+    
+    // RUN
+    new Optimizer().optimize(input, "_events");
+    
+    // ASSERT
+    recordingClass.getMethod("stop").invoke(recording);
+    final File file = File.createTempFile("jbop", ".jfr");
+    file.deleteOnExit();
+    recordingClass.getMethod("dump", java.nio.file.Path.class).invoke(recording, file.toPath());
+    recordingClass.getMethod("close").invoke(recording);
+    final Method readAllEvents = Class.forName("jdk.jfr.consumer.RecordingFile").getMethod("readAllEvents",
+        java.nio.file.Path.class);
+    final List<?> events = (List<?>) readAllEvents.invoke(null, file.toPath());
+    boolean found = false;
+    for (final Object event : events) {
+      final Method getString = event.getClass().getMethod("getString", String.class);
+      if ((input.getClass().getName() + "_events").equals(getString.invoke(event, "className"))) {
+        found = true;
+        // the event is timed by begin / end
+        final Object duration = event.getClass().getMethod("getDuration").invoke(event);
+        assertFalse(((Boolean) duration.getClass().getMethod("isZero").invoke(duration)).booleanValue());
+        // the unit of the size is labeled
+        final Object eventType = event.getClass().getMethod("getEventType").invoke(event);
+        final Object size = eventType.getClass().getMethod("getField", String.class).invoke(eventType, "size");
+        assertEquals("Classfile Size [bytes]", size.getClass().getMethod("getLabel").invoke(size));
+        assertEquals("jdk.jfr.DataAmount", size.getClass().getMethod("getContentType").invoke(size));
+      }
+    }
+    assertTrue(found);
+  }
+  
+  private static class RecordingListener implements ISpecializationListener {
+    
+    private final List<String> events = new ArrayList<>();
+    
+    @Override
+    public Object begin(final SpecializationStep step) {
+      return step;
+    }
+    
+    @Override
+    public void classRead(final Object begun, final String className, final int size, final long duration) {
+      assertEquals(SpecializationStep.CLASS_READ, begun);
+      events.add("read " + className);
+    }
+    
+    @Override
+    public void passRun(final Object begun, final String className, final String method, final String optimizer,
+        final int iteration, final boolean optimized, final int sizeBefore, final int sizeAfter, final long duration) {
+      assertEquals(SpecializationStep.PASS_RUN, begun);
+      events.add("run " + method);
+    }
+    
+    @Override
+    public void methodSplit(final Object begun, final String className, final String method, final int parts,
+        final int size, final long duration) {
+      assertEquals(SpecializationStep.METHOD_SPLIT, begun);
+      events.add("split " + method);
+    }
+    
+    @Override
+    public void classDefined(final Object begun, final String className, final int size, final long duration) {
+      assertEquals(SpecializationStep.CLASS_DEFINE, begun);
+      events.add("define " + className);
+    }
+    
+    @Override
+    public void cacheLookup(final String className, final boolean hit) {
+      events.add(hit ? "hit" : "miss");
+    }
+  }
+}
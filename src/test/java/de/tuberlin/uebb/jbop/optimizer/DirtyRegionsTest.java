@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.ICONST_2;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.RETURN;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/**
+ * Tests for {@link DirtyRegions}.
+ *
+ * @author Christopher Ewest
+ */
+public class DirtyRegionsTest {
+
+  private final MethodNode methodNode = new MethodNode();
+  private final DirtyRegions regions = new DirtyRegions();
+  private AbstractInsnNode iconst0;
+  private AbstractInsnNode iload;
+  private AbstractInsnNode iconst1;
+  private AbstractInsnNode iconst2;
+  private AbstractInsnNode iinc;
+  private AbstractInsnNode ret;
+
+  /**
+   * Init for every test.
+   *
+   * <pre>
+   * b0: iconst_0; istore 1
+   * b1: L1; iload 1; ifeq L3
+   * b2: iconst_1; istore 1; goto L4
+   * b3: L3; iconst_2; istore 2
+   * b4: L4; iinc 1 1; goto L1
+   * b5: return
+   * </pre>
+   */
+  @Before
+  public void before() {
+    final LabelNode label1 = new LabelNode();
+    final LabelNode label3 = new LabelNode();
+    final LabelNode label4 = new LabelNode();
+    iconst0 = new InsnNode(ICONST_0);
+    iload = new VarInsnNode(ILOAD, 1);
+    iconst1 = new InsnNode(ICONST_1);
+    iconst2 = new InsnNode(ICONST_2);
+    iinc = new IincInsnNode(1, 1);
+    ret = new InsnNode(RETURN);
+    final InsnList list = methodNode.instructions;
+    list.add(iconst0);
+    list.add(new VarInsnNode(ISTORE, 1));
+    list.add(label1);
+    list.add(iload);
+    list.add(new JumpInsnNode(IFEQ, label3));
+    list.add(iconst1);
+    list.add(new VarInsnNode(ISTORE, 1));
+    list.add(new JumpInsnNode(GOTO, label4));
+    list.add(label3);
+    list.add(iconst2);
+    list.add(new VarInsnNode(ISTORE, 2));
+    list.add(label4);
+    list.add(iinc);
+    list.add(new JumpInsnNode(GOTO, label1));
+    list.add(ret);
+  }
+
+  /**
+   * Tests that initially the whole method is dirty.
+   */
+  @Test
+  public void testInitiallyAll() {
+    // RUN
+    regions.prepare(methodNode);
+
+    // ASSERT
+    assertTrue(regions.isAll());
+    assertTrue(regions.isDirty(iconst0));
+    assertTrue(regions.isDirty(ret));
+  }
+
+  /**
+   * Tests that the block of a changed node, the block before and the fall-through successor are dirty.
+   */
+  @Test
+  public void testChangedBlock() {
+    // INIT
+    regions.clear();
+    regions.addChanged(Collections.singletonList(iconst2));
+
+    // RUN
+    regions.prepare(methodNode);
+
+    // ASSERT
+    assertTrue(regions.isDirty(iconst1));
+    assertTrue(regions.isDirty(iconst2));
+    assertTrue(regions.isDirty(iinc));
+    assertFalse(regions.isDirty(iconst0));
+    assertFalse(regions.isDirty(iload));
+    assertFalse(regions.isDirty(ret));
+  }
+
+  /**
+   * Tests that the jump targets of a changed block are dirty.
+   */
+  @Test
+  public void testJumpTargets() {
+    // INIT
+    regions.clear();
+    regions.addChanged(Collections.singletonList(iinc));
+
+    // RUN
+    regions.prepare(methodNode);
+
+    // ASSERT
+    assertTrue(regions.isDirty(iload));
+    assertTrue(regions.isDirty(iconst2));
+    assertTrue(regions.isDirty(iinc));
+    assertTrue(regions.isDirty(ret));
+    assertFalse(regions.isDirty(iconst0));
+    assertFalse(regions.isDirty(iconst1));
+  }
+
+  /**
+   * Tests the reported changes.
+   */
+  @Test
+  public void testMarkChanged() {
+    // INIT
+    regions.clear();
+    regions.prepare(methodNode);
+
+    // RUN
+    regions.markChanged(iconst1);
+
+    // ASSERT
+    assertTrue(regions.isDirty(iconst1));
+    assertEquals(Collections.singletonList(iconst1), regions.getChanges());
+    regions.clear();
+    assertTrue(regions.getChanges().isEmpty());
+    assertFalse(regions.isDirty(iconst1));
+    regions.markAll();
+    assertTrue(regions.isDirty(iconst1));
+  }
+}
@@ -22,6 +22,14 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.ICONST_2;
+import static org.objectweb.asm.Opcodes.ICONST_3;
+import static org.objectweb.asm.Opcodes.IF_ICMPNE;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.IMUL;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -31,9 +39,12 @@ import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.LabelNode;
 import org.objectweb.asm.tree.MethodNode;
 
+import de.tuberlin.uebb.jbop.access.OptimizerUtils;
 import de.tuberlin.uebb.jbop.exception.JBOPClassException;
 import de.tuberlin.uebb.jbop.optimizer.annotations.AdditionalSteps;
 import de.tuberlin.uebb.jbop.optimizer.annotations.Optimizable;
@@ -44,10 +55,19 @@ import de.tuberlin.uebb.jbop.optimizer.array.FieldArrayValueInliner;
 import de.tuberlin.uebb.jbop.optimizer.array.LocalArrayLengthInliner;
 import de.tuberlin.uebb.jbop.optimizer.array.LocalArrayValueInliner;
 import de.tuberlin.uebb.jbop.optimizer.controlflow.ConstantIfInliner;
+import de.tuberlin.uebb.jbop.optimizer.controlflow.JumpThreader;
+import de.tuberlin.uebb.jbop.optimizer.intrinsics.BoxingEliminator;
+import de.tuberlin.uebb.jbop.optimizer.intrinsics.IntrinsicFolder;
+import de.tuberlin.uebb.jbop.optimizer.intrinsics.StringBuilderFolder;
 import de.tuberlin.uebb.jbop.optimizer.loop.ForLoopUnroller;
+import de.tuberlin.uebb.jbop.optimizer.loop.LoopInvariantCodeMotion;
+import de.tuberlin.uebb.jbop.optimizer.peephole.PeepholeOptimizer;
 import de.tuberlin.uebb.jbop.optimizer.var.FinalFieldInliner;
 import de.tuberlin.uebb.jbop.optimizer.var.LocalVarInliner;
+import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
 import de.tuberlin.uebb.jbop.optimizer.var.RemoveUnusedLocalVars;
+import de.tuberlin.uebb.jbop.optimizer.var.StaticFieldInliner;
+import de.tuberlin.uebb.jbop.optimizer.var.TypeCheckFolder;
 
 /**
  * Tests for {@link Optimizer}.
@@ -66,13 +86,21 @@ public class OptimizerTest {
   static {
     final List<Class<? extends IOptimizer>> optimizers = new ArrayList<>();
     optimizers.add(FinalFieldInliner.class);
+    optimizers.add(StaticFieldInliner.class);
+    optimizers.add(TypeCheckFolder.class);
     optimizers.add(LocalArrayLengthInliner.class);
     optimizers.add(FieldArrayLengthInliner.class);
     optimizers.add(LocalArrayValueInliner.class);
     optimizers.add(FieldArrayValueInliner.class);
     optimizers.add(LocalVarInliner.class);
+    optimizers.add(BoxingEliminator.class);
+    optimizers.add(IntrinsicFolder.class);
+    optimizers.add(StringBuilderFolder.class);
     optimizers.add(RemoveUnusedLocalVars.class);
+    optimizers.add(PeepholeOptimizer.class);
     optimizers.add(ConstantIfInliner.class);
+    optimizers.add(JumpThreader.class);
+    optimizers.add(LoopInvariantCodeMotion.class);
     optimizers.add(ArithmeticExpressionInterpreter.class);
     DEFAULT_OPTIMIZER_STEPS = Collections.unmodifiableList(optimizers);
   }
@@ -98,6 +126,20 @@ public class OptimizerTest {
         addEmptyMethod("additionalOptimization").//
         withAnnotation(Optimizable.class).//
         withAnnotation(AdditionalSteps.class, "steps", Arrays.asList(Type.getType(ForLoopUnroller.class)));
+    final LabelNode other = new LabelNode();
+    builder.addMethod("scale", "(II)I").//
+        add(ILOAD, 1).//
+        add(ICONST_1).//
+        add(IF_ICMPNE, other).//
+        add(ILOAD, 2).//
+        add(ICONST_2).//
+        add(IMUL).//
+        addReturn().//
+        addInsn(other).//
+        add(ILOAD, 2).//
+        add(ICONST_3).//
+        add(IMUL).//
+        addReturn();
     classNode = builder.getClassNode();
     input = builder.toClass().instance();
   }
@@ -214,4 +256,154 @@ public class OptimizerTest {
     assertArrayEquals(inputClass.getInterfaces(), optimizedClass.getInterfaces());
   }
   
+  /**
+   * Tests that specialize() replaces the parameters by the constant arguments and caches the variants.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testSpecialize() throws Exception {
+    // RUN
+    final Object mode1 = optimizer.specialize(input, "scale", Integer.valueOf(1), null);
+    final Object mode2 = optimizer.specialize(input, "scale", Integer.valueOf(2), null);
+    final Object mode1Again = optimizer.specialize(input, "scale", Integer.valueOf(1), null);
+    
+    // ASSERT
+    assertTrue(mode1 == mode1Again);
+    assertTrue(mode1 != mode2);
+    assertEquals(Integer.valueOf(10), invokeScale(mode1, 1, 5));
+    assertEquals(Integer.valueOf(15), invokeScale(mode2, 2, 5));
+    final ClassNode specialized = OptimizerUtils.readClass(mode1);
+    for (final MethodNode method : specialized.methods) {
+      if ("scale".equals(method.name)) {
+        int comparisons = 0;
+        for (final AbstractInsnNode node : method.instructions.toArray()) {
+          if (node.getOpcode() == IF_ICMPNE) {
+            comparisons++;
+          }
+        }
+        // only the guard is left
+        assertEquals(1, comparisons);
+      }
+    }
+  }
+  
+  /**
+   * Tests that the specialized method falls back to the original code if it is called with other arguments.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testSpecializeGuard() throws Exception {
+    // RUN
+    final Object mode1 = optimizer.specialize(input, "scale", Integer.valueOf(1), null);
+    
+    // ASSERT
+    assertEquals(Integer.valueOf(10), invokeScale(mode1, 1, 5));
+    assertEquals(Integer.valueOf(15), invokeScale(mode1, 2, 5));
+    assertEquals(Integer.valueOf(15), invokeScale(mode1, 3, 5));
+  }
+  
+  /**
+   * Tests that the variants are cached per input instance, even if the inputs are equal.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testSpecializeCachedByIdentity() throws Exception {
+    // INIT
+    final ClassNodeBuilder equalBuilder = ClassNodeBuilder
+        .createClass("de.tuberlin.uebb.jbop.optimizer.OptimizerTestEqualTestClass").//
+        addMethod("equals", "(Ljava/lang/Object;)Z").//
+        add(ICONST_1).//
+        addReturn().//
+        addMethod("hashCode", "()I").//
+        add(ICONST_1).//
+        addReturn().//
+        addMethod("scale", "(II)I").//
+        add(ILOAD, 1).//
+        add(ILOAD, 2).//
+        add(IMUL).//
+        addReturn();
+    final Object first = equalBuilder.toClass().instance();
+    final Object second = first.getClass().getConstructor().newInstance();
+    
+    // RUN
+    final Object firstSpecialized = optimizer.specialize(first, "scale", Integer.valueOf(2), null);
+    final Object secondSpecialized = optimizer.specialize(second, "scale", Integer.valueOf(2), null);
+    
+    // ASSERT
+    assertEquals(first, second);
+    assertTrue(firstSpecialized != secondSpecialized);
+    assertEquals(Integer.valueOf(10), invokeScale(secondSpecialized, 2, 5));
+  }
+  
+  /**
+   * Tests that specialize() fails if the arguments don't match a method.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test(expected = JBOPClassException.class)
+  public void testSpecializeNoMatchingMethod() throws Exception {
+    // RUN
+    optimizer.specialize(input, "scale", "mode", null);
+  }
+  
+  /**
+   * Tests that optimizeMethods() inlines the values of the input without changing the structure of the class.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testOptimizeMethods() throws Exception {
+    // INIT
+    final ClassNodeBuilder inPlace = ClassNodeBuilder.createClass("de.tuberlin.uebb.jbop.optimizer.InPlaceTestClass").//
+        addField("factor", "I").withModifiers(ACC_PRIVATE, ACC_FINAL).initWith(3).//
+        addMethod("scaleBy", "(I)I").withAnnotation(Optimizable.class).//
+        add(ILOAD, 1).//
+        addGetClassField("factor").//
+        add(IMUL).//
+        addReturn();
+    final Object instance = inPlace.toClass().instance();
+    final ClassNode inPlaceNode = inPlace.getClassNode();
+    final int methods = inPlaceNode.methods.size();
+    
+    // RUN
+    optimizer.optimizeMethods(inPlaceNode, instance);
+    
+    // ASSERT
+    assertEquals("de/tuberlin/uebb/jbop/optimizer/InPlaceTestClass", inPlaceNode.name);
+    assertEquals(methods, inPlaceNode.methods.size());
+    assertEquals(1, inPlaceNode.fields.size());
+    final MethodNode scaleBy = inPlace.getMethod("scaleBy");
+    assertEquals(3, NodeHelper.getNumberValue(scaleBy.instructions.get(1)).intValue());
+  }
+  
+  /**
+   * Tests that the method size report only contains the methods of the last call.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testMethodSizeReportPerCall() throws Exception {
+    // RUN
+    optimizer.specialize(input, "scale", Integer.valueOf(1), null);
+    final int first = optimizer.getMethodSizeReport().getEntries().size();
+    optimizer.specialize(input, "scale", Integer.valueOf(2), null);
+    
+    // ASSERT
+    assertTrue(first > 0);
+    assertEquals(first, optimizer.getMethodSizeReport().getEntries().size());
+  }
+  
+  private Object invokeScale(final Object instance, final int mode, final int x) throws Exception {
+    return instance.getClass().getMethod("scale", int.class, int.class)
+        .invoke(instance, Integer.valueOf(mode), Integer.valueOf(x));
+  }
 }
@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.ICONST_2;
+import static org.objectweb.asm.Opcodes.ICONST_3;
+import static org.objectweb.asm.Opcodes.IRETURN;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Tests for {@link PassScheduler}.
+ * 
+ * @author Christopher Ewest
+ */
+public class PassSchedulerTest {
+  
+  private final MethodNode methodNode = new MethodNode();
+  
+  /**
+   * Tests that only the optimizers enabled by the changes are run again.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testOnlyEnabledOptimizersAreRequeued() throws Exception {
+    // INIT
+    final CountingOptimizer constants = new CountingOptimizer(2, EnumSet.of(ChangeKind.CONSTANTS),
+        EnumSet.of(ChangeKind.CONSTANTS));
+    final CountingOptimizer folding = new CountingOptimizer(0, EnumSet.of(ChangeKind.CONSTANTS),
+        EnumSet.of(ChangeKind.CONSTANTS));
+    final CountingOptimizer locals = new CountingOptimizer(0, EnumSet.of(ChangeKind.LOCALS),
+        EnumSet.of(ChangeKind.LOCALS));
+    final PassScheduler scheduler = new PassScheduler(Arrays.<IOptimizer> asList(constants, folding, locals));
+    
+    // RUN
+    scheduler.run(methodNode);
+    
+    // ASSERT
+    assertEquals(3, constants.runs);
+    assertEquals(2, folding.runs);
+    assertEquals(1, locals.runs);
+    assertFalse(scheduler.isAborted());
+  }
+  
+  /**
+   * Tests that optimizers that are not {@link IChangeAware} are run after every change.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testUnawareOptimizersAreAlwaysRequeued() throws Exception {
+    // INIT
+    final CountingOptimizer changing = new CountingOptimizer(2, EnumSet.of(ChangeKind.CODE),
+        EnumSet.of(ChangeKind.LOCALS));
+    final UnawareOptimizer unaware = new UnawareOptimizer();
+    final PassScheduler scheduler = new PassScheduler(Arrays.<IOptimizer> asList(unaware, changing));
+    
+    // RUN
+    scheduler.run(methodNode);
+    
+    // ASSERT
+    assertEquals(2, unaware.runs);
+    assertEquals(1, changing.runs);
+    assertEquals(2, scheduler.getIterations());
+  }
+  
+  /**
+   * Tests that the scheduler stops after the max number of iterations.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testMaxIterations() throws Exception {
+    // INIT
+    final CountingOptimizer endless = new CountingOptimizer(Integer.MAX_VALUE, EnumSet.of(ChangeKind.CONSTANTS),
+        EnumSet.of(ChangeKind.CONSTANTS));
+    final PassScheduler scheduler = new PassScheduler(Collections.<IOptimizer> singletonList(endless), 5, 0);
+    
+    // RUN
+    scheduler.run(methodNode);
+    
+    // ASSERT
+    assertEquals(5, endless.runs);
+    assertEquals(5, scheduler.getIterations());
+    assertTrue(scheduler.isAborted());
+  }
+  
+  /**
+   * Tests that the scheduler stops if the time budget is exceeded.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testTimeBudget() throws Exception {
+    // INIT
+    final CountingOptimizer endless = new CountingOptimizer(Integer.MAX_VALUE, EnumSet.of(ChangeKind.CONSTANTS),
+        EnumSet.of(ChangeKind.CONSTANTS)) {
+      
+      @Override
+      public InsnList optimize(final InsnList original, final MethodNode node) {
+        try {
+          Thread.sleep(5);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return super.optimize(original, node);
+      }
+    };
+    final List<IOptimizer> optimizers = Collections.<IOptimizer> singletonList(endless);
+    final PassScheduler scheduler = new PassScheduler(optimizers, Integer.MAX_VALUE, 20);
+    
+    // RUN
+    scheduler.run(methodNode);
+    
+    // ASSERT
+    assertTrue(scheduler.isAborted());
+    assertTrue(endless.runs < 100);
+  }
+  
+  /**
+   * Tests that {@link IRegionAware} optimizers only examine the changed regions after the first run.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testRegionAwareOptimizersExamineChanges() throws Exception {
+    // INIT
+    final AbstractInsnNode changed = new InsnNode(ICONST_1);
+    final AbstractInsnNode far = new InsnNode(ICONST_3);
+    methodNode.instructions.add(changed);
+    methodNode.instructions.add(new InsnNode(IRETURN));
+    methodNode.instructions.add(new InsnNode(ICONST_2));
+    methodNode.instructions.add(new InsnNode(IRETURN));
+    methodNode.instructions.add(far);
+    methodNode.instructions.add(new InsnNode(IRETURN));
+    final RegionOptimizer changing = new RegionOptimizer(1, changed, far);
+    final RegionOptimizer other = new RegionOptimizer(0, changed, far);
+    final PassScheduler scheduler = new PassScheduler(Arrays.<IOptimizer> asList(changing, other));
+    
+    // RUN
+    scheduler.run(methodNode);
+    
+    // ASSERT
+    assertEquals(2, changing.runs);
+    assertEquals(1, other.runs);
+    assertTrue(other.farDirty);
+    assertTrue(changing.changedDirty);
+    assertFalse(changing.farDirty);
+    assertEquals(null, changing.regions);
+  }
+  
+  /**
+   * Tests that a change of an optimizer that is not {@link IRegionAware} makes the whole method dirty.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testUnawareChangesMarkAll() throws Exception {
+    // INIT
+    final AbstractInsnNode changed = new InsnNode(ICONST_1);
+    final AbstractInsnNode far = new InsnNode(ICONST_3);
+    methodNode.instructions.add(changed);
+    methodNode.instructions.add(new InsnNode(IRETURN));
+    methodNode.instructions.add(far);
+    methodNode.instructions.add(new InsnNode(IRETURN));
+    final RegionOptimizer region = new RegionOptimizer(0, changed, far);
+    final CountingOptimizer unaware = new CountingOptimizer(2, EnumSet.of(ChangeKind.CONSTANTS),
+        EnumSet.of(ChangeKind.CONSTANTS));
+    final PassScheduler scheduler = new PassScheduler(Arrays.<IOptimizer> asList(region, unaware));
+    
+    // RUN
+    scheduler.run(methodNode);
+    
+    // ASSERT
+    assertEquals(3, region.runs);
+    assertTrue(region.farDirty);
+  }
+  
+  private static class CountingOptimizer implements IOptimizer, IChangeAware {
+    
+    private final Set<ChangeKind> enabling;
+    private final Set<ChangeKind> produced;
+    private int changes;
+    private boolean optimized;
+    protected int runs;
+    
+    CountingOptimizer(final int changes, final Set<ChangeKind> enabling, final Set<ChangeKind> produced) {
+      this.changes = changes;
+      this.enabling = enabling;
+      this.produced = produced;
+    }
+    
+    @Override
+    public boolean isOptimized() {
+      return optimized;
+    }
+    
+    @Override
+    public InsnList optimize(final InsnList original, final MethodNode node) {
+      runs++;
+      optimized = changes > 0;
+      changes--;
+      return original;
+    }
+    
+    @Override
+    public Set<ChangeKind> getEnablingChanges() {
+      return enabling;
+    }
+    
+    @Override
+    public Set<ChangeKind> getProducedChanges() {
+      return produced;
+    }
+  }
+  
+  private static class UnawareOptimizer implements IOptimizer {
+    
+    private int runs;
+    
+    @Override
+    public boolean isOptimized() {
+      return false;
+    }
+    
+    @Override
+    public InsnList optimize(final InsnList original, final MethodNode node) {
+      runs++;
+      return original;
+    }
+  }
+  
+  private static class RegionOptimizer implements IOptimizer, IChangeAware, IRegionAware {
+    
+    private final AbstractInsnNode changed;
+    private final AbstractInsnNode far;
+    private int changes;
+    private boolean optimized;
+    private int runs;
+    private DirtyRegions regions;
+    private boolean changedDirty;
+    private boolean farDirty;
+    
+    RegionOptimizer(final int changes, final AbstractInsnNode changed, final AbstractInsnNode far) {
+      this.changes = changes;
+      this.changed = changed;
+      this.far = far;
+    }
+    
+    @Override
+    public boolean isOptimized() {
+      return optimized;
+    }
+    
+    @Override
+    public InsnList optimize(final InsnList original, final MethodNode node) {
+      runs++;
+      changedDirty = regions.isDirty(changed);
+      farDirty = regions.isDirty(far);
+      optimized = changes > 0;
+      if (optimized) {
+        regions.markChanged(changed);
+      }
+      changes--;
+      return original;
+    }
+    
+    @Override
+    public void setDirtyRegions(final DirtyRegions regions) {
+      this.regions = regions;
+    }
+    
+    @Override
+    public Set<ChangeKind> getEnablingChanges() {
+      return EnumSet.of(ChangeKind.CONSTANTS);
+    }
+    
+    @Override
+    public Set<ChangeKind> getProducedChanges() {
+      return EnumSet.of(ChangeKind.CONSTANTS);
+    }
+  }
+}
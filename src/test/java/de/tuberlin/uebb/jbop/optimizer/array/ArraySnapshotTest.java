@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.array;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+
+import org.junit.Test;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+
+import de.tuberlin.uebb.jbop.access.ClassAccessor;
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
+
+/**
+ * Tests for {@link ArraySnapshot}.
+ * 
+ * @author Christopher Ewest
+ */
+public class ArraySnapshotTest {
+  
+  private final ArrayHolder holder = new ArrayHolder();
+  private final ArraySnapshot snapshot = new ArraySnapshot(holder);
+  
+  /**
+   * Tests that the elements of multidimensional primitive arrays are returned as constants.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testPrimitiveElements() throws Exception {
+    // RUN
+    final AbstractInsnNode matrix = snapshot.getConstant("matrix", 1, 0);
+    final AbstractInsnNode chars = snapshot.getConstant("chars", 1);
+    final AbstractInsnNode flags = snapshot.getConstant("flags", 0);
+    
+    // ASSERT
+    assertEquals(3.5, NodeHelper.getNumberValue(matrix).doubleValue(), .0001);
+    assertEquals('b', NodeHelper.getNumberValue(chars).intValue());
+    assertEquals(ICONST_1, flags.getOpcode());
+  }
+  
+  /**
+   * Tests that Strings and null are returned as constants and other objects as values.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testObjectElements() throws Exception {
+    // RUN
+    final AbstractInsnNode string = snapshot.getConstant("objects", 0);
+    final AbstractInsnNode nullValue = snapshot.getConstant("objects", 1);
+    final AbstractInsnNode object = snapshot.getConstant("objects", 2);
+    
+    // ASSERT
+    assertEquals("name", ((LdcInsnNode) string).cst);
+    assertEquals(ACONST_NULL, nullValue.getOpcode());
+    assertNull(object);
+    assertSame(holder.objects[2], snapshot.getValue("objects", 2));
+  }
+  
+  /**
+   * Tests that changes of the array after the first read are not seen.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testChangesAreNotSeen() throws Exception {
+    // INIT
+    snapshot.getConstant("matrix", 0, 0);
+    
+    // RUN
+    holder.matrix[1][1] = 10.0;
+    final AbstractInsnNode element = snapshot.getConstant("matrix", 1, 1);
+    
+    // ASSERT
+    assertEquals(4.5, NodeHelper.getNumberValue(element).doubleValue(), .0001);
+  }
+  
+  /**
+   * Tests that an index out of bounds is rejected.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test(expected = JBOPClassException.class)
+  public void testIndexOutOfBounds() throws Exception {
+    // RUN
+    snapshot.getConstant("matrix", 2, 0);
+  }
+  
+  /**
+   * Tests that the arrays are copied only once while the snapshot of the input is open.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testSharedWhileSnapshotIsOpen() throws Exception {
+    // INIT
+    ClassAccessor.openSnapshot(holder);
+    final ArraySnapshot first;
+    final ArraySnapshot second;
+    try {
+      // RUN
+      first = ArraySnapshot.of(holder);
+      first.getConstant("matrix", 0, 0);
+      holder.matrix[1][1] = 10.0;
+      second = ArraySnapshot.of(holder);
+      
+      // ASSERT
+      assertSame(first, second);
+      assertEquals(4.5, NodeHelper.getNumberValue(second.getConstant("matrix", 1, 1)).doubleValue(), .0001);
+    } finally {
+      ClassAccessor.closeSnapshot(holder);
+    }
+    assertNotSame(first, ArraySnapshot.of(holder));
+  }
+  
+  private static final class ArrayHolder {
+    
+    private final double[][] matrix = { { 1.5, 2.5 }, { 3.5, 4.5 } };
+    private final char[] chars = { 'a', 'b' };
+    private final boolean[] flags = { true };
+    private final Object[] objects = { "name", null, new Object() };
+  }
+}
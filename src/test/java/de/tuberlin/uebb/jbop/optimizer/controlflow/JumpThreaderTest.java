@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.controlflow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.ICONST_2;
+import static org.objectweb.asm.Opcodes.ICONST_3;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.IINC;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.RETURN;
+
+import org.junit.Test;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import de.tuberlin.uebb.jbop.optimizer.ClassNodeBuilder;
+
+/**
+ * Tests for {@link JumpThreader}.
+ * 
+ * @author Christopher Ewest
+ */
+public class JumpThreaderTest {
+  
+  private final ClassNodeBuilder builder = ClassNodeBuilder
+      .createClass("de.tuberlin.uebb.jbop.optimizer.controlflow.JumpThreaderTestClass");
+  private final JumpThreader optimizer = new JumpThreader();
+  
+  /**
+   * Tests that a jump to a goto is retargeted to the destination of the goto
+   * and the unreachable code is removed.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testGotoChain() throws Exception {
+    // INIT
+    final LabelNode label1 = new LabelNode();
+    final LabelNode label2 = new LabelNode();
+    builder.addMethod("value", "(I)I").//
+        add(ILOAD, 1).//
+        add(IFEQ, label1).//
+        add(ICONST_1).//
+        addReturn().//
+        addInsn(label1).//
+        add(GOTO, label2).//
+        addInsn(new LabelNode()).//
+        add(ICONST_3).//
+        addReturn().//
+        addInsn(label2).//
+        add(ICONST_2).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("value");
+    
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+    
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(9, optimized.size());
+    assertSame(label2, ((JumpInsnNode) optimized.get(1)).label);
+    
+    final Object instance = builder.toClass().instance();
+    assertEquals(Integer.valueOf(2), instance.getClass().getMethod("value", int.class).invoke(instance,
+        Integer.valueOf(0)));
+    assertEquals(Integer.valueOf(1), instance.getClass().getMethod("value", int.class).invoke(instance,
+        Integer.valueOf(5)));
+  }
+  
+  /**
+   * Tests that a goto to a return is replaced by the return.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testGotoReturn() throws Exception {
+    // INIT
+    final LabelNode label1 = new LabelNode();
+    final LabelNode label2 = new LabelNode();
+    builder.addMethod("count", "(I)V").//
+        add(ILOAD, 1).//
+        add(IFEQ, label1).//
+        add(IINC, 1, 1).//
+        add(GOTO, label2).//
+        addInsn(label1).//
+        add(IINC, 1, -1).//
+        addInsn(label2).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("count");
+    
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+    
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(8, optimized.size());
+    assertEquals(RETURN, optimized.get(3).getOpcode());
+  }
+  
+  /**
+   * Tests that a conditional jump over a goto is inverted.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testInvertJump() throws Exception {
+    // INIT
+    final LabelNode label1 = new LabelNode();
+    final LabelNode label2 = new LabelNode();
+    final ClassNodeBuilder selectBuilder = ClassNodeBuilder
+        .createClass("de.tuberlin.uebb.jbop.optimizer.controlflow.JumpThreaderSelectTestClass");
+    selectBuilder.addMethod("select", "(I)I").//
+        add(ILOAD, 1).//
+        add(IFEQ, label1).//
+        add(GOTO, label2).//
+        addInsn(label1).//
+        add(ICONST_1).//
+        addReturn().//
+        addInsn(label2).//
+        add(ICONST_2).//
+        addReturn();
+    final MethodNode methodNode = selectBuilder.getMethod("select");
+    
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+    
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(8, optimized.size());
+    assertEquals(IFNE, optimized.get(1).getOpcode());
+    assertSame(label2, ((JumpInsnNode) optimized.get(1)).label);
+    assertEquals(IRETURN, optimized.get(4).getOpcode());
+    
+    final Object instance = selectBuilder.toClass().instance();
+    assertEquals(Integer.valueOf(1), instance.getClass().getMethod("select", int.class).invoke(instance,
+        Integer.valueOf(0)));
+    assertEquals(Integer.valueOf(2), instance.getClass().getMethod("select", int.class).invoke(instance,
+        Integer.valueOf(3)));
+  }
+  
+  /**
+   * Tests that a cycle of gotos terminates, only the goto to the next instruction is removed.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testCycle() throws Exception {
+    // INIT
+    final LabelNode label1 = new LabelNode();
+    final LabelNode label2 = new LabelNode();
+    builder.addMethod("spin", "()V").//
+        addInsn(label1).//
+        add(GOTO, label2).//
+        addInsn(label2).//
+        add(GOTO, label1);
+    final MethodNode methodNode = builder.getMethod("spin");
+    
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+    
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(3, optimized.size());
+    assertSame(label1, ((JumpInsnNode) optimized.get(2)).label);
+  }
+}
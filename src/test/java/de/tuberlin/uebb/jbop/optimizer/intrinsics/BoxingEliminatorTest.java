@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.intrinsics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.I2D;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.LDC;
+import static org.objectweb.asm.Opcodes.POP;
+
+import org.junit.Test;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+import de.tuberlin.uebb.jbop.optimizer.ClassNodeBuilder;
+import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
+
+/**
+ * Tests for {@link BoxingEliminator}.
+ *
+ * @author Christopher Ewest
+ */
+public class BoxingEliminatorTest {
+
+  private final ClassNodeBuilder builder = ClassNodeBuilder
+      .createClass("de.tuberlin.uebb.jbop.optimizer.intrinsics.BoxingEliminatorTestClass");
+  private final BoxingEliminator optimizer = new BoxingEliminator();
+
+  /**
+   * Tests that a box that is unboxed to another type is replaced by a conversion.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testBoxUnbox() throws Exception {
+    // INIT
+    builder.addMethod("toDouble", "(I)D").//
+        add(ILOAD, 1).//
+        invoke(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;").//
+        addInsn(new TypeInsnNode(CHECKCAST, "java/lang/Number")).//
+        invoke(INVOKEVIRTUAL, "java/lang/Number", "doubleValue", "()D").//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("toDouble");
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(3, optimized.size());
+    assertEquals(ILOAD, optimized.get(0).getOpcode());
+    assertEquals(I2D, optimized.get(1).getOpcode());
+    final Object instance = builder.toClass().instance();
+    assertEquals(7.0, ((Double) instance.getClass().getMethod("toDouble", int.class).invoke(instance,
+        Integer.valueOf(7))).doubleValue(), .0);
+  }
+
+  /**
+   * Tests that the boxing of a constant is folded.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testConstant() throws Exception {
+    // INIT
+    builder.addMethod("constant", "()I").//
+        addInsn(new LdcInsnNode(Double.valueOf(3.7))).//
+        invoke(INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;").//
+        invoke(INVOKEVIRTUAL, "java/lang/Double", "intValue", "()I").//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("constant");
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(2, optimized.size());
+    assertEquals(3, NodeHelper.getNumberValue(optimized.get(0)).intValue());
+  }
+
+  /**
+   * Tests that the folding keeps fractional floats and -0.0 exact.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testConstantFraction() throws Exception {
+    // INIT
+    builder.addMethod("fraction", "()F").//
+        addInsn(new LdcInsnNode(Float.valueOf(0.5f))).//
+        invoke(INVOKESTATIC, "java/lang/Float", "valueOf", "(F)Ljava/lang/Float;").//
+        invoke(INVOKEVIRTUAL, "java/lang/Float", "floatValue", "()F").//
+        addReturn().//
+        addMethod("negativeZero", "()D").//
+        addInsn(new LdcInsnNode(Double.valueOf(-0.0))).//
+        invoke(INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;").//
+        invoke(INVOKEVIRTUAL, "java/lang/Double", "doubleValue", "()D").//
+        addReturn();
+    final MethodNode fraction = builder.getMethod("fraction");
+    final MethodNode negativeZero = builder.getMethod("negativeZero");
+
+    // RUN
+    optimizer.optimize(fraction.instructions, fraction);
+    optimizer.optimize(negativeZero.instructions, negativeZero);
+
+    // ASSERT
+    assertEquals(2, fraction.instructions.size());
+    assertEquals(LDC, fraction.instructions.get(0).getOpcode());
+    assertEquals(Float.valueOf(0.5f), ((LdcInsnNode) fraction.instructions.get(0)).cst);
+    assertEquals(2, negativeZero.instructions.size());
+    assertEquals(LDC, negativeZero.instructions.get(0).getOpcode());
+    assertEquals(Double.valueOf(-0.0), ((LdcInsnNode) negativeZero.instructions.get(0)).cst);
+  }
+
+  /**
+   * Tests that a boolean is unboxed.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testBoolean() throws Exception {
+    // INIT
+    builder.addMethod("bool", "(Z)Z").//
+        add(ILOAD, 1).//
+        invoke(INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;").//
+        invoke(INVOKEVIRTUAL, "java/lang/Boolean", "booleanValue", "()Z").//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("bool");
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(2, optimized.size());
+    assertEquals(ILOAD, optimized.get(0).getOpcode());
+  }
+
+  /**
+   * Tests that a box that is used otherwise is kept.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testUsedBox() throws Exception {
+    // INIT
+    builder.addMethod("used", "(I)I").//
+        add(ILOAD, 1).//
+        invoke(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;").//
+        add(DUP).//
+        add(POP).//
+        invoke(INVOKEVIRTUAL, "java/lang/Integer", "intValue", "()I").//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("used");
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertFalse(optimizer.isOptimized());
+    assertEquals(6, optimized.size());
+  }
+}
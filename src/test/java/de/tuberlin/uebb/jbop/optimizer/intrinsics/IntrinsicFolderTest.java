@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.intrinsics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.objectweb.asm.Opcodes.DLOAD;
+import static org.objectweb.asm.Opcodes.DMUL;
+import static org.objectweb.asm.Opcodes.DUP2;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.ICONST_3;
+import static org.objectweb.asm.Opcodes.ICONST_5;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.LDC;
+import static org.objectweb.asm.Opcodes.POP;
+
+import org.junit.Test;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import de.tuberlin.uebb.jbop.optimizer.ClassNodeBuilder;
+import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
+
+/**
+ * Tests for {@link IntrinsicFolder}.
+ *
+ * @author Christopher Ewest
+ */
+public class IntrinsicFolderTest {
+
+  private final ClassNodeBuilder builder = ClassNodeBuilder
+      .createClass("de.tuberlin.uebb.jbop.optimizer.intrinsics.IntrinsicFolderTestClass");
+  private final IntrinsicFolder optimizer = new IntrinsicFolder();
+
+  /**
+   * Tests that static methods with constant arguments are evaluated.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testFoldStatic() throws Exception {
+    // INIT
+    builder.addMethod("math", "()D").//
+        addInsn(new LdcInsnNode(Double.valueOf(2.0))).//
+        invoke(INVOKESTATIC, "java/lang/Math", "sqrt", "(D)D").//
+        add(ICONST_3).//
+        add(ICONST_5).//
+        invoke(INVOKESTATIC, "java/lang/Math", "max", "(II)I").//
+        add(POP).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("math");
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(4, optimized.size());
+    assertEquals(Math.sqrt(2.0), NodeHelper.getNumberValue(optimized.get(0)).doubleValue(), .0);
+    assertEquals(ICONST_5, optimized.get(1).getOpcode());
+  }
+
+  /**
+   * Tests that methods of String constants are evaluated.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testFoldString() throws Exception {
+    // INIT
+    builder.addMethod("string", "()I").//
+        addInsn(new LdcInsnNode("abc")).//
+        invoke(INVOKEVIRTUAL, "java/lang/String", "length", "()I").//
+        add(POP).//
+        addInsn(new LdcInsnNode("abc")).//
+        add(ICONST_1).//
+        invoke(INVOKEVIRTUAL, "java/lang/String", "charAt", "(I)C").//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("string");
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(4, optimized.size());
+    assertEquals(ICONST_3, optimized.get(0).getOpcode());
+    assertEquals('b', NodeHelper.getNumberValue(optimized.get(2)).intValue());
+  }
+
+  /**
+   * Tests that calls that throw an exception and impure methods are kept.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testNoFold() throws Exception {
+    // INIT
+    builder.addMethod("exception", "()I").//
+        addInsn(new LdcInsnNode("x")).//
+        invoke(INVOKESTATIC, "java/lang/Integer", "parseInt", "(Ljava/lang/String;)I").//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("exception");
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertFalse(optimizer.isOptimized());
+    assertEquals(3, optimized.size());
+    assertNull(PureMethods.getMethod(new MethodInsnNode(INVOKESTATIC, "java/lang/Math", "random", "()D")));
+  }
+
+  /**
+   * Tests that fractional float results are loaded exactly (not as fconst_0).
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testFoldFractionalFloat() throws Exception {
+    // INIT
+    builder.addMethod("fraction", "()F").//
+        addInsn(new LdcInsnNode(Float.valueOf(0.25f))).//
+        addInsn(new LdcInsnNode(Float.valueOf(0.75f))).//
+        invoke(INVOKESTATIC, "java/lang/Math", "min", "(FF)F").//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("fraction");
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(2, optimized.size());
+    assertEquals(LDC, optimized.get(0).getOpcode());
+    assertEquals(Float.valueOf(0.25f), ((LdcInsnNode) optimized.get(0)).cst);
+  }
+
+  /**
+   * Tests that a result of -0.0 is not folded to 0.0.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testFoldNegativeZero() throws Exception {
+    // INIT
+    builder.addMethod("negativeZero", "()D").//
+        addInsn(new LdcInsnNode(Double.valueOf(-0.5))).//
+        invoke(INVOKESTATIC, "java/lang/Math", "ceil", "(D)D").//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("negativeZero");
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(2, optimized.size());
+    assertEquals(LDC, optimized.get(0).getOpcode());
+    final Double value = (Double) ((LdcInsnNode) optimized.get(0)).cst;
+    assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(value.doubleValue()));
+  }
+
+  /**
+   * Tests that Math.pow with a small exponent is reduced to a multiplication.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testReducePow() throws Exception {
+    // INIT
+    builder.addMethod("square", "(D)D").//
+        add(DLOAD, 1).//
+        addInsn(new LdcInsnNode(Double.valueOf(2.0))).//
+        invoke(INVOKESTATIC, "java/lang/Math", "pow", "(DD)D").//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("square");
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(4, optimized.size());
+    assertEquals(DUP2, optimized.get(1).getOpcode());
+    assertEquals(DMUL, optimized.get(2).getOpcode());
+    final Object instance = builder.toClass().instance();
+    assertEquals(9.0, ((Double) instance.getClass().getMethod("square", double.class).invoke(instance,
+        Double.valueOf(3.0))).doubleValue(), .0);
+  }
+
+  /**
+   * Tests that Math.pow with a greater exponent and StrictMath.pow are kept (the multiplications are not exact).
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testKeepPow() throws Exception {
+    // INIT
+    builder.addMethod("cube", "(D)D").//
+        add(DLOAD, 1).//
+        addInsn(new LdcInsnNode(Double.valueOf(3.0))).//
+        invoke(INVOKESTATIC, "java/lang/Math", "pow", "(DD)D").//
+        addReturn().//
+        addMethod("strictSquare", "(D)D").//
+        add(DLOAD, 1).//
+        addInsn(new LdcInsnNode(Double.valueOf(2.0))).//
+        invoke(INVOKESTATIC, "java/lang/StrictMath", "pow", "(DD)D").//
+        addReturn();
+    final MethodNode cube = builder.getMethod("cube");
+    final MethodNode strictSquare = builder.getMethod("strictSquare");
+
+    // RUN
+    optimizer.optimize(cube.instructions, cube);
+    final boolean cubeOptimized = optimizer.isOptimized();
+    optimizer.optimize(strictSquare.instructions, strictSquare);
+
+    // ASSERT
+    assertFalse(cubeOptimized);
+    assertFalse(optimizer.isOptimized());
+    assertEquals(4, cube.instructions.size());
+    assertEquals(4, strictSquare.instructions.size());
+  }
+
+  /**
+   * Tests that registered methods are evaluated.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testRegister() throws Exception {
+    // INIT
+    PureMethods.register(IntrinsicFolderTest.class, "twice", int.class);
+    builder.addMethod("twice", "()I").//
+        add(ICONST_3).//
+        invoke(INVOKESTATIC, Type.getInternalName(IntrinsicFolderTest.class), "twice", "(I)I").//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("twice");
+
+    // RUN
+    final InsnList optimized;
+    try {
+      optimized = optimizer.optimize(methodNode.instructions, methodNode);
+    } finally {
+      PureMethods.unregister(IntrinsicFolderTest.class.getMethod("twice", int.class));
+    }
+
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(2, optimized.size());
+    assertEquals(6, NodeHelper.getNumberValue(optimized.get(0)).intValue());
+  }
+
+  /**
+   * A pure method.
+   *
+   * @param value
+   *          the value
+   * @return the doubled value
+   */
+  public static int twice(final int value) {
+    return value * 2;
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.intrinsics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.NEW;
+
+import org.junit.Test;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+import de.tuberlin.uebb.jbop.optimizer.ClassNodeBuilder;
+
+/**
+ * Tests for {@link StringBuilderFolder}.
+ *
+ * @author Christopher Ewest
+ */
+public class StringBuilderFolderTest {
+
+  private static final String BUILDER = "java/lang/StringBuilder";
+
+  private final ClassNodeBuilder builder = ClassNodeBuilder
+      .createClass("de.tuberlin.uebb.jbop.optimizer.intrinsics.StringBuilderFolderTestClass");
+  private final StringBuilderFolder optimizer = new StringBuilderFolder();
+
+  /**
+   * Tests that adjacent constant appends are merged.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testMergeAppends() throws Exception {
+    // INIT
+    builder.addMethod("key", "(Ljava/lang/String;)Ljava/lang/String;").//
+        addInsn(new TypeInsnNode(NEW, BUILDER)).//
+        add(DUP).//
+        invoke(INVOKESPECIAL, BUILDER, "<init>", "()V").//
+        addInsn(new LdcInsnNode("id=")).//
+        invoke(INVOKEVIRTUAL, BUILDER, "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;").//
+        add(BIPUSH, 42).//
+        invoke(INVOKEVIRTUAL, BUILDER, "append", "(I)Ljava/lang/StringBuilder;").//
+        add(ALOAD, 1).//
+        invoke(INVOKEVIRTUAL, BUILDER, "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;").//
+        add(BIPUSH, 58).//
+        invoke(INVOKEVIRTUAL, BUILDER, "append", "(C)Ljava/lang/StringBuilder;").//
+        addInsn(new LdcInsnNode(Double.valueOf(1.5))).//
+        invoke(INVOKEVIRTUAL, BUILDER, "append", "(D)Ljava/lang/StringBuilder;").//
+        invoke(INVOKEVIRTUAL, BUILDER, "toString", "()Ljava/lang/String;").//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("key");
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(10, optimized.size());
+    assertEquals("id=42", ((LdcInsnNode) optimized.get(2)).cst);
+    assertEquals("(Ljava/lang/String;)V", ((MethodInsnNode) optimized.get(3)).desc);
+    assertEquals(":1.5", ((LdcInsnNode) optimized.get(6)).cst);
+    final Object instance = builder.toClass().instance();
+    assertEquals("id=42x:1.5", instance.getClass().getMethod("key", String.class).invoke(instance, "x"));
+  }
+
+  /**
+   * Tests that a constant chain is replaced by the String.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testFoldConstantChain() throws Exception {
+    // INIT
+    builder.addMethod("constant", "()Ljava/lang/String;").//
+        addInsn(new TypeInsnNode(NEW, BUILDER)).//
+        add(DUP).//
+        addInsn(new LdcInsnNode("a")).//
+        invoke(INVOKESPECIAL, BUILDER, "<init>", "(Ljava/lang/String;)V").//
+        add(ICONST_1).//
+        invoke(INVOKEVIRTUAL, BUILDER, "append", "(Z)Ljava/lang/StringBuilder;").//
+        invoke(INVOKEVIRTUAL, BUILDER, "toString", "()Ljava/lang/String;").//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("constant");
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(2, optimized.size());
+    assertEquals("atrue", ((LdcInsnNode) optimized.get(0)).cst);
+  }
+
+  /**
+   * Tests that a chain without adjacent constants is kept.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testNoConstants() throws Exception {
+    // INIT
+    builder.addMethod("variable", "(I)Ljava/lang/String;").//
+        addInsn(new TypeInsnNode(NEW, BUILDER)).//
+        add(DUP).//
+        invoke(INVOKESPECIAL, BUILDER, "<init>", "()V").//
+        add(ILOAD, 1).//
+        invoke(INVOKEVIRTUAL, BUILDER, "append", "(I)Ljava/lang/StringBuilder;").//
+        invoke(INVOKEVIRTUAL, BUILDER, "toString", "()Ljava/lang/String;").//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("variable");
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertFalse(optimizer.isOptimized());
+    assertEquals(7, optimized.size());
+  }
+}
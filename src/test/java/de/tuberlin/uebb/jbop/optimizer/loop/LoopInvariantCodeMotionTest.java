@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.loop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARRAYLENGTH;
+import static org.objectweb.asm.Opcodes.DADD;
+import static org.objectweb.asm.Opcodes.DCONST_0;
+import static org.objectweb.asm.Opcodes.DLOAD;
+import static org.objectweb.asm.Opcodes.DMUL;
+import static org.objectweb.asm.Opcodes.DSTORE;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.I2D;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_2;
+import static org.objectweb.asm.Opcodes.IF_ICMPLT;
+import static org.objectweb.asm.Opcodes.IINC;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.IMUL;
+import static org.objectweb.asm.Opcodes.ISTORE;
+
+import org.junit.Test;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import de.tuberlin.uebb.jbop.optimizer.ClassNodeBuilder;
+import de.tuberlin.uebb.jbop.optimizer.annotations.ImmutableArray;
+import de.tuberlin.uebb.jbop.optimizer.utils.LoopMatcher;
+
+/**
+ * Tests for {@link LoopInvariantCodeMotion}.
+ * 
+ * @author Christopher Ewest
+ */
+public class LoopInvariantCodeMotionTest {
+  
+  private static final String VALUES = Type.getInternalName(Values.class);
+  
+  private final ClassNodeBuilder builder = ClassNodeBuilder
+      .createClass("de.tuberlin.uebb.jbop.optimizer.loop.LoopInvariantCodeMotionTestClass");
+  private final LoopInvariantCodeMotion optimizer = new LoopInvariantCodeMotion();
+  
+  /**
+   * Tests that an expression of final and immutable fields is moved in front of the loop.
+   * 
+   * <pre>
+   * double sum = 0;
+   * for (int i = 0; i &lt; n; ++i) {
+   *   sum = sum + factor * scale.length;
+   * }
+   * return sum;
+   * </pre>
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testFields() throws Exception {
+    // INIT
+    final LabelNode body = new LabelNode();
+    final LabelNode condition = new LabelNode();
+    builder.addMethod("sum", "(I)D").//
+        add(DCONST_0).//
+        add(DSTORE, 2).//
+        add(ICONST_0).//
+        add(ISTORE, 4).//
+        add(GOTO, condition).//
+        addInsn(body).//
+        add(DLOAD, 2).//
+        add(ALOAD, 0).//
+        addGetField(VALUES, "factor", "D").//
+        add(ALOAD, 0).//
+        addGetField(VALUES, "scale", "[D").//
+        add(ARRAYLENGTH).//
+        add(I2D).//
+        add(DMUL).//
+        add(DADD).//
+        add(DSTORE, 2).//
+        add(IINC, 4, 1).//
+        addInsn(condition).//
+        add(ILOAD, 4).//
+        add(ILOAD, 1).//
+        add(IF_ICMPLT, body).//
+        add(DLOAD, 2).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("sum");
+    optimizer.setInputObject(new Values());
+    
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+    
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(25, optimized.size());
+    assertEquals(ALOAD, optimized.get(2).getOpcode());
+    assertEquals(DMUL, optimized.get(8).getOpcode());
+    assertEquals(DSTORE, optimized.get(9).getOpcode());
+    assertEquals(5, ((VarInsnNode) optimized.get(9)).var);
+    assertEquals(ICONST_0, optimized.get(10).getOpcode());
+    assertEquals(DLOAD, optimized.get(15).getOpcode());
+    assertEquals(5, ((VarInsnNode) optimized.get(15)).var);
+    assertEquals(DADD, optimized.get(16).getOpcode());
+    assertNotNull(LoopMatcher.getLoop(optimized.get(11)));
+  }
+  
+  /**
+   * Tests that arithmetic on a variable not written in the loop is moved,
+   * arithmetic on the counter and loads of non final fields are not.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testArithmetic() throws Exception {
+    // INIT
+    final LabelNode body = new LabelNode();
+    final LabelNode condition = new LabelNode();
+    builder.addMethod("count", "(I)V").//
+        add(ICONST_0).//
+        add(ISTORE, 2).//
+        add(GOTO, condition).//
+        addInsn(body).//
+        add(ILOAD, 1).//
+        add(ICONST_2).//
+        add(IMUL).//
+        add(ILOAD, 2).//
+        add(ICONST_2).//
+        add(IMUL).//
+        add(IADD).//
+        add(ALOAD, 0).//
+        addGetField(VALUES, "count", "I").//
+        add(IADD).//
+        add(ISTORE, 3).//
+        add(IINC, 2, 1).//
+        addInsn(condition).//
+        add(ILOAD, 2).//
+        add(ILOAD, 1).//
+        add(IF_ICMPLT, body).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("count");
+    optimizer.setInputObject(new Values());
+    
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+    
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(23, optimized.size());
+    assertEquals(ILOAD, optimized.get(0).getOpcode());
+    assertEquals(IMUL, optimized.get(2).getOpcode());
+    assertEquals(ISTORE, optimized.get(3).getOpcode());
+    assertEquals(4, ((VarInsnNode) optimized.get(3)).var);
+    assertEquals(ILOAD, optimized.get(8).getOpcode());
+    assertEquals(4, ((VarInsnNode) optimized.get(8)).var);
+    assertEquals(ILOAD, optimized.get(9).getOpcode());
+    assertEquals(2, ((VarInsnNode) optimized.get(9)).var);
+  }
+  
+  /**
+   * Tests that nothing is moved without an input object.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testNoInput() throws Exception {
+    // INIT
+    final LabelNode body = new LabelNode();
+    final LabelNode condition = new LabelNode();
+    builder.addMethod("length", "(I)V").//
+        add(ICONST_0).//
+        add(ISTORE, 2).//
+        add(GOTO, condition).//
+        addInsn(body).//
+        add(ALOAD, 0).//
+        addGetField(VALUES, "scale", "[D").//
+        add(ARRAYLENGTH).//
+        add(ISTORE, 3).//
+        add(IINC, 2, 1).//
+        addInsn(condition).//
+        add(ILOAD, 2).//
+        add(ILOAD, 1).//
+        add(IF_ICMPLT, body).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("length");
+    
+    // RUN
+    optimizer.optimize(methodNode.instructions, methodNode);
+    
+    // ASSERT
+    assertFalse(optimizer.isOptimized());
+  }
+  
+  /**
+   * The input object of the tests.
+   */
+  static class Values {
+    
+    /** A final field. */
+    final double factor = 2.5;
+    
+    /** An immutable array. */
+    @ImmutableArray
+    final double[] scale = {1.0, 2.0, 3.0 };
+    
+    /** A field that may change. */
+    int count;
+  }
+}
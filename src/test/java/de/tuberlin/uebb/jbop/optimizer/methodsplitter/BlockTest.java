@@ -20,17 +20,16 @@ package de.tuberlin.uebb.jbop.optimizer.methodsplitter;
 
 import static org.junit.Assert.assertEquals;
 
-import java.util.ListIterator;
-
 import org.junit.Test;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.InsnList;
 import org.objectweb.asm.tree.InsnNode;
-import org.objectweb.asm.tree.IntInsnNode;
 import org.objectweb.asm.tree.VarInsnNode;
 
+import de.tuberlin.uebb.jbop.optimizer.loop.SplitMarkNode;
+
 /**
  * Test for {@link Block}.
  * 
@@ -39,43 +38,61 @@ import org.objectweb.asm.tree.VarInsnNode;
 public class BlockTest {
   
   /**
-   * Tests the type erasure.
+   * Tests that the parameters and the result of the block are renamed.
    */
   @Test
-  public void testTypeErasure() {
+  public void testRenaming() {
     final InsnList list = new InsnList();
-    list.add(new InsnNode(Opcodes.ICONST_5));
-    list.add(new IntInsnNode(Opcodes.NEWARRAY, Opcodes.T_INT));
-    list.add(new VarInsnNode(Opcodes.ASTORE, 3));
-    list.add(new VarInsnNode(Opcodes.ILOAD, 1));
-    list.add(new VarInsnNode(Opcodes.ILOAD, 2));
-    list.add(new InsnNode(Opcodes.IADD));
-    list.add(new InsnNode(Opcodes.ICONST_0));
-    list.add(new VarInsnNode(Opcodes.ALOAD, 3));
-    list.add(new InsnNode(Opcodes.IASTORE));
-    list.add(new InsnNode(Opcodes.ICONST_5));
-    list.add(new IntInsnNode(Opcodes.NEWARRAY, Opcodes.T_INT));
-    list.add(new VarInsnNode(Opcodes.ASTORE, 4));
+    list.add(new VarInsnNode(Opcodes.ALOAD, 5));
+    list.add(new VarInsnNode(Opcodes.DLOAD, 3));
+    list.add(new InsnNode(Opcodes.D2I));
+    list.add(new VarInsnNode(Opcodes.ISTORE, 7));
+    list.add(new SplitMarkNode());
     list.add(new VarInsnNode(Opcodes.ILOAD, 1));
-    list.add(new VarInsnNode(Opcodes.ILOAD, 2));
-    list.add(new InsnNode(Opcodes.IADD));
-    list.add(new InsnNode(Opcodes.ICONST_1));
-    final VarInsnNode insn = new VarInsnNode(Opcodes.ALOAD, 3);
-    list.add(insn);
-    list.add(new InsnNode(Opcodes.IASTORE));
-    list.add(new InsnNode(Opcodes.RETURN));
+    list.add(new VarInsnNode(Opcodes.ISTORE, 8));
+    final AbstractInsnNode[] insns = list.toArray();
+    list.clear();
+    
+    final Block block = new Block(0, 0, insns.length, null);
+    block.addParameter(3, Type.DOUBLE_TYPE);
+    block.addParameter(1, Type.INT_TYPE);
+    block.addResult(8, Type.INT_TYPE);
+    
+    assertEquals("(DI)I", block.getDescriptor());
     
-    final ListIterator<AbstractInsnNode> iterator = list.iterator();
+    final InsnList push = block.getPushParameters();
+    assertEquals(2, push.size());
+    assertEquals(Opcodes.DLOAD, push.get(0).getOpcode());
+    assertEquals(3, ((VarInsnNode) push.get(0)).var);
+    assertEquals(Opcodes.ILOAD, push.get(1).getOpcode());
+    assertEquals(1, ((VarInsnNode) push.get(1)).var);
     
-    final Block block = new Block(1, new Type[] {
-        Type.INT_TYPE, Type.INT_TYPE
-    }, Type.INT_TYPE);
-    while (iterator.hasNext()) {
-      block.addInsn(iterator.next(), true);
-    }
+    final InsnList store = block.getStoreResult();
+    assertEquals(1, store.size());
+    assertEquals(Opcodes.ISTORE, store.get(0).getOpcode());
+    assertEquals(8, ((VarInsnNode) store.get(0)).var);
     
-    final Type findType = block.findType(insn);
-    assertEquals(Type.getType("[I"), findType);
+    final InsnList instructions = block.getInstructions(insns, false);
+    // split mark is removed, load and return of the result is added
+    assertEquals(8, instructions.size());
+    assertEquals(4, ((VarInsnNode) instructions.get(0)).var); // local
+    assertEquals(1, ((VarInsnNode) instructions.get(1)).var); // first parameter (double)
+    assertEquals(5, ((VarInsnNode) instructions.get(3)).var); // local
+    assertEquals(3, ((VarInsnNode) instructions.get(4)).var); // second parameter
+    assertEquals(6, ((VarInsnNode) instructions.get(5)).var); // local (result)
+    assertEquals(6, ((VarInsnNode) instructions.get(6)).var);
+    assertEquals(Opcodes.IRETURN, instructions.get(7).getOpcode());
   }
   
+  /**
+   * Tests that the last block returns the type of the original method.
+   */
+  @Test
+  public void testLastBlock() {
+    final Block block = new Block(1, 0, 0, Type.getType(int[].class));
+    block.addParameter(1, Type.getType(int[].class));
+    block.addParameter(1, Type.getType(int[].class));
+    
+    assertEquals("([I)[I", block.getDescriptor());
+  }
 }
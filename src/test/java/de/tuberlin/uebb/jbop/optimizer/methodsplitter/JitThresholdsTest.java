@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.methodsplitter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import de.tuberlin.uebb.jbop.MethodSizeReport;
+
+/**
+ * Tests for {@link JitThresholds}.
+ * 
+ * @author Christopher Ewest
+ */
+public class JitThresholdsTest {
+  
+  /**
+   * Tests that the flags of the running JVM are read.
+   */
+  @Test
+  public void testFromRuntime() {
+    // RUN
+    final JitThresholds thresholds = JitThresholds.fromRuntime();
+    
+    // ASSERT
+    assertTrue(thresholds.getMaxInlineSize() > 0);
+    assertTrue(thresholds.getFreqInlineSize() >= thresholds.getMaxInlineSize());
+    assertTrue(thresholds.getHugeMethodLimit() > thresholds.getFreqInlineSize());
+    assertEquals(thresholds.getHugeMethodLimit(), thresholds.getSplitLength());
+    assertEquals(thresholds.getFreqInlineSize(), thresholds.getPartLength());
+  }
+  
+  /**
+   * Tests that the report marks the methods that exceed the thresholds.
+   */
+  @Test
+  public void testReport() {
+    // INIT
+    final JitThresholds thresholds = new JitThresholds(2, 4, 8, true);
+    final MethodSizeReport report = new MethodSizeReport(thresholds);
+    
+    // RUN
+    report.add("Test", method("small", 3));
+    report.add("Test", method("medium", 5));
+    report.add("Test", method("huge", 9));
+    
+    // ASSERT
+    assertEquals(3, report.getEntries().size());
+    assertEquals(2, report.getNotInlinable().size());
+    assertEquals(1, report.getNotCompilable().size());
+    assertEquals("huge()V", report.getNotCompilable().get(0).getMethod());
+    assertFalse(thresholds.isCompilable(9));
+    assertTrue(new JitThresholds(2, 4, 8, false).isCompilable(9));
+    assertTrue(report.toString().contains("medium()V"));
+  }
+  
+  private MethodNode method(final String name, final int size) {
+    final MethodNode methodNode = new MethodNode(Opcodes.ASM5, Opcodes.ACC_PUBLIC, name, "()V", null, null);
+    for (int i = 1; i < size; ++i) {
+      methodNode.instructions.add(new InsnNode(Opcodes.NOP));
+    }
+    methodNode.instructions.add(new InsnNode(Opcodes.RETURN));
+    return methodNode;
+  }
+}
@@ -20,6 +20,7 @@ package de.tuberlin.uebb.jbop.optimizer.methodsplitter;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.lang.reflect.Method;
 import java.util.List;
@@ -27,12 +28,16 @@ import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.InsnList;
 import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 import org.objectweb.asm.tree.VarInsnNode;
 
+import de.tuberlin.uebb.jbop.MethodSizeReport;
 import de.tuberlin.uebb.jbop.optimizer.ClassNodeBuilder;
 import de.tuberlin.uebb.jbop.optimizer.loop.SplitMarkNode;
 import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
@@ -122,12 +127,15 @@ public class MethodSplitterTest {
     
     // check methods
     assertFalse(additionalMethods.isEmpty());
-    for (int i = 0; i < (additionalMethods.size() - 1); ++i) {
+    // the first part creates the array and returns it to the dispatcher
+    assertEquals("()[I", additionalMethods.get(0).desc);
+    for (int i = 1; i < (additionalMethods.size() - 1); ++i) {
       final MethodNode methodNode = additionalMethods.get(i);
-      assertEquals("([I)[I", methodNode.desc);
+      assertEquals("([I)V", methodNode.desc);
     }
     final MethodNode methodNode = additionalMethods.get(additionalMethods.size() - 1);
     assertEquals("([I)[I", methodNode.desc);
+    assertFlat(splitted, additionalMethods);
     
     // check that the class is valid by instantiating it
     method.instructions = splitted;
@@ -143,8 +151,213 @@ public class MethodSplitterTest {
     }
   }
   
-  private ClassNodeBuilder fillArray() {
+  /**
+   * Tests that a local variable that is written in every part is returned
+   * by the parts and passed to the next part by the dispatcher.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testMethodSplitterSumOverParts() throws Exception {
+    // INIT
+    classNode.name += "3";
+    method.desc = "(I)I";
+    builder.add(Opcodes.ICONST_0).//
+        store(Type.INT_TYPE, 2);
+    for (int i = 0; i < arrayLength; ++i) {
+      builder.load(Type.INT_TYPE, 2).//
+          load(Type.INT_TYPE, 1).//
+          addInsn(NodeHelper.getInsnNodeFor(i)).//
+          add(Opcodes.IMUL).//
+          add(Opcodes.IADD).//
+          store(Type.INT_TYPE, 2).//
+          addInsn(new SplitMarkNode());
+    }
+    builder.load(Type.INT_TYPE, 2).//
+        addInsn(new InsnNode(Opcodes.IRETURN));
+    
+    // RUN
+    final InsnList splitted = splitter.optimize(method.instructions, method);
+    final List<MethodNode> additionalMethods = splitter.getAdditionalMethods();
+    
+    // ASSERT
+    assertTrue(additionalMethods.size() > 1);
+    assertEquals("(I)I", additionalMethods.get(0).desc);
+    for (int i = 1; i < additionalMethods.size(); ++i) {
+      assertEquals("(II)I", additionalMethods.get(i).desc);
+    }
+    assertFlat(splitted, additionalMethods);
+    
+    method.instructions = splitted;
+    classNode.methods.addAll(additionalMethods);
+    final Object instance = builder.toClass().instance();
+    
+    final Method instanceMethod = instance.getClass().getMethod("testMethod", int.class);
+    int expected = 0;
+    for (int i = 0; i < arrayLength; ++i) {
+      expected += 3 * i;
+    }
+    assertEquals(Integer.valueOf(expected), instanceMethod.invoke(instance, Integer.valueOf(3)));
+  }
+  
+  /**
+   * Tests that two variables that are written in every part (two accumulators) are returned
+   * by the parts in an array and passed to the next part by the dispatcher.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testMethodSplitterTwoAccumulators() throws Exception {
+    // INIT
+    classNode.name += "4";
+    method.desc = "(I)J";
+    builder.add(Opcodes.ICONST_0).//
+        store(Type.INT_TYPE, 2).//
+        add(Opcodes.LCONST_0).//
+        store(Type.LONG_TYPE, 3);
+    for (int i = 0; i < arrayLength; ++i) {
+      builder.load(Type.INT_TYPE, 2).//
+          load(Type.INT_TYPE, 1).//
+          add(Opcodes.IADD).//
+          store(Type.INT_TYPE, 2).//
+          load(Type.LONG_TYPE, 3).//
+          addInsn(NodeHelper.getInsnNodeFor(Long.valueOf(i))).//
+          add(Opcodes.LADD).//
+          store(Type.LONG_TYPE, 3).//
+          addInsn(new SplitMarkNode());
+    }
+    builder.load(Type.INT_TYPE, 2).//
+        add(Opcodes.I2L).//
+        load(Type.LONG_TYPE, 3).//
+        add(Opcodes.LADD).//
+        addInsn(new InsnNode(Opcodes.LRETURN));
+    
+    // RUN
+    final InsnList splitted = splitter.optimize(method.instructions, method);
+    final List<MethodNode> additionalMethods = splitter.getAdditionalMethods();
+    
+    // ASSERT
+    assertTrue(additionalMethods.size() > 1);
+    assertEquals("(I)[Ljava/lang/Object;", additionalMethods.get(0).desc);
+    assertFlat(splitted, additionalMethods);
+    
+    method.instructions = splitted;
+    classNode.methods.addAll(additionalMethods);
+    final Object instance = builder.toClass().instance();
+    
+    final Method instanceMethod = instance.getClass().getMethod("testMethod", int.class);
+    long expected = 0;
     for (int i = 0; i < arrayLength; ++i) {
+      expected += 3 + i;
+    }
+    assertEquals(Long.valueOf(expected), instanceMethod.invoke(instance, Integer.valueOf(3)));
+  }
+  
+  /**
+   * Tests that with the thresholds of the JIT a method just above <code>-XX:FreqInlineSize</code>
+   * is not split (it is still compiled), but with the FreqInlineSize as split length it is.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testJitThresholdsJustAboveFreqInlineSize() throws Exception {
+    // INIT
+    classNode.name += "5";
+    method.desc = "([I)V";
+    fillArray(56).//
+        addInsn(new InsnNode(Opcodes.RETURN));
+    // the same method again, because the splitter removes the split marks
+    builder.addMethod("freqMethod", "([I)V");
+    fillArray(56).//
+        addInsn(new InsnNode(Opcodes.RETURN));
+    final MethodNode freqMethod = builder.getMethod("freqMethod");
+    final int size = MethodSizeReport.getSize(method);
+    assertTrue(size > MethodSplitter.FREQ_INLINE_SIZE);
+    assertTrue(size < (MethodSplitter.FREQ_INLINE_SIZE * 2));
+    final JitThresholds thresholds = JitThresholds.DEFAULT;
+    final MethodSplitter jitSplitter = new MethodSplitter(classNode, thresholds.getSplitLength(),
+        thresholds.getPartLength());
+    final MethodSplitter freqSplitter = new MethodSplitter(classNode, MethodSplitter.FREQ_INLINE_SIZE);
+    
+    // RUN
+    jitSplitter.optimize(method.instructions, method);
+    freqSplitter.optimize(freqMethod.instructions, freqMethod);
+    
+    // ASSERT
+    assertEquals(0, jitSplitter.getAdditionalMethods().size());
+    assertEquals(2, freqSplitter.getAdditionalMethods().size());
+  }
+  
+  /**
+   * Tests that with the thresholds of the JIT a method above <code>-XX:HugeMethodLimit</code>
+   * is split into parts of at most <code>-XX:FreqInlineSize</code>.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testJitThresholdsHugeMethod() throws Exception {
+    // INIT
+    classNode.name += "6";
+    method.desc = "([I)V";
+    final int count = 1200;
+    fillArray(count).//
+        addInsn(new InsnNode(Opcodes.RETURN));
+    assertTrue(MethodSizeReport.getSize(method) > MethodSplitter.HUGE_METHOD_LIMIT);
+    final JitThresholds thresholds = JitThresholds.DEFAULT;
+    final MethodSplitter jitSplitter = new MethodSplitter(classNode, thresholds.getSplitLength(),
+        thresholds.getPartLength());
+    
+    // RUN
+    final InsnList splitted = jitSplitter.optimize(method.instructions, method);
+    final List<MethodNode> additionalMethods = jitSplitter.getAdditionalMethods();
+    
+    // ASSERT
+    assertTrue(additionalMethods.size() > (MethodSplitter.HUGE_METHOD_LIMIT / MethodSplitter.FREQ_INLINE_SIZE));
+    for (final MethodNode part : additionalMethods) {
+      assertTrue(MethodSizeReport.getSize(part) <= MethodSplitter.FREQ_INLINE_SIZE);
+    }
+    assertFlat(splitted, additionalMethods);
+    
+    method.instructions = splitted;
+    classNode.methods.addAll(additionalMethods);
+    final Object instance = builder.toClass().instance();
+    final int[] is = new int[count];
+    instance.getClass().getMethod("testMethod", int[].class).invoke(instance, is);
+    for (int i = 0; i < count; ++i) {
+      assertEquals((i + 1) * 2, is[i]);
+    }
+  }
+  
+  /*
+   * The dispatcher calls every part, no part calls another part.
+   */
+  private void assertFlat(final InsnList dispatcher, final List<MethodNode> additionalMethods) {
+    int calls = 0;
+    for (final AbstractInsnNode node : dispatcher.toArray()) {
+      if ((node instanceof MethodInsnNode) && ((MethodInsnNode) node).name.contains("__split__part__")) {
+        calls++;
+      }
+    }
+    assertEquals(additionalMethods.size(), calls);
+    for (final MethodNode methodNode : additionalMethods) {
+      for (final AbstractInsnNode node : methodNode.instructions.toArray()) {
+        if (node instanceof MethodInsnNode) {
+          assertFalse(((MethodInsnNode) node).name.contains("__split__part__"));
+        }
+      }
+    }
+  }
+  
+  private ClassNodeBuilder fillArray() {
+    return fillArray(arrayLength);
+  }
+  
+  private ClassNodeBuilder fillArray(final int count) {
+    for (int i = 0; i < count; ++i) {
       builder.addInsn(new VarInsnNode(Opcodes.ALOAD, 1)).// arrayref
           addInsn(NodeHelper.getInsnNodeFor(i)).// index
           addInsn(NodeHelper.getInsnNodeFor((i + 1) * 2)).// value
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.peephole;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_2;
+import static org.objectweb.asm.Opcodes.ICONST_3;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.IINC;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.LCONST_1;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.POP2;
+import static org.objectweb.asm.Opcodes.SWAP;
+
+import org.junit.Test;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import de.tuberlin.uebb.jbop.optimizer.ClassNodeBuilder;
+
+/**
+ * Tests for {@link PeepholeOptimizer}.
+ * 
+ * @author Christopher Ewest
+ */
+public class PeepholeOptimizerTest {
+  
+  private final ClassNodeBuilder builder = ClassNodeBuilder
+      .createClass("de.tuberlin.uebb.jbop.optimizer.peephole.PeepholeOptimizerTestClass");
+  private final PeepholeOptimizer optimizer = new PeepholeOptimizer();
+  
+  /**
+   * Tests that a store directly followed by the last load of the variable is removed.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testStoreLoad() throws Exception {
+    // INIT
+    builder.addMethod("value", "(I)I").//
+        add(ILOAD, 1).//
+        add(ISTORE, 2).//
+        add(ILOAD, 2).//
+        add(ISTORE, 3).//
+        add(ILOAD, 3).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("value");
+    
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+    
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(2, optimized.size());
+    assertEquals(ILOAD, optimized.get(0).getOpcode());
+    assertEquals(IRETURN, optimized.get(1).getOpcode());
+  }
+  
+  /**
+   * Tests that a store is kept if the variable is loaded again.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testStoreLoadLive() throws Exception {
+    // INIT
+    builder.addMethod("twice", "(I)I").//
+        add(ILOAD, 1).//
+        add(ISTORE, 2).//
+        add(ILOAD, 2).//
+        add(ILOAD, 2).//
+        add(IADD).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("twice");
+    
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+    
+    // ASSERT
+    assertFalse(optimizer.isOptimized());
+    assertEquals(6, optimized.size());
+  }
+  
+  /**
+   * Tests that stack operations that cancel each other out are removed,
+   * including the patterns that only arise after a removal.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testCancelStackOps() throws Exception {
+    // INIT
+    builder.addMethod("stack", "(I)I").//
+        add(ILOAD, 1).//
+        add(ICONST_2).//
+        add(DUP).//
+        add(POP).//
+        add(POP).//
+        add(ICONST_3).//
+        add(SWAP).//
+        add(SWAP).//
+        add(POP).//
+        add(LCONST_1).//
+        add(POP2).//
+        add(IINC, 1, 0).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("stack");
+    
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+    
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(2, optimized.size());
+    assertEquals(ILOAD, optimized.get(0).getOpcode());
+    assertEquals(IRETURN, optimized.get(1).getOpcode());
+  }
+  
+  /**
+   * Tests that a goto to the next instruction is removed.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testGotoNext() throws Exception {
+    // INIT
+    final LabelNode label = new LabelNode();
+    builder.addMethod("jump", "(I)I").//
+        add(ILOAD, 1).//
+        add(GOTO, label).//
+        addInsn(new LabelNode()).//
+        addInsn(label).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("jump");
+    
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+    
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(4, optimized.size());
+    assertEquals(ILOAD, optimized.get(0).getOpcode());
+    assertEquals(IRETURN, optimized.get(3).getOpcode());
+  }
+  
+  /**
+   * Tests that patterns spanning a jump target are not rewritten.
+   * 
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testJumpTarget() throws Exception {
+    // INIT
+    final LabelNode label = new LabelNode();
+    builder.addMethod("loop", "(I)I").//
+        add(ILOAD, 1).//
+        add(ISTORE, 2).//
+        addInsn(label).//
+        add(ILOAD, 2).//
+        add(IFNE, label).//
+        add(ICONST_0).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("loop");
+    
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+    
+    // ASSERT
+    assertFalse(optimizer.isOptimized());
+    assertEquals(7, optimized.size());
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.utils;
+
+import static de.tuberlin.uebb.jbop.optimizer.utils.InsnPattern.any;
+import static de.tuberlin.uebb.jbop.optimizer.utils.InsnPattern.insn;
+import static de.tuberlin.uebb.jbop.optimizer.utils.InsnPattern.opcode;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.ISTORE;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.MethodNode;
+
+import de.tuberlin.uebb.jbop.optimizer.ClassNodeBuilder;
+import de.tuberlin.uebb.jbop.optimizer.utils.InsnPattern.Match;
+import de.tuberlin.uebb.jbop.optimizer.utils.predicates.Predicates;
+
+/**
+ * Tests for {@link InsnPattern}.
+ * 
+ * @author Christopher Ewest
+ */
+public class InsnPatternTest {
+  
+  private static final InsnPattern FIELD_ARRAY_VALUE = insn(Predicates.IS_XALOAD).as("load").with(//
+      opcode(GETFIELD).as("field").with(opcode(ALOAD)), //
+      insn(Predicates.IS_NUMBER_VALUE).as("index"));
+  
+  /**
+   * Tests that a pattern matches the producers of the operands and binds the names.
+   */
+  @Test
+  public void testMatch() {
+    // INIT
+    final MethodNode method = ClassNodeBuilder.createClass("de.tuberlin.uebb.example.Test").//
+        addField("array", "[I").//
+        addMethod("test", "(I)V").//
+        loadFieldArrayValue("array", 2).//
+        add(ISTORE, 2).//
+        add(ILOAD, 1).//
+        add(ISTORE, 3).//
+        addReturn().getMethod("test");
+    final InsnList list = method.instructions;
+    final StackProducers producers = new StackProducers(method);
+    
+    // RUN
+    final Match match = FIELD_ARRAY_VALUE.match(list.get(3), producers);
+    
+    // ASSERT
+    assertNotNull(match);
+    assertEquals(list.get(1), match.get("field"));
+    assertEquals(list.get(2), match.get("index"));
+    assertEquals(list.get(3), match.getRoot());
+    assertEquals(4, match.getNodes().size());
+    assertEquals(list.get(0), match.getNodes().get(0));
+    assertNull(FIELD_ARRAY_VALUE.match(list.get(4), producers));
+    assertFalse(opcode(ISTORE).with(opcode(GETFIELD)).matches(list.get(4), producers));
+  }
+  
+  /**
+   * Tests that findAll returns every match.
+   */
+  @Test
+  public void testFindAll() {
+    // INIT
+    final MethodNode method = ClassNodeBuilder.createClass("de.tuberlin.uebb.example.Test").//
+        addMethod("test", "(I)V").//
+        add(ILOAD, 1).//
+        add(ISTORE, 2).//
+        add(ILOAD, 1).//
+        add(ISTORE, 3).//
+        addReturn().getMethod("test");
+    final StackProducers producers = new StackProducers(method);
+    
+    // RUN
+    final List<Match> matches = opcode(ISTORE).with(any().as("value")).findAll(method.instructions, producers);
+    
+    // ASSERT
+    assertEquals(2, matches.size());
+    assertEquals(method.instructions.get(2), matches.get(1).get("value"));
+  }
+}
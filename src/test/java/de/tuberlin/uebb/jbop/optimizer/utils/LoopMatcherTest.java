@@ -28,6 +28,7 @@ import static org.objectweb.asm.Opcodes.ICONST_5;
 import static org.objectweb.asm.Opcodes.IFNE;
 import static org.objectweb.asm.Opcodes.IF_ICMPGT;
 import static org.objectweb.asm.Opcodes.IF_ICMPLE;
+import static org.objectweb.asm.Opcodes.IF_ICMPLT;
 import static org.objectweb.asm.Opcodes.IINC;
 import static org.objectweb.asm.Opcodes.ILOAD;
 import static org.objectweb.asm.Opcodes.ISTORE;
@@ -335,4 +336,37 @@ public class LoopMatcherTest {
     assertEquals(method.instructions.get(20), loopBounds.getRight());
     assertEquals(12, loop.getBody().size());
   }
+  
+  /**
+   * Tests that a loop with a local variable as end value (i &lt; n) is found.
+   */
+  @Test
+  public void testVariableEndValue() {
+    // INIT
+    final LabelNode startLoop = new LabelNode();
+    final LabelNode check = new LabelNode();
+    final ClassNodeBuilder builder = ClassNodeBuilder.createClass("de.tuberlin.uebb.jbop.optimizer.utils.LoopTest");
+    builder.addMethod("test", "(I)V").//
+        add(ICONST_0).//
+        add(ISTORE, 2).//
+        add(GOTO, check).//
+        addInsn(startLoop).//
+        add(IINC, 1, -1).//
+        add(IINC, 2, 1).//
+        addInsn(check).//
+        add(ILOAD, 2).//
+        add(ILOAD, 1).//
+        add(IF_ICMPLT, startLoop).//
+        addReturn();
+    final MethodNode method = builder.getMethod("test");
+    
+    // RUN
+    final Loop loop = LoopMatcher.getLoop(method.instructions.get(1));
+    
+    // ASSERT
+    assertTrue(loop != null);
+    assertFalse(loop.isPlain());
+    assertEquals(method.instructions.get(8), loop.getEndValue());
+    assertEquals(1, loop.getBody().size());
+  }
 }
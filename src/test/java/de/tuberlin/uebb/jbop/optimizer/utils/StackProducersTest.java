@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.ICONST_2;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.LCONST_1;
+import static org.objectweb.asm.Opcodes.LSTORE;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.POP2;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+import de.tuberlin.uebb.jbop.optimizer.ClassNodeBuilder;
+
+/**
+ * Tests for {@link StackProducers}.
+ * 
+ * @author Christopher Ewest
+ */
+public class StackProducersTest {
+  
+  private final ClassNodeBuilder builder = ClassNodeBuilder.createClass("de.tuberlin.uebb.example.Test").//
+      addMethod("test", "(I)V");
+  
+  /**
+   * Tests the producers and consumers of straight-line code.
+   */
+  @Test
+  public void testProducers() {
+    // INIT
+    builder.add(ILOAD, 1).//
+        add(ICONST_2).//
+        add(IADD).//
+        add(ISTORE, 2).//
+        addReturn();
+    final InsnList list = builder.getMethod("test").instructions;
+    
+    // RUN
+    final StackProducers producers = new StackProducers(builder.getMethod("test"));
+    
+    // ASSERT
+    final AbstractInsnNode add = list.get(2);
+    assertEquals(2, producers.getOperandCount(add));
+    assertEquals(list.get(0), producers.getProducer(add, 0));
+    assertEquals(list.get(1), producers.getProducer(add, 1));
+    assertEquals(add, producers.getProducer(list.get(3), 0));
+    assertEquals(list.get(3), producers.getConsumer(add));
+    assertEquals(list.get(0), producers.getFirstOfStack(list.get(3)));
+    assertNull(producers.getFirstOfStack(list.get(0)));
+  }
+  
+  /**
+   * Tests that values reaching a join point on two paths have both producers.
+   */
+  @Test
+  public void testProducersOfBranches() {
+    // INIT
+    final LabelNode label1 = new LabelNode();
+    final LabelNode label2 = new LabelNode();
+    builder.add(ILOAD, 1).//
+        add(IFEQ, label1).//
+        add(ICONST_1).//
+        add(GOTO, label2).//
+        addInsn(label1).//
+        add(ICONST_2).//
+        addInsn(label2).//
+        add(ISTORE, 2).//
+        addReturn();
+    final InsnList list = builder.getMethod("test").instructions;
+    
+    // RUN
+    final StackProducers producers = new StackProducers(builder.getMethod("test"));
+    
+    // ASSERT
+    final AbstractInsnNode store = list.get(7);
+    assertEquals(Arrays.asList(list.get(2), list.get(5)), producers.getProducers(store, 0));
+    assertNull(producers.getProducer(store, 0));
+    assertEquals(list.get(2), producers.getFirstOfStack(store));
+  }
+  
+  /**
+   * Tests dup and pop2 of a long.
+   */
+  @Test
+  public void testDupAndPop2() {
+    // INIT
+    builder.add(ICONST_1).//
+        add(DUP).//
+        add(ISTORE, 2).//
+        add(POP).//
+        add(LCONST_1).//
+        add(POP2).//
+        add(LCONST_1).//
+        add(LSTORE, 3).//
+        addReturn();
+    final InsnList list = builder.getMethod("test").instructions;
+    
+    // RUN
+    final StackProducers producers = new StackProducers(builder.getMethod("test"));
+    
+    // ASSERT
+    final AbstractInsnNode dup = list.get(1);
+    assertEquals(list.get(0), producers.getProducer(dup, 0));
+    assertEquals(dup, producers.getProducer(list.get(2), 0));
+    assertEquals(dup, producers.getProducer(list.get(3), 0));
+    assertEquals(1, producers.getOperandCount(list.get(5)));
+    assertEquals(list.get(4), producers.getProducer(list.get(5), 0));
+    assertEquals(list.get(6), producers.getProducer(list.get(7), 0));
+  }
+  
+  /**
+   * Tests that the exception of a handler has no producer.
+   */
+  @Test
+  public void testHandler() {
+    // INIT
+    final LabelNode start = new LabelNode();
+    final LabelNode end = new LabelNode();
+    final LabelNode handler = new LabelNode();
+    builder.addInsn(start).//
+        add(ICONST_1).//
+        add(ISTORE, 2).//
+        addInsn(end).//
+        addReturn().//
+        addInsn(handler).//
+        add(POP).//
+        addReturn();
+    final MethodNode method = builder.getMethod("test");
+    method.tryCatchBlocks.add(new TryCatchBlockNode(start, end, handler, null));
+    
+    // RUN
+    final StackProducers producers = new StackProducers(method);
+    
+    // ASSERT
+    final AbstractInsnNode pop = method.instructions.get(6);
+    final List<AbstractInsnNode> popProducers = producers.getProducers(pop, 0);
+    assertEquals(1, producers.getOperandCount(pop));
+    assertEquals(0, popProducers.size());
+    assertNull(producers.getFirstOfStack(pop));
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ *
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ *
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.var;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.DLOAD;
+import static org.objectweb.asm.Opcodes.DMUL;
+import static org.objectweb.asm.Opcodes.DNEG;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.ICONST_2;
+import static org.objectweb.asm.Opcodes.IINC;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.IMUL;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.LDC;
+
+import org.junit.Test;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import de.tuberlin.uebb.jbop.exception.JBOPClassException;
+import de.tuberlin.uebb.jbop.optimizer.ClassNodeBuilder;
+import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
+
+/**
+ * Tests for {@link ArgumentInliner}.
+ *
+ * @author Christopher Ewest
+ */
+public class ArgumentInlinerTest {
+
+  private final ClassNodeBuilder builder = ClassNodeBuilder
+      .createClass("de.tuberlin.uebb.jbop.optimizer.var.ArgumentInlinerTestClass");
+
+  /**
+   * Tests that the loads of the constant parameters are replaced.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testReplaceLoads() throws Exception {
+    // INIT
+    builder.addMethod("scale", "(ID)D").//
+        add(ILOAD, 1).//
+        add(ICONST_2).//
+        add(IMUL).//
+        add(ILOAD, 1).//
+        add(IMUL).//
+        add(ISTORE, 4).//
+        add(DLOAD, 2).//
+        add(DLOAD, 2).//
+        add(DMUL).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("scale");
+    final ArgumentInliner optimizer = new ArgumentInliner(Integer.valueOf(3), null);
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(10, optimized.size());
+    assertEquals(3, NodeHelper.getNumberValue(optimized.get(0)).intValue());
+    assertEquals(3, NodeHelper.getNumberValue(optimized.get(3)).intValue());
+    assertEquals(DLOAD, optimized.get(6).getOpcode());
+    assertEquals(DLOAD, optimized.get(7).getOpcode());
+  }
+
+  /**
+   * Tests that a constant is stored to a parameter that is written in the method.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testWrittenParameter() throws Exception {
+    // INIT
+    builder.addMethod("count", "(I)I").//
+        add(IINC, 1, 1).//
+        add(ILOAD, 1).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("count");
+    final ArgumentInliner optimizer = new ArgumentInliner(Integer.valueOf(1));
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertEquals(5, optimized.size());
+    assertEquals(ICONST_1, optimized.get(0).getOpcode());
+    assertEquals(ISTORE, optimized.get(1).getOpcode());
+    assertEquals(1, ((VarInsnNode) optimized.get(1)).var);
+    assertEquals(IINC, optimized.get(2).getOpcode());
+    assertEquals(ILOAD, optimized.get(3).getOpcode());
+  }
+
+  /**
+   * Tests that Strings, booleans and chars are accepted and other values are not.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testMatches() throws Exception {
+    // RUN / ASSERT
+    assertTrue(new ArgumentInliner("mode", Boolean.TRUE, Character.valueOf('x')).matches("(Ljava/lang/String;ZC)V"));
+    assertTrue(new ArgumentInliner(null, Double.valueOf(1.0)).matches("([ID)V"));
+    assertFalse(new ArgumentInliner("mode").matches("(I)V"));
+    assertFalse(new ArgumentInliner(Double.valueOf(1.0)).matches("(I)V"));
+    assertFalse(new ArgumentInliner(Integer.valueOf(1)).matches("(II)V"));
+    assertFalse(new ArgumentInliner(new int[0]).matches("([I)V"));
+  }
+
+  /**
+   * Tests that a String parameter is replaced by a ldc.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testString() throws Exception {
+    // INIT
+    builder.addMethod("name", "(Ljava/lang/String;)Ljava/lang/String;").//
+        add(ALOAD, 1).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("name");
+    final ArgumentInliner optimizer = new ArgumentInliner("mode");
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertEquals(LDC, optimized.get(0).getOpcode());
+    assertEquals("mode", ((LdcInsnNode) optimized.get(0)).cst);
+  }
+
+  /**
+   * Tests that the guard calls the fallback if the arguments differ from the constants.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testGuard() throws Exception {
+    // INIT
+    builder.addMethod("value", "(DLjava/lang/String;)D").//
+        add(DLOAD, 1).//
+        addReturn().//
+        addMethod("value__original", "(DLjava/lang/String;)D").//
+        add(DLOAD, 1).//
+        add(DNEG).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("value");
+    final ArgumentInliner optimizer = new ArgumentInliner(Double.valueOf(2.0), "mode");
+
+    // RUN
+    methodNode.instructions = optimizer.optimize(methodNode.instructions, methodNode);
+    optimizer.addGuard(methodNode, builder.getClassNode().name, builder.getMethod("value__original"));
+
+    // ASSERT
+    final Object instance = builder.toClass().instance();
+    assertEquals(2.0, invokeValue(instance, 2.0, "mode"), .0);
+    assertEquals(-3.0, invokeValue(instance, 3.0, "mode"), .0);
+    assertEquals(-2.0, invokeValue(instance, 2.0, "other"), .0);
+    assertEquals(-2.0, invokeValue(instance, 2.0, null), .0);
+    assertEquals(0.0, invokeValue(instance, -0.0, "mode"), .0);
+  }
+
+  private static double invokeValue(final Object instance, final double value, final String mode) throws Exception {
+    return ((Double) instance.getClass().getMethod("value", double.class, String.class)
+        .invoke(instance, Double.valueOf(value), mode)).doubleValue();
+  }
+
+  /**
+   * Tests that non matching arguments are rejected.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test(expected = JBOPClassException.class)
+  public void testNoMatch() throws Exception {
+    // INIT
+    builder.addMethod("scale", "(I)I").//
+        add(ILOAD, 1).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("scale");
+
+    // RUN
+    new ArgumentInliner("mode").optimize(methodNode.instructions, methodNode);
+  }
+}
@@ -43,6 +43,7 @@ import static org.objectweb.asm.Opcodes.ICONST_2;
 import static org.objectweb.asm.Opcodes.ICONST_3;
 import static org.objectweb.asm.Opcodes.ICONST_4;
 import static org.objectweb.asm.Opcodes.ICONST_5;
+import static org.objectweb.asm.Opcodes.IFEQ;
 import static org.objectweb.asm.Opcodes.IF_ICMPGT;
 import static org.objectweb.asm.Opcodes.IF_ICMPLT;
 import static org.objectweb.asm.Opcodes.IINC;
@@ -52,14 +53,18 @@ import static org.objectweb.asm.Opcodes.IRETURN;
 import static org.objectweb.asm.Opcodes.ISTORE;
 import static org.objectweb.asm.Opcodes.LCONST_1;
 import static org.objectweb.asm.Opcodes.LSTORE;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.POP2;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
 import org.objectweb.asm.tree.LabelNode;
 import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
 import org.objectweb.asm.tree.VarInsnNode;
 
 import de.tuberlin.uebb.jbop.optimizer.ClassNodeBuilder;
@@ -142,10 +147,11 @@ public class RemoveUnusedLocalVarsTest {
     assertEquals(7, methodNode.instructions.size());
     final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
     
-    // ASSERT
-    assertEquals(2, optimized.size());
-    assertEquals(ICONST_1, optimized.get(0).getOpcode());
-    assertEquals(IRETURN, optimized.get(1).getOpcode());
+    // ASSERT (the aaload may throw, so only the store is replaced)
+    assertTrue(optimizer.isOptimized());
+    assertEquals(7, optimized.size());
+    assertEquals(POP, optimized.get(4).getOpcode());
+    assertEquals(ICONST_1, optimized.get(5).getOpcode());
   }
   
   /**
@@ -321,7 +327,113 @@ public class RemoveUnusedLocalVarsTest {
     // RUN
     final InsnList optimized = optimizer.optimize(method.instructions, method);
     
+    // ASSERT (the value of the first dead store contains a call and array loads, so it is popped)
+    assertEquals(24, optimized.size());
+    assertEquals(POP2, optimized.get(18).getOpcode());
+  }
+  
+  /**
+   * Tests that a call feeding a dead store is kept: <code>int r = compute(); r = 0; return r;</code>.
+   */
+  @Test
+  public void testRemoveUnusedLocalVarsDeadStoreOfCall() {
+    // INIT
+    builder.addMethod("call", "()I").//
+        addInsn(new MethodInsnNode(INVOKESTATIC, "java/lang/System", "identityHashCode", "(Ljava/lang/Object;)I")).//
+        add(ISTORE, 1).//
+        add(ICONST_0).//
+        add(ISTORE, 1).//
+        add(ILOAD, 1).//
+        addReturn();
+    final MethodNode method = builder.getMethod("call");
+    method.instructions.insert(new InsnNode(ACONST_NULL));
+    
+    // RUN
+    final InsnList optimized = optimizer.optimize(method.instructions, method);
+    
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(7, optimized.size());
+    assertEquals(INVOKESTATIC, optimized.get(1).getOpcode());
+    assertEquals(POP, optimized.get(2).getOpcode());
+    assertEquals(ISTORE, optimized.get(4).getOpcode());
+  }
+  
+  /**
+   * Tests that RemoveUnusedLocalVars removes a store that is overwritten before it is read.
+   */
+  @Test
+  public void testRemoveUnusedLocalVarsDeadStore() {
+    // INIT
+    builder.add(ICONST_1).//
+        add(ISTORE, 1).//
+        add(ICONST_2).//
+        add(ISTORE, 1).//
+        add(ILOAD, 1).//
+        addReturn();
+    
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+    
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(4, optimized.size());
+    assertEquals(ICONST_2, optimized.getFirst().getOpcode());
+  }
+  
+  /**
+   * Tests that RemoveUnusedLocalVars keeps a store that is read on one path.
+   */
+  @Test
+  public void testRemoveUnusedLocalVarsStoreLiveOnBranch() {
+    // INIT
+    final LabelNode label = new LabelNode();
+    builder.add(ICONST_1).//
+        add(ISTORE, 1).//
+        add(ICONST_0).//
+        add(ISTORE, 2).//
+        add(ILOAD, 2).//
+        add(IFEQ, label).//
+        add(ICONST_3).//
+        add(ISTORE, 1).//
+        addInsn(label).//
+        add(ILOAD, 1).//
+        addReturn();
+    
+    // RUN
+    optimizer.optimize(methodNode.instructions, methodNode);
+    
     // ASSERT
-    assertEquals(13, optimized.size());
+    assertFalse(optimizer.isOptimized());
+  }
+  
+  /**
+   * Tests that RemoveUnusedLocalVars keeps stores inside of a try-block, if the variable is read by the handler.
+   */
+  @Test
+  public void testRemoveUnusedLocalVarsStoreLiveInHandler() {
+    // INIT
+    final LabelNode start = new LabelNode();
+    final LabelNode end = new LabelNode();
+    final LabelNode handler = new LabelNode();
+    builder.addInsn(start).//
+        add(ICONST_1).//
+        add(ISTORE, 1).//
+        add(ICONST_2).//
+        add(ISTORE, 1).//
+        addInsn(end).//
+        add(ILOAD, 1).//
+        addReturn().//
+        addInsn(handler).//
+        add(POP).//
+        add(ILOAD, 1).//
+        addReturn();
+    methodNode.tryCatchBlocks.add(new TryCatchBlockNode(start, end, handler, null));
+    
+    // RUN
+    optimizer.optimize(methodNode.instructions, methodNode);
+    
+    // ASSERT
+    assertFalse(optimizer.isOptimized());
   }
 }
@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.var;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ARRAYLENGTH;
+import static org.objectweb.asm.Opcodes.DALOAD;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.IALOAD;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.ICONST_2;
+import static org.objectweb.asm.Opcodes.LDC;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import de.tuberlin.uebb.jbop.optimizer.ClassNodeBuilder;
+import de.tuberlin.uebb.jbop.optimizer.annotations.ImmutableArray;
+import de.tuberlin.uebb.jbop.optimizer.utils.NodeHelper;
+
+/**
+ * Tests for {@link StaticFieldInliner}.
+ *
+ * @author Christopher Ewest
+ */
+public class StaticFieldInlinerTest {
+
+  private static final String OWNER = Type.getInternalName(Constants.class);
+
+  private final ClassNodeBuilder builder = ClassNodeBuilder
+      .createClass("de.tuberlin.uebb.jbop.optimizer.var.StaticFieldInlinerTestClass");
+
+  /** Set by the static initializer of {@link Lazy}. */
+  static boolean lazyInitialized;
+
+  /** A static field of the input class. */
+  static final int LIMIT = Integer.parseInt("3");
+
+  /**
+   * Init for every test: only fields of initialized classes are inlined.
+   */
+  @Before
+  public void before() {
+    assertEquals(4, Constants.SIZE);
+  }
+
+  /**
+   * Tests that the fields of a class that isn't initialized yet are not inlined
+   * and the class is not initialized by the optimizer.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testUninitializedClass() throws Exception {
+    // INIT
+    builder.addMethod("lazy", "()I").//
+        addInsn(new FieldInsnNode(GETSTATIC, Type.getInternalName(Lazy.class), "VALUE", "I")).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("lazy");
+    final StaticFieldInliner optimizer = new StaticFieldInliner();
+    optimizer.setInputObject(this);
+
+    // RUN
+    optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertFalse(optimizer.isOptimized());
+    assertFalse(lazyInitialized);
+  }
+
+  /**
+   * Tests that primitive and String values are inlined.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testInlinePrimitiveAndString() throws Exception {
+    // INIT
+    builder.addMethod("size", "()I").//
+        addInsn(new FieldInsnNode(GETSTATIC, OWNER, "SIZE", "I")).//
+        addInsn(new FieldInsnNode(GETSTATIC, OWNER, "NAME", "Ljava/lang/String;")).//
+        addInsn(new FieldInsnNode(GETSTATIC, OWNER, "counter", "I")).//
+        add(IADD).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("size");
+    final StaticFieldInliner optimizer = new StaticFieldInliner();
+    optimizer.setInputObject(this);
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(5, optimized.size());
+    assertEquals(4, NodeHelper.getNumberValue(optimized.get(0)).intValue());
+    assertEquals(LDC, optimized.get(1).getOpcode());
+    assertEquals("name", ((LdcInsnNode) optimized.get(1)).cst);
+    assertEquals(GETSTATIC, optimized.get(2).getOpcode());
+  }
+
+  /**
+   * Tests that the elements and the length of an immutable array are inlined.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testInlineImmutableArray() throws Exception {
+    // INIT
+    builder.addMethod("table", "()D").//
+        addInsn(new FieldInsnNode(GETSTATIC, OWNER, "TABLE", "[[D")).//
+        add(ICONST_1).//
+        add(AALOAD).//
+        add(ICONST_2).//
+        add(DALOAD).//
+        addInsn(new FieldInsnNode(GETSTATIC, OWNER, "TABLE", "[[D")).//
+        add(ICONST_1).//
+        add(AALOAD).//
+        add(ARRAYLENGTH).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("table");
+    final StaticFieldInliner optimizer = new StaticFieldInliner();
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(3, optimized.size());
+    assertEquals(6.0, NodeHelper.getNumberValue(optimized.get(0)).doubleValue(), .0);
+    assertEquals(3, NodeHelper.getNumberValue(optimized.get(1)).intValue());
+  }
+
+  /**
+   * Tests that elements of arrays without {@link ImmutableArray}, out of bound indexes and the array itself are not
+   * inlined.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testNoInline() throws Exception {
+    // INIT
+    builder.addMethod("mutable", "()I").//
+        addInsn(new FieldInsnNode(GETSTATIC, OWNER, "MUTABLE", "[I")).//
+        add(ICONST_1).//
+        add(IALOAD).//
+        addInsn(new FieldInsnNode(GETSTATIC, OWNER, "TABLE", "[[D")).//
+        add(ICONST_2).//
+        add(AALOAD).//
+        add(ARRAYLENGTH).//
+        addInsn(new FieldInsnNode(GETSTATIC, OWNER, "TABLE", "[[D")).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("mutable");
+    final StaticFieldInliner optimizer = new StaticFieldInliner();
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertFalse(optimizer.isOptimized());
+    assertEquals(9, optimized.size());
+  }
+
+  /**
+   * Tests that the length of an array without {@link ImmutableArray} is inlined.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testInlineLengthOfMutableArray() throws Exception {
+    // INIT
+    builder.addMethod("mutableLength", "()I").//
+        addInsn(new FieldInsnNode(GETSTATIC, OWNER, "MUTABLE", "[I")).//
+        add(ARRAYLENGTH).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("mutableLength");
+    final StaticFieldInliner optimizer = new StaticFieldInliner();
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(2, optimized.size());
+    assertEquals(2, NodeHelper.getNumberValue(optimized.get(0)).intValue());
+  }
+
+  /**
+   * Tests that only the fields of the class of the input are inlined,
+   * if the JVM can't be asked whether a class is initialized.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testWithoutJvmCheck() throws Exception {
+    // INIT
+    builder.addMethod("limit", "()I").//
+        addInsn(new FieldInsnNode(GETSTATIC, Type.getInternalName(StaticFieldInlinerTest.class), "LIMIT", "I")).//
+        addInsn(new FieldInsnNode(GETSTATIC, OWNER, "SIZE", "I")).//
+        add(IADD).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("limit");
+    final StaticFieldInliner optimizer = new StaticFieldInliner();
+    optimizer.setInputObject(this);
+    optimizer.jvmCheckAvailable = false;
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(4, optimized.size());
+    assertEquals(3, NodeHelper.getNumberValue(optimized.get(0)).intValue());
+    assertEquals(GETSTATIC, optimized.get(1).getOpcode());
+  }
+
+  /**
+   * Holder of the static fields.
+   */
+  static final class Constants {
+
+    static final int SIZE = Integer.parseInt("4");
+    static final String NAME = new String("name");
+    @ImmutableArray
+    static final double[][] TABLE = { { 1.0 }, { 4.0, 5.0, 6.0 } };
+    static final int[] MUTABLE = { 1, 2 };
+    static int counter = 1;
+
+    private Constants() {
+      //
+    }
+  }
+
+  /**
+   * Holder of a static field, that is not initialized by the tests.
+   */
+  static final class Lazy {
+
+    static final int VALUE = Integer.parseInt("7");
+
+    static {
+      lazyInitialized = true;
+    }
+
+    private Lazy() {
+      //
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2013 uebb.tu-berlin.de.
+ * 
+ * This file is part of JBOP (Java Bytecode OPtimizer).
+ * 
+ * JBOP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * JBOP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JBOP. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tuberlin.uebb.jbop.optimizer.var;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.INSTANCEOF;
+import static org.objectweb.asm.Opcodes.POP;
+
+import org.junit.Test;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+import de.tuberlin.uebb.jbop.optimizer.ClassNodeBuilder;
+import de.tuberlin.uebb.jbop.optimizer.annotations.ImmutableArray;
+
+/**
+ * Tests for {@link TypeCheckFolder}.
+ *
+ * @author Christopher Ewest
+ */
+public class TypeCheckFolderTest {
+
+  private static final String OWNER = Type.getInternalName(Shapes.class);
+
+  private final ClassNodeBuilder builder = ClassNodeBuilder
+      .createClass("de.tuberlin.uebb.jbop.optimizer.var.TypeCheckFolderTestClass");
+  private final TypeCheckFolder optimizer = new TypeCheckFolder();
+
+  /**
+   * Tests that instanceof of final fields and elements of immutable arrays is evaluated.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testInstanceof() throws Exception {
+    // INIT
+    builder.addMethod("isString", "()I").//
+        add(ALOAD, 0).//
+        addInsn(new FieldInsnNode(GETFIELD, OWNER, "shape", "Ljava/lang/Object;")).//
+        addInsn(new TypeInsnNode(INSTANCEOF, "java/lang/String")).//
+        add(ALOAD, 0).//
+        addInsn(new FieldInsnNode(GETFIELD, OWNER, "shapes", "[Ljava/lang/Object;")).//
+        add(ICONST_0).//
+        add(AALOAD).//
+        addInsn(new TypeInsnNode(INSTANCEOF, "java/lang/String")).//
+        add(IADD).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("isString");
+    optimizer.setInputObject(new Shapes());
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(4, optimized.size());
+    assertEquals(ICONST_1, optimized.get(0).getOpcode());
+    assertEquals(ICONST_0, optimized.get(1).getOpcode());
+  }
+
+  /**
+   * Tests that casts of null and redundant casts are removed and other casts are kept.
+   *
+   * @throws Exception
+   *           the exception
+   */
+  @Test
+  public void testCheckcast() throws Exception {
+    // INIT
+    builder.addMethod("cast", "()V").//
+        add(ALOAD, 0).//
+        addInsn(new FieldInsnNode(GETFIELD, OWNER, "empty", "Ljava/lang/Object;")).//
+        addInsn(new TypeInsnNode(CHECKCAST, "java/lang/String")).//
+        add(POP).//
+        add(ALOAD, 0).//
+        addInsn(new FieldInsnNode(GETFIELD, OWNER, "text", "Ljava/lang/String;")).//
+        addInsn(new TypeInsnNode(CHECKCAST, "java/lang/CharSequence")).//
+        add(POP).//
+        add(ALOAD, 0).//
+        addInsn(new FieldInsnNode(GETFIELD, OWNER, "shape", "Ljava/lang/Object;")).//
+        addInsn(new TypeInsnNode(CHECKCAST, "java/lang/String")).//
+        add(POP).//
+        addReturn();
+    final MethodNode methodNode = builder.getMethod("cast");
+    optimizer.setInputObject(new Shapes());
+
+    // RUN
+    final InsnList optimized = optimizer.optimize(methodNode.instructions, methodNode);
+
+    // ASSERT
+    assertTrue(optimizer.isOptimized());
+    assertEquals(10, optimized.size());
+    assertEquals(ACONST_NULL, optimized.get(0).getOpcode());
+    assertEquals(POP, optimized.get(4).getOpcode());
+    assertEquals(CHECKCAST, optimized.get(7).getOpcode());
+  }
+
+  /**
+   * The input.
+   */
+  static final class Shapes {
+
+    private final Object shape = "circle";
+    private final Object empty = null;
+    private final String text = "text";
+    @ImmutableArray
+    private final Object[] shapes = { Integer.valueOf(1) };
+  }
+}